@@ -0,0 +1,132 @@
+package bench;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+
+import org.ObjectLayout.Intrinsic;
+import org.ObjectLayout.IntrinsicObjects;
+import org.ObjectLayout.StructuredArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+  This benchmark measures the cost of constructing objects with intrinsic members through
+  IntrinsicObjects.constructWithin, compared with constructing the same objects with plain
+  (non-intrinsic) member objects:
+  - Objects with two intrinsic objects constructed with a default constructor
+  - Objects with two intrinsic objects constructed with a given constructor and arguments
+  - Objects with an intrinsic StructuredArray member (of POLYGON_SIZE points)
+
+  The reported score is the average time to construct one containing object, lower is better.
+
+  Run all benchmarks, with allocation rates reported:
+    $ java -jar target/benchmarks.jar IntrinsicObjectsBench -prof gc
+*/
+
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+
+public class IntrinsicObjectsBench {
+    static final int POLYGON_SIZE = 16;
+
+    @Benchmark
+    public Object plainLine() {
+        return new PlainLine(1, 2, 3, 4);
+    }
+
+    @Benchmark
+    public Object intrinsicLine() {
+        return new IntrinsicLine(1, 2, 3, 4);
+    }
+
+    @Benchmark
+    public Object plainPolygon() {
+        return new PlainPolygon();
+    }
+
+    @Benchmark
+    public Object intrinsicPolygon() {
+        return new IntrinsicPolygon();
+    }
+
+    public static class Point {
+        private long x;
+        private long y;
+
+        public Point() {
+        }
+
+        public Point(final long x, final long y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        public void set(final long x, final long y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    static final Constructor<Point> xyConstructor;
+
+    static {
+        try {
+            xyConstructor = Point.class.getConstructor(long.class, long.class);
+        } catch (NoSuchMethodException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public static class PlainLine {
+        private final Point endPoint1 = new Point();
+        private final Point endPoint2;
+
+        public PlainLine(final long x1, final long y1, final long x2, final long y2) {
+            endPoint2 = new Point(x2, y2);
+            endPoint1.set(x1, y1);
+        }
+    }
+
+    public static class IntrinsicLine {
+        private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        @Intrinsic
+        private final Point endPoint1 = IntrinsicObjects.constructWithin(lookup, "endPoint1", this);
+
+        @Intrinsic
+        private final Point endPoint2;
+
+        public IntrinsicLine(final long x1, final long y1, final long x2, final long y2) {
+            endPoint2 = IntrinsicObjects.constructWithin(lookup, "endPoint2", this, xyConstructor, x2, y2);
+            endPoint1.set(x1, y1);
+        }
+    }
+
+    public static class PlainPolygon {
+        private final StructuredArray<Point> points;
+
+        public PlainPolygon() {
+            points = StructuredArray.newInstance(Point.class, POLYGON_SIZE);
+        }
+    }
+
+    public static class IntrinsicPolygon {
+        private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        @Intrinsic(length = POLYGON_SIZE)
+        private final StructuredArray<Point> points = IntrinsicObjects.constructWithin(lookup, "points", this);
+    }
+}
@@ -87,10 +87,11 @@ public class ObjectLayoutBench {
     private int[] linearNextIndexes;
     private int[] shuffledNextIndexes;
 
-    private Blackhole blackhole = new Blackhole();
+    private Blackhole blackhole;
 
     @Setup
-    public void setup() throws NoSuchMethodException {
+    public void setup(final Blackhole blackhole) throws NoSuchMethodException {
+        this.blackhole = blackhole;
         length = 1 << LengthPow2;
         lengthMask = length - 1;
 
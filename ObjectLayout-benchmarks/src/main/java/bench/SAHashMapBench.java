@@ -75,10 +75,11 @@ public class SAHashMapBench {
     public SAHashMap<Integer,Element> saMap = new SAHashMap<Integer, Element>();
     public HashMap<Integer,Element> map = new HashMap<Integer, Element>();
 
-    private Blackhole blackhole = new Blackhole();
+    private Blackhole blackhole;
 
     @Setup
-    public void setup() throws NoSuchMethodException {
+    public void setup(final Blackhole blackhole) throws NoSuchMethodException {
+        this.blackhole = blackhole;
         length = 1 << lengthPow2;
         lengthMask = length - 1;
 
@@ -0,0 +1,135 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ObjectLayout.StructuredArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+  This benchmark measures the cost of accessing and copying StructuredArray elements:
+  - Indexed loops through get(int) and get(long)
+  - Loops through the array's ElementIterator
+  - Loops through get(long) at indexes above Integer.MAX_VALUE (long-addressable-only partitions)
+  - StructuredArray.shallowCopy of all elements to another array, and of overlapping ranges within
+    the same array
+
+  The reported score is the number of operations (full traversals or copies) per second, higher is better.
+
+  There are several parameters to tune this benchmark.
+
+  LengthPow2 - Log-Base-Two of the number of elements traversed or copied.
+
+  AboveIntegerMaxValue - When true, the array is made Integer.MAX_VALUE + 2^LengthPow2 elements long, and
+  the traversal loops access the elements above Integer.MAX_VALUE. Needs a very large heap (e.g. -Xmx80g
+  passed with -jvmArgs) and a long setup time, so it is off by default.
+
+  Run all benchmarks, with allocation rates reported:
+    $ java -jar target/benchmarks.jar StructuredArrayAccessBench -prof gc
+
+  Run the long index benchmarks:
+    $ java -jar target/benchmarks.jar StructuredArrayAccessBench -p AboveIntegerMaxValue=true -jvmArgs -Xmx80g
+*/
+
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@State(Scope.Thread)
+
+public class StructuredArrayAccessBench {
+    @Param({"16", "20"})
+    public int LengthPow2;
+
+    @Param({"false"})
+    public boolean AboveIntegerMaxValue;
+
+    private StructuredArray<Element> array;
+    private StructuredArray<Element> copyTarget;
+    private long fromIndex;
+    private long toIndex;
+    private int length;
+
+    @Setup
+    public void setup() {
+        length = 1 << LengthPow2;
+        fromIndex = AboveIntegerMaxValue ? Integer.MAX_VALUE : 0;
+        toIndex = fromIndex + length;
+
+        array = StructuredArray.newInstance(Element.class, toIndex);
+        copyTarget = StructuredArray.newInstance(Element.class, length);
+        for (long i = fromIndex; i < toIndex; i++) {
+            array.get(i).setValue(i);
+        }
+    }
+
+    @Benchmark
+    public void intIndexLoop(final Blackhole blackhole) {
+        long accumulator = 0;
+        for (int i = 0; i < length; i++) {
+            accumulator += array.get(i).getValue();
+        }
+        blackhole.consume(accumulator);
+    }
+
+    @Benchmark
+    public void longIndexLoop(final Blackhole blackhole) {
+        long accumulator = 0;
+        for (long i = fromIndex; i < toIndex; i++) {
+            accumulator += array.get(i).getValue();
+        }
+        blackhole.consume(accumulator);
+    }
+
+    @Benchmark
+    public void elementIteratorLoop(final Blackhole blackhole) {
+        long accumulator = 0;
+        final StructuredArray<Element>.ElementIterator iterator = array.iterator();
+        while (iterator.hasNext()) {
+            accumulator += iterator.next().getValue();
+        }
+        blackhole.consume(accumulator);
+    }
+
+    @Benchmark
+    public void forEachLoop(final Blackhole blackhole) {
+        long accumulator = 0;
+        for (Element element : array) {
+            accumulator += element.getValue();
+        }
+        blackhole.consume(accumulator);
+    }
+
+    @Benchmark
+    public void shallowCopy() {
+        StructuredArray.shallowCopy(array, fromIndex, copyTarget, 0, length);
+    }
+
+    @Benchmark
+    public void shallowCopyOverlapping() {
+        StructuredArray.shallowCopy(copyTarget, 0, copyTarget, 1, length - 1);
+        StructuredArray.shallowCopy(copyTarget, 1, copyTarget, 0, length - 1);
+    }
+
+    public static class Element {
+        private long value;
+        private long checksum;
+        private int flags;
+
+        public long getValue() {
+            return value;
+        }
+
+        public void setValue(final long value) {
+            this.value = value;
+            this.checksum = ~value;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package bench;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+
+import org.ObjectLayout.ConstructionContext;
+import org.ObjectLayout.CtorAndArgs;
+import org.ObjectLayout.CtorAndArgsProvider;
+import org.ObjectLayout.StructuredArray;
+import org.ObjectLayout.StructuredArrayBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+  This benchmark measures the cost of creating StructuredArrays, either from scratch with
+  StructuredArray.newInstance (through a StructuredArrayBuilder), or by replicating an existing array
+  with StructuredArray.copyInstance.
+
+  The reported score is the average time to create one array, lower is better. Since the total number
+  of elements is the same across nesting depths, scores can be compared across parameters to see the
+  per-element and per-sub-array costs.
+
+  There are several parameters to tune this benchmark.
+
+  ElementSize - "small" elements carry two long fields, "large" elements carry sixteen.
+
+  LengthPow2 - Log-Base-Two of the total number of (leaf) elements in each array.
+
+  Depth - The nesting depth of the array. With a depth of 2, the array is a StructuredArray of
+  StructuredArrays, each holding 2^(LengthPow2/2) elements.
+
+  Provider - How element constructors and arguments are supplied:
+    default     - elements are constructed with their default constructor
+    ctorAndArgs - elements are constructed with a fixed constructor and fixed arguments
+    contextual  - elements are constructed with a CtorAndArgsProvider that derives arguments from the
+                  construction context (the element index)
+
+  Run all benchmarks, with allocation rates reported:
+    $ java -jar target/benchmarks.jar StructuredArrayConstructionBench -prof gc
+
+  Or run this class' main() method, which adds the gc profiler.
+*/
+
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+
+public class StructuredArrayConstructionBench {
+    @Param({"small", "large"})
+    public String ElementSize;
+
+    @Param({"10", "16"})
+    public int LengthPow2;
+
+    @Param({"1", "2"})
+    public int Depth;
+
+    @Param({"default", "ctorAndArgs", "contextual"})
+    public String Provider;
+
+    private StructuredArrayBuilder builder;
+    private StructuredArray sourceArray;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws NoSuchMethodException {
+        final Class<? extends BenchElement> elementClass =
+                ElementSize.equals("large") ? LargeElement.class : SmallElement.class;
+
+        final long leafLength;
+        final long outerLength;
+        if (Depth == 1) {
+            leafLength = 1L << LengthPow2;
+            outerLength = 0;
+        } else if (Depth == 2) {
+            leafLength = 1L << (LengthPow2 / 2);
+            outerLength = 1L << (LengthPow2 - (LengthPow2 / 2));
+        } else {
+            throw new IllegalArgumentException("Unsupported Depth: " + Depth);
+        }
+
+        final StructuredArrayBuilder leafBuilder =
+                new StructuredArrayBuilder(StructuredArray.class, elementClass, leafLength);
+
+        final Constructor<? extends BenchElement> indexConstructor = elementClass.getConstructor(long.class);
+        if (Provider.equals("ctorAndArgs")) {
+            leafBuilder.elementCtorAndArgs(indexConstructor, 42L);
+        } else if (Provider.equals("contextual")) {
+            leafBuilder.elementCtorAndArgsProvider(new IndexedCtorAndArgsProvider(indexConstructor));
+        } else if (!Provider.equals("default")) {
+            throw new IllegalArgumentException("Unsupported Provider: " + Provider);
+        }
+
+        builder = (Depth == 1) ? leafBuilder :
+                new StructuredArrayBuilder(StructuredArray.class, leafBuilder, outerLength);
+        builder.resolve();
+
+        sourceArray = builder.build();
+    }
+
+    @Benchmark
+    public StructuredArray newInstance() {
+        return builder.build();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public StructuredArray copyInstance() throws NoSuchMethodException {
+        return StructuredArray.copyInstance(sourceArray);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StructuredArrayConstructionBench.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    static class IndexedCtorAndArgsProvider implements CtorAndArgsProvider {
+        private final CtorAndArgs ctorAndArgs;
+        private final Object[] args = new Object[1];
+
+        @SuppressWarnings("unchecked")
+        IndexedCtorAndArgsProvider(final Constructor constructor) {
+            ctorAndArgs = new CtorAndArgs(constructor, args);
+        }
+
+        @Override
+        public CtorAndArgs getForContext(final ConstructionContext context) {
+            args[0] = context.getIndex();
+            return ctorAndArgs;
+        }
+    }
+
+    public static class BenchElement {
+        private long index;
+        private long value;
+
+        public BenchElement() {
+        }
+
+        public BenchElement(final long index) {
+            this.index = index;
+            this.value = index * 31;
+        }
+
+        public BenchElement(final BenchElement source) {
+            this.index = source.index;
+            this.value = source.value;
+        }
+
+        public long getValue() {
+            return value;
+        }
+    }
+
+    public static class SmallElement extends BenchElement {
+        public SmallElement() {
+        }
+
+        public SmallElement(final long index) {
+            super(index);
+        }
+
+        public SmallElement(final SmallElement source) {
+            super(source);
+        }
+    }
+
+    public static class LargeElement extends BenchElement {
+        private long l0, l1, l2, l3, l4, l5, l6, l7;
+        private long l8, l9, l10, l11, l12, l13;
+
+        public LargeElement() {
+        }
+
+        public LargeElement(final long index) {
+            super(index);
+            l0 = index;
+        }
+
+        public LargeElement(final LargeElement source) {
+            super(source);
+            l0 = source.l0;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package org.ObjectLayout.examples;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.ObjectLayout.PrimitiveLongArray;
+
+/**
+ * The common structure of B+ trees keyed by primitive <code>long</code>s, with the handling of the values
+ * held in leaves left to subclasses.
+ * <p>
+ * Both leaves and branches are {@link PrimitiveLongArray}s holding the node's sorted keys, such that
+ * searches within a node are binary searches over a contiguous <code>long[]</code>, with no comparator
+ * calls and no boxing. Leaves hold their values in parallel arrays of the same length, at the same
+ * indexes as their keys, and are doubly linked in key order.
+ * <p>
+ * Nodes are not merged or rebalanced on removal: a leaf emptied by removals is unlinked from the tree,
+ * along with any branches left empty by its removal.
+ */
+abstract class AbstractLongBPlusTree {
+
+    static final int MIN_NODE_SIZE = 3;
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    final int nodeSize;
+
+    Object root;
+    Leaf firstLeaf;
+    long size;
+
+    // Results of slotFor(), returned through fields to avoid allocation:
+    int keyIndex;
+    boolean inserted;
+
+    // The path from the root to the leaf of the last search, used for splitting and unlinking nodes:
+    private Branch[] pathBranches = new Branch[8];
+    private int[] pathIndexes = new int[8];
+    private int pathDepth;
+
+    // Scratch space for branch splits:
+    private final long[] scratchKeys;
+    private final Object[] scratchChildren;
+
+    AbstractLongBPlusTree(final int nodeSize) {
+        if (nodeSize < MIN_NODE_SIZE) {
+            throw new IllegalArgumentException("Illegal node size: " + nodeSize);
+        }
+        this.nodeSize = nodeSize;
+        this.scratchKeys = new long[nodeSize + 1];
+        this.scratchChildren = new Object[nodeSize + 2];
+        this.firstLeaf = newLeaf();
+        this.root = firstLeaf;
+    }
+
+    /**
+     * Create a new, empty leaf of nodeSize capacity.
+     */
+    abstract Leaf newLeaf();
+
+    /**
+     * Returns the number of key-value mappings in this tree.
+     *
+     * @return the number of key-value mappings in this tree
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this tree contains no key-value mappings.
+     *
+     * @return <tt>true</tt> if this tree contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this tree contains a mapping for the given key.
+     *
+     * @param key the key whose presence in this tree is to be tested
+     * @return <tt>true</tt> if this tree contains a mapping for the given key
+     */
+    public boolean containsKey(final long key) {
+        final Leaf leaf = findLeaf(key);
+        return leaf.indexOf(key) >= 0;
+    }
+
+    /* ---------------- Nodes -------------- */
+
+    /**
+     * The part common to the nodes of all long-keyed B+ trees (including {@link ConcurrentLongLongBPlusTree}):
+     * a {@link PrimitiveLongArray} of keys, of which the first {@link #size} are in use, in ascending order.
+     */
+    abstract static class KeyNode extends PrimitiveLongArray {
+        final long[] keys;
+        int size;
+
+        KeyNode() {
+            keys = asArray();
+        }
+
+        final int indexOf(final long key) {
+            return Arrays.binarySearch(keys, 0, size, key);
+        }
+
+        /**
+         * Returns the index of the child of a branch that covers the given key.
+         */
+        final int childIndexFor(final long key) {
+            final int index = indexOf(key);
+            return (index >= 0) ? index + 1 : -(index + 1);
+        }
+
+        /**
+         * Inserts a key at the given index, shifting the keys at and after it up by one.
+         */
+        final void insertKey(final int index, final long key) {
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            keys[index] = key;
+            size++;
+        }
+
+        /**
+         * Removes the key at the given index, shifting the keys after it down by one.
+         */
+        final void removeKey(final int index) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            size--;
+        }
+    }
+
+    abstract static class Leaf extends KeyNode {
+        final int capacity;
+        Leaf next;
+        Leaf previous;
+
+        Leaf() {
+            capacity = keys.length;
+        }
+
+        /**
+         * Move count values from the given index of this leaf to the given index of the destination leaf,
+         * with the semantics of {@link System#arraycopy}.
+         */
+        abstract void moveValues(int srcIndex, Leaf dst, int dstIndex, int count);
+
+        /**
+         * Clear the values in the given range, such that they are not retained.
+         */
+        abstract void clearValues(int fromIndex, int toIndex);
+    }
+
+    static final class Branch extends KeyNode {
+        final Object[] children;
+
+        Branch() {
+            children = new Object[keys.length + 1];
+        }
+    }
+
+    /* ---------------- Cursors -------------- */
+
+    /**
+     * Returns the index a cursor over the given leaf starts at, such that it is positioned before the first
+     * mapping whose key is greater than or equal to the given key.
+     */
+    static int cursorIndexFor(final Leaf leaf, final long fromKey) {
+        final int index = leaf.indexOf(fromKey);
+        return (index >= 0) ? index : -(index + 1);
+    }
+
+    /**
+     * The traversal of a cursor over the mappings of a tree, in ascending key order, reading keys in place.
+     * Subclasses add access to the values of the mappings, at the current {@link #index} of the current
+     * {@link #leaf}.
+     */
+    abstract static class LeafCursor {
+        Leaf leaf;
+        int index;
+        private boolean positioned;
+
+        LeafCursor(final Leaf leaf, final int index) {
+            this.leaf = leaf;
+            this.index = index - 1;
+        }
+
+        /**
+         * Advances the cursor to the next mapping.
+         *
+         * @return <tt>true</tt> if the cursor was advanced to a mapping, <tt>false</tt> if there are no
+         * more mappings
+         */
+        public boolean next() {
+            index++;
+            while (index >= leaf.size) {
+                if (leaf.next == null) {
+                    index = leaf.size;
+                    positioned = false;
+                    return false;
+                }
+                leaf = leaf.next;
+                index = 0;
+            }
+            positioned = true;
+            return true;
+        }
+
+        /**
+         * Returns the key of the current mapping.
+         *
+         * @return the key of the current mapping
+         * @throws NoSuchElementException if the cursor is not positioned at a mapping
+         */
+        public long getKey() {
+            checkPositioned();
+            return leaf.keys[index];
+        }
+
+        final void checkPositioned() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    /* ---------------- Tree internals -------------- */
+
+    final Leaf findLeaf(final long key) {
+        Object node = root;
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            node = branch.children[branch.childIndexFor(key)];
+        }
+        return (Leaf) node;
+    }
+
+    private Leaf findLeafRecordingPath(final long key) {
+        pathDepth = 0;
+        Object node = root;
+        while (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            final int index = branch.childIndexFor(key);
+            if (pathDepth == pathBranches.length) {
+                pathBranches = Arrays.copyOf(pathBranches, pathDepth * 2);
+                pathIndexes = Arrays.copyOf(pathIndexes, pathDepth * 2);
+            }
+            pathBranches[pathDepth] = branch;
+            pathIndexes[pathDepth] = index;
+            pathDepth++;
+            node = branch.children[index];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Finds the slot for a key, inserting the key (and making room for its value) if it is not already in
+     * the tree. Returns the leaf holding the key; its index within the leaf is left in {@link #keyIndex},
+     * and {@link #inserted} tells whether the key was inserted.
+     */
+    final Leaf slotFor(final long key) {
+        Leaf leaf = findLeafRecordingPath(key);
+        int index = leaf.indexOf(key);
+        if (index >= 0) {
+            keyIndex = index;
+            inserted = false;
+            return leaf;
+        }
+        index = -(index + 1);
+
+        if (leaf.size == leaf.capacity) {
+            final Leaf right = splitLeaf(leaf);
+            insertIntoParent(pathDepth - 1, leaf, right.keys[0], right);
+            if (index > leaf.size) {
+                index -= leaf.size;
+                leaf = right;
+            }
+        }
+
+        final int count = leaf.size - index;
+        if (count > 0) {
+            leaf.moveValues(index, leaf, index + 1, count);
+            leaf.clearValues(index, index + 1);
+        }
+        leaf.insertKey(index, key);
+        size++;
+        keyIndex = index;
+        inserted = true;
+        return leaf;
+    }
+
+    /**
+     * Removes the key at the given index of the leaf found by the last call to {@link #leafForRemoval}.
+     */
+    final void removeAt(final Leaf leaf, final int index) {
+        final int count = leaf.size - index - 1;
+        if (count > 0) {
+            leaf.moveValues(index + 1, leaf, index, count);
+        }
+        leaf.removeKey(index);
+        leaf.clearValues(leaf.size, leaf.size + 1);
+        size--;
+        if ((leaf.size == 0) && (leaf != root)) {
+            if (size == 0) {
+                // Emptied leaves are unlinked as they empty, so this is the last one, and becomes the root:
+                leaf.next = null;
+                leaf.previous = null;
+                firstLeaf = leaf;
+                root = leaf;
+            } else {
+                unlinkLeaf(leaf);
+            }
+        }
+    }
+
+    final Leaf leafForRemoval(final long key) {
+        return findLeafRecordingPath(key);
+    }
+
+    private Leaf splitLeaf(final Leaf leaf) {
+        final Leaf right = newLeaf();
+        final int leftCount = leaf.size / 2;
+        final int rightCount = leaf.size - leftCount;
+        System.arraycopy(leaf.keys, leftCount, right.keys, 0, rightCount);
+        leaf.moveValues(leftCount, right, 0, rightCount);
+        leaf.clearValues(leftCount, leaf.size);
+        leaf.size = leftCount;
+        right.size = rightCount;
+
+        right.next = leaf.next;
+        right.previous = leaf;
+        if (leaf.next != null) {
+            leaf.next.previous = right;
+        }
+        leaf.next = right;
+        return right;
+    }
+
+    /**
+     * Inserts a new right sibling of a node into the parent at the given depth of the recorded path,
+     * splitting the parent (and then its ancestors) as needed.
+     */
+    private void insertIntoParent(int depth, Object left, long separator, Object right) {
+        while (depth >= 0) {
+            final Branch parent = pathBranches[depth];
+            final int index = pathIndexes[depth];
+            if (parent.size < nodeSize) {
+                System.arraycopy(parent.children, index + 1, parent.children, index + 2, parent.size - index);
+                parent.children[index + 1] = right;
+                parent.insertKey(index, separator);
+                return;
+            }
+
+            // Split the overflowing parent; its middle key moves up:
+            final int count = parent.size + 1;
+            System.arraycopy(parent.keys, 0, scratchKeys, 0, index);
+            System.arraycopy(parent.keys, index, scratchKeys, index + 1, parent.size - index);
+            scratchKeys[index] = separator;
+            System.arraycopy(parent.children, 0, scratchChildren, 0, index + 1);
+            System.arraycopy(parent.children, index + 1, scratchChildren, index + 2, parent.size - index);
+            scratchChildren[index + 1] = right;
+
+            final int leftCount = count / 2;
+            final Branch sibling = newBranch();
+            final int rightCount = count - leftCount - 1;
+            System.arraycopy(scratchKeys, leftCount + 1, sibling.keys, 0, rightCount);
+            System.arraycopy(scratchChildren, leftCount + 1, sibling.children, 0, rightCount + 1);
+            sibling.size = rightCount;
+
+            System.arraycopy(scratchKeys, 0, parent.keys, 0, leftCount);
+            System.arraycopy(scratchChildren, 0, parent.children, 0, leftCount + 1);
+            Arrays.fill(parent.children, leftCount + 1, parent.children.length, null);
+            parent.size = leftCount;
+
+            left = parent;
+            separator = scratchKeys[leftCount];
+            right = sibling;
+            depth--;
+        }
+
+        final Branch newRoot = newBranch();
+        newRoot.keys[0] = separator;
+        newRoot.children[0] = left;
+        newRoot.children[1] = right;
+        newRoot.size = 1;
+        root = newRoot;
+    }
+
+    private void unlinkLeaf(final Leaf leaf) {
+        if (leaf.previous != null) {
+            leaf.previous.next = leaf.next;
+        } else {
+            firstLeaf = leaf.next;
+        }
+        if (leaf.next != null) {
+            leaf.next.previous = leaf.previous;
+        }
+
+        // Remove the leaf from its parent, and any branches left with no children from theirs:
+        for (int depth = pathDepth - 1; depth >= 0; depth--) {
+            final Branch parent = pathBranches[depth];
+            final int index = pathIndexes[depth];
+            if (parent.size > 0) {
+                final int separatorIndex = (index > 0) ? index - 1 : 0;
+                System.arraycopy(parent.keys, separatorIndex + 1, parent.keys, separatorIndex,
+                        parent.size - separatorIndex - 1);
+                System.arraycopy(parent.children, index + 1, parent.children, index, parent.size - index);
+                parent.children[parent.size] = null;
+                parent.size--;
+                break;
+            }
+            parent.children[0] = null;
+        }
+
+        // Collapse root branches with a single child:
+        while ((root instanceof Branch) && (((Branch) root).size == 0)) {
+            root = ((Branch) root).children[0];
+        }
+    }
+
+    private Branch newBranch() {
+        return PrimitiveLongArray.newInstance(lookup, Branch.class, nodeSize);
+    }
+}
@@ -5,8 +5,10 @@ package org.ObjectLayout.examples;/*
  */
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -851,6 +853,231 @@ public class BPlusTree<K, V> implements Iterable<Map.Entry<K, V>> {
         }
     }
     
+    /**
+     * Returns a cursor over the mappings whose keys range from fromKey, inclusive, to toKey, exclusive, in
+     * ascending key order. The cursor walks the linked leaves of the tree in place, and does not allocate
+     * as it advances. It is invalidated by any structural modification of the tree.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys returned by the cursor, or null for no low endpoint
+     * @param toKey high endpoint (exclusive) of the keys returned by the cursor, or null for no high endpoint
+     * @return a cursor positioned before the first mapping in the range
+     */
+    public Cursor subMap(K fromKey, K toKey) {
+        return new Cursor().reset(fromKey, toKey);
+    }
+
+    /**
+     * Returns a cursor over all the mappings in the tree, in ascending key order.
+     *
+     * @return a cursor positioned before the first mapping in the tree
+     */
+    public Cursor cursor() {
+        return new Cursor().reset(null, null);
+    }
+
+    /**
+     * A cursor over a range of the mappings of a {@link BPlusTree}, that reads entries in place in the
+     * leaves. A cursor can be {@link #reset} to scan another range, such that repeated range scans need
+     * not allocate.
+     */
+    public class Cursor {
+        private Leaf leaf;
+        private int index;
+        private Object toKey;
+        private boolean positioned;
+        private boolean exhausted;
+
+        /**
+         * Positions this cursor before the first mapping whose key is greater than or equal to fromKey, and
+         * limits it to keys less than toKey.
+         *
+         * @param fromKey low endpoint (inclusive) of the keys returned by the cursor, or null for no low endpoint
+         * @param toKey high endpoint (exclusive) of the keys returned by the cursor, or null for no high endpoint
+         * @return this cursor
+         */
+        public Cursor reset(K fromKey, K toKey) {
+            this.toKey = toKey;
+            this.positioned = false;
+            this.exhausted = false;
+            if (fromKey == null) {
+                leaf = firstNode;
+                index = -1;
+                return this;
+            }
+            Node node = root;
+            while (node instanceof Branch) {
+                node = ((Branch) node).findNode(comparator, fromKey);
+            }
+            leaf = (Leaf) node;
+            int search = binarySearch(leaf, 0, leaf.size(), fromKey, comparator);
+            index = ((search >= 0) ? search : -(search + 1)) - 1;
+            return this;
+        }
+
+        /**
+         * Advances the cursor to the next mapping in its range.
+         *
+         * @return <tt>true</tt> if the cursor was advanced to a mapping, <tt>false</tt> if there are no more
+         * mappings in its range
+         */
+        public boolean next() {
+            if (exhausted) {
+                return false;
+            }
+            index++;
+            while (index >= leaf.size()) {
+                if (leaf.next() == null) {
+                    return exhaust();
+                }
+                leaf = leaf.next();
+                index = 0;
+            }
+            if ((toKey != null) && (compare(comparator, leaf.get(index).getKey(), toKey) >= 0)) {
+                return exhaust();
+            }
+            positioned = true;
+            return true;
+        }
+
+        private boolean exhaust() {
+            exhausted = true;
+            positioned = false;
+            return false;
+        }
+
+        /**
+         * Returns the key of the current mapping.
+         *
+         * @return the key of the current mapping
+         * @throws NoSuchElementException if the cursor is not positioned at a mapping
+         */
+        @SuppressWarnings("unchecked")
+        public K getKey() {
+            return (K) current().getKey();
+        }
+
+        /**
+         * Returns the value of the current mapping.
+         *
+         * @return the value of the current mapping
+         * @throws NoSuchElementException if the cursor is not positioned at a mapping
+         */
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            return (V) current().getValue();
+        }
+
+        /**
+         * Replaces the value of the current mapping.
+         *
+         * @param value the new value (may not be null)
+         * @return the previous value of the current mapping
+         * @throws NoSuchElementException if the cursor is not positioned at a mapping
+         */
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            if (value == null) {
+                throw new NullPointerException("Values may not be null");
+            }
+            return (V) current().setValue(value);
+        }
+
+        private Entry current() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return leaf.get(index);
+        }
+    }
+
+    /**
+     * Builds a tree from mappings supplied in strictly ascending key order. Leaves are filled to capacity
+     * and linked as they are filled, and the branch levels are then built bottom-up, with none of the
+     * searching, shifting and splitting of repeated {@link #put} calls.
+     *
+     * @param nodeSize the node size of the tree
+     * @param comparator the comparator to order keys with, or null to use the keys' natural ordering
+     * @param sortedEntries the mappings, in strictly ascending key order
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @return a new tree holding the given mappings
+     * @throws IllegalArgumentException if the keys are not in strictly ascending order
+     * @throws NullPointerException if a key or value is null
+     */
+    public static <K, V> BPlusTree<K, V> bulkLoad(
+            int nodeSize,
+            Comparator<K> comparator,
+            Iterator<? extends Map.Entry<? extends K, ? extends V>> sortedEntries) {
+        BPlusTree<K, V> tree = new BPlusTree<K, V>(nodeSize, comparator);
+        List<Node> nodes = new ArrayList<Node>();
+        List<Object> firstKeys = new ArrayList<Object>();
+
+        // Fill the leaves:
+        Leaf leaf = tree.firstNode;
+        Object lastKey = null;
+        while (sortedEntries.hasNext()) {
+            Map.Entry<? extends K, ? extends V> entry = sortedEntries.next();
+            Object key = entry.getKey();
+            Object val = entry.getValue();
+            if (key == null || val == null) {
+                throw new NullPointerException("Keys and values may not be null");
+            }
+            if ((tree.size > 0) && (compare(tree.comparator, lastKey, key) >= 0)) {
+                throw new IllegalArgumentException("Keys are not in strictly ascending order: " +
+                        lastKey + " followed by " + key);
+            }
+            if (leaf.size == leaf.capacity) {
+                Leaf next = Leaf.newInstance(nodeSize);
+                leaf.next = next;
+                nodes.add(leaf);
+                firstKeys.add(leaf.firstKey());
+                leaf = next;
+            }
+            leaf.append(key, val);
+            lastKey = key;
+            tree.size++;
+        }
+        if (nodes.size() > 0) {
+            // Leave no leaf but the root less than half full:
+            Leaf previous = (Leaf) nodes.get(nodes.size() - 1);
+            int deficit = (nodeSize / 2) - leaf.size;
+            if (deficit > 0) {
+                StructuredArray.shallowCopy(leaf, 0, leaf, deficit, leaf.size);
+                StructuredArray.shallowCopy(previous, previous.size - deficit, leaf, 0, deficit);
+                previous.clear(previous.size - deficit, previous.size);
+                previous.size -= deficit;
+                leaf.size += deficit;
+            }
+        }
+        nodes.add(leaf);
+        firstKeys.add(leaf.firstKey());
+
+        // Build the branch levels, spreading each level's nodes evenly across its branches:
+        while (nodes.size() > 1) {
+            List<Node> branches = new ArrayList<Node>();
+            List<Object> branchFirstKeys = new ArrayList<Object>();
+            int count = nodes.size();
+            int branchCount = (count + nodeSize) / (nodeSize + 1);
+            for (int b = 0, from = 0; b < branchCount; b++) {
+                int to = (int) (((long) count * (b + 1)) / branchCount);
+                Branch branch = Branch.create(nodeSize);
+                branch.setChild(0, nodes.get(from));
+                for (int i = from + 1; i < to; i++) {
+                    branch.setChild((i - from) * 2 - 1, firstKeys.get(i));
+                    branch.setChild((i - from) * 2, nodes.get(i));
+                }
+                branch.size = to - from - 1;
+                branches.add(branch);
+                branchFirstKeys.add(firstKeys.get(from));
+                from = to;
+            }
+            nodes = branches;
+            firstKeys = branchFirstKeys;
+        }
+        tree.root = nodes.get(0);
+        return tree;
+    }
+
     public static <T> void shallowCopy(
             final ReferenceArray<T> src, final long srcOffset, 
             final ReferenceArray<T> dst, final long dstOffset, 
@@ -0,0 +1,398 @@
+package org.ObjectLayout.examples;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+import org.ObjectLayout.PrimitiveLongArray;
+
+/**
+ * A concurrent ordered map of primitive <code>long</code> keys to primitive <code>long</code> values, stored
+ * as a B+ tree with optimistic lock coupling.
+ * <p>
+ * Nodes have the same layout as those of {@link LongLongBPlusTree}, and share their key handling: each leaf is
+ * a {@link PrimitiveLongArray} of keys with a parallel array of values, and each branch is a
+ * PrimitiveLongArray of separator keys. In addition, each node carries a version lock (a
+ * {@link StampedLock}):
+ * <ul>
+ * <li>Readers never lock or write shared state. They descend the tree reading nodes optimistically, and
+ * validate each node's version after reading from it and before moving on to its child (or returning a
+ * value). A read that overlaps a modification of a node it passes through fails validation, and restarts
+ * from the root.</li>
+ * <li>Writers descend the same way, and then upgrade their optimistic read of the node they modify
+ * (and, when splitting it, of its parent) to an exclusive latch, which only succeeds if the node has
+ * not changed since it was read. Full branches are split eagerly on the way down, such that splitting a
+ * node never needs to latch more than the node and its parent.</li>
+ * </ul>
+ * Since optimistic readers may observe a node in the middle of a modification, keys and values are
+ * primitive: an inconsistent read may yield wrong keys (and be discarded on validation), but never a
+ * partially constructed object.
+ * <p>
+ * Removals do not restructure the tree: a leaf emptied by removals stays in the tree, and is reused by
+ * later insertions into its key range.
+ */
+public class ConcurrentLongLongBPlusTree {
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private final int nodeSize;
+    private final LongAdder size = new LongAdder();
+    private volatile Node root;
+
+    /**
+     * Constructs an empty tree with the given node size.
+     *
+     * @param nodeSize the maximum number of keys held in each node
+     * @throws IllegalArgumentException if the node size is smaller than 3
+     */
+    public ConcurrentLongLongBPlusTree(final int nodeSize) {
+        if (nodeSize < AbstractLongBPlusTree.MIN_NODE_SIZE) {
+            throw new IllegalArgumentException("Illegal node size: " + nodeSize);
+        }
+        this.nodeSize = nodeSize;
+        this.root = newLeaf();
+    }
+
+    /**
+     * Returns the number of key-value mappings in this tree. The returned value is not an atomic snapshot
+     * when the tree is concurrently modified.
+     *
+     * @return the number of key-value mappings in this tree
+     */
+    public long size() {
+        return size.sum();
+    }
+
+    /**
+     * Returns <tt>true</tt> if this tree contains a mapping for the given key.
+     *
+     * @param key the key whose presence in this tree is to be tested
+     * @return <tt>true</tt> if this tree contains a mapping for the given key
+     */
+    public boolean containsKey(final long key) {
+        restart:
+        for (;;) {
+            Node node = root;
+            long stamp = node.lock.tryOptimisticRead();
+            if ((stamp == 0) || (node != root)) {
+                continue;
+            }
+            while (node instanceof Branch) {
+                final Branch branch = (Branch) node;
+                final Node child = branch.children[branch.childIndexFor(key)];
+                if (child == null) {
+                    continue restart;
+                }
+                final long childStamp = child.lock.tryOptimisticRead();
+                if ((childStamp == 0) || !branch.lock.validate(stamp)) {
+                    continue restart;
+                }
+                node = child;
+                stamp = childStamp;
+            }
+            final Leaf leaf = (Leaf) node;
+            final boolean found = leaf.indexOf(key) >= 0;
+            if (leaf.lock.validate(stamp)) {
+                return found;
+            }
+        }
+    }
+
+    /**
+     * Returns the value mapped to the given key, or the given default value if this tree contains no
+     * mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if this tree contains no mapping for the key
+     * @return the value mapped to the key, or the default value if this tree contains no mapping for the key
+     */
+    public long get(final long key, final long defaultValue) {
+        restart:
+        for (;;) {
+            Node node = root;
+            long stamp = node.lock.tryOptimisticRead();
+            if ((stamp == 0) || (node != root)) {
+                continue;
+            }
+            while (node instanceof Branch) {
+                final Branch branch = (Branch) node;
+                final Node child = branch.children[branch.childIndexFor(key)];
+                if (child == null) {
+                    continue restart;
+                }
+                final long childStamp = child.lock.tryOptimisticRead();
+                if ((childStamp == 0) || !branch.lock.validate(stamp)) {
+                    continue restart;
+                }
+                node = child;
+                stamp = childStamp;
+            }
+            final Leaf leaf = (Leaf) node;
+            final int index = leaf.indexOf(key);
+            final long value = (index >= 0) ? leaf.values[index] : defaultValue;
+            if (leaf.lock.validate(stamp)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any existing mapping for the key.
+     *
+     * @param key the key
+     * @param value the value to map the key to
+     * @return <tt>true</tt> if the tree did not already contain a mapping for the key
+     */
+    public boolean put(final long key, final long value) {
+        restart:
+        for (;;) {
+            Node node = root;
+            long stamp = node.lock.tryOptimisticRead();
+            if ((stamp == 0) || (node != root)) {
+                continue;
+            }
+            Branch parent = null;
+            long parentStamp = 0;
+
+            while (node instanceof Branch) {
+                final Branch branch = (Branch) node;
+                if (branch.size == nodeSize) {
+                    splitBranch(parent, parentStamp, branch, stamp);
+                    continue restart;
+                }
+                final Node child = branch.children[branch.childIndexFor(key)];
+                if (child == null) {
+                    continue restart;
+                }
+                final long childStamp = child.lock.tryOptimisticRead();
+                if ((childStamp == 0) || !branch.lock.validate(stamp)) {
+                    continue restart;
+                }
+                parent = branch;
+                parentStamp = stamp;
+                node = child;
+                stamp = childStamp;
+            }
+
+            final Leaf leaf = (Leaf) node;
+            final int index = leaf.indexOf(key);
+            if ((index < 0) && (leaf.size == nodeSize)) {
+                splitLeaf(parent, parentStamp, leaf, stamp);
+                continue;
+            }
+            final long writeStamp = leaf.lock.tryConvertToWriteLock(stamp);
+            if (writeStamp == 0) {
+                continue;
+            }
+            // The leaf has not changed since it was read, so the index computed from that read is accurate:
+            try {
+                if (index >= 0) {
+                    leaf.values[index] = value;
+                    return false;
+                }
+                leaf.insert(-(index + 1), key, value);
+            } finally {
+                leaf.lock.unlockWrite(writeStamp);
+            }
+            size.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Removes the mapping for the given key from this tree if present.
+     *
+     * @param key the key whose mapping is to be removed
+     * @return <tt>true</tt> if the tree contained a mapping for the key
+     */
+    public boolean remove(final long key) {
+        restart:
+        for (;;) {
+            Node node = root;
+            long stamp = node.lock.tryOptimisticRead();
+            if ((stamp == 0) || (node != root)) {
+                continue;
+            }
+            while (node instanceof Branch) {
+                final Branch branch = (Branch) node;
+                final Node child = branch.children[branch.childIndexFor(key)];
+                if (child == null) {
+                    continue restart;
+                }
+                final long childStamp = child.lock.tryOptimisticRead();
+                if ((childStamp == 0) || !branch.lock.validate(stamp)) {
+                    continue restart;
+                }
+                node = child;
+                stamp = childStamp;
+            }
+            final Leaf leaf = (Leaf) node;
+            final int index = leaf.indexOf(key);
+            if (index < 0) {
+                if (leaf.lock.validate(stamp)) {
+                    return false;
+                }
+                continue;
+            }
+            final long writeStamp = leaf.lock.tryConvertToWriteLock(stamp);
+            if (writeStamp == 0) {
+                continue;
+            }
+            try {
+                leaf.removeAt(index);
+            } finally {
+                leaf.lock.unlockWrite(writeStamp);
+            }
+            size.decrement();
+            return true;
+        }
+    }
+
+    /* ---------------- Nodes -------------- */
+
+    abstract static class Node extends AbstractLongBPlusTree.KeyNode {
+        final StampedLock lock = new StampedLock();
+    }
+
+    static final class Leaf extends Node {
+        final long[] values;
+        Leaf next;
+
+        Leaf() {
+            values = new long[(int) getLength()];
+        }
+
+        void insert(final int index, final long key, final long value) {
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            insertKey(index, key);
+        }
+
+        void removeAt(final int index) {
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            removeKey(index);
+        }
+    }
+
+    static final class Branch extends Node {
+        final Node[] children;
+
+        Branch() {
+            children = new Node[keys.length + 1];
+        }
+
+        /**
+         * Inserts a new right sibling of one of this (non-full) branch's children.
+         */
+        void insertChild(final long separator, final Node right) {
+            final int index = childIndexFor(separator);
+            System.arraycopy(children, index + 1, children, index + 2, size - index);
+            children[index + 1] = right;
+            insertKey(index, separator);
+        }
+    }
+
+    /* ---------------- Tree internals -------------- */
+
+    private void splitBranch(final Branch parent, final long parentStamp, final Branch branch, final long stamp) {
+        final long parentWriteStamp = lockForSplit(parent, parentStamp);
+        if (parentWriteStamp == 0) {
+            return;
+        }
+        final long writeStamp = branch.lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0) {
+            unlockAfterSplit(parent, parentWriteStamp);
+            return;
+        }
+        try {
+            // The middle key moves up, and the keys and children to its right move to the new sibling:
+            final int leftCount = branch.size / 2;
+            final int rightCount = branch.size - leftCount - 1;
+            final long separator = branch.keys[leftCount];
+            final Branch sibling = newBranch();
+            System.arraycopy(branch.keys, leftCount + 1, sibling.keys, 0, rightCount);
+            System.arraycopy(branch.children, leftCount + 1, sibling.children, 0, rightCount + 1);
+            sibling.size = rightCount;
+            Arrays.fill(branch.children, leftCount + 1, branch.children.length, null);
+            branch.size = leftCount;
+            linkSibling(parent, branch, separator, sibling);
+        } finally {
+            branch.lock.unlockWrite(writeStamp);
+            unlockAfterSplit(parent, parentWriteStamp);
+        }
+    }
+
+    private void splitLeaf(final Branch parent, final long parentStamp, final Leaf leaf, final long stamp) {
+        final long parentWriteStamp = lockForSplit(parent, parentStamp);
+        if (parentWriteStamp == 0) {
+            return;
+        }
+        final long writeStamp = leaf.lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0) {
+            unlockAfterSplit(parent, parentWriteStamp);
+            return;
+        }
+        try {
+            final int leftCount = leaf.size / 2;
+            final int rightCount = leaf.size - leftCount;
+            final Leaf sibling = newLeaf();
+            System.arraycopy(leaf.keys, leftCount, sibling.keys, 0, rightCount);
+            System.arraycopy(leaf.values, leftCount, sibling.values, 0, rightCount);
+            sibling.size = rightCount;
+            sibling.next = leaf.next;
+            leaf.next = sibling;
+            leaf.size = leftCount;
+            linkSibling(parent, leaf, sibling.keys[0], sibling);
+        } finally {
+            leaf.lock.unlockWrite(writeStamp);
+            unlockAfterSplit(parent, parentWriteStamp);
+        }
+    }
+
+    /**
+     * Latches the parent of a node about to be split. Returns a non-zero stamp on success (a dummy one if
+     * the node is the root), or zero if the parent changed since it was read.
+     */
+    private static long lockForSplit(final Branch parent, final long parentStamp) {
+        if (parent == null) {
+            return -1;
+        }
+        return parent.lock.tryConvertToWriteLock(parentStamp);
+    }
+
+    private static void unlockAfterSplit(final Branch parent, final long parentWriteStamp) {
+        if (parent != null) {
+            parent.lock.unlockWrite(parentWriteStamp);
+        }
+    }
+
+    /**
+     * Links the new right sibling of a split node into the (latched, non-full) parent, or into a new root
+     * if the split node is the root. Branches are split before they fill, so the parent has room.
+     */
+    private void linkSibling(final Branch parent, final Node left, final long separator, final Node right) {
+        if (parent != null) {
+            parent.insertChild(separator, right);
+            return;
+        }
+        final Branch newRoot = newBranch();
+        newRoot.keys[0] = separator;
+        newRoot.children[0] = left;
+        newRoot.children[1] = right;
+        newRoot.size = 1;
+        // The root node is latched, so readers that started at it will restart and observe the new root:
+        root = newRoot;
+    }
+
+    private Leaf newLeaf() {
+        return PrimitiveLongArray.newInstance(lookup, Leaf.class, nodeSize);
+    }
+
+    private Branch newBranch() {
+        return PrimitiveLongArray.newInstance(lookup, Branch.class, nodeSize);
+    }
+}
@@ -0,0 +1,161 @@
+package org.ObjectLayout.examples;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.util.NoSuchElementException;
+
+import org.ObjectLayout.PrimitiveLongArray;
+
+/**
+ * An ordered map of primitive <code>long</code> keys to object values, stored as a B+ tree.
+ * <p>
+ * Unlike {@link BPlusTree}, which holds boxed keys in <code>Entry</code> objects and compares them through a
+ * {@link java.util.Comparator}, each leaf of a LongBPlusTree is a {@link PrimitiveLongArray} of keys with a
+ * parallel array of values, and each branch is a PrimitiveLongArray of separator keys.
+ * Lookups and insertions are binary searches over contiguous <code>long[]</code> keys, with no boxing of
+ * keys and no per entry objects.
+ * <p>
+ * Nodes are not merged on removal; a leaf is unlinked from the tree once all of its keys are removed.
+ * <p>
+ * This class is not synchronized.
+ *
+ * @param <V> the type of mapped values
+ */
+public class LongBPlusTree<V> extends AbstractLongBPlusTree {
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    /**
+     * Constructs an empty tree with the given node size.
+     *
+     * @param nodeSize the maximum number of keys held in each node
+     * @throws IllegalArgumentException if the node size is smaller than 3
+     */
+    public LongBPlusTree(final int nodeSize) {
+        super(nodeSize);
+    }
+
+    /**
+     * Returns the value mapped to the given key, or null if this tree contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value mapped to the key, or null if this tree contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        final Leaf leaf = (Leaf) findLeaf(key);
+        final int index = leaf.indexOf(key);
+        return (index >= 0) ? (V) leaf.values[index] : null;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any existing mapping for the key.
+     *
+     * @param key the key
+     * @param value the value to map the key to (may not be null)
+     * @return the value previously mapped to the key, or null if there was no mapping for the key
+     * @throws NullPointerException if the value is null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value) {
+        if (value == null) {
+            throw new NullPointerException("Values may not be null");
+        }
+        final Leaf leaf = (Leaf) slotFor(key);
+        final Object oldValue = leaf.values[keyIndex];
+        leaf.values[keyIndex] = value;
+        return (V) oldValue;
+    }
+
+    /**
+     * Removes the mapping for the given key from this tree if present.
+     *
+     * @param key the key whose mapping is to be removed
+     * @return the value previously mapped to the key, or null if there was no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        final Leaf leaf = (Leaf) leafForRemoval(key);
+        final int index = leaf.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final Object oldValue = leaf.values[index];
+        removeAt(leaf, index);
+        return (V) oldValue;
+    }
+
+    /**
+     * Returns a cursor positioned before the first mapping in this tree. The cursor is invalidated by
+     * any structural modification of the tree.
+     *
+     * @return a cursor positioned before the first mapping in this tree
+     */
+    public Cursor<V> cursor() {
+        return new Cursor<V>((Leaf) firstLeaf, 0);
+    }
+
+    /**
+     * Returns a cursor positioned before the first mapping whose key is greater than or equal to the given
+     * key. The cursor is invalidated by any structural modification of the tree.
+     *
+     * @param fromKey the lowest key to be returned by the cursor
+     * @return a cursor positioned before the first mapping whose key is greater than or equal to fromKey
+     */
+    public Cursor<V> cursor(final long fromKey) {
+        final Leaf leaf = (Leaf) findLeaf(fromKey);
+        return new Cursor<V>(leaf, cursorIndexFor(leaf, fromKey));
+    }
+
+    /**
+     * A cursor over the mappings of a {@link LongBPlusTree}, in ascending key order, that reads keys
+     * and values in place.
+     *
+     * @param <V> the type of mapped values
+     */
+    public static class Cursor<V> extends LeafCursor {
+        Cursor(final Leaf leaf, final int index) {
+            super(leaf, index);
+        }
+
+        /**
+         * Returns the value of the current mapping.
+         *
+         * @return the value of the current mapping
+         * @throws NoSuchElementException if the cursor is not positioned at a mapping
+         */
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            checkPositioned();
+            return (V) ((Leaf) leaf).values[index];
+        }
+    }
+
+    @Override
+    Leaf newLeaf() {
+        return PrimitiveLongArray.newInstance(lookup, Leaf.class, nodeSize);
+    }
+
+    static final class Leaf extends AbstractLongBPlusTree.Leaf {
+        final Object[] values;
+
+        Leaf() {
+            values = new Object[(int) getLength()];
+        }
+
+        @Override
+        void moveValues(final int srcIndex, final AbstractLongBPlusTree.Leaf dst, final int dstIndex,
+                        final int count) {
+            System.arraycopy(values, srcIndex, ((Leaf) dst).values, dstIndex, count);
+        }
+
+        @Override
+        void clearValues(final int fromIndex, final int toIndex) {
+            for (int i = fromIndex; i < toIndex; i++) {
+                values[i] = null;
+            }
+        }
+    }
+}
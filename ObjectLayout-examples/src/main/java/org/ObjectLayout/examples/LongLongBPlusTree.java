@@ -0,0 +1,174 @@
+package org.ObjectLayout.examples;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.util.NoSuchElementException;
+
+import org.ObjectLayout.PrimitiveLongArray;
+
+/**
+ * An ordered map of primitive <code>long</code> keys to primitive <code>long</code> values, stored as a
+ * B+ tree.
+ * <p>
+ * Unlike {@link BPlusTree}, which holds boxed keys and values in <code>Entry</code> objects and compares keys
+ * through a {@link java.util.Comparator}, each leaf of a LongLongBPlusTree is a {@link PrimitiveLongArray} of
+ * keys with a parallel PrimitiveLongArray of values, and each branch is a PrimitiveLongArray of separator
+ * keys. Lookups and insertions are binary searches over contiguous <code>long[]</code> keys, and neither
+ * allocate nor box: the only allocations are of the nodes created by splits.
+ * <p>
+ * Nodes are not merged on removal; a leaf is unlinked from the tree once all of its keys are removed.
+ * <p>
+ * This class is not synchronized.
+ */
+public class LongLongBPlusTree extends AbstractLongBPlusTree {
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    /**
+     * Constructs an empty tree with the given node size.
+     *
+     * @param nodeSize the maximum number of keys held in each node
+     * @throws IllegalArgumentException if the node size is smaller than 3
+     */
+    public LongLongBPlusTree(final int nodeSize) {
+        super(nodeSize);
+    }
+
+    /**
+     * Returns the value mapped to the given key, or the given default value if this tree contains no
+     * mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if this tree contains no mapping for the key
+     * @return the value mapped to the key, or the default value if this tree contains no mapping for the key
+     */
+    public long get(final long key, final long defaultValue) {
+        final Leaf leaf = (Leaf) findLeaf(key);
+        final int index = leaf.indexOf(key);
+        return (index >= 0) ? leaf.values[index] : defaultValue;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any existing mapping for the key.
+     *
+     * @param key the key
+     * @param value the value to map the key to
+     * @return <tt>true</tt> if the tree did not already contain a mapping for the key
+     */
+    public boolean put(final long key, final long value) {
+        final Leaf leaf = (Leaf) slotFor(key);
+        leaf.values[keyIndex] = value;
+        return inserted;
+    }
+
+    /**
+     * Adds the given delta to the value mapped to the given key, mapping the key to the delta if the tree
+     * contains no mapping for the key.
+     *
+     * @param key the key
+     * @param delta the value to add
+     * @return the value mapped to the key after the addition
+     */
+    public long addTo(final long key, final long delta) {
+        final Leaf leaf = (Leaf) slotFor(key);
+        final long value = (inserted ? 0 : leaf.values[keyIndex]) + delta;
+        leaf.values[keyIndex] = value;
+        return value;
+    }
+
+    /**
+     * Removes the mapping for the given key from this tree if present.
+     *
+     * @param key the key whose mapping is to be removed
+     * @return <tt>true</tt> if the tree contained a mapping for the key
+     */
+    public boolean remove(final long key) {
+        final Leaf leaf = (Leaf) leafForRemoval(key);
+        final int index = leaf.indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(leaf, index);
+        return true;
+    }
+
+    /**
+     * Returns a cursor positioned before the first mapping in this tree. The cursor is invalidated by
+     * any structural modification of the tree.
+     *
+     * @return a cursor positioned before the first mapping in this tree
+     */
+    public Cursor cursor() {
+        return new Cursor((Leaf) firstLeaf, 0);
+    }
+
+    /**
+     * Returns a cursor positioned before the first mapping whose key is greater than or equal to the given
+     * key. The cursor is invalidated by any structural modification of the tree.
+     *
+     * @param fromKey the lowest key to be returned by the cursor
+     * @return a cursor positioned before the first mapping whose key is greater than or equal to fromKey
+     */
+    public Cursor cursor(final long fromKey) {
+        final Leaf leaf = (Leaf) findLeaf(fromKey);
+        return new Cursor(leaf, cursorIndexFor(leaf, fromKey));
+    }
+
+    /**
+     * A cursor over the mappings of a {@link LongLongBPlusTree}, in ascending key order, that reads keys
+     * and values in place.
+     */
+    public static class Cursor extends LeafCursor {
+        Cursor(final Leaf leaf, final int index) {
+            super(leaf, index);
+        }
+
+        /**
+         * Returns the value of the current mapping.
+         *
+         * @return the value of the current mapping
+         * @throws NoSuchElementException if the cursor is not positioned at a mapping
+         */
+        public long getValue() {
+            checkPositioned();
+            return ((Leaf) leaf).values[index];
+        }
+
+        /**
+         * Sets the value of the current mapping.
+         *
+         * @param value the value to map the current key to
+         * @throws NoSuchElementException if the cursor is not positioned at a mapping
+         */
+        public void setValue(final long value) {
+            checkPositioned();
+            ((Leaf) leaf).values[index] = value;
+        }
+    }
+
+    @Override
+    Leaf newLeaf() {
+        return PrimitiveLongArray.newInstance(lookup, Leaf.class, nodeSize);
+    }
+
+    static final class Leaf extends AbstractLongBPlusTree.Leaf {
+        final long[] values;
+
+        Leaf() {
+            values = new long[(int) getLength()];
+        }
+
+        @Override
+        void moveValues(final int srcIndex, final AbstractLongBPlusTree.Leaf dst, final int dstIndex,
+                        final int count) {
+            System.arraycopy(values, srcIndex, ((Leaf) dst).values, dstIndex, count);
+        }
+
+        @Override
+        void clearValues(final int fromIndex, final int toIndex) {
+            // Primitive values retain nothing
+        }
+    }
+}
@@ -0,0 +1,740 @@
+package org.ObjectLayout.examples;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.ObjectLayout.MappedArrayStorage;
+
+/**
+ * A durable, ordered map of primitive <code>long</code> keys to <code>long</code> values, stored as a B+ tree
+ * in fixed size pages of a memory-mapped file.
+ * <p>
+ * Where {@link BPlusTree} links its <code>Leaf</code> and <code>Branch</code> nodes with object references,
+ * the nodes of a MappedBPlusTree are pages of a file, and link to each other by page id. Each leaf page holds
+ * a sorted run of keys followed by the matching run of values, and each branch page holds a sorted run of
+ * separator keys followed by the page ids of its children, such that searches within a node scan contiguous
+ * keys. Leaves are linked to their right sibling, for in-order traversal through a {@link Cursor}.
+ * <p>
+ * The file is mapped lazily, in fixed size segments of pages, each held in a {@link MappedArrayStorage}. At
+ * most a configurable number of segments are kept mapped, and the least recently used segment is forced to
+ * storage and unmapped when that number is exceeded, such that trees much larger than the available address
+ * space or physical memory can be used. A tree is reopened, with no rebuild, by opening the same file again.
+ * <p>
+ * Modifications reach the file through the mappings, and {@link #flush()} forces them to storage. Updates
+ * are not journaled: a crash between flushes may leave the file inconsistent. Removals do not merge or
+ * rebalance nodes; a leaf emptied by removals stays linked in the tree and is reused by later insertions
+ * into its key range.
+ * <p>
+ * This class is not synchronized.
+ */
+public class MappedBPlusTree implements Closeable {
+
+    /**
+     * The page size used when none is specified.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+
+    /**
+     * The maximum number of mapped segments used when none is specified.
+     */
+    public static final int DEFAULT_MAX_MAPPED_SEGMENTS = 64;
+
+    static final int PAGES_PER_SEGMENT = 4096;
+
+    private static final int MAGIC = 0x4F4C4250; // "OLBP"
+    private static final int VERSION = 1;
+
+    // Header page layout:
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_PAGE_SIZE = 8;
+    private static final int HEADER_ROOT = 16;
+    private static final int HEADER_FIRST_LEAF = 24;
+    private static final int HEADER_PAGE_COUNT = 32;
+    private static final int HEADER_ENTRY_COUNT = 40;
+    private static final int HEADER_LENGTH = 48;
+
+    // Node page layout:
+    private static final int NODE_TYPE = 0;
+    private static final int NODE_COUNT = 4;
+    private static final int NODE_NEXT = 8;
+    private static final int NODE_DATA = 16;
+
+    private static final byte LEAF = 1;
+    private static final byte BRANCH = 2;
+
+    private static final long NO_PAGE = 0;
+
+    private final Path path;
+    private final int pageSize;
+    private final int pageShift;
+    private final long segmentSize;
+    private final int maxMappedSegments;
+    private final SegmentCache segments;
+
+    // Leaves hold leafCapacity keys, then leafCapacity values.
+    // Branches hold branchCapacity keys, then branchCapacity + 1 child page ids:
+    private final int leafCapacity;
+    private final int branchCapacity;
+
+    // Scratch space for node splits:
+    private final long[] scratchKeys;
+    private final long[] scratchValues;
+
+    private long root;
+    private long firstLeaf;
+    private long pageCount;
+    private long size;
+
+    // Results of an insertion, returned through fields to avoid allocation:
+    private boolean inserted;
+    private long splitKey;
+    private long splitPage;
+
+    private long lastSegmentIndex = -1;
+    private Segment lastSegment;
+
+    private MappedBPlusTree(final Path path, final int pageSize, final int maxMappedSegments) {
+        this.path = path;
+        this.pageSize = pageSize;
+        this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+        this.segmentSize = (long) pageSize * PAGES_PER_SEGMENT;
+        this.maxMappedSegments = maxMappedSegments;
+        this.segments = new SegmentCache();
+        this.leafCapacity = (pageSize - NODE_DATA) / 16;
+        this.branchCapacity = (pageSize - NODE_DATA - 8) / 16;
+        this.scratchKeys = new long[Math.max(leafCapacity, branchCapacity) + 1];
+        this.scratchValues = new long[Math.max(leafCapacity, branchCapacity) + 2];
+    }
+
+    /**
+     * Opens the tree stored in the given file, whatever its page size, creating an empty tree (with the
+     * default page size) if the file does not exist or is empty.
+     *
+     * @param path the file holding the tree
+     * @return the tree stored in the file
+     * @throws IOException if the file cannot be opened, or does not hold a tree
+     */
+    public static MappedBPlusTree open(final Path path) throws IOException {
+        return open(path, DEFAULT_PAGE_SIZE, DEFAULT_MAX_MAPPED_SEGMENTS, false);
+    }
+
+    /**
+     * Opens the tree stored in the given file, creating an empty tree with the given page size if the file
+     * does not exist or is empty. An existing tree must have been created with the given page size.
+     *
+     * @param path the file holding the tree
+     * @param pageSize the page size of the tree (a power of two, between 64 and 65536)
+     * @param maxMappedSegments the maximum number of segments, of 4096 pages each, to keep mapped
+     * @return the tree stored in the file
+     * @throws IOException if the file cannot be opened, does not hold a tree, or holds a tree with a different
+     * page size
+     * @throws IllegalArgumentException if the page size or the maximum number of mapped segments is illegal
+     */
+    public static MappedBPlusTree open(final Path path, final int pageSize, final int maxMappedSegments)
+            throws IOException {
+        return open(path, pageSize, maxMappedSegments, true);
+    }
+
+    private static MappedBPlusTree open(final Path path, final int pageSize, final int maxMappedSegments,
+                                        final boolean requirePageSize) throws IOException {
+        if (!isLegalPageSize(pageSize)) {
+            throw new IllegalArgumentException("Illegal page size: " + pageSize);
+        }
+        if (maxMappedSegments < 1) {
+            throw new IllegalArgumentException("Illegal maximum number of mapped segments: " + maxMappedSegments);
+        }
+        if (!Files.exists(path) || (Files.size(path) == 0)) {
+            final MappedBPlusTree tree = new MappedBPlusTree(path, pageSize, maxMappedSegments);
+            tree.initialize();
+            return tree;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        if (header.hasRemaining() || (header.getInt(HEADER_MAGIC) != MAGIC)) {
+            throw new IOException(path + " does not hold a MappedBPlusTree");
+        }
+        if (header.getInt(HEADER_VERSION) != VERSION) {
+            throw new IOException("Unsupported MappedBPlusTree version " + header.getInt(HEADER_VERSION));
+        }
+        final int storedPageSize = header.getInt(HEADER_PAGE_SIZE);
+        if (!isLegalPageSize(storedPageSize)) {
+            throw new IOException(path + " holds a MappedBPlusTree with an illegal page size: " + storedPageSize);
+        }
+        if (requirePageSize && (storedPageSize != pageSize)) {
+            throw new IOException(path + " holds a MappedBPlusTree with a page size of " + storedPageSize +
+                    ", not " + pageSize);
+        }
+        final MappedBPlusTree tree = new MappedBPlusTree(path, storedPageSize, maxMappedSegments);
+        tree.root = header.getLong(HEADER_ROOT);
+        tree.firstLeaf = header.getLong(HEADER_FIRST_LEAF);
+        tree.pageCount = header.getLong(HEADER_PAGE_COUNT);
+        tree.size = header.getLong(HEADER_ENTRY_COUNT);
+        return tree;
+    }
+
+    private static boolean isLegalPageSize(final int pageSize) {
+        return (pageSize >= 64) && (pageSize <= 65536) && (Integer.bitCount(pageSize) == 1);
+    }
+
+    private void initialize() {
+        pageCount = 1;
+        firstLeaf = allocatePage(LEAF);
+        root = firstLeaf;
+        final ByteBuffer header = buffer(0, true);
+        header.putInt(HEADER_MAGIC, MAGIC);
+        header.putInt(HEADER_VERSION, VERSION);
+        header.putInt(HEADER_PAGE_SIZE, pageSize);
+        writeHeader();
+    }
+
+    /**
+     * Returns the number of key-value mappings in this tree.
+     *
+     * @return the number of key-value mappings in this tree
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the page size of this tree.
+     *
+     * @return the page size of this tree
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns the number of pages in the file holding this tree, including its header page.
+     *
+     * @return the number of pages in the file holding this tree
+     */
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this tree contains a mapping for the given key.
+     *
+     * @param key the key whose presence in this tree is to be tested
+     * @return <tt>true</tt> if this tree contains a mapping for the given key
+     */
+    public boolean containsKey(final long key) {
+        final long leaf = findLeaf(key);
+        final ByteBuffer buffer = buffer(leaf, false);
+        final int base = offsetOf(leaf);
+        return searchKeys(buffer, base, buffer.getInt(base + NODE_COUNT), key) >= 0;
+    }
+
+    /**
+     * Returns the value mapped to the given key, or the given default value if this tree contains no
+     * mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if this tree contains no mapping for the key
+     * @return the value mapped to the key, or the default value if this tree contains no mapping for the key
+     */
+    public long get(final long key, final long defaultValue) {
+        final long leaf = findLeaf(key);
+        final ByteBuffer buffer = buffer(leaf, false);
+        final int base = offsetOf(leaf);
+        final int index = searchKeys(buffer, base, buffer.getInt(base + NODE_COUNT), key);
+        return (index >= 0) ? buffer.getLong(leafValueOffset(base, index)) : defaultValue;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any existing mapping for the key.
+     *
+     * @param key the key
+     * @param value the value to map the key to
+     * @return <tt>true</tt> if the tree did not already contain a mapping for the key
+     */
+    public boolean put(final long key, final long value) {
+        inserted = false;
+        if (insert(root, key, value)) {
+            final long newRoot = allocatePage(BRANCH);
+            final ByteBuffer buffer = buffer(newRoot, true);
+            final int base = offsetOf(newRoot);
+            buffer.putLong(branchKeyOffset(base, 0), splitKey);
+            buffer.putLong(branchChildOffset(base, 0), root);
+            buffer.putLong(branchChildOffset(base, 1), splitPage);
+            buffer.putInt(base + NODE_COUNT, 1);
+            root = newRoot;
+        }
+        if (inserted) {
+            size++;
+        }
+        return inserted;
+    }
+
+    /**
+     * Removes the mapping for the given key from this tree if present.
+     *
+     * @param key the key whose mapping is to be removed
+     * @return <tt>true</tt> if the tree contained a mapping for the key
+     */
+    public boolean remove(final long key) {
+        final long leaf = findLeaf(key);
+        final ByteBuffer buffer = buffer(leaf, true);
+        final int base = offsetOf(leaf);
+        final int count = buffer.getInt(base + NODE_COUNT);
+        final int index = searchKeys(buffer, base, count, key);
+        if (index < 0) {
+            return false;
+        }
+        for (int i = index + 1; i < count; i++) {
+            buffer.putLong(leafKeyOffset(base, i - 1), buffer.getLong(leafKeyOffset(base, i)));
+            buffer.putLong(leafValueOffset(base, i - 1), buffer.getLong(leafValueOffset(base, i)));
+        }
+        buffer.putInt(base + NODE_COUNT, count - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns a cursor positioned before the first mapping in this tree. The cursor is invalidated by
+     * any modification of the tree.
+     *
+     * @return a cursor positioned before the first mapping in this tree
+     */
+    public Cursor cursor() {
+        return new Cursor(firstLeaf, 0);
+    }
+
+    /**
+     * Returns a cursor positioned before the first mapping whose key is greater than or equal to the given
+     * key. The cursor is invalidated by any modification of the tree.
+     *
+     * @param fromKey the lowest key to be returned by the cursor
+     * @return a cursor positioned before the first mapping whose key is greater than or equal to fromKey
+     */
+    public Cursor cursor(final long fromKey) {
+        final long leaf = findLeaf(fromKey);
+        final ByteBuffer buffer = buffer(leaf, false);
+        final int base = offsetOf(leaf);
+        final int index = searchKeys(buffer, base, buffer.getInt(base + NODE_COUNT), fromKey);
+        return new Cursor(leaf, (index >= 0) ? index : -(index + 1));
+    }
+
+    /**
+     * Forces all modifications of this tree to storage.
+     */
+    public void flush() {
+        writeHeader();
+        for (final Segment segment : segments.values()) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Flushes and closes this tree. The tree may not be used once closed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        for (final Segment segment : segments.values()) {
+            segment.storage.close();
+        }
+        segments.clear();
+        lastSegment = null;
+        lastSegmentIndex = -1;
+    }
+
+    /**
+     * A cursor over the mappings of a {@link MappedBPlusTree}, in ascending key order. A cursor holds no
+     * per entry state: the key and value of the current mapping are read from the current leaf page.
+     */
+    public class Cursor {
+        private long leaf;
+        private int index;
+        private boolean positioned;
+
+        Cursor(final long leaf, final int index) {
+            this.leaf = leaf;
+            this.index = index - 1;
+        }
+
+        /**
+         * Advances the cursor to the next mapping.
+         *
+         * @return <tt>true</tt> if the cursor was advanced to a mapping, <tt>false</tt> if there are no
+         * more mappings
+         */
+        public boolean next() {
+            index++;
+            while (index >= count(leaf)) {
+                final long next = buffer(leaf, false).getLong(offsetOf(leaf) + NODE_NEXT);
+                if (next == NO_PAGE) {
+                    index = count(leaf);
+                    positioned = false;
+                    return false;
+                }
+                leaf = next;
+                index = 0;
+            }
+            positioned = true;
+            return true;
+        }
+
+        /**
+         * Returns the key of the current mapping.
+         *
+         * @return the key of the current mapping
+         * @throws NoSuchElementException if the cursor is not positioned at a mapping
+         */
+        public long getKey() {
+            checkPositioned();
+            return buffer(leaf, false).getLong(leafKeyOffset(offsetOf(leaf), index));
+        }
+
+        /**
+         * Returns the value of the current mapping.
+         *
+         * @return the value of the current mapping
+         * @throws NoSuchElementException if the cursor is not positioned at a mapping
+         */
+        public long getValue() {
+            checkPositioned();
+            return buffer(leaf, false).getLong(leafValueOffset(offsetOf(leaf), index));
+        }
+
+        private void checkPositioned() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    /* ---------------- Tree internals -------------- */
+
+    private long findLeaf(final long key) {
+        long page = root;
+        ByteBuffer buffer = buffer(page, false);
+        int base = offsetOf(page);
+        while (buffer.get(base + NODE_TYPE) == BRANCH) {
+            final int index = childIndexFor(buffer, base, buffer.getInt(base + NODE_COUNT), key);
+            page = buffer.getLong(branchChildOffset(base, index));
+            buffer = buffer(page, false);
+            base = offsetOf(page);
+        }
+        return page;
+    }
+
+    /**
+     * Inserts a mapping into the subtree rooted at the given page. Returns true if the page was split, in
+     * which case splitKey and splitPage identify the new right sibling.
+     */
+    private boolean insert(final long page, final long key, final long value) {
+        ByteBuffer buffer = buffer(page, true);
+        int base = offsetOf(page);
+        final int count = buffer.getInt(base + NODE_COUNT);
+
+        if (buffer.get(base + NODE_TYPE) == LEAF) {
+            final int search = searchKeys(buffer, base, count, key);
+            if (search >= 0) {
+                buffer.putLong(leafValueOffset(base, search), value);
+                return false;
+            }
+            inserted = true;
+            final int index = -(search + 1);
+            if (count < leafCapacity) {
+                for (int i = count; i > index; i--) {
+                    buffer.putLong(leafKeyOffset(base, i), buffer.getLong(leafKeyOffset(base, i - 1)));
+                    buffer.putLong(leafValueOffset(base, i), buffer.getLong(leafValueOffset(base, i - 1)));
+                }
+                buffer.putLong(leafKeyOffset(base, index), key);
+                buffer.putLong(leafValueOffset(base, index), value);
+                buffer.putInt(base + NODE_COUNT, count + 1);
+                return false;
+            }
+            splitLeaf(page, index, key, value);
+            return true;
+        }
+
+        final int childIndex = childIndexFor(buffer, base, count, key);
+        if (!insert(buffer.getLong(branchChildOffset(base, childIndex)), key, value)) {
+            return false;
+        }
+
+        // The child was split, insert its new sibling. The page's segment may have been evicted meanwhile:
+        buffer = buffer(page, true);
+        base = offsetOf(page);
+        if (count < branchCapacity) {
+            for (int i = count; i > childIndex; i--) {
+                buffer.putLong(branchKeyOffset(base, i), buffer.getLong(branchKeyOffset(base, i - 1)));
+                buffer.putLong(branchChildOffset(base, i + 1), buffer.getLong(branchChildOffset(base, i)));
+            }
+            buffer.putLong(branchKeyOffset(base, childIndex), splitKey);
+            buffer.putLong(branchChildOffset(base, childIndex + 1), splitPage);
+            buffer.putInt(base + NODE_COUNT, count + 1);
+            return false;
+        }
+        splitBranch(page, childIndex, splitKey, splitPage);
+        return true;
+    }
+
+    private void splitLeaf(final long page, final int index, final long key, final long value) {
+        final int count = leafCapacity + 1;
+        ByteBuffer buffer = buffer(page, false);
+        int base = offsetOf(page);
+        final long next = buffer.getLong(base + NODE_NEXT);
+        for (int i = 0, j = 0; i < count; i++) {
+            if (i == index) {
+                scratchKeys[i] = key;
+                scratchValues[i] = value;
+            } else {
+                scratchKeys[i] = buffer.getLong(leafKeyOffset(base, j));
+                scratchValues[i] = buffer.getLong(leafValueOffset(base, j));
+                j++;
+            }
+        }
+
+        final long sibling = allocatePage(LEAF);
+        final int leftCount = count / 2;
+        final ByteBuffer siblingBuffer = buffer(sibling, true);
+        final int siblingBase = offsetOf(sibling);
+        for (int i = leftCount; i < count; i++) {
+            siblingBuffer.putLong(leafKeyOffset(siblingBase, i - leftCount), scratchKeys[i]);
+            siblingBuffer.putLong(leafValueOffset(siblingBase, i - leftCount), scratchValues[i]);
+        }
+        siblingBuffer.putInt(siblingBase + NODE_COUNT, count - leftCount);
+        siblingBuffer.putLong(siblingBase + NODE_NEXT, next);
+
+        // The sibling is written first, since resolving the page may evict the sibling's segment:
+        buffer = buffer(page, true);
+        base = offsetOf(page);
+        for (int i = 0; i < leftCount; i++) {
+            buffer.putLong(leafKeyOffset(base, i), scratchKeys[i]);
+            buffer.putLong(leafValueOffset(base, i), scratchValues[i]);
+        }
+        buffer.putInt(base + NODE_COUNT, leftCount);
+        buffer.putLong(base + NODE_NEXT, sibling);
+
+        splitKey = scratchKeys[leftCount];
+        splitPage = sibling;
+    }
+
+    private void splitBranch(final long page, final int childIndex, final long key, final long child) {
+        // Gather the overflowing node's keys into scratchKeys, and its children into scratchValues:
+        final int count = branchCapacity + 1;
+        ByteBuffer buffer = buffer(page, false);
+        int base = offsetOf(page);
+        scratchValues[0] = buffer.getLong(branchChildOffset(base, 0));
+        for (int i = 0, j = 0; i < count; i++) {
+            if (i == childIndex) {
+                scratchKeys[i] = key;
+                scratchValues[i + 1] = child;
+            } else {
+                scratchKeys[i] = buffer.getLong(branchKeyOffset(base, j));
+                scratchValues[i + 1] = buffer.getLong(branchChildOffset(base, j + 1));
+                j++;
+            }
+        }
+
+        // The middle key moves up to the parent, and the keys and children to its right move to the sibling:
+        final int leftCount = count / 2;
+        final long sibling = allocatePage(BRANCH);
+        final ByteBuffer siblingBuffer = buffer(sibling, true);
+        final int siblingBase = offsetOf(sibling);
+        siblingBuffer.putLong(branchChildOffset(siblingBase, 0), scratchValues[leftCount + 1]);
+        for (int i = leftCount + 1; i < count; i++) {
+            siblingBuffer.putLong(branchKeyOffset(siblingBase, i - leftCount - 1), scratchKeys[i]);
+            siblingBuffer.putLong(branchChildOffset(siblingBase, i - leftCount), scratchValues[i + 1]);
+        }
+        siblingBuffer.putInt(siblingBase + NODE_COUNT, count - leftCount - 1);
+
+        buffer = buffer(page, true);
+        base = offsetOf(page);
+        for (int i = 0; i < leftCount; i++) {
+            buffer.putLong(branchKeyOffset(base, i), scratchKeys[i]);
+            buffer.putLong(branchChildOffset(base, i + 1), scratchValues[i + 1]);
+        }
+        buffer.putInt(base + NODE_COUNT, leftCount);
+
+        splitKey = scratchKeys[leftCount];
+        splitPage = sibling;
+    }
+
+    /**
+     * Binary search over the keys of a leaf. Returns the index of the key if found, or
+     * -(insertion point + 1) if not.
+     */
+    private static int searchKeys(final ByteBuffer buffer, final int base, final int count, final long key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midKey = buffer.getLong(base + NODE_DATA + (mid << 3));
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the index of the child of a branch whose subtree would hold the given key: the number of
+     * separator keys less than or equal to the key.
+     */
+    private static int childIndexFor(final ByteBuffer buffer, final int base, final int count, final long key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (buffer.getLong(base + NODE_DATA + (mid << 3)) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int leafKeyOffset(final int base, final int index) {
+        return base + NODE_DATA + (index << 3);
+    }
+
+    private int leafValueOffset(final int base, final int index) {
+        return base + NODE_DATA + ((leafCapacity + index) << 3);
+    }
+
+    private int branchKeyOffset(final int base, final int index) {
+        return base + NODE_DATA + (index << 3);
+    }
+
+    private int branchChildOffset(final int base, final int index) {
+        return base + NODE_DATA + ((branchCapacity + index) << 3);
+    }
+
+    private int count(final long page) {
+        return buffer(page, false).getInt(offsetOf(page) + NODE_COUNT);
+    }
+
+    private long allocatePage(final byte type) {
+        final long page = pageCount++;
+        final ByteBuffer buffer = buffer(page, true);
+        final int base = offsetOf(page);
+        buffer.put(base + NODE_TYPE, type);
+        buffer.putInt(base + NODE_COUNT, 0);
+        buffer.putLong(base + NODE_NEXT, NO_PAGE);
+        return page;
+    }
+
+    private void writeHeader() {
+        final ByteBuffer header = buffer(0, true);
+        header.putLong(HEADER_ROOT, root);
+        header.putLong(HEADER_FIRST_LEAF, firstLeaf);
+        header.putLong(HEADER_PAGE_COUNT, pageCount);
+        header.putLong(HEADER_ENTRY_COUNT, size);
+    }
+
+    /* ---------------- Page cache -------------- */
+
+    private int offsetOf(final long page) {
+        return (int) ((page & (PAGES_PER_SEGMENT - 1)) << pageShift);
+    }
+
+    /**
+     * Returns the mapped buffer of the segment holding the given page. Writes through the returned buffer
+     * are only guaranteed to be forced by {@link #flush()} until the next call, since later calls may evict
+     * (and force) its segment.
+     */
+    private ByteBuffer buffer(final long page, final boolean forWrite) {
+        final long segmentIndex = page / PAGES_PER_SEGMENT;
+        Segment segment = lastSegment;
+        if (segmentIndex != lastSegmentIndex) {
+            segment = segments.get(segmentIndex);
+            if (segment == null) {
+                segment = map(segmentIndex);
+                segments.put(segmentIndex, segment);
+            }
+            lastSegment = segment;
+            lastSegmentIndex = segmentIndex;
+        }
+        if (forWrite) {
+            segment.dirty = true;
+        }
+        return segment.buffer;
+    }
+
+    private Segment map(final long segmentIndex) {
+        try {
+            // Mapping beyond the end of the file grows it to cover the segment:
+            return new Segment(MappedArrayStorage.map(path, segmentIndex * segmentSize, segmentSize, 0));
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static class Segment {
+        final MappedArrayStorage storage;
+        final ByteBuffer buffer;
+        boolean dirty;
+
+        Segment(final MappedArrayStorage storage) {
+            this.storage = storage;
+            // The segment size is well below the storage's segment size, so the storage holds a single segment:
+            this.buffer = storage.getSegment(0);
+        }
+
+        void force() {
+            if (dirty) {
+                storage.force();
+                dirty = false;
+            }
+        }
+    }
+
+    private class SegmentCache extends LinkedHashMap<Long, Segment> {
+        private static final long serialVersionUID = 6208414397861546237L;
+
+        SegmentCache() {
+            super(16, 0.75f, true);
+        }
+
+        /**
+         * Evicted segments are unmapped immediately, since mappings otherwise only go away when their buffers
+         * are collected, which under frequent eviction would accumulate mappings faster than they are
+         * collected. No buffer of an evicted segment is used once evicted.
+         */
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Segment> eldest) {
+            if (size() <= maxMappedSegments) {
+                return false;
+            }
+            eldest.getValue().force();
+            eldest.getValue().storage.close();
+            if (eldest.getValue() == lastSegment) {
+                lastSegment = null;
+                lastSegmentIndex = -1;
+            }
+            return true;
+        }
+    }
+}
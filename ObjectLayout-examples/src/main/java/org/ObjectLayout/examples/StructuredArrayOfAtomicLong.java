@@ -4,6 +4,7 @@ package org.ObjectLayout.examples;/*
  */
 
 import org.ObjectLayout.StructuredArray;
+import org.ObjectLayout.StructuredArrayBuilder;
 
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -16,6 +17,16 @@ public class StructuredArrayOfAtomicLong extends StructuredArray<AtomicLong> {
         return StructuredArray.newInstance(StructuredArrayOfAtomicLong.class, AtomicLong.class, length);
     }
 
+    /**
+     * Create an array whose elements do not share cache lines, such that elements updated by different
+     * threads (e.g. per-thread or striped counters) do not suffer from false sharing.
+     */
+    public static StructuredArrayOfAtomicLong newPaddedInstance(final long length) {
+        return new StructuredArrayBuilder<>(StructuredArrayOfAtomicLong.class, AtomicLong.class, length).
+                padToCacheLine().
+                build();
+    }
+
     public AtomicLong get(long index) {
         return super.get(index);
     }
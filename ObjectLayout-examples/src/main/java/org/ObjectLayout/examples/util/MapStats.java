@@ -0,0 +1,361 @@
+package org.ObjectLayout.examples.util;
+/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.ObjectLayout.StructuredArrayModel;
+
+/**
+ * An immutable snapshot of the layout of an {@link SAHashMap}: how its mappings are spread across the bins of
+ * its table, how many overflow nodes it uses, how often and for how long it has resized, and an estimate of
+ * its memory footprint.
+ * <p>
+ * A snapshot is only computed when asked for, by {@link SAHashMap#stats()}, and walks the entire table, so
+ * maps that are never inspected pay nothing for it beyond a few counters updated on each resize. A
+ * {@link Publisher} can expose the most recent snapshot of a map as a JMX MXBean.
+ * <p>
+ * Footprint figures are estimates, derived from the {@link StructuredArrayModel} of each table and node chunk
+ * and the declared fields of their classes, assuming a 64 bit JVM with compressed references. They do not
+ * include the keys and values themselves.
+ */
+public final class MapStats {
+    /**
+     * The number of buckets in the chain length histogram. The last bucket counts all bins holding
+     * at least {@code HISTOGRAM_LENGTH - 1} mappings.
+     */
+    public static final int HISTOGRAM_LENGTH = 16;
+
+    static final int OBJECT_HEADER_SIZE = 12;
+    static final int ARRAY_HEADER_SIZE = 16;
+    static final int REFERENCE_SIZE = 4;
+    static final int OBJECT_ALIGNMENT = 8;
+
+    private final int size;
+    private final int capacity;
+    private final float loadFactor;
+    private final long occupiedBins;
+    private final long emptyBins;
+    private final long overflowNodes;
+    private final long treeBins;
+    private final long treeNodes;
+    private final long freeNodes;
+    private final long[] chainLengthHistogram;
+    private final int maxChainLength;
+    private final double meanProbeLength;
+    private final boolean resizing;
+    private final long resizeCount;
+    private final long totalResizeNanos;
+    private final long maxResizeNanos;
+    private final long estimatedFootprint;
+
+    MapStats(final int size, final int capacity, final float loadFactor,
+             final long occupiedBins, final long emptyBins,
+             final long overflowNodes, final long treeBins, final long treeNodes, final long freeNodes,
+             final long[] chainLengthHistogram, final int maxChainLength, final double meanProbeLength,
+             final boolean resizing, final long resizeCount, final long totalResizeNanos, final long maxResizeNanos,
+             final long estimatedFootprint) {
+        this.size = size;
+        this.capacity = capacity;
+        this.loadFactor = loadFactor;
+        this.occupiedBins = occupiedBins;
+        this.emptyBins = emptyBins;
+        this.overflowNodes = overflowNodes;
+        this.treeBins = treeBins;
+        this.treeNodes = treeNodes;
+        this.freeNodes = freeNodes;
+        this.chainLengthHistogram = chainLengthHistogram;
+        this.maxChainLength = maxChainLength;
+        this.meanProbeLength = meanProbeLength;
+        this.resizing = resizing;
+        this.resizeCount = resizeCount;
+        this.totalResizeNanos = totalResizeNanos;
+        this.maxResizeNanos = maxResizeNanos;
+        this.estimatedFootprint = estimatedFootprint;
+    }
+
+    /**
+     * @return the number of mappings in the map
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of bins in the table of the map (0 if no table has been allocated yet)
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the load factor the map resizes at
+     */
+    public float getLoadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * @return the number of mappings per bin
+     */
+    public double getLoad() {
+        return (capacity == 0) ? 0.0 : ((double) size) / capacity;
+    }
+
+    /**
+     * @return the number of bins holding at least one mapping
+     */
+    public long getOccupiedBins() {
+        return occupiedBins;
+    }
+
+    /**
+     * @return the number of empty (sentinel) bins in the table of the map
+     */
+    public long getEmptyBins() {
+        return emptyBins;
+    }
+
+    /**
+     * @return the number of plain overflow nodes linked into the map, i.e. mappings held in list bins other
+     * than in the first node of their bin
+     */
+    public long getOverflowNodes() {
+        return overflowNodes;
+    }
+
+    /**
+     * @return the number of bins whose overflow nodes are held in a tree
+     */
+    public long getTreeBins() {
+        return treeBins;
+    }
+
+    /**
+     * @return the number of tree nodes linked into the map
+     */
+    public long getTreeNodes() {
+        return treeNodes;
+    }
+
+    /**
+     * @return the number of overflow nodes allocated by the map and held in its pool for reuse
+     */
+    public long getFreeNodes() {
+        return freeNodes;
+    }
+
+    /**
+     * Get the chain length histogram. The element at index {@code i} is the number of bins holding {@code i}
+     * mappings, with the last element counting all longer bins.
+     *
+     * @return a copy of the chain length histogram
+     */
+    public long[] getChainLengthHistogram() {
+        return chainLengthHistogram.clone();
+    }
+
+    /**
+     * @return the number of mappings in the fullest bin
+     */
+    public int getMaxChainLength() {
+        return maxChainLength;
+    }
+
+    /**
+     * @return the mean number of nodes examined by a successful lookup, over all mappings in the map
+     */
+    public double getMeanProbeLength() {
+        return meanProbeLength;
+    }
+
+    /**
+     * @return true if an incremental resize was in progress when the snapshot was taken
+     */
+    public boolean isResizing() {
+        return resizing;
+    }
+
+    /**
+     * @return the number of times the table of the map has grown
+     */
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    /**
+     * @return the total time spent growing the table, in nanoseconds. For maps that resize incrementally,
+     * this does not include the bins moved by later operations.
+     */
+    public long getTotalResizeNanos() {
+        return totalResizeNanos;
+    }
+
+    /**
+     * @return the longest time spent in a single resize, in nanoseconds
+     */
+    public long getMaxResizeNanos() {
+        return maxResizeNanos;
+    }
+
+    /**
+     * @return the estimated footprint of the map's tables and nodes, in bytes
+     */
+    public long getEstimatedFootprint() {
+        return estimatedFootprint;
+    }
+
+    @Override
+    public String toString() {
+        return "MapStats{size=" + size +
+                ", capacity=" + capacity +
+                ", load=" + getLoad() +
+                ", occupiedBins=" + occupiedBins +
+                ", emptyBins=" + emptyBins +
+                ", overflowNodes=" + overflowNodes +
+                ", treeBins=" + treeBins +
+                ", treeNodes=" + treeNodes +
+                ", freeNodes=" + freeNodes +
+                ", chainLengthHistogram=" + Arrays.toString(chainLengthHistogram) +
+                ", maxChainLength=" + maxChainLength +
+                ", meanProbeLength=" + meanProbeLength +
+                ", resizing=" + resizing +
+                ", resizeCount=" + resizeCount +
+                ", totalResizeNanos=" + totalResizeNanos +
+                ", maxResizeNanos=" + maxResizeNanos +
+                ", estimatedFootprint=" + estimatedFootprint + "}";
+    }
+
+    /**
+     * Estimate the footprint of a StructuredArray with the given model, including its elements.
+     *
+     * @param model the model of the StructuredArray
+     * @return the estimated footprint of the array, in bytes
+     */
+    public static long estimateFootprint(final StructuredArrayModel<?, ?> model) {
+        final long length = model.getLength();
+        // The array object, its reference array of elements, and the elements themselves:
+        return estimateInstanceSize(model.getArrayClass()) +
+                estimateReferenceArraySize(length) +
+                (length * estimateInstanceSize(model.getElementClass()));
+    }
+
+    /**
+     * Estimate the footprint of a Java array of references of the given length.
+     *
+     * @param length the length of the array
+     * @return the estimated footprint of the array, in bytes
+     */
+    public static long estimateReferenceArraySize(final long length) {
+        return align(ARRAY_HEADER_SIZE + (length * REFERENCE_SIZE));
+    }
+
+    /**
+     * Estimate the shallow size of an instance of the given class, from the sizes of its declared instance
+     * fields and those of its superclasses.
+     *
+     * @param instanceClass the class to estimate the instance size of
+     * @return the estimated instance size, in bytes
+     */
+    public static long estimateInstanceSize(final Class<?> instanceClass) {
+        long size = OBJECT_HEADER_SIZE;
+        for (Class<?> c = instanceClass; c != null; c = c.getSuperclass()) {
+            for (final Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    size += fieldSize(field.getType());
+                }
+            }
+        }
+        return align(size);
+    }
+
+    private static int fieldSize(final Class<?> type) {
+        if ((type == long.class) || (type == double.class)) {
+            return 8;
+        } else if ((type == int.class) || (type == float.class)) {
+            return 4;
+        } else if ((type == short.class) || (type == char.class)) {
+            return 2;
+        } else if ((type == byte.class) || (type == boolean.class)) {
+            return 1;
+        }
+        return REFERENCE_SIZE;
+    }
+
+    private static long align(final long size) {
+        return (size + OBJECT_ALIGNMENT - 1) & ~(OBJECT_ALIGNMENT - 1);
+    }
+
+    /**
+     * Publishes snapshots of the statistics of an {@link SAHashMap} through JMX.
+     * <p>
+     * Since SAHashMap is not synchronized, the MXBean does not walk the map itself. Instead, it reports the
+     * most recent snapshot handed to it by {@link #publish()}, which must be called by a thread that may
+     * access the map (e.g. periodically, by the thread that owns it).
+     */
+    public static final class Publisher implements MapStatsMXBean {
+        private final SAHashMap<?, ?> map;
+        private volatile MapStats stats;
+        private ObjectName name;
+
+        /**
+         * Create a publisher for the given map, publishing an initial snapshot of its statistics.
+         *
+         * @param map the map to publish the statistics of
+         */
+        public Publisher(final SAHashMap<?, ?> map) {
+            this.map = map;
+            this.stats = map.stats();
+        }
+
+        /**
+         * Take a snapshot of the statistics of the map and make it the one reported through JMX.
+         *
+         * @return the published snapshot
+         */
+        public MapStats publish() {
+            final MapStats snapshot = map.stats();
+            stats = snapshot;
+            return snapshot;
+        }
+
+        @Override
+        public MapStats getStats() {
+            return stats;
+        }
+
+        /**
+         * Register this publisher with the platform MBean server.
+         *
+         * @param name the object name to register under
+         * @throws JMException if the registration fails
+         */
+        public synchronized void register(final ObjectName name) throws JMException {
+            if (this.name != null) {
+                throw new IllegalStateException("already registered as " + this.name);
+            }
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.name = name;
+        }
+
+        /**
+         * Unregister this publisher from the platform MBean server, if it is registered.
+         *
+         * @throws JMException if the unregistration fails
+         */
+        public synchronized void unregister() throws JMException {
+            if (name != null) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+                name = null;
+            }
+        }
+    }
+}
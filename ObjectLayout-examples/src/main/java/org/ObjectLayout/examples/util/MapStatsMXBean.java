@@ -0,0 +1,16 @@
+package org.ObjectLayout.examples.util;
+/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+/**
+ * The management interface through which a {@link MapStats.Publisher} exposes the statistics of a map. The
+ * snapshot is mapped to a composite value, with an item for each of its properties.
+ */
+public interface MapStatsMXBean {
+    /**
+     * @return the most recently published snapshot of the statistics of the map
+     */
+    MapStats getStats();
+}
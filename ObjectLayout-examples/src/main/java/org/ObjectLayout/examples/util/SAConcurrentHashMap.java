@@ -0,0 +1,800 @@
+package org.ObjectLayout.examples.util;
+/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ObjectLayout.StructuredArray;
+
+/**
+ * A concurrent hash map whose bins are the elements of a {@link StructuredArray}, supporting lock-free
+ * retrievals and concurrent updates.
+ * <p>
+ * Like {@link java.util.concurrent.ConcurrentHashMap}, which this class follows closely in design, the table
+ * is an array of bins, each holding the head of a chain of nodes:
+ * <ul>
+ * <li>{@link #get} and {@link #containsKey} take no locks: they read the head of a bin and traverse its
+ * chain through volatile links.</li>
+ * <li>The first insertion into an empty bin publishes its node with a compare-and-set of the bin head. All
+ * other updates to a bin are made while holding the lock of that bin (the bin element itself), such that
+ * updates to different bins never contend.</li>
+ * <li>When the table is resized, the threads that insert, or that encounter a bin that has already been
+ * moved, cooperate in transferring the bins to the new table, each claiming a stride of bins at a time.
+ * Moved bins are replaced with a forwarding node, through which lookups continue in the new table, such
+ * that no thread ever waits for a resize to complete.</li>
+ * <li>The number of mappings is kept in a {@link LongAdder}, such that concurrent insertions and removals
+ * do not contend on a single counter.</li>
+ * </ul>
+ * Unlike {@link SAHashMap}, the first node of each bin is not embedded in the table: a lock-free reader
+ * must observe the key, hash and value of a node together, which an element whose fields are updated in
+ * place cannot guarantee. Bins are StructuredArray elements, holding the volatile head reference and
+ * serving as the lock of their chain.
+ * <p>
+ * Neither keys nor values may be null. Iterators are weakly consistent: they reflect the state of the map
+ * at some point at or since their creation, and never throw
+ * {@link java.util.ConcurrentModificationException}. The results of {@link #size} are only a snapshot
+ * while the map is concurrently modified.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public class SAConcurrentHashMap<K,V> extends SAAbstractMap<K,V> implements ConcurrentMap<K,V> {
+
+    /**
+     * The default initial table capacity - MUST be a power of two.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * The largest possible table capacity.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The smallest number of bins claimed by a thread taking part in a resize.
+     */
+    static final int MIN_TRANSFER_STRIDE = 16;
+
+    /**
+     * The hash of forwarding nodes. Hashes of keys are spread to non-negative values.
+     */
+    static final int MOVED = -1;
+
+    static final int HASH_BITS = 0x7fffffff;
+
+    /**
+     * The number of bits used for the generation stamp in sizeCtl while a resize is in progress.
+     */
+    private static final int RESIZE_STAMP_SHIFT = 16;
+
+    private static final int MAX_RESIZERS = (1 << RESIZE_STAMP_SHIFT) - 1;
+
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Bin, Node> HEAD =
+            AtomicReferenceFieldUpdater.newUpdater(Bin.class, Node.class, "head");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<SAConcurrentHashMap> SIZE_CTL =
+            AtomicIntegerFieldUpdater.newUpdater(SAConcurrentHashMap.class, "sizeCtl");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<SAConcurrentHashMap> TRANSFER_INDEX =
+            AtomicIntegerFieldUpdater.newUpdater(SAConcurrentHashMap.class, "transferIndex");
+
+    /**
+     * A bin of the table, holding the head of its chain of nodes.
+     */
+    static final class Bin<K,V> {
+        volatile Node<K,V> head;
+    }
+
+    /**
+     * A node in the chain of a bin. Once published, the hash and key of a node never change, and its value
+     * and link are volatile, such that readers traversing a chain without locking observe complete nodes.
+     */
+    static class Node<K,V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K,V> next;
+
+        Node(final int hash, final K key, final V value, final Node<K,V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A node placed at the head of a bin whose contents have been transferred to the next table.
+     */
+    static final class ForwardingNode<K,V> extends Node<K,V> {
+        final StructuredArray<Bin<K,V>> nextTable;
+
+        ForwardingNode(final StructuredArray<Bin<K,V>> nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    private volatile StructuredArray<Bin<K,V>> table;
+
+    /**
+     * The table being transferred to, non-null only while a resize is in progress.
+     */
+    private volatile StructuredArray<Bin<K,V>> nextTable;
+
+    /**
+     * The resize threshold when positive. While a resize is in progress, holds the generation stamp of the
+     * resize in its upper bits, and one more than the number of threads taking part in it in its lower bits.
+     */
+    private volatile int sizeCtl;
+
+    /**
+     * One more than the highest index of the bins of the table yet to be claimed by a resizing thread.
+     */
+    private volatile int transferIndex;
+
+    private final LongAdder count = new LongAdder();
+
+    private transient Set<Map.Entry<K,V>> entrySet;
+
+    /**
+     * Constructs an empty map with the default initial capacity (16).
+     */
+    public SAConcurrentHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty map with room for the given number of mappings before it needs to resize.
+     *
+     * @param initialCapacity the number of mappings to accommodate without resizing
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public SAConcurrentHashMap(final int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        final int capacity = (initialCapacity >= (MAXIMUM_CAPACITY >>> 1)) ? MAXIMUM_CAPACITY :
+                SAHashMap.tableSizeFor(initialCapacity + (initialCapacity >>> 1) + 1);
+        table = newTable(capacity);
+        sizeCtl = capacity - (capacity >>> 2);
+    }
+
+    /**
+     * Constructs a map with the same mappings as the given map.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     * @throws NullPointerException if the given map, or any of its keys or values, is null
+     */
+    public SAConcurrentHashMap(final Map<? extends K, ? extends V> m) {
+        this(Math.max(m.size(), DEFAULT_INITIAL_CAPACITY));
+        putAll(m);
+    }
+
+    /* ---------------- Static utilities -------------- */
+
+    /**
+     * Spreads (XORs) the higher bits of the hash code to the lower bits, as {@link SAHashMap#hash} does,
+     * and clears the sign bit, which is reserved for forwarding nodes.
+     */
+    static int spread(final int h) {
+        return (h ^ (h >>> 16)) & HASH_BITS;
+    }
+
+    /**
+     * Returns the generation stamp of a resize of a table of length n. The stamp has its top bit set, such
+     * that sizeCtl is negative when the stamp is shifted into its upper bits.
+     */
+    static int resizeStamp(final int n) {
+        return Integer.numberOfLeadingZeros(n) | (1 << (RESIZE_STAMP_SHIFT - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K,V> StructuredArray<Bin<K,V>> newTable(final int length) {
+        @SuppressWarnings("rawtypes")
+        final StructuredArray table = StructuredArray.newInstance(lookup, Bin.class, length);
+        return (StructuredArray<Bin<K,V>>) table;
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Returns the number of mappings in this map, or {@link Integer#MAX_VALUE} if it holds more.
+     *
+     * @return the number of mappings in this map
+     */
+    public int size() {
+        final long n = count.sum();
+        return (n < 0L) ? 0 : (n > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) n;
+    }
+
+    /**
+     * Returns the number of mappings in this map. Should be used instead of {@link #size} since a map may
+     * hold more mappings than can be represented as an int.
+     *
+     * @return the number of mappings in this map
+     */
+    public long mappingCount() {
+        final long n = count.sum();
+        return (n < 0L) ? 0L : n;
+    }
+
+    public boolean isEmpty() {
+        return count.sum() <= 0L;
+    }
+
+    /**
+     * Returns the value to which the given key is mapped, or null if this map contains no mapping for the
+     * key. Takes no locks.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the key is mapped, or null if this map contains no mapping for the key
+     * @throws NullPointerException if the key is null
+     */
+    public V get(final Object key) {
+        final Node<K,V> e = getNode(spread(key.hashCode()), key);
+        return (e == null) ? null : e.value;
+    }
+
+    /**
+     * Tests whether the given key is mapped to a value in this map. Takes no locks.
+     *
+     * @param key the key to test
+     * @return <tt>true</tt> if this map contains a mapping for the key
+     * @throws NullPointerException if the key is null
+     */
+    public boolean containsKey(final Object key) {
+        return getNode(spread(key.hashCode()), key) != null;
+    }
+
+    final Node<K,V> getNode(final int hash, final Object key) {
+        StructuredArray<Bin<K,V>> tab = table;
+        outer: for (;;) {
+            Node<K,V> e = tab.get((int) (tab.getLength() - 1) & hash).head;
+            for (; e != null; e = e.next) {
+                K k;
+                if (e.hash == hash && ((k = e.key) == key || key.equals(k))) {
+                    return e;
+                }
+                if (e.hash == MOVED) {
+                    tab = ((ForwardingNode<K,V>) e).nextTable;
+                    continue outer;
+                }
+            }
+            return null;
+        }
+    }
+
+    public boolean containsValue(final Object value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        final Traverser<K,V> it = new Traverser<K,V>(table);
+        for (Node<K,V> e; (e = it.advance()) != null; ) {
+            final V v = e.value;
+            if (v == value || value.equals(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Maps the given key to the given value in this map.
+     *
+     * @param key key with which the value is to be associated
+     * @param value value to be associated with the key
+     * @return the previous value associated with the key, or null if there was no mapping for the key
+     * @throws NullPointerException if the key or value is null
+     */
+    public V put(final K key, final V value) {
+        return putVal(key, value, false);
+    }
+
+    public V putIfAbsent(final K key, final V value) {
+        return putVal(key, value, true);
+    }
+
+    public void putAll(final Map<? extends K, ? extends V> m) {
+        for (final Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            putVal(e.getKey(), e.getValue(), false);
+        }
+    }
+
+    /**
+     * Removes the mapping for the given key from this map if present.
+     *
+     * @param key the key whose mapping is to be removed
+     * @return the previous value associated with the key, or null if there was no mapping for the key
+     * @throws NullPointerException if the key is null
+     */
+    public V remove(final Object key) {
+        return replaceNode(key, null, null);
+    }
+
+    public boolean remove(final Object key, final Object value) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return (value != null) && (replaceNode(key, null, value) != null);
+    }
+
+    public boolean replace(final K key, final V oldValue, final V newValue) {
+        if (key == null || oldValue == null || newValue == null) {
+            throw new NullPointerException();
+        }
+        return replaceNode(key, newValue, oldValue) != null;
+    }
+
+    public V replace(final K key, final V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        return replaceNode(key, value, null);
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        long delta = 0L;
+        StructuredArray<Bin<K,V>> tab = table;
+        int i = 0;
+        while (i < tab.getLength()) {
+            final Bin<K,V> bin = tab.get(i);
+            final Node<K,V> f = bin.head;
+            if (f == null) {
+                ++i;
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, (ForwardingNode<K,V>) f);
+                i = 0;
+            } else {
+                synchronized (bin) {
+                    if (bin.head == f) {
+                        for (Node<K,V> p = f; p != null; p = p.next) {
+                            --delta;
+                        }
+                        bin.head = null;
+                        ++i;
+                    }
+                }
+            }
+        }
+        if (delta != 0L) {
+            addCount(delta);
+        }
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map. The set is backed by the map, and
+     * its iterators are weakly consistent. Setting the value of an entry returned by its iterators maps the
+     * key of the entry to the new value in this map.
+     *
+     * @return a set view of the mappings contained in this map
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        final Set<Map.Entry<K,V>> es;
+        return ((es = entrySet) != null) ? es : (entrySet = new EntrySet());
+    }
+
+    /* ---------------- Updates -------------- */
+
+    final V putVal(final K key, final V value, final boolean onlyIfAbsent) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        final int hash = spread(key.hashCode());
+        StructuredArray<Bin<K,V>> tab = table;
+        for (;;) {
+            final Bin<K,V> bin = tab.get((int) (tab.getLength() - 1) & hash);
+            final Node<K,V> f = bin.head;
+            if (f == null) {
+                if (HEAD.compareAndSet(bin, null, new Node<K,V>(hash, key, value, null))) {
+                    break;
+                }
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, (ForwardingNode<K,V>) f);
+            } else {
+                V oldValue = null;
+                boolean locked = false;
+                synchronized (bin) {
+                    if (bin.head == f) {
+                        locked = true;
+                        for (Node<K,V> e = f; ; ) {
+                            K k;
+                            if (e.hash == hash && ((k = e.key) == key || key.equals(k))) {
+                                oldValue = e.value;
+                                if (!onlyIfAbsent) {
+                                    e.value = value;
+                                }
+                                break;
+                            }
+                            final Node<K,V> pred = e;
+                            if ((e = e.next) == null) {
+                                pred.next = new Node<K,V>(hash, key, value, null);
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (locked) {
+                    if (oldValue != null) {
+                        return oldValue;
+                    }
+                    break;
+                }
+            }
+        }
+        addCount(1L);
+        return null;
+    }
+
+    /**
+     * Implements the four public remove and replace methods: replaces the value of the node for the given
+     * key with the given value, or removes the node if the value is null, conditional upon a match of
+     * expectedValue if it is non-null.
+     *
+     * @return the previous value, or null if nothing was replaced or removed
+     */
+    final V replaceNode(final Object key, final V value, final Object expectedValue) {
+        final int hash = spread(key.hashCode());
+        StructuredArray<Bin<K,V>> tab = table;
+        for (;;) {
+            final Bin<K,V> bin = tab.get((int) (tab.getLength() - 1) & hash);
+            final Node<K,V> f = bin.head;
+            if (f == null) {
+                return null;
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, (ForwardingNode<K,V>) f);
+            } else {
+                V oldValue = null;
+                boolean locked = false;
+                synchronized (bin) {
+                    if (bin.head == f) {
+                        locked = true;
+                        for (Node<K,V> e = f, pred = null; e != null; pred = e, e = e.next) {
+                            K k;
+                            if (e.hash == hash && ((k = e.key) == key || key.equals(k))) {
+                                final V v = e.value;
+                                if (expectedValue == null || expectedValue == v || expectedValue.equals(v)) {
+                                    oldValue = v;
+                                    if (value != null) {
+                                        e.value = value;
+                                    } else if (pred != null) {
+                                        pred.next = e.next;
+                                    } else {
+                                        bin.head = e.next;
+                                    }
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (locked) {
+                    if (oldValue != null && value == null) {
+                        addCount(-1L);
+                    }
+                    return oldValue;
+                }
+            }
+        }
+    }
+
+    /* ---------------- Resizing -------------- */
+
+    /**
+     * Adds to the count, and if the table has grown past the resize threshold, starts a resize or joins one
+     * that is already in progress.
+     */
+    private void addCount(final long x) {
+        count.add(x);
+        if (x <= 0L) {
+            return;
+        }
+        long s = count.sum();
+        int sc;
+        StructuredArray<Bin<K,V>> tab;
+        while (s >= (long) (sc = sizeCtl) && (tab = table).getLength() < MAXIMUM_CAPACITY) {
+            final int n = (int) tab.getLength();
+            final int rs = resizeStamp(n) << RESIZE_STAMP_SHIFT;
+            if (sc < 0) {
+                final StructuredArray<Bin<K,V>> nt;
+                if ((sc & ~MAX_RESIZERS) != rs || sc == rs + 1 || sc == rs + MAX_RESIZERS ||
+                        (nt = nextTable) == null || transferIndex <= 0) {
+                    break;
+                }
+                if (SIZE_CTL.compareAndSet(this, sc, sc + 1)) {
+                    transfer(tab, nt);
+                }
+            } else if (SIZE_CTL.compareAndSet(this, sc, rs + 2)) {
+                transfer(tab, null);
+            }
+            s = count.sum();
+        }
+    }
+
+    /**
+     * Helps transfer bins to the next table if a resize is still in progress.
+     *
+     * @return the table in which the caller should retry its operation
+     */
+    private StructuredArray<Bin<K,V>> helpTransfer(final StructuredArray<Bin<K,V>> tab,
+                                                   final ForwardingNode<K,V> f) {
+        final StructuredArray<Bin<K,V>> nextTab = f.nextTable;
+        final int rs = resizeStamp((int) tab.getLength()) << RESIZE_STAMP_SHIFT;
+        int sc;
+        while (nextTab == nextTable && table == tab && (sc = sizeCtl) < 0) {
+            if ((sc & ~MAX_RESIZERS) != rs || sc == rs + 1 || sc == rs + MAX_RESIZERS || transferIndex <= 0) {
+                break;
+            }
+            if (SIZE_CTL.compareAndSet(this, sc, sc + 1)) {
+                transfer(tab, nextTab);
+                break;
+            }
+        }
+        return nextTab;
+    }
+
+    /**
+     * Moves the bins of tab to nextTab, allocating nextTab if null (by the thread starting the resize).
+     * Threads claim strides of bins from the top of the table down, and transfer the bins of a stride one at
+     * a time, each under the lock of its bin. Nodes are copied rather than relinked, other than a trailing
+     * run of nodes that all land in the same bin, such that readers still traversing the old table observe
+     * unchanged chains. The last thread to finish its share commits the new table.
+     */
+    private void transfer(final StructuredArray<Bin<K,V>> tab, StructuredArray<Bin<K,V>> nextTab) {
+        final int n = (int) tab.getLength();
+        final int stride = Math.max((NCPU > 1) ? (n >>> 3) / NCPU : n, MIN_TRANSFER_STRIDE);
+        if (nextTab == null) {
+            try {
+                nextTab = newTable(n << 1);
+            } catch (final OutOfMemoryError ex) {
+                sizeCtl = Integer.MAX_VALUE;
+                return;
+            }
+            nextTable = nextTab;
+            transferIndex = n;
+        }
+        final ForwardingNode<K,V> fwd = new ForwardingNode<K,V>(nextTab);
+        boolean advance = true;
+        boolean finishing = false;
+        for (int i = 0, bound = 0; ; ) {
+            while (advance) {
+                final int nextIndex;
+                final int nextBound;
+                if (--i >= bound || finishing) {
+                    advance = false;
+                } else if ((nextIndex = transferIndex) <= 0) {
+                    i = -1;
+                    advance = false;
+                } else if (TRANSFER_INDEX.compareAndSet(this, nextIndex,
+                        nextBound = (nextIndex > stride) ? nextIndex - stride : 0)) {
+                    bound = nextBound;
+                    i = nextIndex - 1;
+                    advance = false;
+                }
+            }
+            if (i < 0) {
+                if (finishing) {
+                    nextTable = null;
+                    table = nextTab;
+                    sizeCtl = (n << 1) - (n >>> 1);
+                    return;
+                }
+                final int sc = sizeCtl;
+                if (SIZE_CTL.compareAndSet(this, sc, sc - 1)) {
+                    if ((sc - 2) != resizeStamp(n) << RESIZE_STAMP_SHIFT) {
+                        return;
+                    }
+                    // The last thread out sweeps the table once more before committing the new table:
+                    finishing = advance = true;
+                    i = n;
+                }
+                continue;
+            }
+            final Bin<K,V> bin = tab.get(i);
+            final Node<K,V> f = bin.head;
+            if (f == null) {
+                advance = HEAD.compareAndSet(bin, null, fwd);
+            } else if (f.hash == MOVED) {
+                advance = true;
+            } else {
+                synchronized (bin) {
+                    if (bin.head == f) {
+                        transferBin(f, n, nextTab.get(i), nextTab.get(i + n));
+                        bin.head = fwd;
+                        advance = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static <K,V> void transferBin(final Node<K,V> f, final int n, final Bin<K,V> lo, final Bin<K,V> hi) {
+        int runBit = f.hash & n;
+        Node<K,V> lastRun = f;
+        for (Node<K,V> p = f.next; p != null; p = p.next) {
+            final int b = p.hash & n;
+            if (b != runBit) {
+                runBit = b;
+                lastRun = p;
+            }
+        }
+        Node<K,V> loHead = (runBit == 0) ? lastRun : null;
+        Node<K,V> hiHead = (runBit != 0) ? lastRun : null;
+        for (Node<K,V> p = f; p != lastRun; p = p.next) {
+            if ((p.hash & n) == 0) {
+                loHead = new Node<K,V>(p.hash, p.key, p.value, loHead);
+            } else {
+                hiHead = new Node<K,V>(p.hash, p.key, p.value, hiHead);
+            }
+        }
+        lo.head = loHead;
+        hi.head = hiHead;
+    }
+
+    /* ---------------- Iteration -------------- */
+
+    /**
+     * Traverses the nodes of a table, following forwarding nodes into the bins of later tables. A bin at
+     * index i of a table of length n is split into bins i and i + n of the next table, which are visited in
+     * its place.
+     */
+    static final class Traverser<K,V> {
+        private final StructuredArray<Bin<K,V>> baseTable;
+        private int baseIndex;
+        private PendingBin<K,V> pending;
+        private Node<K,V> next;
+
+        Traverser(final StructuredArray<Bin<K,V>> table) {
+            this.baseTable = table;
+        }
+
+        final Node<K,V> advance() {
+            Node<K,V> e = next;
+            if (e != null && (e = e.next) != null) {
+                return next = e;
+            }
+            for (;;) {
+                final StructuredArray<Bin<K,V>> t;
+                final int i;
+                if (pending != null) {
+                    t = pending.table;
+                    i = pending.index;
+                    pending = pending.next;
+                } else if (baseIndex < baseTable.getLength()) {
+                    t = baseTable;
+                    i = baseIndex++;
+                } else {
+                    return next = null;
+                }
+                e = t.get(i).head;
+                if (e == null) {
+                    continue;
+                }
+                if (e.hash == MOVED) {
+                    final StructuredArray<Bin<K,V>> nt = ((ForwardingNode<K,V>) e).nextTable;
+                    final int n = (int) t.getLength();
+                    pending = new PendingBin<K,V>(nt, i, new PendingBin<K,V>(nt, i + n, pending));
+                    continue;
+                }
+                return next = e;
+            }
+        }
+    }
+
+    static final class PendingBin<K,V> {
+        final StructuredArray<Bin<K,V>> table;
+        final int index;
+        final PendingBin<K,V> next;
+
+        PendingBin(final StructuredArray<Bin<K,V>> table, final int index, final PendingBin<K,V> next) {
+            this.table = table;
+            this.index = index;
+            this.next = next;
+        }
+    }
+
+    final class EntryIterator implements Iterator<Map.Entry<K,V>> {
+        private final Traverser<K,V> traverser = new Traverser<K,V>(table);
+        private Node<K,V> next = traverser.advance();
+        private Node<K,V> lastReturned;
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Map.Entry<K,V> next() {
+            final Node<K,V> e = next;
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = e;
+            next = traverser.advance();
+            return new WriteThroughEntry(e.key, e.value);
+        }
+
+        public void remove() {
+            final Node<K,V> e = lastReturned;
+            if (e == null) {
+                throw new IllegalStateException();
+            }
+            lastReturned = null;
+            replaceNode(e.key, null, null);
+        }
+    }
+
+    final class WriteThroughEntry extends SAAbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = -3150815318591213628L;
+
+        WriteThroughEntry(final K key, final V value) {
+            super(key, value);
+        }
+
+        public V setValue(final V value) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator();
+        }
+
+        public int size() {
+            return SAConcurrentHashMap.this.size();
+        }
+
+        public boolean isEmpty() {
+            return SAConcurrentHashMap.this.isEmpty();
+        }
+
+        public void clear() {
+            SAConcurrentHashMap.this.clear();
+        }
+
+        public boolean contains(final Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            final Object k = e.getKey();
+            final Object v = e.getValue();
+            final V r;
+            return (k != null) && (v != null) && ((r = get(k)) != null) && (r == v || r.equals(v));
+        }
+
+        public boolean remove(final Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            final Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            final Object k = e.getKey();
+            final Object v = e.getValue();
+            return (k != null) && (v != null) && SAConcurrentHashMap.this.remove(k, v);
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.io.InvalidObjectException;
 import java.io.Serializable;
 import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -44,6 +45,7 @@ import java.util.function.Function;
 
 import org.ObjectLayout.CtorAndArgs;
 import org.ObjectLayout.StructuredArray;
+import org.ObjectLayout.StructuredArrayModel;
 
 /**
  * Hash table based implementation of the <tt>Map</tt> interface.  This
@@ -281,6 +283,34 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      */
     static final int MIN_TREEIFY_CAPACITY = 64;
 
+    /**
+     * The number of bins moved from the old table to the new one by
+     * each operation that adds or removes a mapping while an
+     * incremental resize is in progress. Must be at least 2, such that
+     * a resize completes before the next one is due.
+     */
+    static final int INCREMENTAL_RESIZE_STEP = 8;
+
+    /**
+     * The maximum number of bins in each chunk of a BinTable. Tables of
+     * up to this many bins are held in a single chunk.
+     */
+    static final int BIN_CHUNK_LENGTH = 1 << 10;
+
+    /**
+     * The lengths of the first and of the largest chunks of overflow
+     * nodes allocated by the node pool. Chunk lengths double from the
+     * first to the largest.
+     */
+    static final int MIN_NODE_CHUNK_LENGTH = 16;
+    static final int MAX_NODE_CHUNK_LENGTH = 1 << 12;
+
+    /**
+     * Returned by removeNode when there is no mapping to remove, since
+     * the value of a removed mapping may itself be null.
+     */
+    static final Object NO_MAPPING = new Object();
+
     /**
      * Basic hash bin node, used for most entries.  (See below for
      * TreeNode subclass, and in LinkedHashMap for its Entry subclass.)
@@ -456,6 +486,96 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
         }
     }
 
+    /**
+     * A table of bins, held in chunks of up to BIN_CHUNK_LENGTH bins,
+     * each a NodeTable in which the first node of each of its bins is
+     * embedded. Chunks that have not been allocated hold empty bins:
+     * get returns a shared empty sentinel for them, and bin allocates
+     * the chunk of a bin about to be written to. This allows the bins
+     * of a new table to be allocated as they are populated, a chunk at
+     * a time, rather than all at once.
+     */
+    static final class BinTable<K,V> {
+        @SuppressWarnings("rawtypes")
+        private static final Node EMPTY_BIN = new Node();
+
+        final NodeTable<K,V>[] chunks;
+        final int length;
+        final int chunkShift;
+        final int chunkMask;
+        int allocatedChunks;
+
+        /**
+         * Creates a table of the given (power of two) length, with none
+         * of its chunks allocated.
+         */
+        @SuppressWarnings({"rawtypes","unchecked"})
+        BinTable(int length) {
+            int chunkLength = Math.min(length, BIN_CHUNK_LENGTH);
+            this.length = length;
+            this.chunkShift = Integer.numberOfTrailingZeros(chunkLength);
+            this.chunkMask = chunkLength - 1;
+            this.chunks = (NodeTable<K,V>[]) new NodeTable[length >>> chunkShift];
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        /**
+         * Returns bin i, or an empty sentinel that must not be written to
+         * if the chunk of the bin has not been allocated.
+         */
+        @SuppressWarnings("unchecked")
+        Node<K,V> get(int i) {
+            NodeTable<K,V> chunk;
+            return ((chunk = chunks[i >>> chunkShift]) == null) ?
+                    (Node<K,V>) EMPTY_BIN : chunk.get(i & chunkMask);
+        }
+
+        /**
+         * Returns bin i for writing, allocating its chunk if needed.
+         */
+        Node<K,V> bin(int i) {
+            NodeTable<K,V> chunk;
+            if ((chunk = chunks[i >>> chunkShift]) == null) {
+                chunk = chunks[i >>> chunkShift] = NodeTable.newInstance(chunkMask + 1);
+                ++allocatedChunks;
+            }
+            return chunk.get(i & chunkMask);
+        }
+
+        /**
+         * Allocates all chunks that have not been allocated yet.
+         */
+        void allocateAll() {
+            for (int i = 0; i < length; i += chunkMask + 1)
+                bin(i);
+        }
+
+        /**
+         * Empties all bins, keeping the chunks allocated.
+         */
+        void clear() {
+            for (NodeTable<K,V> chunk : chunks) {
+                if (chunk != null) {
+                    for (int i = 0; i < chunk.getLength(); ++i)
+                        clearNode(chunk.get(i));
+                }
+            }
+        }
+
+        /**
+         * Returns an estimate of the footprint of the table and of its
+         * allocated chunks.
+         */
+        long estimateFootprint() {
+            return MapStats.estimateInstanceSize(BinTable.class) +
+                    MapStats.estimateReferenceArraySize(chunks.length) +
+                    allocatedChunks * MapStats.estimateFootprint(nodeTableModel(chunkMask + 1));
+        }
+    }
+
     /**
      * The table, initialized on first use, and resized as
      * necessary. When allocated, length is always a power of two.
@@ -463,7 +583,52 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      * bootstrapping mechanics that are currently not needed.)
      */
 //    transient Node<K,V>[] table;
-    transient NodeTable<K,V> saTable;
+    transient BinTable<K,V> saTable;
+
+    /**
+     * The table being drained into saTable while an incremental resize
+     * is in progress, or null. Bins of oldTable below migrateIndex have
+     * been moved and are empty. New mappings are added to their bin of
+     * oldTable if it is not empty, and to saTable otherwise, so a bin
+     * of oldTable that is not empty has not been moved, and the two
+     * bins of saTable it moves to are empty.
+     */
+    transient BinTable<K,V> oldTable;
+
+    /**
+     * The index of the next bin of oldTable to be moved.
+     */
+    transient int migrateIndex;
+
+    /**
+     * The pool of free overflow nodes, linked through their next
+     * fields. Overflow nodes (those chained behind the first node of a
+     * bin, which is embedded in saTable) are allocated in chunks, each
+     * a NodeTable, and are returned to the pool when they are removed
+     * from the map, such that a map with a steady number of mappings
+     * allocates no nodes.
+     */
+    transient Node<K,V> freeNodes;
+
+    /**
+     * The length of the most recently allocated chunk of overflow nodes.
+     */
+    transient int nodeChunkLength;
+
+    /**
+     * The number of chunks of overflow nodes allocated, and the total
+     * number of nodes in them, for footprint estimates.
+     */
+    transient int nodeChunkCount;
+    transient long nodeCapacity;
+
+    /**
+     * The number of times the table has grown, and the time spent in
+     * resize() doing so, in nanoseconds. Reported by stats().
+     */
+    transient long resizeCount;
+    transient long resizeNanos;
+    transient long maxResizeNanos;
 
     /**
      * Holds cached entrySet(). Note that AbstractMap fields are used
@@ -503,6 +668,12 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      */
     final float loadFactor;
 
+    /**
+     * Whether resizes move bins to the new table incrementally, rather
+     * than all at once.
+     */
+    final boolean incrementalResize;
+
     /* ---------------- Public operations -------------- */
 
     /**
@@ -515,6 +686,38 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      *         or the load factor is nonpositive
      */
     public SAHashMap(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, false);
+    }
+
+    /**
+     * Constructs an empty <tt>HashMap</tt> with the specified initial
+     * capacity and load factor, and the specified resize mode.
+     *
+     * <p>When <tt>incrementalResize</tt> is true, growing the table
+     * does not rehash all of the existing mappings at once. The old
+     * table is retained next to the new one, and each subsequent
+     * operation that adds or removes a mapping moves a bounded number
+     * of bins to the new table, until the old table is drained. The new table is allocated
+     * in chunks, as bins move into them, such that the work done by any
+     * single operation, including the <tt>put</tt> that triggers a
+     * resize, is bounded regardless of the capacity of the map, at the
+     * cost of a little extra work per operation while a resize is in
+     * progress.
+     *
+     * <p>Operations that only read mappings (<tt>get</tt>,
+     * <tt>containsKey</tt>, iteration and the other read-only
+     * operations) look the mappings up in whichever table holds them,
+     * and never move bins, so the usual rules for synchronizing
+     * concurrent access to the map apply unchanged.
+     *
+     * @param  initialCapacity the initial capacity
+     * @param  loadFactor      the load factor
+     * @param  incrementalResize whether to move bins to a new table
+     *         incrementally when resizing
+     * @throws IllegalArgumentException if the initial capacity is negative
+     *         or the load factor is nonpositive
+     */
+    public SAHashMap(int initialCapacity, float loadFactor, boolean incrementalResize) {
         if (initialCapacity < 0)
             throw new IllegalArgumentException("Illegal initial capacity: " +
                     initialCapacity);
@@ -525,6 +728,7 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                     loadFactor);
         this.loadFactor = loadFactor;
         this.threshold = tableSizeFor(initialCapacity);
+        this.incrementalResize = incrementalResize;
     }
 
     /**
@@ -544,6 +748,7 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      */
     public SAHashMap() {
         this.loadFactor = DEFAULT_LOAD_FACTOR; // all other fields defaulted
+        this.incrementalResize = false;
     }
 
     /**
@@ -557,6 +762,7 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      */
     public SAHashMap(Map<? extends K, ? extends V> m) {
         this.loadFactor = DEFAULT_LOAD_FACTOR;
+        this.incrementalResize = false;
         putMapEntries(m, false);
     }
 
@@ -635,15 +841,15 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      * @return the node, or null if none
      */
     final Node<K,V> getNode(int hash, Object key) {
-        NodeTable<K,V> tab; Node<K,V> first, e; int n; K k;
-        if ((tab = saTable) != null && (n = (int)tab.getLength()) > 0 &&
+        BinTable<K,V> tab; Node<K,V> first, e; int n; K k;
+        if ((tab = tableFor(hash)) != null && (n = (int)tab.getLength()) > 0 &&
                 (first = tab.get((n - 1) & hash)).isSentinel() != true) {
             if (first.hash == hash && // always check first node
                     ((k = first.key) == key || (key != null && key.equals(k))))
                 return first;
             if ((e = first.next) != null) {
-//                if (first instanceof TreeNode)
-//                    return ((TreeNode<K,V>)first).getTreeNode(hash, key);
+                if (e instanceof TreeNode)
+                    return ((TreeNode<K,V>)e).getTreeNode(hash, key);
                 do {
                     if (e.hash == hash &&
                             ((k = e.key) == key || (key != null && key.equals(k))))
@@ -694,25 +900,27 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      */
     final V putVal(int hash, K key, V value, boolean onlyIfAbsent,
                    boolean evict) {
-        NodeTable<K,V> tab; Node<K,V> p; int n, i;
+        BinTable<K,V> tab; Node<K,V> p; int n, i;
         if ((tab = saTable) == null || (n = (int)tab.getLength()) == 0)
             n = (int)(tab = resize()).getLength();
+        else if (oldTable != null)
+            n = (int)(tab = tableFor(hash)).getLength();
         if ((p = tab.get(i = (n - 1) & hash)).isSentinel() == true)
 //            tab[i] = newNode(hash, key, value, null);
-            tab.get(i).setContents(hash, key, value, null);
+            tab.bin(i).setContents(hash, key, value, null);
         else {
             Node<K,V> e; K k;
             if (p.hash == hash &&
                     ((k = p.key) == key || (key != null && key.equals(k))))
                 e = p;
-//            else if (p instanceof TreeNode)
-//                e = ((TreeNode<K,V>)p).putTreeVal(this, tab, hash, key, value);
+            else if (p.next instanceof TreeNode)
+                e = ((TreeNode<K,V>)p.next).putTreeVal(this, tab, hash, key, value);
             else {
                 for (int binCount = 0; ; ++binCount) {
                     if ((e = p.next) == null) {
                         p.next = newNode(hash, key, value, null);
-//                        if (binCount >= TREEIFY_THRESHOLD - 1) // -1 for 1st
-//                            treeifyBin(tab, hash);
+                        if (binCount >= TREEIFY_THRESHOLD - 1) // -1 for 1st
+                            treeifyBin(tab, hash);
                         break;
                     }
                     if (e.hash == hash &&
@@ -732,6 +940,8 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
         ++modCount;
         if (++size > threshold)
             resize();
+        else if (oldTable != null)
+            migrate();
         afterNodeInsertion(evict);
         return null;
     }
@@ -745,9 +955,12 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      *
      * @return the table
      */
-    final NodeTable<K,V> resize() {
+    final BinTable<K,V> resize() {
+        long start = System.nanoTime();
+        if (oldTable != null)
+            finishResize();
 //        Node<K,V>[] oldTab = table;
-        NodeTable<K,V> oldTab = saTable;
+        BinTable<K,V> oldTab = saTable;
         int oldCap = (oldTab == null) ? 0 : (int) oldTab.getLength();
         int oldThr = threshold;
         int newCap, newThr = 0;
@@ -772,85 +985,197 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                     (int)ft : Integer.MAX_VALUE);
         }
         threshold = newThr;
-        @SuppressWarnings({"rawtypes","unchecked"})
 //        Node<K,V>[] newTab = (Node<K,V>[])new Node[newCap];
-        NodeTable<K,V> newTab = NodeTable.newInstance(newCap);
+        BinTable<K,V> newTab = newTable(newCap);
         saTable = newTab;
         if (oldTab != null) {
-            for (int j = 0; j < oldCap; ++j) {
-                Node<K,V> e;
-                if ((e = oldTab.get(j)).isSentinel != true) {
-//                    oldTab[j] = null;
-//                    oldTab.get(j).setSentinel(true);
-//                    if (e.next == null)
-//                        newTab[e.hash & (newCap - 1)] = e;
-                    if (e.next == null) {
-                        newTab.get(e.hash & (newCap - 1)).setContents(e);
+            if (incrementalResize) {
+                oldTable = oldTab;
+                migrateIndex = 0;
+            }
+            else {
+                for (int j = 0; j < oldCap; ++j)
+                    moveBin(oldTab, j, newTab);
+            }
+            long nanos = System.nanoTime() - start;
+            ++resizeCount;
+            resizeNanos += nanos;
+            if (nanos > maxResizeNanos)
+                maxResizeNanos = nanos;
+        }
+        return newTab;
+    }
+
+    /**
+     * Returns a new table of the given capacity. The chunks of the
+     * tables of incrementally resized maps are allocated as their bins
+     * are populated, while those of other maps are allocated up front.
+     */
+    final BinTable<K,V> newTable(int cap) {
+        BinTable<K,V> tab = new BinTable<K,V>(cap);
+        if (!incrementalResize)
+            tab.allocateAll();
+        return tab;
+    }
+
+    /**
+     * Moves the nodes of bin j of oldTab, which is half the length of
+     * newTab, to bins j and j + oldTab.length of newTab, which must be
+     * empty, and leaves bin j of oldTab empty.
+     */
+    final void moveBin(BinTable<K,V> oldTab, int j, BinTable<K,V> newTab) {
+        int oldCap = (int) oldTab.getLength(), newCap = oldCap << 1;
+        Node<K,V> e, first;
+        if ((e = first = oldTab.get(j)).isSentinel != true) {
+//            oldTab[j] = null;
+//            if (e.next == null)
+//                newTab[e.hash & (newCap - 1)] = e;
+            if (e.next == null) {
+                newTab.bin(e.hash & (newCap - 1)).setContents(e);
+            }
+            else if (e.next instanceof TreeNode)
+                ((TreeNode<K,V>)e.next).split(this, newTab, j, oldCap, first);
+            else { // preserve order
+                Node<K,V> loHead = null, loTail = null;
+                Node<K,V> hiHead = null, hiTail = null;
+                Node<K,V> next;
+                do {
+                    next = e.next;
+                    if ((e.hash & oldCap) == 0) {
+                        if (loTail == null)
+                            loHead = e;
+                        else
+                            loTail.next = e;
+                        loTail = e;
                     }
-//                    else if (e instanceof TreeNode)
-//                        ((TreeNode<K,V>)e).split(this, newTab, j, oldCap);
-                    else { // preserve order
-                        Node<K,V> loHead = null, loTail = null;
-                        Node<K,V> hiHead = null, hiTail = null;
-                        Node<K,V> next;
-                        do {
-                            next = e.next;
-                            if ((e.hash & oldCap) == 0) {
-                                if (loTail == null)
-                                    loHead = e;
-                                else
-                                    loTail.next = e;
-                                loTail = e;
-                            }
-                            else {
-                                if (hiTail == null)
-                                    hiHead = e;
-                                else
-                                    hiTail.next = e;
-                                hiTail = e;
-                            }
-                        } while ((e = next) != null);
-                        if (loTail != null) {
-                            loTail.next = null;
-//                            newTab[j] = loHead;
-                            newTab.get(j).setContents(loHead);
-                        }
-                        if (hiTail != null) {
-                            hiTail.next = null;
-//                            newTab[j + oldCap] = hiHead;
-                            newTab.get(j + oldCap).setContents(hiHead);
-                        }
+                    else {
+                        if (hiTail == null)
+                            hiHead = e;
+                        else
+                            hiTail.next = e;
+                        hiTail = e;
                     }
+                } while ((e = next) != null);
+                if (loTail != null) {
+                    loTail.next = null;
+//                    newTab[j] = loHead;
+                    newTab.bin(j).setContents(loHead);
+                    if (loHead != first)
+                        freeNode(loHead);
+                }
+                if (hiTail != null) {
+                    hiTail.next = null;
+//                    newTab[j + oldCap] = hiHead;
+                    newTab.bin(j + oldCap).setContents(hiHead);
+                    if (hiHead != first)
+                        freeNode(hiHead);
                 }
             }
+            clearNode(first);
         }
-        return newTab;
+    }
+
+    /**
+     * While an incremental resize is in progress, moves the next
+     * INCREMENTAL_RESIZE_STEP bins of the old table in index order.
+     * Completes the resize once the old table is drained. Called only
+     * after a mapping is added or removed, such that bins never move
+     * under iterators and other traversals that have not failed with a
+     * ConcurrentModificationException.
+     */
+    final void migrate() {
+        BinTable<K,V> oldTab, newTab = saTable;
+        if ((oldTab = oldTable) != null) {
+            int oldCap = (int) oldTab.getLength();
+            int j = migrateIndex;
+            int limit = Math.min(j + INCREMENTAL_RESIZE_STEP, oldCap);
+            for (; j < limit; ++j)
+                moveBin(oldTab, j, newTab);
+            if ((migrateIndex = j) == oldCap)
+                oldTable = null;
+        }
+    }
+
+    /**
+     * Moves all of the bins remaining in the old table, if an
+     * incremental resize is in progress.
+     */
+    final void finishResize() {
+        BinTable<K,V> oldTab, newTab = saTable;
+        if ((oldTab = oldTable) != null) {
+            for (int j = migrateIndex, oldCap = (int) oldTab.getLength(); j < oldCap; ++j)
+                moveBin(oldTab, j, newTab);
+            oldTable = null;
+        }
+    }
+
+    /**
+     * Returns the table holding the bin for the given hash: oldTable if
+     * an incremental resize is in progress and the bin has not been
+     * moved, else saTable. Lookups in the returned table find the
+     * mapping for any key with the given hash, without moving bins.
+     */
+    final BinTable<K,V> tableFor(int hash) {
+        BinTable<K,V> oldTab;
+        if ((oldTab = oldTable) != null &&
+                oldTab.get((int)(oldTab.getLength() - 1) & hash).isSentinel() != true)
+            return oldTab;
+        return saTable;
+    }
+
+    /**
+     * Returns the number of bins visited by traversals of the map:
+     * while an incremental resize is in progress, the bins of oldTable
+     * followed by those of saTable. Since moved bins are empty, this
+     * visits every mapping exactly once, without moving bins.
+     */
+    final int traversalLength() {
+        BinTable<K,V> oldTab = oldTable, tab = saTable;
+        return ((oldTab == null) ? 0 : (int)oldTab.getLength()) +
+                ((tab == null) ? 0 : (int)tab.getLength());
+    }
+
+    /**
+     * Returns bin i of the traversal order described in traversalLength.
+     */
+    final Node<K,V> traversalBin(int i) {
+        BinTable<K,V> oldTab; int oldCap;
+        if ((oldTab = oldTable) != null) {
+            if (i < (oldCap = (int)oldTab.getLength()))
+                return oldTab.get(i);
+            i -= oldCap;
+        }
+        return saTable.get(i);
     }
 
     /**
      * Replaces all linked nodes in bin at index for given hash unless
      * table is too small, in which case resizes instead.
      */
-//    final void treeifyBin(NodeTable<K,V> tab, int hash) {
-//        int n, index; Node<K,V> e;
-//        if (tab == null || (n = (int)tab.getLength()) < MIN_TREEIFY_CAPACITY)
-//            resize();
-//        else if ((e = tab.get(index = (n - 1) & hash)).isSentinel != true) {
-//            TreeNode<K,V> hd = null, tl = null;
-//            do {
-//                TreeNode<K,V> p = replacementTreeNode(e, null);
-//                if (tl == null)
-//                    hd = p;
-//                else {
-//                    p.prev = tl;
-//                    tl.next = p;
-//                }
-//                tl = p;
-//            } while ((e = e.next) != null);
-//            if ((tab[index] = hd) != null)
-//                hd.treeify(tab);
-//        }
-//    }
+    final void treeifyBin(BinTable<K,V> tab, int hash) {
+        int n, index; Node<K,V> first, e;
+        if (tab == null || (n = (int)tab.getLength()) < MIN_TREEIFY_CAPACITY)
+            resize();
+        else if ((e = (first = tab.get(index = (n - 1) & hash)).next) != null &&
+                !(e instanceof TreeNode)) {
+            TreeNode<K,V> hd = null, tl = null;
+            do {
+                Node<K,V> next = e.next;
+                TreeNode<K,V> p = replacementTreeNode(e, null);
+                if (tl == null)
+                    hd = p;
+                else {
+                    p.prev = tl;
+                    tl.next = p;
+                }
+                tl = p;
+                freeNode(e);
+                e = next;
+            } while (e != null);
+            if ((first.next = hd) != null)
+                hd.treeify(tab);
+        }
+    }
 
     /**
      * Copies all of the mappings from the specified map to this map.
@@ -873,10 +1198,11 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      *         (A <tt>null</tt> return can also indicate that the map
      *         previously associated <tt>null</tt> with <tt>key</tt>.)
      */
+    @SuppressWarnings("unchecked")
     public V remove(Object key) {
-        Node<K,V> e;
-        return (e = removeNode(hash(key), key, null, false, true)) == null ?
-                null : e.value;
+        Object v;
+        return (v = removeNode(hash(key), key, null, false, true)) == NO_MAPPING ?
+                null : (V) v;
     }
 
     /**
@@ -886,22 +1212,23 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      * @param key the key
      * @param value the value to match if matchValue, else ignored
      * @param matchValue if true only remove if value is equal
-     * @param movable if false do not move other nodes while removing
-     * @return the node, or null if none
+     * @param movable if false do not move other nodes (or bins, while an
+     *        incremental resize is in progress) while removing
+     * @return the value of the removed mapping, or NO_MAPPING if none
      */
-    final Node<K,V> removeNode(int hash, Object key, Object value,
+    final Object removeNode(int hash, Object key, Object value,
                                boolean matchValue, boolean movable) {
-        NodeTable<K,V> tab; Node<K,V> p; int n, index;
-        if ((tab = saTable) != null && (n = (int)tab.getLength()) > 0 &&
+        BinTable<K,V> tab; Node<K,V> p; int n, index;
+        if ((tab = tableFor(hash)) != null && (n = (int)tab.getLength()) > 0 &&
                 (p = tab.get(index = (n - 1) & hash)).isSentinel != true) {
             Node<K,V> node = null, e; K k; V v;
             if (p.hash == hash &&
                     ((k = p.key) == key || (key != null && key.equals(k))))
                 node = p;
             else if ((e = p.next) != null) {
-//                if (p instanceof TreeNode)
-//                    node = ((TreeNode<K,V>)p).getTreeNode(hash, key);
-//                else {
+                if (e instanceof TreeNode)
+                    node = ((TreeNode<K,V>)e).getTreeNode(hash, key);
+                else {
                     do {
                         if (e.hash == hash &&
                                 ((k = e.key) == key ||
@@ -911,32 +1238,50 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                         }
                         p = e;
                     } while ((e = e.next) != null);
-//                }
+                }
             }
             if (node != null && (!matchValue || (v = node.value) == value ||
                     (value != null && value.equals(v)))) {
-//                if (node instanceof TreeNode)
-//                    ((TreeNode<K,V>)node).removeTreeNode(this, tab, movable);
+                V removed = node.value;
+                if (node instanceof TreeNode)
+                    ((TreeNode<K,V>)node).removeTreeNode(this, tab, movable);
 //                else if (node == p)
 //                    tab[index] = node.next;
-                if (node == p) {
+                else if (node == p) {
                     // We are removign the head of the list. We need to create an
-                    // independent node with the same contents that will be returned.
-                    // Also needs to be passed to afterNodeRemoval().
+                    // independent node with the same contents to be passed to
+                    // afterNodeRemoval(), and returned to the pool after that.
                     // Danger. Danger. (what if afterNodeRemoval was holding some links on a specific node)
                     // XXX GGG TODO
-                    node = new Node<K, V>(node.hash, node.key, node.value, node.next);
-                    tab.get(index).setContents(node.next);
+                    Node<K,V> succ = node.next;
+                    node = newNode(node.hash, node.key, node.value, null);
+                    if (succ instanceof TreeNode) {
+                        // Move the tree root into the embedded node:
+                        p.setContents(succ.hash, succ.key, succ.value, succ);
+                        ((TreeNode<K,V>)succ).removeTreeNode(this, tab, movable);
+                    }
+                    else if (succ != null) {
+                        p.setContents(succ);
+                        freeNode(succ);
+                    }
+                    else
+                        clearNode(p);
                 }
                 else
                     p.next = node.next;
                 ++modCount;
                 --size;
+                if (oldTable != null && movable)
+                    migrate();
                 afterNodeRemoval(node);
-                return node;
+                // Overflow nodes go straight back to the pool, such that
+                // they do not retain the removed key and value:
+                if (!(node instanceof TreeNode))
+                    freeNode(node);
+                return removed;
             }
         }
-        return null;
+        return NO_MAPPING;
     }
 
     /**
@@ -944,13 +1289,15 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      * The map will be empty after this call returns.
      */
     public void clear() {
-        NodeTable<K,V> tab;
+        BinTable<K,V> tab;
         modCount++;
+        oldTable = null;
+        resetNodes();
         if ((tab = saTable) != null && size > 0) {
             size = 0;
-            for (int i = 0; i < tab.getLength(); ++i)
+//            for (int i = 0; i < tab.length; ++i)
 //                tab[i] = null;
-                tab.get(i).setSentinel(true);
+            tab.clear();
         }
     }
 
@@ -963,10 +1310,10 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      *         specified value
      */
     public boolean containsValue(Object value) {
-        NodeTable<K,V> tab; V v;
-        if ((tab = saTable) != null && size > 0) {
-            for (int i = 0; i < tab.getLength(); ++i) {
-                for (Node<K,V> e = tab.get(i); (e != null) && (!e.isSentinel()); e = e.next) {
+        V v; int n;
+        if (size > 0 && (n = traversalLength()) > 0) {
+            for (int i = 0; i < n; ++i) {
+                for (Node<K,V> e = traversalBin(i); (e != null) && (!e.isSentinel()); e = e.next) {
                     if ((v = e.value) == value ||
                             (value != null && value.equals(v)))
                         return true;
@@ -1002,19 +1349,19 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
         public final Iterator<K> iterator()     { return new KeyIterator(); }
         public final boolean contains(Object o) { return containsKey(o); }
         public final boolean remove(Object key) {
-            return removeNode(hash(key), key, null, false, true) != null;
+            return removeNode(hash(key), key, null, false, true) != NO_MAPPING;
         }
         public final Spliterator<K> spliterator() {
             return new KeySpliterator<K,V>(SAHashMap.this, 0, -1, 0, 0);
         }
         public final void forEach(Consumer<? super K> action) {
-            NodeTable<K,V> tab;
+            int n;
             if (action == null)
                 throw new NullPointerException();
-            if (size > 0 && (tab = saTable) != null) {
+            if (size > 0 && (n = traversalLength()) > 0) {
                 int mc = modCount;
-                for (int i = 0; i < tab.getLength(); ++i) {
-                    for (Node<K,V> e = tab.get(i); ((e != null) && !e.isSentinel()) ; e = e.next)
+                for (int i = 0; i < n && modCount == mc; ++i) {
+                    for (Node<K,V> e = traversalBin(i); ((e != null) && !e.isSentinel()) ; e = e.next)
                         action.accept(e.key);
                 }
                 if (modCount != mc)
@@ -1052,13 +1399,13 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             return new ValueSpliterator<K,V>(SAHashMap.this, 0, -1, 0, 0);
         }
         public final void forEach(Consumer<? super V> action) {
-            NodeTable<K,V> tab;
+            int n;
             if (action == null)
                 throw new NullPointerException();
-            if (size > 0 && (tab = saTable) != null) {
+            if (size > 0 && (n = traversalLength()) > 0) {
                 int mc = modCount;
-                for (int i = 0; i < tab.getLength(); ++i) {
-                    for (Node<K,V> e = tab.get(i); ((e != null) && !e.isSentinel()); e = e.next)
+                for (int i = 0; i < n && modCount == mc; ++i) {
+                    for (Node<K,V> e = traversalBin(i); ((e != null) && !e.isSentinel()); e = e.next)
                         action.accept(e.value);
                 }
                 if (modCount != mc)
@@ -1081,6 +1428,13 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
      * <tt>clear</tt> operations.  It does not support the
      * <tt>add</tt> or <tt>addAll</tt> operations.
      *
+     * <p>To avoid allocating an entry per mapping, the iterators,
+     * spliterators and <tt>forEach</tt> of the set reuse a single
+     * entry, which is only valid until the next entry is returned (or
+     * passed to the action). Entries that are held on to beyond that
+     * must be copied, e.g. into an {@link AbstractMap.SimpleEntry}.
+     * The set's <tt>toArray</tt> methods return such copies.
+     *
      * @return a set view of the mappings contained in this map
      */
     public Set<Map.Entry<K,V>> entrySet() {
@@ -1107,22 +1461,39 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                 Map.Entry<?,?> e = (Map.Entry<?,?>) o;
                 Object key = e.getKey();
                 Object value = e.getValue();
-                return removeNode(hash(key), key, value, true, true) != null;
+                return removeNode(hash(key), key, value, true, true) != NO_MAPPING;
             }
             return false;
         }
         public final Spliterator<Map.Entry<K,V>> spliterator() {
             return new EntrySpliterator<K,V>(SAHashMap.this, 0, -1, 0, 0);
         }
+        // The iterator reuses a single entry, so copy each one out:
+        public final Object[] toArray() {
+            return toArray(new Object[size]);
+        }
+        @SuppressWarnings("unchecked")
+        public final <T> T[] toArray(T[] a) {
+            int n = size;
+            if (a.length < n)
+                a = (T[]) Array.newInstance(a.getClass().getComponentType(), n);
+            int i = 0;
+            for (Map.Entry<K,V> e : this)
+                a[i++] = (T) new AbstractMap.SimpleEntry<K,V>(e);
+            if (a.length > n)
+                a[n] = null;
+            return a;
+        }
         public final void forEach(Consumer<? super Map.Entry<K,V>> action) {
-            NodeTable<K,V> tab;
+            int n;
             if (action == null)
                 throw new NullPointerException();
-            if (size > 0 && (tab = saTable) != null) {
+            if (size > 0 && (n = traversalLength()) > 0) {
+                MapEntry<K,V> entry = new MapEntry<K,V>(SAHashMap.this);
                 int mc = modCount;
-                for (int i = 0; i < tab.getLength(); ++i) {
-                    for (Node<K,V> e = tab.get(i); ((e != null) && !e.isSentinel()); e = e.next)
-                        action.accept(e);
+                for (int i = 0; i < n && modCount == mc; ++i) {
+                    for (Node<K,V> e = traversalBin(i); ((e != null) && !e.isSentinel()); e = e.next)
+                        action.accept(entry.set(e));
                 }
                 if (modCount != mc)
                     throw new ConcurrentModificationException();
@@ -1145,7 +1516,7 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
 
     @Override
     public boolean remove(Object key, Object value) {
-        return removeNode(hash(key), key, value, true, true) != null;
+        return removeNode(hash(key), key, value, true, true) != NO_MAPPING;
     }
 
     @Override
@@ -1178,18 +1549,26 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
         if (mappingFunction == null)
             throw new NullPointerException();
         int hash = hash(key);
-        NodeTable<K,V> tab; Node<K,V> first; int n, i;
+        BinTable<K,V> tab; Node<K,V> first; int n, i;
         int binCount = 0;
-//        TreeNode<K,V> t = null;
+        TreeNode<K,V> t = null;
         Node<K,V> old = null;
         if (size > threshold || (tab = saTable) == null ||
                 (n = (int)tab.getLength()) == 0)
             n = (int)(tab = resize()).getLength();
+        if (oldTable != null)
+            n = (int)(tab = tableFor(hash)).getLength();
         if ((first = tab.get(i = (n - 1) & hash)).isSentinel() != true) {
-//            if (first instanceof TreeNode)
-//                old = (t = (TreeNode<K,V>)first).getTreeNode(hash, key);
-//            else {
-                Node<K,V> e = first; K k;
+            Node<K,V> e = first; K k;
+            if (first.next instanceof TreeNode) {
+                t = (TreeNode<K,V>)first.next;
+                if (first.hash == hash &&
+                        ((k = first.key) == key || (key != null && key.equals(k))))
+                    old = first;
+                else
+                    old = t.getTreeNode(hash, key);
+            }
+            else {
                 do {
                     if (e.hash == hash &&
                             ((k = e.key) == key || (key != null && key.equals(k)))) {
@@ -1198,7 +1577,7 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                     }
                     ++binCount;
                 } while ((e = e.next) != null);
-//            }
+            }
             V oldValue;
             if (old != null && (oldValue = old.value) != null) {
                 afterNodeAccess(old);
@@ -1213,17 +1592,20 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             afterNodeAccess(old);
             return v;
         }
-//        else if (t != null)
-//            t.putTreeVal(this, tab, hash, key, v);
-//        else {
-//            tab[i] = newNode(hash, key, v, first);
-//            if (binCount >= TREEIFY_THRESHOLD - 1)
-//                treeifyBin(tab, hash);
-//        }
-        tab.get(i).setContents(hash, key, v, first);
+        if (t != null)
+            t.putTreeVal(this, tab, hash, key, v);
+        else if (first.isSentinel())
+            tab.bin(i).setContents(hash, key, v, null);
+        else {
+            first.next = newNode(hash, key, v, first.next);
+            if (binCount >= TREEIFY_THRESHOLD - 1)
+                treeifyBin(tab, hash);
+        }
 
         ++modCount;
         ++size;
+        if (oldTable != null)
+            migrate();
         afterNodeInsertion(true);
         return v;
     }
@@ -1254,18 +1636,26 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
         if (remappingFunction == null)
             throw new NullPointerException();
         int hash = hash(key);
-        NodeTable<K,V> tab; Node<K,V> first; int n, i;
+        BinTable<K,V> tab; Node<K,V> first; int n, i;
         int binCount = 0;
-//        TreeNode<K,V> t = null;
+        TreeNode<K,V> t = null;
         Node<K,V> old = null;
         if (size > threshold || (tab = saTable) == null ||
                 (n = (int)tab.getLength()) == 0)
             n = (int)(tab = resize()).getLength();
+        if (oldTable != null)
+            n = (int)(tab = tableFor(hash)).getLength();
         if ((first = tab.get(i = (n - 1) & hash)).isSentinel() != true) {
-//            if (first instanceof TreeNode)
-//                old = (t = (TreeNode<K,V>)first).getTreeNode(hash, key);
-//            else {
-                Node<K,V> e = first; K k;
+            Node<K,V> e = first; K k;
+            if (first.next instanceof TreeNode) {
+                t = (TreeNode<K,V>)first.next;
+                if (first.hash == hash &&
+                        ((k = first.key) == key || (key != null && key.equals(k))))
+                    old = first;
+                else
+                    old = t.getTreeNode(hash, key);
+            }
+            else {
                 do {
                     if (e.hash == hash &&
                             ((k = e.key) == key || (key != null && key.equals(k)))) {
@@ -1274,7 +1664,7 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                     }
                     ++binCount;
                 } while ((e = e.next) != null);
-//            }
+            }
         }
         V oldValue = (old == null) ? null : old.value;
         V v = remappingFunction.apply(key, oldValue);
@@ -1287,17 +1677,20 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                 removeNode(hash, key, null, false, true);
         }
         else if (v != null) {
-//            if (t != null)
-//                t.putTreeVal(this, tab, hash, key, v);
-//            else {
-//                tab[i] = newNode(hash, key, v, first);
-//                if (binCount >= TREEIFY_THRESHOLD - 1)
-//                    treeifyBin(tab, hash);
-//            }
-            tab.get(i).setContents(hash, key, v, first);
+            if (t != null)
+                t.putTreeVal(this, tab, hash, key, v);
+            else if (first.isSentinel())
+                tab.bin(i).setContents(hash, key, v, null);
+            else {
+                first.next = newNode(hash, key, v, first.next);
+                if (binCount >= TREEIFY_THRESHOLD - 1)
+                    treeifyBin(tab, hash);
+            }
 
             ++modCount;
             ++size;
+            if (oldTable != null)
+                migrate();
             afterNodeInsertion(true);
         }
         return v;
@@ -1311,18 +1704,26 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
         if (remappingFunction == null)
             throw new NullPointerException();
         int hash = hash(key);
-        NodeTable<K,V> tab; Node<K,V> first; int n, i;
+        BinTable<K,V> tab; Node<K,V> first; int n, i;
         int binCount = 0;
-//        TreeNode<K,V> t = null;
+        TreeNode<K,V> t = null;
         Node<K,V> old = null;
         if (size > threshold || (tab = saTable) == null ||
                 (n = (int)tab.getLength()) == 0)
             n = (int)(tab = resize()).getLength();
+        if (oldTable != null)
+            n = (int)(tab = tableFor(hash)).getLength();
         if ((first = tab.get(i = (n - 1) & hash)).isSentinel() != true) {
-//            if (first instanceof TreeNode)
-//                old = (t = (TreeNode<K,V>)first).getTreeNode(hash, key);
-//            else {
-                Node<K,V> e = first; K k;
+            Node<K,V> e = first; K k;
+            if (first.next instanceof TreeNode) {
+                t = (TreeNode<K,V>)first.next;
+                if (first.hash == hash &&
+                        ((k = first.key) == key || (key != null && key.equals(k))))
+                    old = first;
+                else
+                    old = t.getTreeNode(hash, key);
+            }
+            else {
                 do {
                     if (e.hash == hash &&
                             ((k = e.key) == key || (key != null && key.equals(k)))) {
@@ -1331,7 +1732,7 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                     }
                     ++binCount;
                 } while ((e = e.next) != null);
-//            }
+            }
         }
         if (old != null) {
             V v;
@@ -1348,17 +1749,20 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             return v;
         }
         if (value != null) {
-//            if (t != null)
-//                t.putTreeVal(this, tab, hash, key, value);
-//            else {
-//                tab[i] = newNode(hash, key, value, first);
-//                if (binCount >= TREEIFY_THRESHOLD - 1)
-//                    treeifyBin(tab, hash);
-//            }
-            tab.get(i).setContents(hash, key, value, first);
+            if (t != null)
+                t.putTreeVal(this, tab, hash, key, value);
+            else if (first.isSentinel())
+                tab.bin(i).setContents(hash, key, value, null);
+            else {
+                first.next = newNode(hash, key, value, first.next);
+                if (binCount >= TREEIFY_THRESHOLD - 1)
+                    treeifyBin(tab, hash);
+            }
 
             ++modCount;
             ++size;
+            if (oldTable != null)
+                migrate();
             afterNodeInsertion(true);
         }
         return value;
@@ -1366,13 +1770,13 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
 
     @Override
     public void forEach(BiConsumer<? super K, ? super V> action) {
-        NodeTable<K,V> tab;
+        int n;
         if (action == null)
             throw new NullPointerException();
-        if (size > 0 && (tab = saTable) != null) {
+        if (size > 0 && (n = traversalLength()) > 0) {
             int mc = modCount;
-            for (int i = 0; i < tab.getLength(); ++i) {
-                for (Node<K,V> e = tab.get(i); ((e != null) && !e.isSentinel()); e = e.next)
+            for (int i = 0; i < n && modCount == mc; ++i) {
+                for (Node<K,V> e = traversalBin(i); ((e != null) && !e.isSentinel()); e = e.next)
                     action.accept(e.key, e.value);
             }
             if (modCount != mc)
@@ -1382,13 +1786,13 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
 
     @Override
     public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
-        NodeTable<K,V> tab;
+        int n;
         if (function == null)
             throw new NullPointerException();
-        if (size > 0 && (tab = saTable) != null) {
+        if (size > 0 && (n = traversalLength()) > 0) {
             int mc = modCount;
-            for (int i = 0; i < tab.getLength(); ++i) {
-                for (Node<K,V> e = tab.get(i); ((e != null) && !e.isSentinel()); e = e.next) {
+            for (int i = 0; i < n && modCount == mc; ++i) {
+                for (Node<K,V> e = traversalBin(i); ((e != null) && !e.isSentinel()); e = e.next) {
                     e.value = function.apply(e.key, e.value);
                 }
             }
@@ -1397,6 +1801,99 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
         }
     }
 
+    /* ------------------------------------------------------------ */
+    // Statistics
+
+    /**
+     * Returns a snapshot of statistics describing the layout of this
+     * map: the distribution of chain lengths across bins, the number of
+     * overflow and pooled nodes, the number and duration of resizes,
+     * and an estimate of the footprint of its tables and nodes. While
+     * an incremental resize is in progress, the bins of the old table
+     * that have not been moved yet are included, while its empty bins
+     * are not.
+     *
+     * <p>This method walks the entire table, so takes time proportional
+     * to the capacity of the map, and is meant for diagnostics rather
+     * than for use on hot paths. It does not modify the map.
+     *
+     * @return a snapshot of the statistics of this map
+     */
+    public MapStats stats() {
+        long[] histogram = new long[MapStats.HISTOGRAM_LENGTH];
+        long occupied = 0, empty = 0, overflow = 0, treeBins = 0, treeNodes = 0;
+        long probes = 0;
+        int maxChain = 0;
+        long footprint = 0;
+        BinTable<K,V> oldTab = oldTable, tab = saTable;
+        for (int t = 0; t < 2; ++t) {
+            BinTable<K,V> tb = (t == 0) ? oldTab : tab;
+            if (tb == null)
+                continue;
+            footprint += tb.estimateFootprint();
+            for (int i = 0; i < tb.getLength(); ++i) {
+                Node<K,V> first = tb.get(i), e;
+                int length = 0;
+                if (first.isSentinel()) {
+                    if (tb == tab)
+                        empty++;
+                }
+                else {
+                    occupied++;
+                    length = 1;
+                    probes += 1;
+                    if ((e = first.next) instanceof TreeNode) {
+                        treeBins++;
+                        probes += treeProbes(((TreeNode<K,V>)e).root(), 2);
+                        for (; e != null; e = e.next) {
+                            treeNodes++;
+                            length++;
+                        }
+                    }
+                    else {
+                        for (; e != null; e = e.next) {
+                            overflow++;
+                            probes += ++length;
+                        }
+                    }
+                }
+                if (length > maxChain)
+                    maxChain = length;
+                if (tb == tab || length > 0)
+                    histogram[Math.min(length, MapStats.HISTOGRAM_LENGTH - 1)]++;
+            }
+        }
+        long free = 0;
+        for (Node<K,V> e = freeNodes; e != null; e = e.next)
+            ++free;
+        if (nodeChunkCount > 0)
+            footprint += MapStats.estimateFootprint(nodeTableModel(nodeCapacity)) +
+                    (nodeChunkCount - 1) * MapStats.estimateFootprint(nodeTableModel(0));
+        footprint += treeNodes * MapStats.estimateInstanceSize(TreeNode.class);
+        long entries = occupied + overflow + treeNodes;
+        return new MapStats(size, (tab == null) ? 0 : (int) tab.getLength(), loadFactor,
+                occupied, empty, overflow, treeBins, treeNodes, free,
+                histogram, maxChain, (entries == 0) ? 0.0 : ((double) probes) / entries,
+                oldTab != null, resizeCount, resizeNanos, maxResizeNanos, footprint);
+    }
+
+    /**
+     * Returns the total number of nodes examined by lookups of each of
+     * the nodes of the tree rooted at p, at the given depth.
+     */
+    static long treeProbes(TreeNode<?,?> p, int depth) {
+        return (p == null) ? 0 :
+                depth + treeProbes(p.left, depth + 1) + treeProbes(p.right, depth + 1);
+    }
+
+    /**
+     * Returns the model of a NodeTable of the given length.
+     */
+    @SuppressWarnings({"rawtypes","unchecked"})
+    static StructuredArrayModel<?,?> nodeTableModel(long length) {
+        return new StructuredArrayModel(NodeTable.class, Node.class, length);
+    }
+
     /* ------------------------------------------------------------ */
     // Cloning and serialization
 
@@ -1480,9 +1977,8 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             float ft = (float)cap * lf;
             threshold = ((cap < MAXIMUM_CAPACITY && ft < MAXIMUM_CAPACITY) ?
                     (int)ft : Integer.MAX_VALUE);
-            @SuppressWarnings({"rawtypes","unchecked"})
 //            Node<K,V>[] tab = (Node<K,V>[])new Node[cap];
-            NodeTable<K,V> tab = NodeTable.newInstance(cap);
+            BinTable<K,V> tab = newTable(cap);
             saTable = tab;
 
             // Read the keys and values, and put the mappings in the HashMap
@@ -1499,6 +1995,73 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
     /* ------------------------------------------------------------ */
     // iterators
 
+    /**
+     * The entries handed out by the entry set's iterators, spliterators
+     * and forEach. Nodes cannot be handed out themselves, as nodes are
+     * reused for other mappings once removed: the first node of a bin
+     * is embedded in saTable, and overflow nodes are returned to the
+     * pool. A MapEntry instead holds a copy of the key and value of a
+     * mapping, and setValue writes through to the map's mapping for the
+     * key, if there still is one.
+     *
+     * To avoid allocating an entry per mapping visited, each iterator,
+     * spliterator and forEach call reuses a single MapEntry, which is
+     * only valid until the next entry is handed out. Callers that hold
+     * on to entries beyond that must copy them (as the entry set's
+     * toArray methods do).
+     */
+    static final class MapEntry<K,V> implements Map.Entry<K,V> {
+        final SAHashMap<K,V> map;
+        int hash;
+        K key;
+        V value;
+
+        MapEntry(SAHashMap<K,V> map) {
+            this.map = map;
+        }
+
+        /**
+         * Makes this entry a copy of the mapping held in e.
+         */
+        final MapEntry<K,V> set(Node<K,V> e) {
+            hash = e.hash;
+            key = e.key;
+            value = e.value;
+            return this;
+        }
+
+        public final K getKey()        { return key; }
+        public final V getValue()      { return value; }
+        public final String toString() { return key + "=" + value; }
+
+        public final int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        public final V setValue(V newValue) {
+            V oldValue = value;
+            value = newValue;
+            Node<K,V> e;
+            if ((e = map.getNode(hash, key)) != null) {
+                e.value = newValue;
+                map.afterNodeAccess(e);
+            }
+            return oldValue;
+        }
+
+        public final boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (o instanceof Map.Entry) {
+                Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+                if (Objects.equals(key, e.getKey()) &&
+                        Objects.equals(value, e.getValue()))
+                    return true;
+            }
+            return false;
+        }
+    }
+
     abstract class HashIterator {
         Node<K,V> next;        // next entry to return
         Node<K,V> current;     // current entry
@@ -1507,12 +2070,22 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
 
         HashIterator() {
             expectedModCount = modCount;
-            NodeTable<K,V> t = saTable;
             current = next = null;
             index = 0;
-            if (t != null && size > 0) { // advance to first entry
-                do {} while (index < t.getLength() && (next = t.get(index++)) == null);
+            if (size > 0) { // advance to first entry
+                advanceToNextBin();
+            }
+        }
+
+        final void advanceToNextBin() {
+            Node<K,V> e;
+            for (int n = traversalLength(); index < n; ) {
+                if ((e = traversalBin(index++)).isSentinel() != true) {
+                    next = e;
+                    return;
+                }
             }
+            next = null;
         }
 
         public final boolean hasNext() {
@@ -1520,14 +2093,13 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
         }
 
         final Node<K,V> nextNode() {
-            NodeTable<K,V> t;
             Node<K,V> e = next;
             if (modCount != expectedModCount)
                 throw new ConcurrentModificationException();
             if (e == null)
                 throw new NoSuchElementException();
-            if ((next = (current = e).next) == null && (t = saTable) != null) {
-                do {} while (index < t.getLength() && (next = t.get(index++)) == null);
+            if ((next = (current = e).next) == null) {
+                advanceToNextBin();
             }
             return e;
         }
@@ -1540,7 +2112,13 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                 throw new ConcurrentModificationException();
             current = null;
             K key = p.key;
+            // Removing the first node of a bin moves the contents of its
+            // successor (the next node to return) into the embedded first
+            // node, and unlinks the successor:
+            boolean first = (p.next != null && traversalBin(index - 1) == p);
             removeNode(hash(key), key, null, false, false);
+            if (first)
+                next = p;
             expectedModCount = modCount;
         }
     }
@@ -1557,7 +2135,10 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
 
     final class EntryIterator extends HashIterator
             implements Iterator<Map.Entry<K,V>> {
-        public final Map.Entry<K,V> next() { return nextNode(); }
+        final MapEntry<K,V> entry = new MapEntry<K,V>(SAHashMap.this);
+        public final Map.Entry<K,V> next() {
+            return entry.set(nextNode());
+        }
     }
 
     /* ------------------------------------------------------------ */
@@ -1587,8 +2168,7 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
                 SAHashMap<K,V> m = map;
                 est = m.size;
                 expectedModCount = m.modCount;
-                NodeTable<K,V> tab = m.saTable;
-                hi = fence = (tab == null) ? 0 : (int)tab.getLength();
+                hi = fence = m.traversalLength();
             }
             return hi;
         }
@@ -1619,20 +2199,19 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             if (action == null)
                 throw new NullPointerException();
             SAHashMap<K,V> m = map;
-            NodeTable<K,V> tab = m.saTable;
             if ((hi = fence) < 0) {
                 mc = expectedModCount = m.modCount;
-                hi = fence = (tab == null) ? 0 : (int)tab.getLength();
+                hi = fence = m.traversalLength();
             }
             else
                 mc = expectedModCount;
-            if (tab != null && tab.getLength() >= hi &&
+            if (m.traversalLength() >= hi &&
                     (i = index) >= 0 && (i < (index = hi) || ((current != null) && !current.isSentinel()))) {
                 Node<K,V> p = current;
                 current = null;
                 do {
                     if (p == null)
-                        p = tab.get(i++);
+                        p = m.traversalBin(i++);
                     else {
                         action.accept(p.key);
                         p = p.next;
@@ -1647,11 +2226,10 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             int hi;
             if (action == null)
                 throw new NullPointerException();
-            NodeTable<K,V> tab = map.saTable;
-            if (tab != null && tab.getLength() >= (hi = getFence()) && index >= 0) {
+            if (map.traversalLength() >= (hi = getFence()) && index >= 0) {
                 while (((current != null) && !current.isSentinel()) || index < hi) {
                     if (current == null)
-                        current = tab.get(index++);
+                        current = map.traversalBin(index++);
                     else {
                         K k = current.key;
                         current = current.next;
@@ -1691,20 +2269,19 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             if (action == null)
                 throw new NullPointerException();
             SAHashMap<K,V> m = map;
-            NodeTable<K,V> tab = m.saTable;
             if ((hi = fence) < 0) {
                 mc = expectedModCount = m.modCount;
-                hi = fence = (tab == null) ? 0 : (int)tab.getLength();
+                hi = fence = m.traversalLength();
             }
             else
                 mc = expectedModCount;
-            if (tab != null && tab.getLength() >= hi &&
+            if (m.traversalLength() >= hi &&
                     (i = index) >= 0 && (i < (index = hi) || ((current != null) && !current.isSentinel()))) {
                 Node<K,V> p = current;
                 current = null;
                 do {
                     if (p == null)
-                        p = tab.get(i++);
+                        p = m.traversalBin(i++);
                     else {
                         action.accept(p.value);
                         p = p.next;
@@ -1719,11 +2296,10 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             int hi;
             if (action == null)
                 throw new NullPointerException();
-            NodeTable<K,V> tab = map.saTable;
-            if (tab != null && tab.getLength() >= (hi = getFence()) && index >= 0) {
+            if (map.traversalLength() >= (hi = getFence()) && index >= 0) {
                 while (((current != null) && !current.isSentinel()) || index < hi) {
                     if (current == null)
-                        current = tab.get(index++);
+                        current = map.traversalBin(index++);
                     else {
                         V v = current.value;
                         current = current.next;
@@ -1745,9 +2321,12 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
     static final class EntrySpliterator<K,V>
             extends HashMapSpliterator<K,V>
             implements Spliterator<Map.Entry<K,V>> {
+        final MapEntry<K,V> entry;
+
         EntrySpliterator(SAHashMap<K,V> m, int origin, int fence, int est,
                          int expectedModCount) {
             super(m, origin, fence, est, expectedModCount);
+            entry = new MapEntry<K,V>(m);
         }
 
         public EntrySpliterator<K,V> trySplit() {
@@ -1762,22 +2341,21 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             if (action == null)
                 throw new NullPointerException();
             SAHashMap<K,V> m = map;
-            NodeTable<K,V> tab = m.saTable;
             if ((hi = fence) < 0) {
                 mc = expectedModCount = m.modCount;
-                hi = fence = (tab == null) ? 0 : (int)tab.getLength();
+                hi = fence = m.traversalLength();
             }
             else
                 mc = expectedModCount;
-            if (tab != null && tab.getLength() >= hi &&
+            if (m.traversalLength() >= hi &&
                     (i = index) >= 0 && (i < (index = hi) || ((current != null) && !current.isSentinel()))) {
                 Node<K,V> p = current;
                 current = null;
                 do {
                     if (p == null)
-                        p = tab.get(i++);
+                        p = m.traversalBin(i++);
                     else {
-                        action.accept(p);
+                        action.accept(entry.set(p));
                         p = p.next;
                     }
                 } while (((p != null) && !p.isSentinel()) || i < hi);
@@ -1790,15 +2368,14 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
             int hi;
             if (action == null)
                 throw new NullPointerException();
-            NodeTable<K,V> tab = map.saTable;
-            if (tab != null && tab.getLength() >= (hi = getFence()) && index >= 0) {
+            if (map.traversalLength() >= (hi = getFence()) && index >= 0) {
                 while (((current != null) && !current.isSentinel()) || index < hi) {
                     if (current == null)
-                        current = tab.get(index++);
+                        current = map.traversalBin(index++);
                     else {
                         Node<K,V> e = current;
                         current = current.next;
-                        action.accept(e);
+                        action.accept(entry.set(e));
                         if (map.modCount != expectedModCount)
                             throw new ConcurrentModificationException();
                         return true;
@@ -1828,35 +2405,95 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
 
     // Create a regular (non-tree) node
     Node<K,V> newNode(int hash, K key, V value, Node<K,V> next) {
-        return new Node<K,V>(hash, key, value, next);
+        Node<K,V> e;
+        if ((e = freeNodes) == null)
+            e = allocateNodes();
+        freeNodes = e.next;
+        e.setContents(hash, key, value, next);
+        return e;
+    }
+
+    /**
+     * Allocates a chunk of overflow nodes, adds them to the pool, and
+     * returns the first free node.
+     */
+    final Node<K,V> allocateNodes() {
+        int length = nodeChunkLength = (nodeChunkLength == 0) ?
+                MIN_NODE_CHUNK_LENGTH : Math.min(nodeChunkLength << 1, MAX_NODE_CHUNK_LENGTH);
+        NodeTable<K,V> chunk = NodeTable.newInstance(length);
+        ++nodeChunkCount;
+        nodeCapacity += length;
+        for (int i = length - 1; i >= 0; --i) {
+            Node<K,V> e = chunk.get(i);
+            e.next = freeNodes;
+            freeNodes = e;
+        }
+        return freeNodes;
+    }
+
+    /**
+     * Returns an overflow node that is no longer linked from the map
+     * to the pool.
+     */
+    final void freeNode(Node<K,V> e) {
+        clearNode(e);
+        e.next = freeNodes;
+        freeNodes = e;
+    }
+
+    /**
+     * Marks a node as a sentinel and clears its references, such that
+     * it does not retain keys and values no longer in the map.
+     */
+    static <K,V> void clearNode(Node<K,V> e) {
+        e.key = null;
+        e.value = null;
+        e.next = null;
+        e.setSentinel(true);
+    }
+
+    /**
+     * Discards the node pool, along with all overflow nodes.
+     */
+    final void resetNodes() {
+        freeNodes = null;
+        nodeChunkLength = 0;
+        nodeChunkCount = 0;
+        nodeCapacity = 0;
     }
 
     // For conversion from TreeNodes to plain nodes
     Node<K,V> replacementNode(Node<K,V> p, Node<K,V> next) {
-        return new Node<K,V>(p.hash, p.key, p.value, next);
+        return newNode(p.hash, p.key, p.value, next);
     }
 
-//    // Create a tree bin node
-//    TreeNode<K,V> newTreeNode(int hash, K key, V value, Node<K,V> next) {
-//        return new TreeNode<K,V>(hash, key, value, next);
-//    }
-//
-//    // For treeifyBin
-//    TreeNode<K,V> replacementTreeNode(Node<K,V> p, Node<K,V> next) {
-//        return new TreeNode<K,V>(p.hash, p.key, p.value, next);
-//    }
+    // Create a tree bin node
+    TreeNode<K,V> newTreeNode(int hash, K key, V value, Node<K,V> next) {
+        return new TreeNode<K,V>(hash, key, value, next);
+    }
+
+    // For treeifyBin
+    TreeNode<K,V> replacementTreeNode(Node<K,V> p, Node<K,V> next) {
+        return new TreeNode<K,V>(p.hash, p.key, p.value, next);
+    }
 
     /**
      * Reset to initial default state.  Called by clone and readObject.
      */
     void reinitialize() {
         saTable = null;
+        oldTable = null;
+        migrateIndex = 0;
+        resetNodes();
         entrySet = null;
         keySet = null;
         values = null;
         modCount = 0;
         threshold = 0;
         size = 0;
+        resizeCount = 0;
+        resizeNanos = 0;
+        maxResizeNanos = 0;
     }
 
     // Callbacks to allow LinkedHashMap post-actions
@@ -1866,10 +2503,10 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
 
     // Called only from writeObject, to ensure compatible ordering.
     void internalWriteEntries(java.io.ObjectOutputStream s) throws IOException {
-        NodeTable<K,V> tab;
-        if (size > 0 && (tab = saTable) != null) {
-            for (int i = 0; i < tab.getLength(); ++i) {
-                for (Node<K,V> e = tab.get(i); ((e != null) & !e.isSentinel()); e = e.next) {
+        int n;
+        if (size > 0 && (n = traversalLength()) > 0) {
+            for (int i = 0; i < n; ++i) {
+                for (Node<K,V> e = traversalBin(i); ((e != null) & !e.isSentinel()); e = e.next) {
                     s.writeObject(e.key);
                     s.writeObject(e.value);
                 }
@@ -1877,600 +2514,622 @@ public class SAHashMap<K,V> extends SAAbstractMap<K,V>
         }
     }
 
-//    /* ------------------------------------------------------------ */
-//    // Tree bins
-//
-//    /**
-//     * Entry for Tree bins. Extends LinkedHashMap.Entry (which in turn
-//     * extends Node) so can be used as extension of either regular or
-//     * linked node.
-//     */
-//    static final class TreeNode<K,V> extends SALinkedHashMap.Entry<K,V> {
-//        TreeNode<K,V> parent;  // red-black tree links
-//        TreeNode<K,V> left;
-//        TreeNode<K,V> right;
-//        TreeNode<K,V> prev;    // needed to unlink next upon deletion
-//        boolean red;
-//        TreeNode(int hash, K key, V val, Node<K,V> next) {
-//            super(hash, key, val, next);
-//        }
-//
-//        /**
-//         * Returns root of tree containing this node.
-//         */
-//        final TreeNode<K,V> root() {
-//            for (TreeNode<K,V> r = this, p;;) {
-//                if ((p = r.parent) == null)
-//                    return r;
-//                r = p;
-//            }
-//        }
-//
-//        /**
-//         * Ensures that the given root is the first node of its bin.
-//         */
-//        static <K,V> void moveRootToFront(Node<K,V>[] tab, TreeNode<K,V> root) {
-//            int n;
-//            if (root != null && tab != null && (n = tab.length) > 0) {
-//                int index = (n - 1) & root.hash;
-//                TreeNode<K,V> first = (TreeNode<K,V>)tab[index];
-//                if (root != first) {
-//                    Node<K,V> rn;
-//                    tab[index] = root;
-//                    TreeNode<K,V> rp = root.prev;
-//                    if ((rn = root.next) != null)
-//                        ((TreeNode<K,V>)rn).prev = rp;
-//                    if (rp != null)
-//                        rp.next = rn;
-//                    if (first != null)
-//                        first.prev = root;
-//                    root.next = first;
-//                    root.prev = null;
-//                }
-//                assert checkInvariants(root);
-//            }
-//        }
-//
-//        /**
-//         * Finds the node starting at root p with the given hash and key.
-//         * The kc argument caches comparableClassFor(key) upon first use
-//         * comparing keys.
-//         */
-//        final TreeNode<K,V> find(int h, Object k, Class<?> kc) {
-//            TreeNode<K,V> p = this;
-//            do {
-//                int ph, dir; K pk;
-//                TreeNode<K,V> pl = p.left, pr = p.right, q;
-//                if ((ph = p.hash) > h)
-//                    p = pl;
-//                else if (ph < h)
-//                    p = pr;
-//                else if ((pk = p.key) == k || (k != null && k.equals(pk)))
-//                    return p;
-//                else if (pl == null)
-//                    p = pr;
-//                else if (pr == null)
-//                    p = pl;
-//                else if ((kc != null ||
-//                        (kc = comparableClassFor(k)) != null) &&
-//                        (dir = compareComparables(kc, k, pk)) != 0)
-//                    p = (dir < 0) ? pl : pr;
-//                else if ((q = pr.find(h, k, kc)) != null)
-//                    return q;
-//                else
-//                    p = pl;
-//            } while (p != null);
-//            return null;
-//        }
-//
-//        /**
-//         * Calls find for root node.
-//         */
-//        final TreeNode<K,V> getTreeNode(int h, Object k) {
-//            return ((parent != null) ? root() : this).find(h, k, null);
-//        }
-//
-//        /**
-//         * Tie-breaking utility for ordering insertions when equal
-//         * hashCodes and non-comparable. We don't require a total
-//         * order, just a consistent insertion rule to maintain
-//         * equivalence across rebalancings. Tie-breaking further than
-//         * necessary simplifies testing a bit.
-//         */
-//        static int tieBreakOrder(Object a, Object b) {
-//            int d;
-//            if (a == null || b == null ||
-//                    (d = a.getClass().getName().
-//                            compareTo(b.getClass().getName())) == 0)
-//                d = (System.identityHashCode(a) <= System.identityHashCode(b) ?
-//                        -1 : 1);
-//            return d;
-//        }
-//
-//        /**
-//         * Forms tree of the nodes linked from this node.
-//         * @return root of tree
-//         */
-//        final void treeify(Node<K,V>[] tab) {
-//            TreeNode<K,V> root = null;
-//            for (TreeNode<K,V> x = this, next; x != null; x = next) {
-//                next = (TreeNode<K,V>)x.next;
-//                x.left = x.right = null;
-//                if (root == null) {
-//                    x.parent = null;
-//                    x.red = false;
-//                    root = x;
-//                }
-//                else {
-//                    K k = x.key;
-//                    int h = x.hash;
-//                    Class<?> kc = null;
-//                    for (TreeNode<K,V> p = root;;) {
-//                        int dir, ph;
-//                        K pk = p.key;
-//                        if ((ph = p.hash) > h)
-//                            dir = -1;
-//                        else if (ph < h)
-//                            dir = 1;
-//                        else if ((kc == null &&
-//                                (kc = comparableClassFor(k)) == null) ||
-//                                (dir = compareComparables(kc, k, pk)) == 0)
-//                            dir = tieBreakOrder(k, pk);
-//
-//                        TreeNode<K,V> xp = p;
-//                        if ((p = (dir <= 0) ? p.left : p.right) == null) {
-//                            x.parent = xp;
-//                            if (dir <= 0)
-//                                xp.left = x;
-//                            else
-//                                xp.right = x;
-//                            root = balanceInsertion(root, x);
-//                            break;
-//                        }
-//                    }
-//                }
-//            }
-//            moveRootToFront(tab, root);
-//        }
-//
-//        /**
-//         * Returns a list of non-TreeNodes replacing those linked from
-//         * this node.
-//         */
-//        final Node<K,V> untreeify(org.ObjectLayout.examples.util.SAHashMap<K,V> map) {
-//            Node<K,V> hd = null, tl = null;
-//            for (Node<K,V> q = this; q != null; q = q.next) {
-//                Node<K,V> p = map.replacementNode(q, null);
-//                if (tl == null)
-//                    hd = p;
-//                else
-//                    tl.next = p;
-//                tl = p;
-//            }
-//            return hd;
-//        }
-//
-//        /**
-//         * Tree version of putVal.
-//         */
-//        final TreeNode<K,V> putTreeVal(org.ObjectLayout.examples.util.SAHashMap<K,V> map, Node<K,V>[] tab,
-//                                       int h, K k, V v) {
-//            Class<?> kc = null;
-//            boolean searched = false;
-//            TreeNode<K,V> root = (parent != null) ? root() : this;
-//            for (TreeNode<K,V> p = root;;) {
-//                int dir, ph; K pk;
-//                if ((ph = p.hash) > h)
-//                    dir = -1;
-//                else if (ph < h)
-//                    dir = 1;
-//                else if ((pk = p.key) == k || (k != null && k.equals(pk)))
-//                    return p;
-//                else if ((kc == null &&
-//                        (kc = comparableClassFor(k)) == null) ||
-//                        (dir = compareComparables(kc, k, pk)) == 0) {
-//                    if (!searched) {
-//                        TreeNode<K,V> q, ch;
-//                        searched = true;
-//                        if (((ch = p.left) != null &&
-//                                (q = ch.find(h, k, kc)) != null) ||
-//                                ((ch = p.right) != null &&
-//                                        (q = ch.find(h, k, kc)) != null))
-//                            return q;
-//                    }
-//                    dir = tieBreakOrder(k, pk);
-//                }
-//
-//                TreeNode<K,V> xp = p;
-//                if ((p = (dir <= 0) ? p.left : p.right) == null) {
-//                    Node<K,V> xpn = xp.next;
-//                    TreeNode<K,V> x = map.newTreeNode(h, k, v, xpn);
-//                    if (dir <= 0)
-//                        xp.left = x;
-//                    else
-//                        xp.right = x;
-//                    xp.next = x;
-//                    x.parent = x.prev = xp;
-//                    if (xpn != null)
-//                        ((TreeNode<K,V>)xpn).prev = x;
-//                    moveRootToFront(tab, balanceInsertion(root, x));
-//                    return null;
-//                }
-//            }
-//        }
-//
-//        /**
-//         * Removes the given node, that must be present before this call.
-//         * This is messier than typical red-black deletion code because we
-//         * cannot swap the contents of an interior node with a leaf
-//         * successor that is pinned by "next" pointers that are accessible
-//         * independently during traversal. So instead we swap the tree
-//         * linkages. If the current tree appears to have too few nodes,
-//         * the bin is converted back to a plain bin. (The test triggers
-//         * somewhere between 2 and 6 nodes, depending on tree structure).
-//         */
-//        final void removeTreeNode(org.ObjectLayout.examples.util.SAHashMap<K,V> map, Node<K,V>[] tab,
-//                                  boolean movable) {
-//            int n;
-//            if (tab == null || (n = tab.length) == 0)
-//                return;
-//            int index = (n - 1) & hash;
-//            TreeNode<K,V> first = (TreeNode<K,V>)tab[index], root = first, rl;
-//            TreeNode<K,V> succ = (TreeNode<K,V>)next, pred = prev;
-//            if (pred == null)
-//                tab[index] = first = succ;
-//            else
-//                pred.next = succ;
-//            if (succ != null)
-//                succ.prev = pred;
-//            if (first == null)
-//                return;
-//            if (root.parent != null)
-//                root = root.root();
-//            if (root == null || root.right == null ||
-//                    (rl = root.left) == null || rl.left == null) {
-//                tab[index] = first.untreeify(map);  // too small
-//                return;
-//            }
-//            TreeNode<K,V> p = this, pl = left, pr = right, replacement;
-//            if (pl != null && pr != null) {
-//                TreeNode<K,V> s = pr, sl;
-//                while ((sl = s.left) != null) // find successor
-//                    s = sl;
-//                boolean c = s.red; s.red = p.red; p.red = c; // swap colors
-//                TreeNode<K,V> sr = s.right;
-//                TreeNode<K,V> pp = p.parent;
-//                if (s == pr) { // p was s's direct parent
-//                    p.parent = s;
-//                    s.right = p;
-//                }
-//                else {
-//                    TreeNode<K,V> sp = s.parent;
-//                    if ((p.parent = sp) != null) {
-//                        if (s == sp.left)
-//                            sp.left = p;
-//                        else
-//                            sp.right = p;
-//                    }
-//                    if ((s.right = pr) != null)
-//                        pr.parent = s;
-//                }
-//                p.left = null;
-//                if ((p.right = sr) != null)
-//                    sr.parent = p;
-//                if ((s.left = pl) != null)
-//                    pl.parent = s;
-//                if ((s.parent = pp) == null)
-//                    root = s;
-//                else if (p == pp.left)
-//                    pp.left = s;
-//                else
-//                    pp.right = s;
-//                if (sr != null)
-//                    replacement = sr;
-//                else
-//                    replacement = p;
-//            }
-//            else if (pl != null)
-//                replacement = pl;
-//            else if (pr != null)
-//                replacement = pr;
-//            else
-//                replacement = p;
-//            if (replacement != p) {
-//                TreeNode<K,V> pp = replacement.parent = p.parent;
-//                if (pp == null)
-//                    root = replacement;
-//                else if (p == pp.left)
-//                    pp.left = replacement;
-//                else
-//                    pp.right = replacement;
-//                p.left = p.right = p.parent = null;
-//            }
-//
-//            TreeNode<K,V> r = p.red ? root : balanceDeletion(root, replacement);
-//
-//            if (replacement == p) {  // detach
-//                TreeNode<K,V> pp = p.parent;
-//                p.parent = null;
-//                if (pp != null) {
-//                    if (p == pp.left)
-//                        pp.left = null;
-//                    else if (p == pp.right)
-//                        pp.right = null;
-//                }
-//            }
-//            if (movable)
-//                moveRootToFront(tab, r);
-//        }
-//
-//        /**
-//         * Splits nodes in a tree bin into lower and upper tree bins,
-//         * or untreeifies if now too small. Called only from resize;
-//         * see above discussion about split bits and indices.
-//         *
-//         * @param map the map
-//         * @param tab the table for recording bin heads
-//         * @param index the index of the table being split
-//         * @param bit the bit of hash to split on
-//         */
-//        final void split(org.ObjectLayout.examples.util.SAHashMap<K,V> map, Node<K,V>[] tab, int index, int bit) {
-//            TreeNode<K,V> b = this;
-//            // Relink into lo and hi lists, preserving order
-//            TreeNode<K,V> loHead = null, loTail = null;
-//            TreeNode<K,V> hiHead = null, hiTail = null;
-//            int lc = 0, hc = 0;
-//            for (TreeNode<K,V> e = b, next; e != null; e = next) {
-//                next = (TreeNode<K,V>)e.next;
-//                e.next = null;
-//                if ((e.hash & bit) == 0) {
-//                    if ((e.prev = loTail) == null)
-//                        loHead = e;
-//                    else
-//                        loTail.next = e;
-//                    loTail = e;
-//                    ++lc;
-//                }
-//                else {
-//                    if ((e.prev = hiTail) == null)
-//                        hiHead = e;
-//                    else
-//                        hiTail.next = e;
-//                    hiTail = e;
-//                    ++hc;
-//                }
-//            }
-//
-//            if (loHead != null) {
-//                if (lc <= UNTREEIFY_THRESHOLD)
-//                    tab[index] = loHead.untreeify(map);
-//                else {
-//                    tab[index] = loHead;
-//                    if (hiHead != null) // (else is already treeified)
-//                        loHead.treeify(tab);
-//                }
-//            }
-//            if (hiHead != null) {
-//                if (hc <= UNTREEIFY_THRESHOLD)
-//                    tab[index + bit] = hiHead.untreeify(map);
-//                else {
-//                    tab[index + bit] = hiHead;
-//                    if (loHead != null)
-//                        hiHead.treeify(tab);
-//                }
-//            }
-//        }
-//
-//        /* ------------------------------------------------------------ */
-//        // Red-black tree methods, all adapted from CLR
-//
-//        static <K,V> TreeNode<K,V> rotateLeft(TreeNode<K,V> root,
-//                                              TreeNode<K,V> p) {
-//            TreeNode<K,V> r, pp, rl;
-//            if (p != null && (r = p.right) != null) {
-//                if ((rl = p.right = r.left) != null)
-//                    rl.parent = p;
-//                if ((pp = r.parent = p.parent) == null)
-//                    (root = r).red = false;
-//                else if (pp.left == p)
-//                    pp.left = r;
-//                else
-//                    pp.right = r;
-//                r.left = p;
-//                p.parent = r;
-//            }
-//            return root;
-//        }
-//
-//        static <K,V> TreeNode<K,V> rotateRight(TreeNode<K,V> root,
-//                                               TreeNode<K,V> p) {
-//            TreeNode<K,V> l, pp, lr;
-//            if (p != null && (l = p.left) != null) {
-//                if ((lr = p.left = l.right) != null)
-//                    lr.parent = p;
-//                if ((pp = l.parent = p.parent) == null)
-//                    (root = l).red = false;
-//                else if (pp.right == p)
-//                    pp.right = l;
-//                else
-//                    pp.left = l;
-//                l.right = p;
-//                p.parent = l;
-//            }
-//            return root;
-//        }
-//
-//        static <K,V> TreeNode<K,V> balanceInsertion(TreeNode<K,V> root,
-//                                                    TreeNode<K,V> x) {
-//            x.red = true;
-//            for (TreeNode<K,V> xp, xpp, xppl, xppr;;) {
-//                if ((xp = x.parent) == null) {
-//                    x.red = false;
-//                    return x;
-//                }
-//                else if (!xp.red || (xpp = xp.parent) == null)
-//                    return root;
-//                if (xp == (xppl = xpp.left)) {
-//                    if ((xppr = xpp.right) != null && xppr.red) {
-//                        xppr.red = false;
-//                        xp.red = false;
-//                        xpp.red = true;
-//                        x = xpp;
-//                    }
-//                    else {
-//                        if (x == xp.right) {
-//                            root = rotateLeft(root, x = xp);
-//                            xpp = (xp = x.parent) == null ? null : xp.parent;
-//                        }
-//                        if (xp != null) {
-//                            xp.red = false;
-//                            if (xpp != null) {
-//                                xpp.red = true;
-//                                root = rotateRight(root, xpp);
-//                            }
-//                        }
-//                    }
-//                }
-//                else {
-//                    if (xppl != null && xppl.red) {
-//                        xppl.red = false;
-//                        xp.red = false;
-//                        xpp.red = true;
-//                        x = xpp;
-//                    }
-//                    else {
-//                        if (x == xp.left) {
-//                            root = rotateRight(root, x = xp);
-//                            xpp = (xp = x.parent) == null ? null : xp.parent;
-//                        }
-//                        if (xp != null) {
-//                            xp.red = false;
-//                            if (xpp != null) {
-//                                xpp.red = true;
-//                                root = rotateLeft(root, xpp);
-//                            }
-//                        }
-//                    }
-//                }
-//            }
-//        }
-//
-//        static <K,V> TreeNode<K,V> balanceDeletion(TreeNode<K,V> root,
-//                                                   TreeNode<K,V> x) {
-//            for (TreeNode<K,V> xp, xpl, xpr;;)  {
-//                if (x == null || x == root)
-//                    return root;
-//                else if ((xp = x.parent) == null) {
-//                    x.red = false;
-//                    return x;
-//                }
-//                else if (x.red) {
-//                    x.red = false;
-//                    return root;
-//                }
-//                else if ((xpl = xp.left) == x) {
-//                    if ((xpr = xp.right) != null && xpr.red) {
-//                        xpr.red = false;
-//                        xp.red = true;
-//                        root = rotateLeft(root, xp);
-//                        xpr = (xp = x.parent) == null ? null : xp.right;
-//                    }
-//                    if (xpr == null)
-//                        x = xp;
-//                    else {
-//                        TreeNode<K,V> sl = xpr.left, sr = xpr.right;
-//                        if ((sr == null || !sr.red) &&
-//                                (sl == null || !sl.red)) {
-//                            xpr.red = true;
-//                            x = xp;
-//                        }
-//                        else {
-//                            if (sr == null || !sr.red) {
-//                                if (sl != null)
-//                                    sl.red = false;
-//                                xpr.red = true;
-//                                root = rotateRight(root, xpr);
-//                                xpr = (xp = x.parent) == null ?
-//                                        null : xp.right;
-//                            }
-//                            if (xpr != null) {
-//                                xpr.red = (xp == null) ? false : xp.red;
-//                                if ((sr = xpr.right) != null)
-//                                    sr.red = false;
-//                            }
-//                            if (xp != null) {
-//                                xp.red = false;
-//                                root = rotateLeft(root, xp);
-//                            }
-//                            x = root;
-//                        }
-//                    }
-//                }
-//                else { // symmetric
-//                    if (xpl != null && xpl.red) {
-//                        xpl.red = false;
-//                        xp.red = true;
-//                        root = rotateRight(root, xp);
-//                        xpl = (xp = x.parent) == null ? null : xp.left;
-//                    }
-//                    if (xpl == null)
-//                        x = xp;
-//                    else {
-//                        TreeNode<K,V> sl = xpl.left, sr = xpl.right;
-//                        if ((sl == null || !sl.red) &&
-//                                (sr == null || !sr.red)) {
-//                            xpl.red = true;
-//                            x = xp;
-//                        }
-//                        else {
-//                            if (sl == null || !sl.red) {
-//                                if (sr != null)
-//                                    sr.red = false;
-//                                xpl.red = true;
-//                                root = rotateLeft(root, xpl);
-//                                xpl = (xp = x.parent) == null ?
-//                                        null : xp.left;
-//                            }
-//                            if (xpl != null) {
-//                                xpl.red = (xp == null) ? false : xp.red;
-//                                if ((sl = xpl.left) != null)
-//                                    sl.red = false;
-//                            }
-//                            if (xp != null) {
-//                                xp.red = false;
-//                                root = rotateRight(root, xp);
-//                            }
-//                            x = root;
-//                        }
-//                    }
-//                }
-//            }
-//        }
-//
-//        /**
-//         * Recursive invariant check
-//         */
-//        static <K,V> boolean checkInvariants(TreeNode<K,V> t) {
-//            TreeNode<K,V> tp = t.parent, tl = t.left, tr = t.right,
-//                    tb = t.prev, tn = (TreeNode<K,V>)t.next;
-//            if (tb != null && tb.next != t)
-//                return false;
-//            if (tn != null && tn.prev != t)
-//                return false;
-//            if (tp != null && t != tp.left && t != tp.right)
-//                return false;
-//            if (tl != null && (tl.parent != t || tl.hash > t.hash))
-//                return false;
-//            if (tr != null && (tr.parent != t || tr.hash < t.hash))
-//                return false;
-//            if (t.red && tl != null && tl.red && tr != null && tr.red)
-//                return false;
-//            if (tl != null && !checkInvariants(tl))
-//                return false;
-//            if (tr != null && !checkInvariants(tr))
-//                return false;
-//            return true;
-//        }
-//    }
+    /* ------------------------------------------------------------ */
+    // Tree bins
+
+    /**
+     * Entry for Tree bins. Since the first node of each bin is embedded
+     * in the table, and is a plain Node, tree bins keep the first node
+     * in the table and hold the rest of their nodes in a tree, whose
+     * root is always the first overflow node (the next of the embedded
+     * first node).
+     */
+    static final class TreeNode<K,V> extends Node<K,V> {
+        TreeNode<K,V> parent;  // red-black tree links
+        TreeNode<K,V> left;
+        TreeNode<K,V> right;
+        TreeNode<K,V> prev;    // needed to unlink next upon deletion
+        boolean red;
+        TreeNode(int hash, K key, V val, Node<K,V> next) {
+            super(hash, key, val, next);
+        }
+
+        /**
+         * Returns root of tree containing this node.
+         */
+        final TreeNode<K,V> root() {
+            for (TreeNode<K,V> r = this, p;;) {
+                if ((p = r.parent) == null)
+                    return r;
+                r = p;
+            }
+        }
+
+        /**
+         * Ensures that the given root is the first overflow node of its
+         * bin.
+         */
+        static <K,V> void moveRootToFront(BinTable<K,V> tab, TreeNode<K,V> root) {
+            int n;
+            if (root != null && tab != null && (n = (int)tab.getLength()) > 0) {
+                int index = (n - 1) & root.hash;
+                Node<K,V> bin = tab.get(index);
+                TreeNode<K,V> first = (TreeNode<K,V>)bin.next;
+                if (root != first) {
+                    Node<K,V> rn;
+                    bin.next = root;
+                    TreeNode<K,V> rp = root.prev;
+                    if ((rn = root.next) != null)
+                        ((TreeNode<K,V>)rn).prev = rp;
+                    if (rp != null)
+                        rp.next = rn;
+                    if (first != null)
+                        first.prev = root;
+                    root.next = first;
+                    root.prev = null;
+                }
+                assert checkInvariants(root);
+            }
+        }
+
+        /**
+         * Finds the node starting at root p with the given hash and key.
+         * The kc argument caches comparableClassFor(key) upon first use
+         * comparing keys.
+         */
+        final TreeNode<K,V> find(int h, Object k, Class<?> kc) {
+            TreeNode<K,V> p = this;
+            do {
+                int ph, dir; K pk;
+                TreeNode<K,V> pl = p.left, pr = p.right, q;
+                if ((ph = p.hash) > h)
+                    p = pl;
+                else if (ph < h)
+                    p = pr;
+                else if ((pk = p.key) == k || (k != null && k.equals(pk)))
+                    return p;
+                else if (pl == null)
+                    p = pr;
+                else if (pr == null)
+                    p = pl;
+                else if ((kc != null ||
+                        (kc = comparableClassFor(k)) != null) &&
+                        (dir = compareComparables(kc, k, pk)) != 0)
+                    p = (dir < 0) ? pl : pr;
+                else if ((q = pr.find(h, k, kc)) != null)
+                    return q;
+                else
+                    p = pl;
+            } while (p != null);
+            return null;
+        }
+
+        /**
+         * Calls find for root node.
+         */
+        final TreeNode<K,V> getTreeNode(int h, Object k) {
+            return ((parent != null) ? root() : this).find(h, k, null);
+        }
+
+        /**
+         * Tie-breaking utility for ordering insertions when equal
+         * hashCodes and non-comparable. We don't require a total
+         * order, just a consistent insertion rule to maintain
+         * equivalence across rebalancings. Tie-breaking further than
+         * necessary simplifies testing a bit.
+         */
+        static int tieBreakOrder(Object a, Object b) {
+            int d;
+            if (a == null || b == null ||
+                    (d = a.getClass().getName().
+                            compareTo(b.getClass().getName())) == 0)
+                d = (System.identityHashCode(a) <= System.identityHashCode(b) ?
+                        -1 : 1);
+            return d;
+        }
+
+        /**
+         * Forms tree of the nodes linked from this node.
+         * @return root of tree
+         */
+        final void treeify(BinTable<K,V> tab) {
+            TreeNode<K,V> root = null;
+            for (TreeNode<K,V> x = this, next; x != null; x = next) {
+                next = (TreeNode<K,V>)x.next;
+                x.left = x.right = null;
+                if (root == null) {
+                    x.parent = null;
+                    x.red = false;
+                    root = x;
+                }
+                else {
+                    K k = x.key;
+                    int h = x.hash;
+                    Class<?> kc = null;
+                    for (TreeNode<K,V> p = root;;) {
+                        int dir, ph;
+                        K pk = p.key;
+                        if ((ph = p.hash) > h)
+                            dir = -1;
+                        else if (ph < h)
+                            dir = 1;
+                        else if ((kc == null &&
+                                (kc = comparableClassFor(k)) == null) ||
+                                (dir = compareComparables(kc, k, pk)) == 0)
+                            dir = tieBreakOrder(k, pk);
+
+                        TreeNode<K,V> xp = p;
+                        if ((p = (dir <= 0) ? p.left : p.right) == null) {
+                            x.parent = xp;
+                            if (dir <= 0)
+                                xp.left = x;
+                            else
+                                xp.right = x;
+                            root = balanceInsertion(root, x);
+                            break;
+                        }
+                    }
+                }
+            }
+            moveRootToFront(tab, root);
+        }
+
+        /**
+         * Returns a list of non-TreeNodes replacing those linked from
+         * this node.
+         */
+        final Node<K,V> untreeify(SAHashMap<K,V> map) {
+            Node<K,V> hd = null, tl = null;
+            for (Node<K,V> q = this; q != null; q = q.next) {
+                Node<K,V> p = map.replacementNode(q, null);
+                if (tl == null)
+                    hd = p;
+                else
+                    tl.next = p;
+                tl = p;
+            }
+            return hd;
+        }
+
+        /**
+         * Tree version of putVal.
+         */
+        final TreeNode<K,V> putTreeVal(SAHashMap<K,V> map, BinTable<K,V> tab,
+                                       int h, K k, V v) {
+            Class<?> kc = null;
+            boolean searched = false;
+            TreeNode<K,V> root = (parent != null) ? root() : this;
+            for (TreeNode<K,V> p = root;;) {
+                int dir, ph; K pk;
+                if ((ph = p.hash) > h)
+                    dir = -1;
+                else if (ph < h)
+                    dir = 1;
+                else if ((pk = p.key) == k || (k != null && k.equals(pk)))
+                    return p;
+                else if ((kc == null &&
+                        (kc = comparableClassFor(k)) == null) ||
+                        (dir = compareComparables(kc, k, pk)) == 0) {
+                    if (!searched) {
+                        TreeNode<K,V> q, ch;
+                        searched = true;
+                        if (((ch = p.left) != null &&
+                                (q = ch.find(h, k, kc)) != null) ||
+                                ((ch = p.right) != null &&
+                                        (q = ch.find(h, k, kc)) != null))
+                            return q;
+                    }
+                    dir = tieBreakOrder(k, pk);
+                }
+
+                TreeNode<K,V> xp = p;
+                if ((p = (dir <= 0) ? p.left : p.right) == null) {
+                    Node<K,V> xpn = xp.next;
+                    TreeNode<K,V> x = map.newTreeNode(h, k, v, xpn);
+                    if (dir <= 0)
+                        xp.left = x;
+                    else
+                        xp.right = x;
+                    xp.next = x;
+                    x.parent = x.prev = xp;
+                    if (xpn != null)
+                        ((TreeNode<K,V>)xpn).prev = x;
+                    moveRootToFront(tab, balanceInsertion(root, x));
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Removes the given node, that must be present before this call.
+         * This is messier than typical red-black deletion code because we
+         * cannot swap the contents of an interior node with a leaf
+         * successor that is pinned by "next" pointers that are accessible
+         * independently during traversal. So instead we swap the tree
+         * linkages. If the current tree appears to have too few nodes,
+         * the bin is converted back to a plain bin. (The test triggers
+         * somewhere between 2 and 6 nodes, depending on tree structure).
+         */
+        final void removeTreeNode(SAHashMap<K,V> map, BinTable<K,V> tab,
+                                  boolean movable) {
+            int n;
+            if (tab == null || (n = (int)tab.getLength()) == 0)
+                return;
+            int index = (n - 1) & hash;
+            Node<K,V> bin = tab.get(index);
+            TreeNode<K,V> first = (TreeNode<K,V>)bin.next, root = first, rl;
+            TreeNode<K,V> succ = (TreeNode<K,V>)next, pred = prev;
+            if (pred == null)
+                bin.next = first = succ;
+            else
+                pred.next = succ;
+            if (succ != null)
+                succ.prev = pred;
+            if (first == null)
+                return;
+            if (root.parent != null)
+                root = root.root();
+            if (root == null || root.right == null ||
+                    (rl = root.left) == null || rl.left == null) {
+                bin.next = first.untreeify(map);  // too small
+                return;
+            }
+            TreeNode<K,V> p = this, pl = left, pr = right, replacement;
+            if (pl != null && pr != null) {
+                TreeNode<K,V> s = pr, sl;
+                while ((sl = s.left) != null) // find successor
+                    s = sl;
+                boolean c = s.red; s.red = p.red; p.red = c; // swap colors
+                TreeNode<K,V> sr = s.right;
+                TreeNode<K,V> pp = p.parent;
+                if (s == pr) { // p was s's direct parent
+                    p.parent = s;
+                    s.right = p;
+                }
+                else {
+                    TreeNode<K,V> sp = s.parent;
+                    if ((p.parent = sp) != null) {
+                        if (s == sp.left)
+                            sp.left = p;
+                        else
+                            sp.right = p;
+                    }
+                    if ((s.right = pr) != null)
+                        pr.parent = s;
+                }
+                p.left = null;
+                if ((p.right = sr) != null)
+                    sr.parent = p;
+                if ((s.left = pl) != null)
+                    pl.parent = s;
+                if ((s.parent = pp) == null)
+                    root = s;
+                else if (p == pp.left)
+                    pp.left = s;
+                else
+                    pp.right = s;
+                if (sr != null)
+                    replacement = sr;
+                else
+                    replacement = p;
+            }
+            else if (pl != null)
+                replacement = pl;
+            else if (pr != null)
+                replacement = pr;
+            else
+                replacement = p;
+            if (replacement != p) {
+                TreeNode<K,V> pp = replacement.parent = p.parent;
+                if (pp == null)
+                    root = replacement;
+                else if (p == pp.left)
+                    pp.left = replacement;
+                else
+                    pp.right = replacement;
+                p.left = p.right = p.parent = null;
+            }
+
+            TreeNode<K,V> r = p.red ? root : balanceDeletion(root, replacement);
+
+            if (replacement == p) {  // detach
+                TreeNode<K,V> pp = p.parent;
+                p.parent = null;
+                if (pp != null) {
+                    if (p == pp.left)
+                        pp.left = null;
+                    else if (p == pp.right)
+                        pp.right = null;
+                }
+            }
+            if (movable)
+                moveRootToFront(tab, r);
+        }
+
+        /**
+         * Splits nodes in a tree bin into lower and upper tree bins,
+         * or untreeifies if now too small. Called only from resize;
+         * see above discussion about split bits and indices. The first
+         * node of the bin, embedded in the old table, becomes the first
+         * node of its new bin. The first node of the other new bin is
+         * the first of its tree nodes, whose contents are moved into
+         * the embedded node.
+         *
+         * @param map the map
+         * @param tab the table for recording bin heads, whose bins at
+         *            index and index + bit must be empty
+         * @param index the index of the table being split
+         * @param bit the bit of hash to split on
+         * @param first the first node of the bin
+         */
+        final void split(SAHashMap<K,V> map, BinTable<K,V> tab, int index, int bit,
+                         Node<K,V> first) {
+            TreeNode<K,V> b = this;
+            // Relink into lo and hi lists, preserving order
+            TreeNode<K,V> loHead = null, loTail = null;
+            TreeNode<K,V> hiHead = null, hiTail = null;
+            int lc = 0, hc = 0;
+            for (TreeNode<K,V> e = b, next; e != null; e = next) {
+                next = (TreeNode<K,V>)e.next;
+                e.next = null;
+                if ((e.hash & bit) == 0) {
+                    if ((e.prev = loTail) == null)
+                        loHead = e;
+                    else
+                        loTail.next = e;
+                    loTail = e;
+                    ++lc;
+                }
+                else {
+                    if ((e.prev = hiTail) == null)
+                        hiHead = e;
+                    else
+                        hiTail.next = e;
+                    hiTail = e;
+                    ++hc;
+                }
+            }
+
+            tab.bin(index + (first.hash & bit)).setContents(first.hash, first.key, first.value, null);
+            if (loHead != null)
+                fillBin(map, tab, tab.bin(index), loHead, lc);
+            if (hiHead != null)
+                fillBin(map, tab, tab.bin(index + bit), hiHead, hc);
+        }
+
+        /**
+         * Links the list of count tree nodes starting at hd into the
+         * given bin of tab, as a tree or as plain nodes depending on
+         * its length, moving the first of them into the bin's embedded
+         * node if the bin is empty.
+         */
+        static <K,V> void fillBin(SAHashMap<K,V> map, BinTable<K,V> tab, Node<K,V> bin,
+                                  TreeNode<K,V> hd, int count) {
+            if (bin.isSentinel()) {
+                bin.setContents(hd.hash, hd.key, hd.value, null);
+                if ((hd = (TreeNode<K,V>)hd.next) == null)
+                    return;
+                hd.prev = null;
+                --count;
+            }
+            if (count <= UNTREEIFY_THRESHOLD)
+                bin.next = hd.untreeify(map);
+            else {
+                bin.next = hd;
+                hd.treeify(tab);
+            }
+        }
+
+        /* ------------------------------------------------------------ */
+        // Red-black tree methods, all adapted from CLR
+
+        static <K,V> TreeNode<K,V> rotateLeft(TreeNode<K,V> root,
+                                              TreeNode<K,V> p) {
+            TreeNode<K,V> r, pp, rl;
+            if (p != null && (r = p.right) != null) {
+                if ((rl = p.right = r.left) != null)
+                    rl.parent = p;
+                if ((pp = r.parent = p.parent) == null)
+                    (root = r).red = false;
+                else if (pp.left == p)
+                    pp.left = r;
+                else
+                    pp.right = r;
+                r.left = p;
+                p.parent = r;
+            }
+            return root;
+        }
+
+        static <K,V> TreeNode<K,V> rotateRight(TreeNode<K,V> root,
+                                               TreeNode<K,V> p) {
+            TreeNode<K,V> l, pp, lr;
+            if (p != null && (l = p.left) != null) {
+                if ((lr = p.left = l.right) != null)
+                    lr.parent = p;
+                if ((pp = l.parent = p.parent) == null)
+                    (root = l).red = false;
+                else if (pp.right == p)
+                    pp.right = l;
+                else
+                    pp.left = l;
+                l.right = p;
+                p.parent = l;
+            }
+            return root;
+        }
+
+        static <K,V> TreeNode<K,V> balanceInsertion(TreeNode<K,V> root,
+                                                    TreeNode<K,V> x) {
+            x.red = true;
+            for (TreeNode<K,V> xp, xpp, xppl, xppr;;) {
+                if ((xp = x.parent) == null) {
+                    x.red = false;
+                    return x;
+                }
+                else if (!xp.red || (xpp = xp.parent) == null)
+                    return root;
+                if (xp == (xppl = xpp.left)) {
+                    if ((xppr = xpp.right) != null && xppr.red) {
+                        xppr.red = false;
+                        xp.red = false;
+                        xpp.red = true;
+                        x = xpp;
+                    }
+                    else {
+                        if (x == xp.right) {
+                            root = rotateLeft(root, x = xp);
+                            xpp = (xp = x.parent) == null ? null : xp.parent;
+                        }
+                        if (xp != null) {
+                            xp.red = false;
+                            if (xpp != null) {
+                                xpp.red = true;
+                                root = rotateRight(root, xpp);
+                            }
+                        }
+                    }
+                }
+                else {
+                    if (xppl != null && xppl.red) {
+                        xppl.red = false;
+                        xp.red = false;
+                        xpp.red = true;
+                        x = xpp;
+                    }
+                    else {
+                        if (x == xp.left) {
+                            root = rotateRight(root, x = xp);
+                            xpp = (xp = x.parent) == null ? null : xp.parent;
+                        }
+                        if (xp != null) {
+                            xp.red = false;
+                            if (xpp != null) {
+                                xpp.red = true;
+                                root = rotateLeft(root, xpp);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        static <K,V> TreeNode<K,V> balanceDeletion(TreeNode<K,V> root,
+                                                   TreeNode<K,V> x) {
+            for (TreeNode<K,V> xp, xpl, xpr;;)  {
+                if (x == null || x == root)
+                    return root;
+                else if ((xp = x.parent) == null) {
+                    x.red = false;
+                    return x;
+                }
+                else if (x.red) {
+                    x.red = false;
+                    return root;
+                }
+                else if ((xpl = xp.left) == x) {
+                    if ((xpr = xp.right) != null && xpr.red) {
+                        xpr.red = false;
+                        xp.red = true;
+                        root = rotateLeft(root, xp);
+                        xpr = (xp = x.parent) == null ? null : xp.right;
+                    }
+                    if (xpr == null)
+                        x = xp;
+                    else {
+                        TreeNode<K,V> sl = xpr.left, sr = xpr.right;
+                        if ((sr == null || !sr.red) &&
+                                (sl == null || !sl.red)) {
+                            xpr.red = true;
+                            x = xp;
+                        }
+                        else {
+                            if (sr == null || !sr.red) {
+                                if (sl != null)
+                                    sl.red = false;
+                                xpr.red = true;
+                                root = rotateRight(root, xpr);
+                                xpr = (xp = x.parent) == null ?
+                                        null : xp.right;
+                            }
+                            if (xpr != null) {
+                                xpr.red = (xp == null) ? false : xp.red;
+                                if ((sr = xpr.right) != null)
+                                    sr.red = false;
+                            }
+                            if (xp != null) {
+                                xp.red = false;
+                                root = rotateLeft(root, xp);
+                            }
+                            x = root;
+                        }
+                    }
+                }
+                else { // symmetric
+                    if (xpl != null && xpl.red) {
+                        xpl.red = false;
+                        xp.red = true;
+                        root = rotateRight(root, xp);
+                        xpl = (xp = x.parent) == null ? null : xp.left;
+                    }
+                    if (xpl == null)
+                        x = xp;
+                    else {
+                        TreeNode<K,V> sl = xpl.left, sr = xpl.right;
+                        if ((sl == null || !sl.red) &&
+                                (sr == null || !sr.red)) {
+                            xpl.red = true;
+                            x = xp;
+                        }
+                        else {
+                            if (sl == null || !sl.red) {
+                                if (sr != null)
+                                    sr.red = false;
+                                xpl.red = true;
+                                root = rotateLeft(root, xpl);
+                                xpl = (xp = x.parent) == null ?
+                                        null : xp.left;
+                            }
+                            if (xpl != null) {
+                                xpl.red = (xp == null) ? false : xp.red;
+                                if ((sl = xpl.left) != null)
+                                    sl.red = false;
+                            }
+                            if (xp != null) {
+                                xp.red = false;
+                                root = rotateRight(root, xp);
+                            }
+                            x = root;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Recursive invariant check
+         */
+        static <K,V> boolean checkInvariants(TreeNode<K,V> t) {
+            TreeNode<K,V> tp = t.parent, tl = t.left, tr = t.right,
+                    tb = t.prev, tn = (TreeNode<K,V>)t.next;
+            if (tb != null && tb.next != t)
+                return false;
+            if (tn != null && tn.prev != t)
+                return false;
+            if (tp != null && t != tp.left && t != tp.right)
+                return false;
+            if (tl != null && (tl.parent != t || tl.hash > t.hash))
+                return false;
+            if (tr != null && (tr.parent != t || tr.hash < t.hash))
+                return false;
+            if (t.red && tl != null && tl.red && tr != null && tr.red)
+                return false;
+            if (tl != null && !checkInvariants(tl))
+                return false;
+            if (tr != null && !checkInvariants(tr))
+                return false;
+            return true;
+        }
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,387 @@
+package org.ObjectLayout.examples.util;
+/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.ObjectLayout.StructuredArray;
+
+/**
+ * An open addressing hash map with primitive <code>long</code> keys, whose entries are stored inline
+ * in a {@link StructuredArray} of slots.
+ * <p>
+ * Values are not separate objects referenced from the map: each slot is an instance of a user supplied
+ * subclass of {@link Slot}, and the value state associated with a key lives in the fields of that
+ * subclass. Keys are never boxed, and collisions are resolved with linear probing, such that a lookup
+ * examines consecutive slots in the table, with no chain pointers to follow. On JVMs that lay out
+ * StructuredArray elements flat, a lookup that hits its home slot costs a single cache line probe.
+ * <p>
+ * Since slots are stored inline, {@link #get} and {@link #put} return references to the slots themselves,
+ * and values are read and modified in place:
+ * <blockquote><pre>
+ * public static class OrderState extends SALongHashMap.Slot {
+ *     long quantity;
+ *     double price;
+ * }
+ *
+ * SALongHashMap&lt;OrderState&gt; orders = new SALongHashMap&lt;&gt;(OrderState.class);
+ * orders.put(orderId).quantity = 100;
+ * OrderState state = orders.get(orderId);
+ * </pre></blockquote>
+ * A slot reference is only associated with its key until the next structural modification of the map
+ * (an insertion of a new key, a removal, or a {@link #clear}), since such modifications may move entries
+ * between slots. Slot references should not be retained across structural modifications.
+ * <p>
+ * Removal uses backward shift deletion rather than tombstones, keeping probe sequences short under
+ * mixes of insertions and removals. Entries are moved between slots with
+ * {@link StructuredArray#shallowCopy}, which copies the fields declared by the slot class. Slot classes
+ * should therefore extend {@link Slot} directly, and should not declare final fields.
+ * <p>
+ * This class is not synchronized.
+ *
+ * @param <S> the slot class, holding the value state associated with each key
+ */
+public class SALongHashMap<S extends SALongHashMap.Slot> implements Iterable<S> {
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The base class of all slots in the table. Subclasses declare the fields that hold the value state
+     * associated with each key, and must have a default constructor.
+     */
+    public static class Slot {
+        long key;
+        boolean occupied;
+
+        /**
+         * Get the key this slot is associated with
+         *
+         * @return the key this slot is associated with
+         */
+        public final long getKey() {
+            return key;
+        }
+
+        /**
+         * Reset the value state held in this slot. Called when a slot is vacated, such that a slot handed
+         * out for a newly inserted key holds no state left over from a previous key. Slots holding references
+         * to other objects should clear them here, to avoid retaining them. The default implementation does
+         * nothing.
+         */
+        protected void clearValue() {
+        }
+    }
+
+    private final MethodHandles.Lookup lookup;
+    private final Class<S> slotClass;
+    private final float loadFactor;
+
+    private StructuredArray<S> table;
+    private long mask;
+    private long threshold;
+    private long size;
+    private int modCount;
+
+    /**
+     * Constructs an empty map with the default initial capacity (16) and the default load factor (0.75).
+     *
+     * @param slotClass the slot class (must have a public default constructor)
+     */
+    public SALongHashMap(final Class<S> slotClass) {
+        this(null, slotClass, DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map with the given initial capacity and the default load factor (0.75).
+     *
+     * @param slotClass the slot class (must have a public default constructor)
+     * @param initialCapacity the initial capacity (rounded up to a power of two)
+     */
+    public SALongHashMap(final Class<S> slotClass, final long initialCapacity) {
+        this(null, slotClass, initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map with the given initial capacity and load factor.
+     *
+     * @param lookup The lookup object to use for accessing the slot class' default constructor
+     *               (may be null if the constructor is public)
+     * @param slotClass the slot class
+     * @param initialCapacity the initial capacity (rounded up to a power of two)
+     * @param loadFactor the load factor, above which the table is doubled in size (must be in (0, 1))
+     * @throws IllegalArgumentException if the initial capacity is negative or the load factor is not in (0, 1)
+     */
+    public SALongHashMap(final MethodHandles.Lookup lookup,
+                         final Class<S> slotClass,
+                         final long initialCapacity,
+                         final float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        if (!(loadFactor > 0) || !(loadFactor < 1)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.lookup = lookup;
+        this.slotClass = slotClass;
+        this.loadFactor = loadFactor;
+        allocateTable(tableSizeFor(initialCapacity));
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this map contains no key-value mappings.
+     *
+     * @return <tt>true</tt> if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of slots in the table.
+     *
+     * @return the number of slots in the table
+     */
+    public long capacity() {
+        return table.getLength();
+    }
+
+    /**
+     * Returns the slot associated with the given key, or null if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated slot is to be returned
+     * @return the slot associated with the key, or null if this map contains no mapping for the key
+     */
+    public S get(final long key) {
+        final StructuredArray<S> tab = table;
+        for (long index = homeIndexOf(key); ; index = (index + 1) & mask) {
+            final S slot = tab.get(index);
+            if (!slot.occupied) {
+                return null;
+            }
+            if (slot.key == key) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if this map contains a mapping for the given key.
+     *
+     * @param key the key whose presence in this map is to be tested
+     * @return <tt>true</tt> if this map contains a mapping for the given key
+     */
+    public boolean containsKey(final long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns the slot associated with the given key, inserting a new mapping (with a cleared slot) if
+     * the map contains no mapping for the key. The value state of the slot is then set in place.
+     *
+     * @param key the key whose associated slot is to be returned
+     * @return the slot associated with the key
+     */
+    public S put(final long key) {
+        for (long index = homeIndexOf(key); ; index = (index + 1) & mask) {
+            final S slot = table.get(index);
+            if (!slot.occupied) {
+                if (size + 1 > threshold) {
+                    resize();
+                    return put(key);
+                }
+                slot.key = key;
+                slot.occupied = true;
+                size++;
+                modCount++;
+                return slot;
+            }
+            if (slot.key == key) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping for the given key from this map if present.
+     *
+     * @param key the key whose mapping is to be removed from the map
+     * @return <tt>true</tt> if the map contained a mapping for the key
+     */
+    public boolean remove(final long key) {
+        final StructuredArray<S> tab = table;
+        long index = homeIndexOf(key);
+        for (; ; index = (index + 1) & mask) {
+            final S slot = tab.get(index);
+            if (!slot.occupied) {
+                return false;
+            }
+            if (slot.key == key) {
+                break;
+            }
+        }
+
+        // Backward shift deletion: move subsequent entries of the probe run into the hole, unless
+        // doing so would move an entry to before its home index:
+        long hole = index;
+        for (long next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            final S slot = tab.get(next);
+            if (!slot.occupied) {
+                break;
+            }
+            final long home = homeIndexOf(slot.key);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                moveSlot(tab, next, tab, hole);
+                hole = next;
+            }
+        }
+        final S vacated = tab.get(hole);
+        vacated.occupied = false;
+        vacated.clearValue();
+        size--;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        if (size > 0) {
+            for (final S slot : table) {
+                if (slot.occupied) {
+                    slot.occupied = false;
+                    slot.clearValue();
+                }
+            }
+            size = 0;
+        }
+        modCount++;
+    }
+
+    /**
+     * Returns an iterator over the occupied slots in this map, in table order. The iterator does not
+     * support removal.
+     *
+     * @return an iterator over the occupied slots in this map
+     */
+    @Override
+    public Iterator<S> iterator() {
+        return new SlotIterator();
+    }
+
+    private class SlotIterator implements Iterator<S> {
+        private final StructuredArray<S> tab = table;
+        private final int expectedModCount = modCount;
+        private long nextIndex = advanceFrom(0);
+
+        private long advanceFrom(long index) {
+            final long length = tab.getLength();
+            while ((index < length) && !tab.get(index).occupied) {
+                index++;
+            }
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < tab.getLength();
+        }
+
+        @Override
+        public S next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final S slot = tab.get(nextIndex);
+            nextIndex = advanceFrom(nextIndex + 1);
+            return slot;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+    }
+
+    /* ---------------- Internals -------------- */
+
+    /**
+     * Spreads the key bits with a multiplicative (Fibonacci) hash, such that sequential keys
+     * do not fill long runs of consecutive slots.
+     */
+    static long hash(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private long homeIndexOf(final long key) {
+        return hash(key) & mask;
+    }
+
+    static long tableSizeFor(final long capacity) {
+        long n = Math.max(capacity, 2) - 1;
+        return Long.highestOneBit(n) << 1;
+    }
+
+    private void allocateTable(final long capacity) {
+        table = StructuredArray.newInstance(lookup, slotClass, capacity);
+        mask = capacity - 1;
+        threshold = (long) (capacity * (double) loadFactor);
+        if (threshold >= capacity) {
+            threshold = capacity - 1;
+        }
+    }
+
+    private void resize() {
+        final StructuredArray<S> oldTable = table;
+        allocateTable(oldTable.getLength() << 1);
+        final StructuredArray<S> newTable = table;
+        final long length = oldTable.getLength();
+        for (long i = 0; i < length; i++) {
+            final S slot = oldTable.get(i);
+            if (slot.occupied) {
+                long index = homeIndexOf(slot.key);
+                while (newTable.get(index).occupied) {
+                    index = (index + 1) & mask;
+                }
+                moveSlot(oldTable, i, newTable, index);
+            }
+        }
+        modCount++;
+    }
+
+    private static <S extends Slot> void moveSlot(final StructuredArray<S> src, final long srcIndex,
+                                                  final StructuredArray<S> dst, final long dstIndex) {
+        // shallowCopy copies the fields declared by the slot class, the Slot fields are copied here:
+        StructuredArray.shallowCopy(src, srcIndex, dst, dstIndex, 1);
+        final S from = src.get(srcIndex);
+        final S to = dst.get(dstIndex);
+        to.key = from.key;
+        to.occupied = true;
+    }
+}
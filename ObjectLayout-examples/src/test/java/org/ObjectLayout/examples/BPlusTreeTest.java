@@ -6,6 +6,7 @@ package org.ObjectLayout.examples;/*
 
 import static java.util.Arrays.sort;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.Random;
@@ -66,6 +67,80 @@ public class BPlusTreeTest {
         }
     }
 
+    @Test
+    public void scansSubMapRanges() {
+        int[] values = nextInts(new Random(9), 100000, new int[5000]);
+        putAll(tree, values);
+        TreeMap<Integer, Integer> treeMap = new TreeMap<Integer, Integer>();
+        putAll(treeMap, values);
+
+        BPlusTree<Integer, Integer>.Cursor cursor = tree.cursor();
+        Random random = new Random(10);
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(110000) - 5000;
+            int to = from + random.nextInt(20000);
+            cursor.reset(from, to);
+            for (Entry<Integer, Integer> entry : treeMap.subMap(from, to).entrySet()) {
+                Assert.assertThat(cursor.next(), CoreMatchers.is(true));
+                Assert.assertThat(cursor.getKey(), CoreMatchers.is(entry.getKey()));
+                Assert.assertThat(cursor.getValue(), CoreMatchers.is(entry.getValue()));
+            }
+            Assert.assertThat(cursor.next(), CoreMatchers.is(false));
+            Assert.assertThat(cursor.next(), CoreMatchers.is(false));
+        }
+
+        BPlusTree<Integer, Integer>.Cursor all = tree.subMap(null, null);
+        int count = 0;
+        while (all.next()) {
+            all.setValue(-all.getKey());
+            count++;
+        }
+        Assert.assertThat(count, CoreMatchers.is(treeMap.size()));
+        Assert.assertThat(tree.get(values[0]), CoreMatchers.is(-values[0]));
+    }
+
+    @Test
+    public void bulkLoadsSortedEntries() {
+        for (int length : new int[] { 0, 1, 8, 9, 12, 81, 1000, 12345 }) {
+            TreeMap<Integer, Integer> treeMap = new TreeMap<Integer, Integer>();
+            for (int i = 0; i < length; i++) {
+                treeMap.put(i * 2, i);
+            }
+            BPlusTree<Integer, Integer> loaded =
+                    BPlusTree.bulkLoad(8, null, treeMap.entrySet().iterator());
+
+            Assert.assertThat(loaded.size(), CoreMatchers.is(length));
+            Assert.assertThat(count(loaded), CoreMatchers.is(length));
+            for (int i = 0; i < length; i++) {
+                Assert.assertThat(loaded.get(i * 2), CoreMatchers.is(i));
+                Assert.assertThat(loaded.get(i * 2 + 1), CoreMatchers.is(CoreMatchers.nullValue()));
+            }
+
+            // The loaded tree supports further updates, including node merges:
+            for (int i = 0; i < length; i += 3) {
+                Assert.assertThat(loaded.remove(i * 2), CoreMatchers.is(i));
+                loaded.put(i * 2 + 1, -i);
+            }
+            for (int i = 0; i < length; i++) {
+                Assert.assertThat(loaded.get(i * 2), CoreMatchers.is((i % 3 == 0) ? null : (Integer) i));
+            }
+            for (int i = 0; i < length; i++) {
+                loaded.remove(i * 2);
+                loaded.remove(i * 2 + 1);
+            }
+            Assert.assertThat(loaded.size(), CoreMatchers.is(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkLoadRejectsUnsortedEntries() {
+        TreeMap<Integer, Integer> treeMap = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 100; i++) {
+            treeMap.put(i, i);
+        }
+        BPlusTree.bulkLoad(8, Collections.<Integer>reverseOrder(), treeMap.entrySet().iterator());
+    }
+
     private int count(BPlusTree<Integer, Integer> tree) {
         Iterator<Entry<Integer, Integer>> iterator = tree.iterator();
         int i = 0;
@@ -0,0 +1,113 @@
+package org.ObjectLayout.examples;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ConcurrentLongLongBPlusTreeTest {
+
+    @Test
+    public void shouldMatchTreeMap() {
+        final ConcurrentLongLongBPlusTree tree = new ConcurrentLongLongBPlusTree(6);
+        final TreeMap<Long, Long> expected = new TreeMap<Long, Long>();
+        final Random random = new Random(17);
+
+        for (int i = 0; i < 100000; i++) {
+            final long key = random.nextInt(20000) - 10000;
+            if (random.nextInt(3) == 0) {
+                assertThat(tree.remove(key), is(expected.remove(key) != null));
+            } else {
+                assertThat(tree.put(key, i), is(expected.put(key, (long) i) == null));
+            }
+        }
+
+        assertThat(tree.size(), is((long) expected.size()));
+        for (long key = -10000; key < 10000; key++) {
+            final Long value = expected.get(key);
+            assertThat(tree.containsKey(key), is(value != null));
+            assertThat(tree.get(key, Long.MIN_VALUE), is((value != null) ? value : Long.MIN_VALUE));
+        }
+    }
+
+    @Test
+    public void readersShouldObserveCompletedWrites() throws InterruptedException {
+        final ConcurrentLongLongBPlusTree tree = new ConcurrentLongLongBPlusTree(8);
+        final int writerCount = 4;
+        final int keysPerWriter = 50000;
+        final AtomicLong[] written = new AtomicLong[writerCount];
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[writerCount * 2];
+
+        for (int w = 0; w < writerCount; w++) {
+            final int writer = w;
+            written[w] = new AtomicLong();
+            // Writers insert interleaved keys, in random order per writer, such that splits contend:
+            threads[w] = new Thread() {
+                @Override
+                public void run() {
+                    final Random random = new Random(writer);
+                    for (long i = 0; i < keysPerWriter; i++) {
+                        final long key = keyOf(writer, i);
+                        tree.put(key, -key);
+                        written[writer].set(i + 1);
+                        if (random.nextInt(4) == 0) {
+                            tree.put(key, key);
+                        }
+                    }
+                }
+            };
+            // Readers check that every key a writer has completed is visible, with one of its values:
+            threads[writerCount + w] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        final Random random = new Random(~writer);
+                        while (written[writer].get() < keysPerWriter) {
+                            final long done = written[writer].get();
+                            if (done == 0) {
+                                continue;
+                            }
+                            final long key = keyOf(writer, (long) random.nextInt((int) done));
+                            final long value = tree.get(key, 0);
+                            if ((value != key) && (value != -key)) {
+                                throw new AssertionError("key " + key + " has value " + value);
+                            }
+                        }
+                    } catch (final Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                }
+            };
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failure.get(), nullValue());
+        assertThat(tree.size(), is((long) writerCount * keysPerWriter));
+        for (int w = 0; w < writerCount; w++) {
+            for (long i = 0; i < keysPerWriter; i++) {
+                assertThat(tree.containsKey(keyOf(w, i)), is(true));
+            }
+        }
+    }
+
+    private static long keyOf(final int writer, final long i) {
+        // Scatter each writer's keys, interleaved with those of the other writers:
+        return ((i * 0x9E3779B97F4A7C15L) >>> 20) * 4 + writer;
+    }
+}
@@ -0,0 +1,108 @@
+package org.ObjectLayout.examples;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class LongBPlusTreeTest {
+
+    @Test
+    public void longLongTreeShouldMatchTreeMap() {
+        final LongLongBPlusTree tree = new LongLongBPlusTree(8);
+        final TreeMap<Long, Long> expected = new TreeMap<Long, Long>();
+        final Random random = new Random(11);
+
+        for (int i = 0; i < 200000; i++) {
+            final long key = random.nextInt(20000) - 10000;
+            if (random.nextInt(3) == 0) {
+                assertThat(tree.remove(key), is(expected.remove(key) != null));
+            } else {
+                assertThat(tree.put(key, i), is(expected.put(key, (long) i) == null));
+            }
+        }
+
+        assertThat(tree.size(), is((long) expected.size()));
+        for (long key = -10000; key < 10000; key++) {
+            final Long value = expected.get(key);
+            assertThat(tree.containsKey(key), is(value != null));
+            assertThat(tree.get(key, Long.MIN_VALUE), is((value != null) ? value : Long.MIN_VALUE));
+        }
+
+        final LongLongBPlusTree.Cursor cursor = tree.cursor();
+        for (final Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertThat(cursor.next(), is(true));
+            assertThat(cursor.getKey(), is((long) entry.getKey()));
+            assertThat(cursor.getValue(), is((long) entry.getValue()));
+        }
+        assertThat(cursor.next(), is(false));
+
+        for (final Long key : expected.keySet()) {
+            assertThat(tree.remove(key), is(true));
+        }
+        assertThat(tree.isEmpty(), is(true));
+        assertThat(tree.cursor().next(), is(false));
+        tree.put(42, 43);
+        assertThat(tree.get(42, 0), is(43L));
+    }
+
+    @Test
+    public void longLongTreeShouldAddToValues() {
+        final LongLongBPlusTree tree = new LongLongBPlusTree(4);
+        for (long i = 0; i < 1000; i++) {
+            tree.addTo(i % 100, i);
+        }
+
+        final LongLongBPlusTree.Cursor cursor = tree.cursor(50);
+        for (long key = 50; key < 100; key++) {
+            assertThat(cursor.next(), is(true));
+            assertThat(cursor.getKey(), is(key));
+            assertThat(cursor.getValue(), is(10 * key + 4500));
+        }
+        assertThat(cursor.next(), is(false));
+    }
+
+    @Test
+    public void longTreeShouldMatchTreeMap() {
+        final LongBPlusTree<String> tree = new LongBPlusTree<String>(5);
+        final TreeMap<Long, String> expected = new TreeMap<Long, String>();
+        final Random random = new Random(13);
+
+        for (int i = 0; i < 100000; i++) {
+            final long key = random.nextLong() % 5000;
+            if (random.nextInt(3) == 0) {
+                assertThat(tree.remove(key), is(expected.remove(key)));
+            } else {
+                final String value = Integer.toString(i);
+                assertThat(tree.put(key, value), is(expected.put(key, value)));
+            }
+        }
+
+        assertThat(tree.size(), is((long) expected.size()));
+        for (long key = -5000; key < 5000; key++) {
+            assertThat(tree.get(key), is(expected.get(key)));
+        }
+        assertThat(tree.get(5000), nullValue());
+
+        final LongBPlusTree.Cursor<String> cursor = tree.cursor(-2500);
+        for (final Map.Entry<Long, String> entry : expected.tailMap(-2500L).entrySet()) {
+            assertThat(cursor.next(), is(true));
+            assertThat(cursor.getKey(), is((long) entry.getKey()));
+            assertThat(cursor.getValue(), is(entry.getValue()));
+        }
+        assertThat(cursor.next(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTinyNodeSize() {
+        new LongLongBPlusTree(2);
+    }
+}
@@ -0,0 +1,117 @@
+package org.ObjectLayout.examples;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MappedBPlusTreeTest {
+
+    private Path path;
+
+    @Before
+    public void createFile() throws IOException {
+        path = Files.createTempFile("MappedBPlusTreeTest", ".tree");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void shouldMatchTreeMapAcrossReopens() throws IOException {
+        final TreeMap<Long, Long> expected = new TreeMap<Long, Long>();
+        final Random random = new Random(7);
+
+        // Small pages and few mapped segments exercise deep trees and segment eviction:
+        try (MappedBPlusTree tree = MappedBPlusTree.open(path, 128, 2)) {
+            for (int i = 0; i < 50000; i++) {
+                final long key = random.nextInt(100000) - 50000;
+                assertThat(tree.put(key, i), is(expected.put(key, (long) i) == null));
+            }
+            for (int i = 0; i < 15000; i++) {
+                final long key = random.nextInt(100000) - 50000;
+                assertThat(tree.remove(key), is(expected.remove(key) != null));
+            }
+            assertThat(tree.size(), is((long) expected.size()));
+        }
+
+        try (MappedBPlusTree tree = MappedBPlusTree.open(path)) {
+            assertThat(tree.getPageSize(), is(128));
+            assertThat(tree.size(), is((long) expected.size()));
+            for (long key = -50000; key < 50000; key++) {
+                final Long value = expected.get(key);
+                assertThat(tree.containsKey(key), is(value != null));
+                assertThat(tree.get(key, Long.MIN_VALUE), is((value != null) ? value : Long.MIN_VALUE));
+            }
+
+            final MappedBPlusTree.Cursor cursor = tree.cursor();
+            for (final Map.Entry<Long, Long> entry : expected.entrySet()) {
+                assertThat(cursor.next(), is(true));
+                assertThat(cursor.getKey(), is((long) entry.getKey()));
+                assertThat(cursor.getValue(), is((long) entry.getValue()));
+            }
+            assertThat(cursor.next(), is(false));
+        }
+    }
+
+    @Test
+    public void shouldSeekCursorToKey() throws IOException {
+        try (MappedBPlusTree tree = MappedBPlusTree.open(path, 256, 4)) {
+            for (long key = 0; key < 10000; key += 10) {
+                tree.put(key, -key);
+            }
+
+            MappedBPlusTree.Cursor cursor = tree.cursor(4995);
+            assertThat(cursor.next(), is(true));
+            assertThat(cursor.getKey(), is(5000L));
+            assertThat(cursor.getValue(), is(-5000L));
+
+            cursor = tree.cursor(5000);
+            assertThat(cursor.next(), is(true));
+            assertThat(cursor.getKey(), is(5000L));
+
+            cursor = tree.cursor(9995);
+            assertThat(cursor.next(), is(false));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectTreeOfAnotherPageSize() throws IOException {
+        MappedBPlusTree.open(path, 128, 2).close();
+        MappedBPlusTree.open(path, 256, 2).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectIllegalStoredPageSize() throws IOException {
+        MappedBPlusTree.open(path, 128, 2).close();
+        // Corrupt the page size in the header:
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 100), 8);
+        }
+        MappedBPlusTree.open(path).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectForeignFile() throws IOException {
+        Files.write(path, new byte[4096]);
+        MappedBPlusTree.open(path).close();
+    }
+}
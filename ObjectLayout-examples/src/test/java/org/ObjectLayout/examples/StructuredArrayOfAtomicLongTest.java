@@ -26,6 +26,18 @@ public class StructuredArrayOfAtomicLongTest {
         assertCorrectVariableInitialisation(length, array);
     }
 
+    @Test
+    public void shouldInitializePaddedArrayToCorrectValues() {
+        final long length = 1444;
+        final StructuredArrayOfAtomicLong array =
+                StructuredArrayOfAtomicLong.newPaddedInstance(length);
+
+        initSumValues(array);
+
+        assertCorrectVariableInitialisation(length, array);
+        Assert.assertThat(array.getElementAlignment(), CoreMatchers.is(64));
+    }
+
     @Test
     public void shouldIterateOverArray() {
         final long length = 1444;
@@ -0,0 +1,133 @@
+package org.ObjectLayout.examples.util;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SAConcurrentHashMapTest {
+
+    @Test
+    public void shouldMatchHashMap() {
+        final SAConcurrentHashMap<Integer, String> saMap = new SAConcurrentHashMap<Integer, String>(0);
+        final HashMap<Integer, String> map = new HashMap<Integer, String>();
+        final Random random = new Random(21);
+
+        for (int i = 0; i < 100000; i++) {
+            final Integer key = random.nextInt(20000);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertThat(saMap.remove(key), is(map.remove(key)));
+                    break;
+                case 1:
+                    assertThat(saMap.putIfAbsent(key, "v" + i), is(map.containsKey(key) ? map.get(key) : null));
+                    if (!map.containsKey(key)) {
+                        map.put(key, "v" + i);
+                    }
+                    break;
+                default:
+                    assertThat(saMap.put(key, "v" + i), is(map.put(key, "v" + i)));
+            }
+        }
+
+        assertThat(saMap.size(), is(map.size()));
+        for (int key = 0; key < 20000; key++) {
+            assertThat(saMap.get(key), is(map.get(key)));
+        }
+        assertThat(saMap, is((Map<Integer, String>) map));
+
+        int visited = 0;
+        for (final Iterator<Map.Entry<Integer, String>> it = saMap.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<Integer, String> entry = it.next();
+            assertThat(entry.getValue(), is(map.get(entry.getKey())));
+            if ((entry.getKey() & 1) == 0) {
+                it.remove();
+            }
+            visited++;
+        }
+        assertThat(visited, is(map.size()));
+        for (final Integer key : map.keySet()) {
+            assertThat(saMap.containsKey(key), is((key & 1) != 0));
+        }
+
+        saMap.clear();
+        assertThat(saMap.isEmpty(), is(true));
+        assertThat(saMap.get(1), nullValue());
+    }
+
+    @Test
+    public void concurrentWritersShouldResizeCooperatively() throws InterruptedException {
+        final SAConcurrentHashMap<Integer, Integer> saMap = new SAConcurrentHashMap<Integer, Integer>(0);
+        final int threadCount = 8;
+        final int keysPerThread = 50000;
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[threadCount + 1];
+
+        for (int t = 0; t < threadCount; t++) {
+            final int writer = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < keysPerThread; i++) {
+                        final int key = i * threadCount + writer;
+                        saMap.put(key, key);
+                        if ((i % 3) == 0) {
+                            saMap.remove(key);
+                            saMap.put(key, -key);
+                        }
+                    }
+                    completed.incrementAndGet();
+                }
+            };
+        }
+        // A reader checks that a key, once present, is always mapped to one of its values, across resizes:
+        threads[threadCount] = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    final Random random = new Random(5);
+                    while (completed.get() < threadCount) {
+                        final int key = random.nextInt(threadCount * keysPerThread);
+                        final Integer value = saMap.get(key);
+                        if ((value != null) && (value != key) && (value != -key)) {
+                            throw new AssertionError("key " + key + " has value " + value);
+                        }
+                    }
+                } catch (final Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            }
+        };
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failure.get(), nullValue());
+        assertThat(saMap.mappingCount(), is((long) threadCount * keysPerThread));
+        for (int key = 0; key < threadCount * keysPerThread; key++) {
+            final int expected = (((key / threadCount) % 3) == 0) ? -key : key;
+            assertThat(saMap.get(key), is(expected));
+        }
+        int visited = 0;
+        for (final Map.Entry<Integer, Integer> ignored : saMap.entrySet()) {
+            visited++;
+        }
+        assertThat(visited, is(threadCount * keysPerThread));
+    }
+}
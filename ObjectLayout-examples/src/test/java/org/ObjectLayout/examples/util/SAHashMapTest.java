@@ -8,7 +8,14 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.ObjectLayout.examples.util.SAHashMap;
 
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 
 public class SAHashMapTest {
 
@@ -32,4 +39,409 @@ public class SAHashMapTest {
             Assert.assertThat("map entry value mismatch", map.get(i), CoreMatchers.is(intAsString));
         }
     }
+
+    @Test
+    public void incrementalResizeTest() {
+        final SAHashMap<Integer, String> saMap = new SAHashMap<Integer, String>(16, 0.75f, true);
+        final HashMap<Integer, String> map = new HashMap<Integer, String>();
+        final Random random = new Random(22);
+
+        boolean observedIncrementalResize = false;
+        for (int i = 0; i < 200000; i++) {
+            final Integer key = random.nextInt(50000);
+            if (random.nextInt(4) == 0) {
+                Assert.assertThat("removed value mismatch", saMap.remove(key), CoreMatchers.is(map.remove(key)));
+            } else {
+                final String value = "Int:" + i;
+                Assert.assertThat("replaced value mismatch", saMap.put(key, value), CoreMatchers.is(map.put(key, value)));
+            }
+            observedIncrementalResize |= (saMap.oldTable != null);
+            final Integer probe = random.nextInt(50000);
+            Assert.assertThat("saMap entry value mismatch", saMap.get(probe), CoreMatchers.is(map.get(probe)));
+            Assert.assertThat("Map sizes should be equal", saMap.size(), CoreMatchers.is(map.size()));
+        }
+        Assert.assertThat("resizes should have been incremental", observedIncrementalResize, CoreMatchers.is(true));
+
+        for (int key = 0; key < 50000; key++) {
+            Assert.assertThat("saMap entry value mismatch", saMap.get(key), CoreMatchers.is(map.get(key)));
+        }
+        saMap.finishResize();
+        Assert.assertThat("old table should be drained", saMap.oldTable, CoreMatchers.nullValue());
+        Assert.assertThat("saMap should contain all values", saMap.containsValue(map.values().iterator().next()),
+                CoreMatchers.is(true));
+    }
+
+    @Test
+    public void boundedResizeWorkTest() {
+        final SAHashMap<Integer, String> saMap = new SAHashMap<Integer, String>(16, 0.75f, true);
+        final int length = 1 << 17;
+
+        int resizingPuts = 0;
+        for (int i = 0; i < length; i++) {
+            final SAHashMap.BinTable<Integer, String> table = saMap.saTable;
+            final int migrateIndex = saMap.migrateIndex;
+            final int allocatedChunks = (table == null) ? 0 : table.allocatedChunks;
+            saMap.put(i, "Int:" + i);
+            if (saMap.saTable != table) {
+                // The resize allocates the chunk index, and at most the chunk of the new mapping:
+                resizingPuts++;
+                Assert.assertThat("resize should not allocate the new table up front",
+                        saMap.saTable.allocatedChunks <= 1, CoreMatchers.is(true));
+            } else if (saMap.oldTable != null) {
+                // Each put moves at most INCREMENTAL_RESIZE_STEP bins, whose destinations span at most two
+                // chunks in each half of the new table, and may allocate the chunk of the new mapping:
+                Assert.assertThat("put should move a bounded number of bins",
+                        saMap.migrateIndex - migrateIndex <= SAHashMap.INCREMENTAL_RESIZE_STEP, CoreMatchers.is(true));
+                Assert.assertThat("put should allocate a bounded number of chunks",
+                        saMap.saTable.allocatedChunks - allocatedChunks <= 5, CoreMatchers.is(true));
+            }
+        }
+        Assert.assertThat("the map should have resized into a chunked table", resizingPuts > 0 &&
+                saMap.saTable.chunks.length > 1, CoreMatchers.is(true));
+        for (int i = 0; i < length; i++) {
+            Assert.assertThat("saMap entry value mismatch", saMap.get(i), CoreMatchers.is("Int:" + i));
+        }
+        Assert.assertThat("Map size mismatch", saMap.size(), CoreMatchers.is(length));
+    }
+
+    @Test
+    public void readsDoNotMoveBinsTest() {
+        final SAHashMap<Integer, String> saMap = new SAHashMap<Integer, String>(16, 0.75f, true);
+
+        int i = 0;
+        while (saMap.oldTable == null) {
+            saMap.put(i, "Int:" + i);
+            i++;
+        }
+        final int migrateIndex = saMap.migrateIndex;
+        final int allocatedChunks = saMap.saTable.allocatedChunks;
+        int count = 0;
+        for (Map.Entry<Integer, String> e : saMap.entrySet()) {
+            Assert.assertThat("saMap entry value mismatch", saMap.get(e.getKey()), CoreMatchers.is(e.getValue()));
+            Assert.assertThat("saMap should contain key", saMap.containsKey(e.getKey()), CoreMatchers.is(true));
+            // Replacing the value of an existing mapping is not a structural modification:
+            saMap.put(e.getKey(), e.getValue());
+            count++;
+        }
+        Assert.assertThat("iteration should visit every mapping once", count, CoreMatchers.is(i));
+        Assert.assertThat("reads should not move bins", saMap.migrateIndex, CoreMatchers.is(migrateIndex));
+        Assert.assertThat("reads should not allocate chunks", saMap.saTable.allocatedChunks,
+                CoreMatchers.is(allocatedChunks));
+    }
+
+    @Test
+    public void nodePoolChurnTest() {
+        // A small table, such that most mappings live in overflow nodes:
+        final SAHashMap<Integer, String> saMap = new SAHashMap<Integer, String>(1 << 4, 64.0f);
+        final HashMap<Integer, String> map = new HashMap<Integer, String>();
+        final Random random = new Random(23);
+
+        for (int i = 0; i < 512; i++) {
+            saMap.put(i, "Int:" + i);
+            map.put(i, "Int:" + i);
+        }
+
+        // Churn at a steady size, which should be served from the pool once warmed up:
+        int nodeChunkCount = 0;
+        long nodeCapacity = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (i == 1000) {
+                nodeChunkCount = saMap.nodeChunkCount;
+                nodeCapacity = saMap.nodeCapacity;
+            }
+            Integer victim;
+            do {
+                victim = random.nextInt(1024);
+            } while (!map.containsKey(victim));
+            Assert.assertThat("removed value mismatch", saMap.remove(victim), CoreMatchers.is(map.remove(victim)));
+            Assert.assertThat("pooled node should not retain the removed value", saMap.freeNodes.value,
+                    CoreMatchers.nullValue());
+            Integer key;
+            do {
+                key = random.nextInt(1024);
+            } while (map.containsKey(key));
+            final String value = "Int:" + i;
+            Assert.assertThat("inserted key should be absent", saMap.put(key, value), CoreMatchers.is(map.put(key, value)));
+        }
+        Assert.assertThat("churn should not allocate node chunks", saMap.nodeChunkCount,
+                CoreMatchers.is(nodeChunkCount));
+        Assert.assertThat("churn should not allocate nodes", saMap.nodeCapacity, CoreMatchers.is(nodeCapacity));
+        Assert.assertThat("Map sizes should be equal", saMap.size(), CoreMatchers.is(map.size()));
+        for (int key = 0; key < 1024; key++) {
+            Assert.assertThat("saMap entry value mismatch", saMap.get(key), CoreMatchers.is(map.get(key)));
+        }
+
+        // Remove odd keys through the iterator, recycling nodes from under it:
+        final int size = saMap.size();
+        int visited = 0;
+        for (final Iterator<Integer> it = saMap.keySet().iterator(); it.hasNext(); ) {
+            final Integer key = it.next();
+            Assert.assertThat("iterated key should be mapped", map.containsKey(key), CoreMatchers.is(true));
+            if ((key & 1) != 0) {
+                it.remove();
+                map.remove(key);
+            }
+            visited++;
+        }
+        Assert.assertThat("Map sizes should be equal", saMap.size(), CoreMatchers.is(map.size()));
+        Assert.assertThat("all entries should be visited", visited, CoreMatchers.is(size));
+        for (int key = 0; key < 1024; key++) {
+            Assert.assertThat("saMap entry value mismatch", saMap.get(key), CoreMatchers.is(map.get(key)));
+        }
+    }
+
+    @Test
+    public void heldEntriesTest() {
+        final SAHashMap<Integer, String> saMap = new SAHashMap<Integer, String>();
+        for (int i = 0; i < 8; i++) {
+            // Keys 1, 17 and 33 share a bin, with 17 and 33 held in overflow nodes:
+            saMap.put(1 + (i * 16), "v" + (1 + (i * 16)));
+        }
+
+        // Iterators reuse a single entry, rather than allocating one per mapping:
+        final Iterator<Map.Entry<Integer, String>> iterator = saMap.entrySet().iterator();
+        Assert.assertThat("entries should be reused", iterator.next(), CoreMatchers.sameInstance(iterator.next()));
+
+        // An entry removed through the iterator keeps its mapping until the next entry is returned, and setting
+        // its value does not write into the map:
+        for (final Iterator<Map.Entry<Integer, String>> it = saMap.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<Integer, String> entry = it.next();
+            if (entry.getKey() == 1) {
+                it.remove();
+                Assert.assertThat("removed entry", entry.toString(), CoreMatchers.is("1=v1"));
+                Assert.assertThat("removed entry value", entry.setValue("y"), CoreMatchers.is("v1"));
+                Assert.assertThat("removed key should stay absent", saMap.containsKey(1), CoreMatchers.is(false));
+                Assert.assertThat("removed key should stay absent", saMap.containsValue("y"), CoreMatchers.is(false));
+            }
+        }
+
+        // Entries copied out with toArray are independent of each other and of the map, and keep their mappings
+        // across removals and insertions that reuse their nodes:
+        final Object[] copies = saMap.entrySet().toArray();
+        Assert.assertThat("copies should be distinct", copies[0] != copies[1], CoreMatchers.is(true));
+        final Map<Integer, Map.Entry<Integer, String>> held = new HashMap<Integer, Map.Entry<Integer, String>>();
+        for (final Object copy : copies) {
+            @SuppressWarnings("unchecked")
+            final Map.Entry<Integer, String> entry = (Map.Entry<Integer, String>) copy;
+            held.put(entry.getKey(), entry);
+        }
+        saMap.put(1, "v1");
+        saMap.remove(33);
+        saMap.remove(1);
+        for (int i = 0; i < 8; i++) {
+            saMap.put(100 + (i * 16), "v" + (100 + (i * 16)));
+        }
+        Assert.assertThat("stale entry", held.get(33).toString(), CoreMatchers.is("33=v33"));
+        Assert.assertThat("held entry", held.get(17).toString(), CoreMatchers.is("17=v17"));
+        Assert.assertThat("stale entry value", held.get(33).setValue("x"), CoreMatchers.is("v33"));
+        Assert.assertThat("removed key should stay absent", saMap.containsKey(33), CoreMatchers.is(false));
+        Assert.assertThat("removed key should stay absent", saMap.containsValue("x"), CoreMatchers.is(false));
+        Assert.assertThat("Map size mismatch", saMap.size(), CoreMatchers.is(14));
+
+        // While setting the value of a live entry writes through to the map:
+        for (final Map.Entry<Integer, String> entry : saMap.entrySet()) {
+            if (entry.getKey() == 49) {
+                entry.setValue("w");
+            }
+        }
+        Assert.assertThat("saMap entry value mismatch", saMap.get(49), CoreMatchers.is("w"));
+        saMap.entrySet().forEach(entry -> {
+            if (entry.getKey() == 17) {
+                entry.setValue("z");
+            }
+        });
+        Assert.assertThat("saMap entry value mismatch", saMap.get(17), CoreMatchers.is("z"));
+    }
+
+    @Test
+    public void treeBinTest() {
+        treeBinTest(new CollidingKeyFactory() {
+            public Object newKey(final int i) {
+                return new ComparableCollidingKey(i);
+            }
+        });
+        treeBinTest(new CollidingKeyFactory() {
+            public Object newKey(final int i) {
+                return new CollidingKey(i);
+            }
+        });
+    }
+
+    private void treeBinTest(final CollidingKeyFactory factory) {
+        final SAHashMap<Object, String> saMap = new SAHashMap<Object, String>();
+        final HashMap<Object, String> map = new HashMap<Object, String>();
+        final Random random = new Random(24);
+        final Object[] keys = new Object[2000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = factory.newKey(i);
+        }
+
+        for (int i = 0; i < 50000; i++) {
+            final Object key = keys[random.nextInt(keys.length)];
+            if (random.nextInt(3) == 0) {
+                Assert.assertThat("removed value mismatch", saMap.remove(key), CoreMatchers.is(map.remove(key)));
+            } else {
+                final String value = "Int:" + i;
+                Assert.assertThat("replaced value mismatch", saMap.put(key, value), CoreMatchers.is(map.put(key, value)));
+            }
+        }
+        Assert.assertThat("Map sizes should be equal", saMap.size(), CoreMatchers.is(map.size()));
+        for (final Object key : keys) {
+            Assert.assertThat("saMap entry value mismatch", saMap.get(key), CoreMatchers.is(map.get(key)));
+        }
+
+        // The keys collide in eight bins, 64 apart, which should have been treeified, and split on each resize:
+        for (int bin = 0; bin < 8 * 64; bin += 64) {
+            Assert.assertThat("bin should be a tree bin", saMap.saTable.get(bin).next instanceof SAHashMap.TreeNode,
+                    CoreMatchers.is(true));
+        }
+
+        final int size = saMap.size();
+        int visited = 0;
+        for (final Iterator<Object> it = saMap.keySet().iterator(); it.hasNext(); ) {
+            final Object key = it.next();
+            Assert.assertThat("iterated key should be mapped", map.containsKey(key), CoreMatchers.is(true));
+            if (random.nextBoolean()) {
+                it.remove();
+                map.remove(key);
+            }
+            visited++;
+        }
+        Assert.assertThat("all entries should be visited", visited, CoreMatchers.is(size));
+        Assert.assertThat("Map sizes should be equal", saMap.size(), CoreMatchers.is(map.size()));
+        for (final Object key : keys) {
+            Assert.assertThat("saMap entry value mismatch", saMap.get(key), CoreMatchers.is(map.get(key)));
+            Assert.assertThat("computed value mismatch",
+                    saMap.computeIfAbsent(key, new java.util.function.Function<Object, String>() {
+                        public String apply(final Object k) {
+                            return "computed";
+                        }
+                    }),
+                    CoreMatchers.is(map.containsKey(key) ? map.get(key) : "computed"));
+        }
+        for (final Object key : keys) {
+            Assert.assertThat("removed value should be present", saMap.remove(key) != null, CoreMatchers.is(true));
+        }
+        Assert.assertThat("Map should be empty", saMap.isEmpty(), CoreMatchers.is(true));
+    }
+
+    @Test
+    public void treeBinSplitTest() {
+        final SAHashMap<Object, String> saMap = new SAHashMap<Object, String>(64);
+        // 20 keys hashing to 0 and 3 hashing to 64 share bin 0, which is treeified:
+        for (int i = 0; i < 20; i++) {
+            saMap.put(new ComparableCollidingKey(i * 8), "c" + (i * 8));
+        }
+        for (int i = 0; i < 3; i++) {
+            saMap.put(new ComparableCollidingKey((i * 8) + 1), "c" + ((i * 8) + 1));
+        }
+        Assert.assertThat("bin should be a tree bin", saMap.saTable.get(0).next instanceof SAHashMap.TreeNode,
+                CoreMatchers.is(true));
+
+        // Growing the table splits the tree bin into a tree and a short list of plain nodes:
+        for (int i = 1; saMap.saTable.getLength() == 64; i++) {
+            saMap.put(i, "v" + i);
+        }
+        Assert.assertThat("low half should stay a tree bin",
+                saMap.saTable.get(0).next instanceof SAHashMap.TreeNode, CoreMatchers.is(true));
+        Assert.assertThat("high half should be untreeified",
+                saMap.saTable.get(64).next.getClass() == SAHashMap.Node.class, CoreMatchers.is(true));
+        for (int i = 0; i < 20; i++) {
+            Assert.assertThat("saMap entry value mismatch", saMap.get(new ComparableCollidingKey(i * 8)),
+                    CoreMatchers.is("c" + (i * 8)));
+        }
+        for (int i = 0; i < 3; i++) {
+            Assert.assertThat("saMap entry value mismatch", saMap.get(new ComparableCollidingKey((i * 8) + 1)),
+                    CoreMatchers.is("c" + ((i * 8) + 1)));
+        }
+    }
+
+    @Test
+    public void statsTest() throws Exception {
+        final SAHashMap<Object, String> saMap = new SAHashMap<Object, String>();
+        MapStats stats = saMap.stats();
+        Assert.assertThat("empty map should have no mappings", stats.getSize(), CoreMatchers.is(0));
+        Assert.assertThat("empty map should not have resized", stats.getResizeCount(), CoreMatchers.is(0L));
+
+        for (int i = 0; i < 5000; i++) {
+            saMap.put(i, "v" + i);
+        }
+        // Colliding keys, to populate a tree bin:
+        for (int i = 0; i < 100; i++) {
+            saMap.put(new ComparableCollidingKey(i * 8), "c" + i);
+        }
+        stats = saMap.stats();
+
+        long bins = 0;
+        long mappings = 0;
+        final long[] histogram = stats.getChainLengthHistogram();
+        for (int i = 0; i < histogram.length; i++) {
+            bins += histogram[i];
+            mappings += i * histogram[i];
+        }
+        Assert.assertThat("histogram should cover every bin", bins, CoreMatchers.is((long) stats.getCapacity()));
+        Assert.assertThat("every bin should be occupied or empty",
+                stats.getOccupiedBins() + stats.getEmptyBins(), CoreMatchers.is((long) stats.getCapacity()));
+        Assert.assertThat("every mapping should be in a first, overflow or tree node",
+                stats.getOccupiedBins() + stats.getOverflowNodes() + stats.getTreeNodes(),
+                CoreMatchers.is((long) saMap.size()));
+        Assert.assertThat("the tree bin should exceed the last histogram bucket",
+                mappings < saMap.size(), CoreMatchers.is(true));
+        Assert.assertThat("colliding keys should be held in a tree bin", stats.getTreeBins() > 0, CoreMatchers.is(true));
+        Assert.assertThat("max chain length", stats.getMaxChainLength() >= 50, CoreMatchers.is(true));
+        Assert.assertThat("mean probe length", stats.getMeanProbeLength() >= 1.0, CoreMatchers.is(true));
+        Assert.assertThat("load", stats.getLoad() <= stats.getLoadFactor(), CoreMatchers.is(true));
+        Assert.assertThat("map should have resized", stats.getResizeCount() > 0, CoreMatchers.is(true));
+        Assert.assertThat("resize times", stats.getTotalResizeNanos() >= stats.getMaxResizeNanos(), CoreMatchers.is(true));
+        Assert.assertThat("footprint should cover the table", stats.getEstimatedFootprint() >
+                stats.getCapacity() * MapStats.estimateInstanceSize(SAHashMap.Node.class), CoreMatchers.is(true));
+
+        final MapStats.Publisher publisher = new MapStats.Publisher(saMap);
+        final ObjectName name = new ObjectName("org.ObjectLayout.examples:type=SAHashMap,name=statsTest");
+        publisher.register(name);
+        try {
+            saMap.remove(0);
+            publisher.publish();
+            final CompositeData published =
+                    (CompositeData) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Stats");
+            Assert.assertThat("published size", (Integer) published.get("size"), CoreMatchers.is(saMap.size()));
+            Assert.assertThat("published resize count", (Long) published.get("resizeCount"),
+                    CoreMatchers.is(stats.getResizeCount()));
+        } finally {
+            publisher.unregister();
+        }
+    }
+
+    private interface CollidingKeyFactory {
+        Object newKey(int i);
+    }
+
+    private static class CollidingKey {
+        final int value;
+
+        CollidingKey(final int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            // Eight distinct hashes, which differ in the bits that split bins on resizes:
+            return (value % 8) * 64;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return (o instanceof CollidingKey) && (((CollidingKey) o).value == value);
+        }
+    }
+
+    private static class ComparableCollidingKey extends CollidingKey implements Comparable<ComparableCollidingKey> {
+        ComparableCollidingKey(final int value) {
+            super(value);
+        }
+
+        public int compareTo(final ComparableCollidingKey o) {
+            return Integer.compare(value, o.value);
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package org.ObjectLayout.examples.util;/*
+ * Written by Gil Tene, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SALongHashMapTest {
+
+    public static class OrderState extends SALongHashMap.Slot {
+        long quantity;
+        double price;
+
+        @Override
+        protected void clearValue() {
+            quantity = 0;
+            price = 0;
+        }
+    }
+
+    @Test
+    public void shouldPopulateAndGrow() {
+        final SALongHashMap<OrderState> map = new SALongHashMap<>(OrderState.class);
+        final int length = 1 << 16;
+
+        for (long i = 0; i < length; i++) {
+            OrderState state = map.put(i * 1000);
+            assertThat(state.quantity, is(0L));
+            state.quantity = i;
+            state.price = i / 2.0;
+        }
+
+        assertThat(map.size(), is((long) length));
+        assertThat(map.capacity() > length, is(true));
+        for (long i = 0; i < length; i++) {
+            OrderState state = map.get(i * 1000);
+            assertThat(state.getKey(), is(i * 1000));
+            assertThat(state.quantity, is(i));
+            assertThat(state.price, is(i / 2.0));
+        }
+        assertThat(map.get(1), nullValue());
+    }
+
+    @Test
+    public void shouldMatchHashMapUnderRandomPutsAndRemoves() {
+        final SALongHashMap<OrderState> map = new SALongHashMap<>(OrderState.class, 4);
+        final Map<Long, Long> expected = new HashMap<>();
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 200000; i++) {
+            // A small key range forces long probe runs and frequent backward shifts:
+            final long key = random.nextInt(4096) - 2048;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key), is(expected.remove(key) != null));
+            } else {
+                map.put(key).quantity = i;
+                expected.put(key, (long) i);
+            }
+        }
+
+        assertThat(map.size(), is((long) expected.size()));
+        for (long key = -2048; key < 2048; key++) {
+            final OrderState state = map.get(key);
+            final Long value = expected.get(key);
+            if (value == null) {
+                assertThat(state, nullValue());
+            } else {
+                assertThat(state.quantity, is(value));
+            }
+        }
+
+        long count = 0;
+        for (OrderState state : map) {
+            assertThat(state.quantity, is(expected.get(state.getKey())));
+            count++;
+        }
+        assertThat(count, is(map.size()));
+
+        map.clear();
+        assertThat(map.isEmpty(), is(true));
+        assertThat(map.iterator().hasNext(), is(false));
+    }
+}
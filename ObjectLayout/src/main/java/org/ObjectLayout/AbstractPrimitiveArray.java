@@ -5,10 +5,12 @@
 
 package org.ObjectLayout;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
 
 /**
  * A abstract base class for subclassable primitive and reference arrays.
@@ -49,9 +51,23 @@ public abstract class AbstractPrimitiveArray {
         return instantiate(length, arrayConstructor, arrayConstructorArgs);
     }
 
+    static <A extends AbstractPrimitiveArray> A _newMappedInstance(
+            final Class<A> mappedArrayClass,
+            final Path path,
+            final long length,
+            final int elementSizePow2Exponent) throws IOException {
+        final MappedArrayStorage storage = MappedArrayStorage.map(path, length, elementSizePow2Exponent);
+        try {
+            return instantiate(length, mappedArrayClass.getDeclaredConstructor(MappedArrayStorage.class), storage);
+        } catch (NoSuchMethodException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     static <A extends AbstractPrimitiveArray> A _copyInstance(
             MethodHandles.Lookup lookup,
             A source) throws NoSuchMethodException {
+        checkCopyable(source);
         @SuppressWarnings("unchecked")
         final Class<A> sourceArrayClass = (Class<A>) source.getClass();
         Constructor<A> arrayConstructor = sourceArrayClass.getDeclaredConstructor(sourceArrayClass);
@@ -129,6 +145,13 @@ public abstract class AbstractPrimitiveArray {
 
     AbstractPrimitiveArray(AbstractPrimitiveArray source) {
         this();
+        checkCopyable(source);
+    }
+
+    private static void checkCopyable(final AbstractPrimitiveArray source) {
+        if (source instanceof MappedPrimitiveArray) {
+            throw new UnsupportedOperationException("Memory mapped arrays cannot be copied");
+        }
     }
 
     final long _getLength() {
@@ -214,4 +237,62 @@ public abstract class AbstractPrimitiveArray {
 
         return longAddressableElements;
     }
+
+    /**
+     * Get the offset of the element at the given index within the internal storage partition containing it
+     */
+    static int partitionOffsetOf(final long index) {
+        if (index < Integer.MAX_VALUE) {
+            return (int) index;
+        }
+        return (int) (index - Integer.MAX_VALUE) & PARTITION_MASK;
+    }
+
+    /**
+     * Choose the index at which to split the range [fromIndex, toIndex) for parallel traversal: the middle of
+     * the range, moved to the nearest internal storage partition boundary when one lies within a quarter of the
+     * range's length of the middle, such that the halves stay balanced while each spans as few partitions as
+     * possible.
+     */
+    static long splitIndexOf(final long fromIndex, final long toIndex) {
+        final long length = toIndex - fromIndex;
+        final long mid = fromIndex + (length >>> 1);
+        if (toIndex <= Integer.MAX_VALUE) {
+            return mid;
+        }
+        final long below;
+        if (mid < Integer.MAX_VALUE) {
+            below = 0;
+        } else {
+            below = Integer.MAX_VALUE +
+                    (((mid - Integer.MAX_VALUE) >>> MAX_EXTRA_PARTITION_SIZE_POW2_EXPONENT) <<
+                            MAX_EXTRA_PARTITION_SIZE_POW2_EXPONENT);
+        }
+        final long above = (mid < Integer.MAX_VALUE) ? Integer.MAX_VALUE : below + MAX_EXTRA_PARTITION_SIZE;
+        final long boundary = ((mid - below) <= (above - mid)) ? below : above;
+        if ((boundary > fromIndex) && (boundary < toIndex) && (Math.abs(boundary - mid) <= (length >>> 2))) {
+            return boundary;
+        }
+        return mid;
+    }
+
+    final void _checkRange(final long fromIndex, final long toIndex) {
+        if (fromIndex > toIndex) {
+            throw new IllegalArgumentException("fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+        }
+        if (fromIndex < 0) {
+            throw new ArrayIndexOutOfBoundsException("fromIndex(" + fromIndex + ") < 0");
+        }
+        if (toIndex > _getLength()) {
+            throw new ArrayIndexOutOfBoundsException(
+                    "toIndex(" + toIndex + ") > length(" + _getLength() + ")");
+        }
+    }
+
+    final void _checkOffsetAndLength(final long offset, final long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length(" + length + ") < 0");
+        }
+        _checkRange(offset, offset + length);
+    }
 }
@@ -5,6 +5,8 @@
 
 package org.ObjectLayout;
 
+import java.util.Arrays;
+
 /**
  * This class contains the intrinsifiable portions of PrimitiveByteArray behavior. JDK implementations
  * that choose to intrinsify PrimitiveByteArray are expected to replace the implementation of this
@@ -15,8 +17,9 @@ abstract class AbstractPrimitiveByteArray extends AbstractPrimitiveArray {
 
     private final byte[][] longAddressableElements; // Used to store elements at indexes above Integer.MAX_VALUE
     private final byte[] intAddressableElements;
+    private final boolean heapBacked;
 
-    final byte[] _asArray() {
+    byte[] _asArray() {
         if (_getLength() > Integer.MAX_VALUE) {
             throw new IllegalStateException(
                     "Cannot make byte[] from array with more than Integer.MAX_VALUE elements (" +
@@ -49,6 +52,7 @@ abstract class AbstractPrimitiveByteArray extends AbstractPrimitiveArray {
     void _set(final long index, final byte value) {
         if (index < Integer.MAX_VALUE) {
             _set((int) index, value);
+            return;
         }
 
         // Calculate index into long-addressable-only partitions:
@@ -59,13 +63,151 @@ abstract class AbstractPrimitiveByteArray extends AbstractPrimitiveArray {
         longAddressableElements[partitionIndex][partitionOffset] = value;
     }
     
+    //
+    //
+    // Bulk operations:
+    //
+    //
+
+    /**
+     * OPTIMIZATION NOTE: Bulk operations walk the internal storage one partition at a time, operating on
+     * each partition with a single tight loop (or System.arraycopy), rather than going through the
+     * partition index math for every element. Optimized JDK implementations with a flat layout may replace
+     * them with operations spanning the entire range.
+     */
+
+    private byte[] partitionContaining(final long index) {
+        if (index < Integer.MAX_VALUE) {
+            return intAddressableElements;
+        }
+        return longAddressableElements[(int) ((index - Integer.MAX_VALUE) >>> MAX_EXTRA_PARTITION_SIZE_POW2_EXPONENT)];
+    }
+
+    void _fill(final long fromIndex, final long toIndex, final byte value) {
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                _set(i, value);
+            }
+            return;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final byte[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            Arrays.fill(partition, offset, offset + count, value);
+            index += count;
+        }
+    }
+
+    void _copyFrom(final AbstractPrimitiveByteArray src, final long srcOffset, final long dstOffset, final long length) {
+        final boolean copyBackwards = (src == this) && (srcOffset < dstOffset) && (dstOffset < srcOffset + length);
+        if (!heapBacked || !src.heapBacked) {
+            if (copyBackwards) {
+                for (long i = length - 1; i >= 0; i--) {
+                    _set(dstOffset + i, src._get(srcOffset + i));
+                }
+            } else {
+                for (long i = 0; i < length; i++) {
+                    _set(dstOffset + i, src._get(srcOffset + i));
+                }
+            }
+            return;
+        }
+        if (copyBackwards) {
+            // Copy from the end of the range, such that no source element is overwritten before it is copied:
+            long remaining = length;
+            while (remaining > 0) {
+                final long srcLastIndex = srcOffset + remaining - 1;
+                final long dstLastIndex = dstOffset + remaining - 1;
+                final int srcLastOffset = partitionOffsetOf(srcLastIndex);
+                final int dstLastOffset = partitionOffsetOf(dstLastIndex);
+                final int count = (int) Math.min(remaining, Math.min(srcLastOffset, dstLastOffset) + 1);
+                System.arraycopy(src.partitionContaining(srcLastIndex), srcLastOffset - count + 1,
+                        partitionContaining(dstLastIndex), dstLastOffset - count + 1, count);
+                remaining -= count;
+            }
+            return;
+        }
+        long copied = 0;
+        while (copied < length) {
+            final byte[] srcPartition = src.partitionContaining(srcOffset + copied);
+            final int srcPartitionOffset = partitionOffsetOf(srcOffset + copied);
+            final byte[] dstPartition = partitionContaining(dstOffset + copied);
+            final int dstPartitionOffset = partitionOffsetOf(dstOffset + copied);
+            final int count = (int) Math.min(length - copied,
+                    Math.min(srcPartition.length - srcPartitionOffset, dstPartition.length - dstPartitionOffset));
+            System.arraycopy(srcPartition, srcPartitionOffset, dstPartition, dstPartitionOffset, count);
+            copied += count;
+        }
+    }
+
+    long _mismatch(final long offset, final AbstractPrimitiveByteArray other, final long otherOffset, final long length) {
+        if (!heapBacked || !other.heapBacked) {
+            for (long i = 0; i < length; i++) {
+                if (_get(offset + i) != other._get(otherOffset + i)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        long compared = 0;
+        while (compared < length) {
+            final byte[] partition = partitionContaining(offset + compared);
+            final int partitionOffset = partitionOffsetOf(offset + compared);
+            final byte[] otherPartition = other.partitionContaining(otherOffset + compared);
+            final int otherPartitionOffset = partitionOffsetOf(otherOffset + compared);
+            final int count = (int) Math.min(length - compared,
+                    Math.min(partition.length - partitionOffset, otherPartition.length - otherPartitionOffset));
+            for (int i = 0; i < count; i++) {
+                if (partition[partitionOffset + i] != otherPartition[otherPartitionOffset + i]) {
+                    return compared + i;
+                }
+            }
+            compared += count;
+        }
+        return -1;
+    }
+
+    int _hashRange(final long fromIndex, final long toIndex) {
+        int result = 1;
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                final byte e = _get(i);
+                result = 31 * result + e;
+            }
+            return result;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final byte[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            for (int i = 0; i < count; i++) {
+                final byte e = partition[offset + i];
+                result = 31 * result + e;
+            }
+            index += count;
+        }
+        return result;
+    }
+
     AbstractPrimitiveByteArray() {
         intAddressableElements = (byte[]) createIntAddressableElements(byte.class);
         longAddressableElements = (byte[][]) createLongAddressableElements(byte.class);
+        heapBacked = true;
+    }
+
+    AbstractPrimitiveByteArray(final MappedArrayStorage mappedStorage) {
+        // Elements are held in the mapped storage, and accessed by the mapped subclass:
+        intAddressableElements = new byte[0];
+        longAddressableElements = new byte[0][];
+        heapBacked = false;
     }
 
     AbstractPrimitiveByteArray(AbstractPrimitiveByteArray sourceArray) {
         intAddressableElements = sourceArray.intAddressableElements.clone();
+        heapBacked = true;
         int numLongAddressablePartitions = sourceArray.longAddressableElements.length;
         longAddressableElements = new byte[numLongAddressablePartitions][];
         for (int i = 0; i < numLongAddressablePartitions; i++) {
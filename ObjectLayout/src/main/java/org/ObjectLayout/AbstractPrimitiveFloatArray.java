@@ -5,6 +5,9 @@
 
 package org.ObjectLayout;
 
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
 /**
  * This class contains the intrinsifiable portions of PrimitiveFloatArray behavior. JDK implementations
  * that choose to intrinsify PrimitiveFloatArray are expected to replace the implementation of this
@@ -15,8 +18,9 @@ abstract class AbstractPrimitiveFloatArray extends AbstractPrimitiveArray {
 
     private final float[][] longAddressableElements; // Used to store elements at indexes above Integer.MAX_VALUE
     private final float[] intAddressableElements;
+    private final boolean heapBacked;
 
-    final float[] _asArray() {
+    float[] _asArray() {
         if (_getLength() > Integer.MAX_VALUE) {
             throw new IllegalStateException(
                     "Cannot make float[] from array with more than Integer.MAX_VALUE elements (" +
@@ -49,6 +53,7 @@ abstract class AbstractPrimitiveFloatArray extends AbstractPrimitiveArray {
     void _set(final long index, final float value) {
         if (index < Integer.MAX_VALUE) {
             _set((int) index, value);
+            return;
         }
 
         // Calculate index into long-addressable-only partitions:
@@ -59,13 +64,353 @@ abstract class AbstractPrimitiveFloatArray extends AbstractPrimitiveArray {
         longAddressableElements[partitionIndex][partitionOffset] = value;
     }
 
+    //
+    //
+    // Bulk operations:
+    //
+    //
+
+    /**
+     * OPTIMIZATION NOTE: Bulk operations walk the internal storage one partition at a time, operating on
+     * each partition with a single tight loop (or System.arraycopy), rather than going through the
+     * partition index math for every element. Optimized JDK implementations with a flat layout may replace
+     * them with operations spanning the entire range.
+     */
+
+    private float[] partitionContaining(final long index) {
+        if (index < Integer.MAX_VALUE) {
+            return intAddressableElements;
+        }
+        return longAddressableElements[(int) ((index - Integer.MAX_VALUE) >>> MAX_EXTRA_PARTITION_SIZE_POW2_EXPONENT)];
+    }
+
+    void _fill(final long fromIndex, final long toIndex, final float value) {
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                _set(i, value);
+            }
+            return;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final float[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            Arrays.fill(partition, offset, offset + count, value);
+            index += count;
+        }
+    }
+
+    void _copyFrom(final AbstractPrimitiveFloatArray src, final long srcOffset, final long dstOffset, final long length) {
+        final boolean copyBackwards = (src == this) && (srcOffset < dstOffset) && (dstOffset < srcOffset + length);
+        if (!heapBacked || !src.heapBacked) {
+            if (copyBackwards) {
+                for (long i = length - 1; i >= 0; i--) {
+                    _set(dstOffset + i, src._get(srcOffset + i));
+                }
+            } else {
+                for (long i = 0; i < length; i++) {
+                    _set(dstOffset + i, src._get(srcOffset + i));
+                }
+            }
+            return;
+        }
+        if (copyBackwards) {
+            // Copy from the end of the range, such that no source element is overwritten before it is copied:
+            long remaining = length;
+            while (remaining > 0) {
+                final long srcLastIndex = srcOffset + remaining - 1;
+                final long dstLastIndex = dstOffset + remaining - 1;
+                final int srcLastOffset = partitionOffsetOf(srcLastIndex);
+                final int dstLastOffset = partitionOffsetOf(dstLastIndex);
+                final int count = (int) Math.min(remaining, Math.min(srcLastOffset, dstLastOffset) + 1);
+                System.arraycopy(src.partitionContaining(srcLastIndex), srcLastOffset - count + 1,
+                        partitionContaining(dstLastIndex), dstLastOffset - count + 1, count);
+                remaining -= count;
+            }
+            return;
+        }
+        long copied = 0;
+        while (copied < length) {
+            final float[] srcPartition = src.partitionContaining(srcOffset + copied);
+            final int srcPartitionOffset = partitionOffsetOf(srcOffset + copied);
+            final float[] dstPartition = partitionContaining(dstOffset + copied);
+            final int dstPartitionOffset = partitionOffsetOf(dstOffset + copied);
+            final int count = (int) Math.min(length - copied,
+                    Math.min(srcPartition.length - srcPartitionOffset, dstPartition.length - dstPartitionOffset));
+            System.arraycopy(srcPartition, srcPartitionOffset, dstPartition, dstPartitionOffset, count);
+            copied += count;
+        }
+    }
+
+    long _mismatch(final long offset, final AbstractPrimitiveFloatArray other, final long otherOffset, final long length) {
+        if (!heapBacked || !other.heapBacked) {
+            for (long i = 0; i < length; i++) {
+                if (Float.floatToIntBits(_get(offset + i)) != Float.floatToIntBits(other._get(otherOffset + i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        long compared = 0;
+        while (compared < length) {
+            final float[] partition = partitionContaining(offset + compared);
+            final int partitionOffset = partitionOffsetOf(offset + compared);
+            final float[] otherPartition = other.partitionContaining(otherOffset + compared);
+            final int otherPartitionOffset = partitionOffsetOf(otherOffset + compared);
+            final int count = (int) Math.min(length - compared,
+                    Math.min(partition.length - partitionOffset, otherPartition.length - otherPartitionOffset));
+            for (int i = 0; i < count; i++) {
+                if (Float.floatToIntBits(partition[partitionOffset + i]) != Float.floatToIntBits(otherPartition[otherPartitionOffset + i])) {
+                    return compared + i;
+                }
+            }
+            compared += count;
+        }
+        return -1;
+    }
+
+    int _hashRange(final long fromIndex, final long toIndex) {
+        int result = 1;
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                final float e = _get(i);
+                result = 31 * result + Float.floatToIntBits(e);
+            }
+            return result;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final float[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            for (int i = 0; i < count; i++) {
+                final float e = partition[offset + i];
+                result = 31 * result + Float.floatToIntBits(e);
+            }
+            index += count;
+        }
+        return result;
+    }
+
+    //
+    //
+    // Numeric kernels:
+    //
+    //
+
+    /**
+     * OPTIMIZATION NOTE: Numeric kernels run over each backing partition directly, with counted loops over
+     * plain float[] ranges and no per-element partition index math. Sums and dot products are reduced into
+     * four independent accumulators (combined at the end of each partition), which breaks the dependency
+     * chain of a single running sum. Element-wise kernels (axpy, map) are simple counted loops that JIT
+     * compilers can auto-vectorize. Optimized JDK implementations may replace these with explicitly
+     * vectorized code.
+     */
+
+    double _sum(final long fromIndex, final long toIndex) {
+        double sum = 0;
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                sum += _get(i);
+            }
+            return sum;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final float[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            sum += sum(partition, offset, count);
+            index += count;
+        }
+        return sum;
+    }
+
+    double _dot(final long offset, final AbstractPrimitiveFloatArray other, final long otherOffset, final long length) {
+        double sum = 0;
+        if (!heapBacked || !other.heapBacked) {
+            for (long i = 0; i < length; i++) {
+                sum += (double) _get(offset + i) * other._get(otherOffset + i);
+            }
+            return sum;
+        }
+        long done = 0;
+        while (done < length) {
+            final float[] partition = partitionContaining(offset + done);
+            final int partitionOffset = partitionOffsetOf(offset + done);
+            final float[] otherPartition = other.partitionContaining(otherOffset + done);
+            final int otherPartitionOffset = partitionOffsetOf(otherOffset + done);
+            final int count = (int) Math.min(length - done,
+                    Math.min(partition.length - partitionOffset, otherPartition.length - otherPartitionOffset));
+            sum += dot(partition, partitionOffset, otherPartition, otherPartitionOffset, count);
+            done += count;
+        }
+        return sum;
+    }
+
+    float _min(final long fromIndex, final long toIndex) {
+        float min = Float.POSITIVE_INFINITY;
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                min = Math.min(min, _get(i));
+            }
+            return min;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final float[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            for (int i = offset; i < offset + count; i++) {
+                min = Math.min(min, partition[i]);
+            }
+            index += count;
+        }
+        return min;
+    }
+
+    float _max(final long fromIndex, final long toIndex) {
+        float max = Float.NEGATIVE_INFINITY;
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                max = Math.max(max, _get(i));
+            }
+            return max;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final float[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            for (int i = offset; i < offset + count; i++) {
+                max = Math.max(max, partition[i]);
+            }
+            index += count;
+        }
+        return max;
+    }
+
+    void _axpy(final float a, final AbstractPrimitiveFloatArray x, final long xOffset, final long offset, final long length) {
+        if ((x == this) && (xOffset < offset) && (offset < xOffset + length)) {
+            // Overlapping ranges, with sources ahead of destinations: update from the end of the range, such
+            // that no source element is updated before it is read:
+            for (long i = length - 1; i >= 0; i--) {
+                _set(offset + i, _get(offset + i) + a * x._get(xOffset + i));
+            }
+            return;
+        }
+        if (!heapBacked || !x.heapBacked) {
+            for (long i = 0; i < length; i++) {
+                _set(offset + i, _get(offset + i) + a * x._get(xOffset + i));
+            }
+            return;
+        }
+        long done = 0;
+        while (done < length) {
+            final float[] partition = partitionContaining(offset + done);
+            final int partitionOffset = partitionOffsetOf(offset + done);
+            final float[] xPartition = x.partitionContaining(xOffset + done);
+            final int xPartitionOffset = partitionOffsetOf(xOffset + done);
+            final int count = (int) Math.min(length - done,
+                    Math.min(partition.length - partitionOffset, xPartition.length - xPartitionOffset));
+            for (int i = 0; i < count; i++) {
+                partition[partitionOffset + i] += a * xPartition[xPartitionOffset + i];
+            }
+            done += count;
+        }
+    }
+
+    void _prefixSum(final long fromIndex, final long toIndex) {
+        double sum = 0;
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                sum += _get(i);
+                _set(i, (float) sum);
+            }
+            return;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final float[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            for (int i = offset; i < offset + count; i++) {
+                sum += partition[i];
+                partition[i] = (float) sum;
+            }
+            index += count;
+        }
+    }
+
+    void _map(final long fromIndex, final long toIndex, final DoubleUnaryOperator operator) {
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                _set(i, (float) operator.applyAsDouble(_get(i)));
+            }
+            return;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final float[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            for (int i = offset; i < offset + count; i++) {
+                partition[i] = (float) operator.applyAsDouble(partition[i]);
+            }
+            index += count;
+        }
+    }
+
+    private static double sum(final float[] a, final int offset, final int count) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        final int end = offset + count;
+        final int unrolledEnd = offset + (count & ~3);
+        int i = offset;
+        for (; i < unrolledEnd; i += 4) {
+            s0 += a[i];
+            s1 += a[i + 1];
+            s2 += a[i + 2];
+            s3 += a[i + 3];
+        }
+        for (; i < end; i++) {
+            s0 += a[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static double dot(final float[] a, final int aOffset, final float[] b, final int bOffset, final int count) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        final int unrolledCount = count & ~3;
+        int i = 0;
+        for (; i < unrolledCount; i += 4) {
+            s0 += (double) a[aOffset + i] * b[bOffset + i];
+            s1 += (double) a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += (double) a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += (double) a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < count; i++) {
+            s0 += (double) a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
     AbstractPrimitiveFloatArray() {
         intAddressableElements = (float[]) createIntAddressableElements(float.class);
         longAddressableElements = (float[][]) createLongAddressableElements(float.class);
+        heapBacked = true;
+    }
+
+    AbstractPrimitiveFloatArray(final MappedArrayStorage mappedStorage) {
+        // Elements are held in the mapped storage, and accessed by the mapped subclass:
+        intAddressableElements = new float[0];
+        longAddressableElements = new float[0][];
+        heapBacked = false;
     }
 
     AbstractPrimitiveFloatArray(AbstractPrimitiveFloatArray sourceArray) {
         intAddressableElements = sourceArray.intAddressableElements.clone();
+        heapBacked = true;
         int numLongAddressablePartitions = sourceArray.longAddressableElements.length;
         longAddressableElements = new float[numLongAddressablePartitions][];
         for (int i = 0; i < numLongAddressablePartitions; i++) {
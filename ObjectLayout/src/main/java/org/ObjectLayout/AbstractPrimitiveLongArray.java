@@ -5,6 +5,10 @@
 
 package org.ObjectLayout;
 
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
 /**
  * This class contains the intrinsifiable portions of PrimitiveLongArray behavior. JDK implementations
  * that choose to intrinsify PrimitiveLongArray are expected to replace the implementation of this
@@ -15,8 +19,9 @@ abstract class AbstractPrimitiveLongArray extends AbstractPrimitiveArray {
 
     private final long[][] longAddressableElements; // Used to store elements at indexes above Integer.MAX_VALUE
     private final long[] intAddressableElements;
+    private final boolean heapBacked;
 
-    final long[] _asArray() {
+    long[] _asArray() {
         if (_getLength() > Integer.MAX_VALUE) {
             throw new IllegalStateException(
                     "Cannot make long[] from array with more than Integer.MAX_VALUE elements (" +
@@ -49,6 +54,7 @@ abstract class AbstractPrimitiveLongArray extends AbstractPrimitiveArray {
     void _set(final long index, final long value) {
         if (index < Integer.MAX_VALUE) {
             _set((int) index, value);
+            return;
         }
 
         // Calculate index into long-addressable-only partitions:
@@ -59,13 +65,237 @@ abstract class AbstractPrimitiveLongArray extends AbstractPrimitiveArray {
         longAddressableElements[partitionIndex][partitionOffset] = value;
     }
 
+    //
+    //
+    // Bulk operations:
+    //
+    //
+
+    /**
+     * OPTIMIZATION NOTE: Bulk operations walk the internal storage one partition at a time, operating on
+     * each partition with a single tight loop (or System.arraycopy), rather than going through the
+     * partition index math for every element. Optimized JDK implementations with a flat layout may replace
+     * them with operations spanning the entire range.
+     */
+
+    private long[] partitionContaining(final long index) {
+        if (index < Integer.MAX_VALUE) {
+            return intAddressableElements;
+        }
+        return longAddressableElements[(int) ((index - Integer.MAX_VALUE) >>> MAX_EXTRA_PARTITION_SIZE_POW2_EXPONENT)];
+    }
+
+    void _fill(final long fromIndex, final long toIndex, final long value) {
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                _set(i, value);
+            }
+            return;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final long[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            Arrays.fill(partition, offset, offset + count, value);
+            index += count;
+        }
+    }
+
+    void _copyFrom(final AbstractPrimitiveLongArray src, final long srcOffset, final long dstOffset, final long length) {
+        final boolean copyBackwards = (src == this) && (srcOffset < dstOffset) && (dstOffset < srcOffset + length);
+        if (!heapBacked || !src.heapBacked) {
+            if (copyBackwards) {
+                for (long i = length - 1; i >= 0; i--) {
+                    _set(dstOffset + i, src._get(srcOffset + i));
+                }
+            } else {
+                for (long i = 0; i < length; i++) {
+                    _set(dstOffset + i, src._get(srcOffset + i));
+                }
+            }
+            return;
+        }
+        if (copyBackwards) {
+            // Copy from the end of the range, such that no source element is overwritten before it is copied:
+            long remaining = length;
+            while (remaining > 0) {
+                final long srcLastIndex = srcOffset + remaining - 1;
+                final long dstLastIndex = dstOffset + remaining - 1;
+                final int srcLastOffset = partitionOffsetOf(srcLastIndex);
+                final int dstLastOffset = partitionOffsetOf(dstLastIndex);
+                final int count = (int) Math.min(remaining, Math.min(srcLastOffset, dstLastOffset) + 1);
+                System.arraycopy(src.partitionContaining(srcLastIndex), srcLastOffset - count + 1,
+                        partitionContaining(dstLastIndex), dstLastOffset - count + 1, count);
+                remaining -= count;
+            }
+            return;
+        }
+        long copied = 0;
+        while (copied < length) {
+            final long[] srcPartition = src.partitionContaining(srcOffset + copied);
+            final int srcPartitionOffset = partitionOffsetOf(srcOffset + copied);
+            final long[] dstPartition = partitionContaining(dstOffset + copied);
+            final int dstPartitionOffset = partitionOffsetOf(dstOffset + copied);
+            final int count = (int) Math.min(length - copied,
+                    Math.min(srcPartition.length - srcPartitionOffset, dstPartition.length - dstPartitionOffset));
+            System.arraycopy(srcPartition, srcPartitionOffset, dstPartition, dstPartitionOffset, count);
+            copied += count;
+        }
+    }
+
+    long _mismatch(final long offset, final AbstractPrimitiveLongArray other, final long otherOffset, final long length) {
+        if (!heapBacked || !other.heapBacked) {
+            for (long i = 0; i < length; i++) {
+                if (_get(offset + i) != other._get(otherOffset + i)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        long compared = 0;
+        while (compared < length) {
+            final long[] partition = partitionContaining(offset + compared);
+            final int partitionOffset = partitionOffsetOf(offset + compared);
+            final long[] otherPartition = other.partitionContaining(otherOffset + compared);
+            final int otherPartitionOffset = partitionOffsetOf(otherOffset + compared);
+            final int count = (int) Math.min(length - compared,
+                    Math.min(partition.length - partitionOffset, otherPartition.length - otherPartitionOffset));
+            for (int i = 0; i < count; i++) {
+                if (partition[partitionOffset + i] != otherPartition[otherPartitionOffset + i]) {
+                    return compared + i;
+                }
+            }
+            compared += count;
+        }
+        return -1;
+    }
+
+    int _hashRange(final long fromIndex, final long toIndex) {
+        int result = 1;
+        if (!heapBacked) {
+            for (long i = fromIndex; i < toIndex; i++) {
+                final long e = _get(i);
+                result = 31 * result + (int) (e ^ (e >>> 32));
+            }
+            return result;
+        }
+        long index = fromIndex;
+        while (index < toIndex) {
+            final long[] partition = partitionContaining(index);
+            final int offset = partitionOffsetOf(index);
+            final int count = (int) Math.min(toIndex - index, partition.length - offset);
+            for (int i = 0; i < count; i++) {
+                final long e = partition[offset + i];
+                result = 31 * result + (int) (e ^ (e >>> 32));
+            }
+            index += count;
+        }
+        return result;
+    }
+
+    //
+    //
+    // Spliterator support:
+    //
+    //
+
+    Spliterator.OfLong _spliterator(final long fromIndex, final long toIndex) {
+        return new PartitionedSpliterator(fromIndex, toIndex);
+    }
+
+    /**
+     * A spliterator over a range of the array, which splits on index ranges (preferring internal storage
+     * partition boundaries near the middle of the range, see {@link #splitIndexOf}).
+     * <p>
+     * OPTIMIZATION NOTE: forEachRemaining walks the internal storage one partition at a time, with a tight
+     * loop over each partition, such that bulk traversals (as used by stream terminal operations) avoid the
+     * partition index math for every element.
+     */
+    private final class PartitionedSpliterator implements Spliterator.OfLong {
+        private long index;
+        private final long fence;
+
+        PartitionedSpliterator(final long fromIndex, final long toIndex) {
+            this.index = fromIndex;
+            this.fence = toIndex;
+        }
+
+        @Override
+        public boolean tryAdvance(final LongConsumer action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(_get(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final LongConsumer action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            long i = index;
+            final long end = fence;
+            index = end;
+            if (!heapBacked) {
+                for (; i < end; i++) {
+                    action.accept(_get(i));
+                }
+                return;
+            }
+            while (i < end) {
+                final long[] partition = partitionContaining(i);
+                final int offset = partitionOffsetOf(i);
+                final int count = (int) Math.min(end - i, partition.length - offset);
+                for (int j = offset; j < offset + count; j++) {
+                    action.accept(partition[j]);
+                }
+                i += count;
+            }
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            final long lo = index;
+            if (fence - lo < 2) {
+                return null;
+            }
+            final long mid = splitIndexOf(lo, fence);
+            index = mid;
+            return new PartitionedSpliterator(lo, mid);
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     AbstractPrimitiveLongArray() {
         intAddressableElements = (long[]) createIntAddressableElements(long.class);
         longAddressableElements = (long[][]) createLongAddressableElements(long.class);
+        heapBacked = true;
+    }
+
+    AbstractPrimitiveLongArray(final MappedArrayStorage mappedStorage) {
+        // Elements are held in the mapped storage, and accessed by the mapped subclass:
+        intAddressableElements = new long[0];
+        longAddressableElements = new long[0][];
+        heapBacked = false;
     }
 
     AbstractPrimitiveLongArray(AbstractPrimitiveLongArray sourceArray) {
         intAddressableElements = sourceArray.intAddressableElements.clone();
+        heapBacked = true;
         int numLongAddressablePartitions = sourceArray.longAddressableElements.length;
         longAddressableElements = new long[numLongAddressablePartitions][];
         for (int i = 0; i < numLongAddressablePartitions; i++) {
@@ -89,25 +89,73 @@ abstract class AbstractStructuredArray<T> {
 
     /**
      * Construct a fresh element intended to occupy a given index in the given array, using the
-     * supplied constructor and arguments.
+     * supplied constructor factory and arguments.
      *
      * OPTIMIZATION NOTE: Optimized JDK implementations may replace this implementation with a
      * construction-in-place call on a previously allocated memory location associated with the given index.
      */
     void constructElementAtIndex(
             final long index,
-            final Constructor<T> constructor,
+            final ConstructorFactory<T> constructorFactory,
             final Object... args) {
-        try {
-            T element = constructor.newInstance(args);
-            storeElementInLocalStorageAtIndex(element, index);
-        } catch (InstantiationException ex) {
-            throw new RuntimeException(ex);
-        } catch (IllegalAccessException ex) {
-            throw new RuntimeException(ex);
-        } catch (InvocationTargetException ex) {
-            throw new RuntimeException(ex);
+        T element = constructorFactory.newInstance(args);
+        storeElementInLocalStorageAtIndex(element, index);
+    }
+
+    /**
+     * Separate the element constructed at a given index from the element constructed next, such that the two
+     * do not share an alignment-sized block of memory. Must only be called after
+     * {@link #allocateElementSpacers()}.
+     *
+     * OPTIMIZATION NOTE: The vanilla implementation allocates an alignment-sized spacer right after the element,
+     * and retains it for the lifetime of the array. Since garbage collectors that compact the heap by sliding
+     * objects preserve their allocation order, the live spacers keep consecutively constructed elements apart
+     * across such collections. Copying collectors may still place elements next to each other. Optimized JDK
+     * implementations may replace this implementation with one that places elements at aligned strides in the
+     * array's layout.
+     */
+    void spaceElementAtIndex(final long index, final int alignment) {
+        final byte[] spacer = new byte[spacerLengthFor(alignment)];
+        // place in proper internal storage location:
+        if (index < Integer.MAX_VALUE) {
+            intAddressableSpacers[(int) index] = spacer;
+            return;
         }
+
+        // Calculate index into long-addressable-only partitions:
+        final long longIndex = (index - Integer.MAX_VALUE);
+        final int partitionIndex = (int) (longIndex >>> MAX_EXTRA_PARTITION_SIZE_POW2_EXPONENT);
+        final int partitionOffset = (int) longIndex & PARTITION_MASK;
+
+        longAddressableSpacers[partitionIndex][partitionOffset] = spacer;
+    }
+
+    /**
+     * Get the length of the byte[] spacers that {@link #spaceElementAtIndex} allocates for a given alignment,
+     * such that a spacer (including its header) spans an alignment-sized block of memory.
+     */
+    static int spacerLengthFor(final int alignment) {
+        return Math.max(alignment - SPACER_HEADER_SIZE, 0);
+    }
+
+    /**
+     * Get the spacer allocated after the element at a given index by {@link #spaceElementAtIndex}, or null if
+     * the elements of this array are not spaced.
+     */
+    Object elementSpacerAt(final long index) {
+        if (intAddressableSpacers == null) {
+            return null;
+        }
+        if (index < Integer.MAX_VALUE) {
+            return intAddressableSpacers[(int) index];
+        }
+
+        // Calculate index into long-addressable-only partitions:
+        final long longIndex = (index - Integer.MAX_VALUE);
+        final int partitionIndex = (int) (longIndex >>> MAX_EXTRA_PARTITION_SIZE_POW2_EXPONENT);
+        final int partitionOffset = (int) longIndex & PARTITION_MASK;
+
+        return longAddressableSpacers[partitionIndex][partitionOffset];
     }
 
     /**
@@ -132,7 +180,7 @@ abstract class AbstractStructuredArray<T> {
 
     /**
      * Construct a fresh sub-array intended to occupy a given index in the given array, using the
-     * supplied constructor.
+     * supplied constructor factory.
      *
      * OPTIMIZATION NOTE: Optimized JDK implementations may replace this implementation with a
      * construction-in-place call on a previously allocated memory location associated with the given index.
@@ -140,20 +188,14 @@ abstract class AbstractStructuredArray<T> {
     void constructSubArrayAtIndex(
             long index,
             AbstractStructuredArrayModel subArrayModel,
-            final Constructor<T> subArrayConstructor,
+            final ConstructorFactory<T> subArrayConstructorFactory,
             final Object... args) {
         ConstructorMagic constructorMagic = getConstructorMagic();
         constructorMagic.setConstructionArgs(subArrayModel);
         try {
             constructorMagic.setActive(true);
-            T subArray = subArrayConstructor.newInstance(args);
+            T subArray = subArrayConstructorFactory.newInstance(args);
             storeElementInLocalStorageAtIndex(subArray, index);
-        } catch (InstantiationException ex) {
-            throw new RuntimeException(ex);
-        } catch (IllegalAccessException ex) {
-            throw new RuntimeException(ex);
-        } catch (InvocationTargetException ex) {
-            throw new RuntimeException(ex);
         } finally {
             constructorMagic.setActive(false);
         }
@@ -274,9 +316,16 @@ abstract class AbstractStructuredArray<T> {
     static final int MAX_EXTRA_PARTITION_SIZE = 1 << MAX_EXTRA_PARTITION_SIZE_POW2_EXPONENT;
     static final int PARTITION_MASK = MAX_EXTRA_PARTITION_SIZE - 1;
 
+    // Approximate size of the header of the byte[] spacers allocated by spaceElementAtIndex:
+    static final int SPACER_HEADER_SIZE = 16;
+
     private T[][] longAddressableElements; // Used to store elements at indexes above Integer.MAX_VALUE
     private T[] intAddressableElements;
 
+    // Spacers allocated by spaceElementAtIndex, retained for the lifetime of the array (null if unused):
+    private Object[][] longAddressableSpacers;
+    private Object[] intAddressableSpacers;
+
 
     @SuppressWarnings("unchecked")
     private void allocateInternalStorage(final long length) {
@@ -299,6 +348,18 @@ abstract class AbstractStructuredArray<T> {
         longAddressableElements[numFullPartitions] = (T[]) new Object[lastPartitionSize];
     }
 
+    /**
+     * Allocate the storage that retains the spacers allocated by {@link #spaceElementAtIndex}. Must be called
+     * before any elements are populated, such that population tasks only ever write to their own indexes.
+     */
+    void allocateElementSpacers() {
+        intAddressableSpacers = new Object[intAddressableElements.length];
+        longAddressableSpacers = new Object[longAddressableElements.length][];
+        for (int i = 0; i < longAddressableSpacers.length; i++) {
+            longAddressableSpacers[i] = new Object[longAddressableElements[i].length];
+        }
+    }
+
     private void storeElementInLocalStorageAtIndex(T element, long index0) {
         // place in proper internal storage location:
         if (index0 < Integer.MAX_VALUE) {
@@ -0,0 +1,110 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+
+import static java.lang.reflect.Modifier.isFinal;
+import static java.lang.reflect.Modifier.isPublic;
+import static java.lang.reflect.Modifier.isStatic;
+
+/**
+ * The common base of the element field handles ({@link StructuredArrayLongField},
+ * {@link StructuredArrayIntField}, {@link StructuredArrayReferenceField}), which provide atomic and
+ * ordered access to a field of the elements of {@link StructuredArray}s.
+ * <p>
+ * OPTIMIZATION NOTE: The vanilla implementation resolves the field to an object field offset once, at
+ * handle creation, and performs each access with a single Unsafe operation (see {@link UnsafeAccess}) on the
+ * element at the given index. Optimized implementations that lay out elements flat within the array can compute
+ * the field address directly from the array base, the element index and the field offset, with no element
+ * dereference at all.
+ *
+ * @param <T> The element class the field is declared in (or inherited by)
+ */
+abstract class AbstractStructuredArrayField<T> {
+    private final Class<T> elementClass;
+    private final Field field;
+    final long offset;
+
+    AbstractStructuredArrayField(final MethodHandles.Lookup lookup,
+                                 final Class<T> elementClass,
+                                 final String fieldName,
+                                 final Class<?> fieldType) {
+        if (!UnsafeAccess.AVAILABLE) {
+            throw new UnsupportedOperationException(
+                    "Element field handles are not supported on this JVM (sun.misc.Unsafe is not available)");
+        }
+        this.elementClass = elementClass;
+        this.field = findField(elementClass, fieldName);
+
+        if (isFinal(field.getModifiers())) {
+            throw new IllegalArgumentException("Field " + field + " is final");
+        }
+        if (field.getType() != fieldType) {
+            throw new IllegalArgumentException("Field " + field + " is not of type " + fieldType.getName());
+        }
+        checkAccess(lookup, field);
+
+        this.offset = UnsafeAccess.objectFieldOffset(field);
+    }
+
+    /**
+     * Get the element class this handle accesses fields in
+     *
+     * @return the element class this handle accesses fields in
+     */
+    public Class<T> getElementClass() {
+        return elementClass;
+    }
+
+    /**
+     * Get the field this handle accesses
+     *
+     * @return the field this handle accesses
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Get the element at the given index, checked to be an instance of the element class, such that
+     * unsafe accesses at the field offset are safe even for unchecked (raw typed) arrays.
+     */
+    final Object elementAt(final StructuredArray<? extends T> array, final long index) {
+        return elementClass.cast(array.get(index));
+    }
+
+    private static Field findField(final Class<?> elementClass, final String fieldName) {
+        for (Class<?> cls = elementClass; cls != null; cls = cls.getSuperclass()) {
+            try {
+                final Field field = cls.getDeclaredField(fieldName);
+                if (!isStatic(field.getModifiers())) {
+                    return field;
+                }
+            } catch (NoSuchFieldException ex) {
+                // Look in the superclass
+            }
+        }
+        throw new IllegalArgumentException(
+                "No instance field named \"" + fieldName + "\" in " + elementClass.getName());
+    }
+
+    private static void checkAccess(final MethodHandles.Lookup lookup, final Field field) {
+        if (lookup == null) {
+            if (!isPublic(field.getModifiers()) || !isPublic(field.getDeclaringClass().getModifiers())) {
+                throw new IllegalArgumentException("Field " + field +
+                        " is not public, and no lookup object was supplied to access it with");
+            }
+            return;
+        }
+        try {
+            lookup.unreflectSetter(field);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Field " + field + " is not accessible through " + lookup, ex);
+        }
+    }
+}
@@ -0,0 +1,502 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+/**
+ *     An array of elements whose (primitive) fields are stored in columns: each field of the element class is
+ *     held, for all elements, in a primitive array of its own (e.g. a {@link PrimitiveLongArray} for a
+ *     {@code long} field), rather than in individual element objects.
+ * <p>
+ *     Columnar (struct-of-arrays) storage suits scan-heavy workloads that read a few fields of many elements:
+ *     a scan over one field reads only that field's column, sequentially, at full memory bandwidth, without
+ *     touching the other fields of the elements. Columns are projected with the typed column accessors
+ *     (e.g. {@link #getLongColumn(int)}), and can be traversed with their own bulk operations and streams:
+ * <blockquote><pre>
+ * final ColumnarStructuredArray&lt;Trade&gt; trades = ColumnarStructuredArray.newInstance(Trade.class, length);
+ * final int notional = trades.getLayout().getFieldIndex("notional");
+ * final double total = trades.getDoubleColumn(notional).parallelStream().sum();
+ * </pre></blockquote>
+ *     Whole elements are loaded into and stored from flyweight views with {@link #get(long, Object)} and
+ *     {@link #set(long, Object)}, and individual fields can be accessed with the typed accessors, as with the
+ *     row layout of {@link FlatStructuredArray}. Both implement {@link FlatArray}, so the layout of an array
+ *     can be chosen without changing the code that accesses it.
+ * <p>
+ *     Only element classes whose instance fields are all primitive can be stored in columns. {@code boolean}
+ *     fields are stored in {@link PrimitiveByteArray} columns, holding 1 for true and 0 for false. Element
+ *     constructors are not invoked for elements stored in a columnar array, and all fields of newly created
+ *     arrays are zero.
+ *
+ * @param <T> The class of the array elements
+ */
+public final class ColumnarStructuredArray<T> implements FlatArray<T> {
+    private final FlatElementLayout<T> layout;
+    private final long length;
+    private final Class<?>[] fieldTypes;
+    private final AbstractPrimitiveArray[] columns;
+
+    private ColumnarStructuredArray(final FlatElementLayout<T> layout, final long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length cannot be negative");
+        }
+        this.layout = layout;
+        this.length = length;
+        this.fieldTypes = new Class<?>[layout.getFieldCount()];
+        this.columns = new AbstractPrimitiveArray[fieldTypes.length];
+        for (int i = 0; i < columns.length; i++) {
+            fieldTypes[i] = layout.getFieldType(i);
+            columns[i] = newColumn(fieldTypes[i], length);
+        }
+    }
+
+    /**
+     * Create an array of <code>length</code> elements of type <code>elementClass</code>, with all element
+     * fields initialized to zero.
+     *
+     * @param elementClass of each element in the array
+     * @param length of the array to create
+     * @param <T> The element type
+     * @return The newly created array
+     * @throws IllegalArgumentException if the element class has non-primitive instance fields
+     */
+    public static <T> ColumnarStructuredArray<T> newInstance(final Class<T> elementClass, final long length) {
+        return new ColumnarStructuredArray<>(FlatElementLayout.forClass(elementClass), length);
+    }
+
+    /**
+     * Create an array with the element class and length described by the given array model.
+     *
+     * @param arrayModel The model of the array to create
+     * @param <T> The element type
+     * @return The newly created array
+     * @throws IllegalArgumentException if the model describes nested arrays, or if the element class has
+     * non-primitive instance fields
+     */
+    public static <T> ColumnarStructuredArray<T> newInstance(
+            final StructuredArrayModel<? extends StructuredArray<T>, T> arrayModel) {
+        if ((arrayModel.getStructuredSubArrayModel() != null) || (arrayModel.getPrimitiveSubArrayModel() != null)) {
+            throw new IllegalArgumentException("Columnar arrays cannot contain nested arrays");
+        }
+        return newInstance(arrayModel.getElementClass(), arrayModel.getLength());
+    }
+
+    /**
+     * Get the length (number of elements) of the array.
+     *
+     * @return the number of elements in the array.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Get the {@link Class} of elements stored in the array.
+     *
+     * @return the {@link Class} of elements stored in the array.
+     */
+    public Class<T> getElementClass() {
+        return layout.getElementClass();
+    }
+
+    /**
+     * Get the layout of the elements stored in the array, which assigns the index of each field (and column)
+     *
+     * @return the layout of the elements stored in the array
+     */
+    public FlatElementLayout<T> getLayout() {
+        return layout;
+    }
+
+    /**
+     * Load the fields of the element at the given index into the supplied element object (the view). The view
+     * is a snapshot: changes to it are not reflected in the array until stored back with {@link #set}.
+     *
+     * @param index of the element to load
+     * @param view the element object to load the element's fields into
+     * @return the supplied view
+     */
+    public T get(final long index, final T view) {
+        checkIndex(index);
+        for (int i = 0; i < columns.length; i++) {
+            final Class<?> type = fieldTypes[i];
+            if (type == long.class) {
+                layout.setLongField(view, i, ((PrimitiveLongArray) columns[i]).get(index));
+            } else if (type == double.class) {
+                layout.setDoubleField(view, i, ((PrimitiveDoubleArray) columns[i]).get(index));
+            } else if (type == int.class) {
+                layout.setIntField(view, i, ((PrimitiveIntArray) columns[i]).get(index));
+            } else if (type == float.class) {
+                layout.setFloatField(view, i, ((PrimitiveFloatArray) columns[i]).get(index));
+            } else if (type == short.class) {
+                layout.setShortField(view, i, ((PrimitiveShortArray) columns[i]).get(index));
+            } else if (type == char.class) {
+                layout.setCharField(view, i, ((PrimitiveCharArray) columns[i]).get(index));
+            } else if (type == byte.class) {
+                layout.setByteField(view, i, ((PrimitiveByteArray) columns[i]).get(index));
+            } else {
+                layout.setBooleanField(view, i, ((PrimitiveByteArray) columns[i]).get(index) != 0);
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Store the fields of the supplied element object into the element at the given index.
+     *
+     * @param index of the element to store into
+     * @param value the element object whose fields are to be stored
+     */
+    public void set(final long index, final T value) {
+        checkIndex(index);
+        for (int i = 0; i < columns.length; i++) {
+            final Class<?> type = fieldTypes[i];
+            if (type == long.class) {
+                ((PrimitiveLongArray) columns[i]).set(index, layout.getLongField(value, i));
+            } else if (type == double.class) {
+                ((PrimitiveDoubleArray) columns[i]).set(index, layout.getDoubleField(value, i));
+            } else if (type == int.class) {
+                ((PrimitiveIntArray) columns[i]).set(index, layout.getIntField(value, i));
+            } else if (type == float.class) {
+                ((PrimitiveFloatArray) columns[i]).set(index, layout.getFloatField(value, i));
+            } else if (type == short.class) {
+                ((PrimitiveShortArray) columns[i]).set(index, layout.getShortField(value, i));
+            } else if (type == char.class) {
+                ((PrimitiveCharArray) columns[i]).set(index, layout.getCharField(value, i));
+            } else if (type == byte.class) {
+                ((PrimitiveByteArray) columns[i]).set(index, layout.getByteField(value, i));
+            } else {
+                ((PrimitiveByteArray) columns[i]).set(index, (byte) (layout.getBooleanField(value, i) ? 1 : 0));
+            }
+        }
+    }
+
+    /**
+     * Get the value of a {@code boolean} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code boolean} field
+     */
+    public boolean getBoolean(final long index, final int fieldIndex) {
+        return getBooleanColumn(fieldIndex).get(index) != 0;
+    }
+
+    /**
+     * Set the value of a {@code boolean} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code boolean} field
+     */
+    public void setBoolean(final long index, final int fieldIndex, final boolean value) {
+        getBooleanColumn(fieldIndex).set(index, (byte) (value ? 1 : 0));
+    }
+
+    /**
+     * Get the value of a {@code byte} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code byte} field
+     */
+    public byte getByte(final long index, final int fieldIndex) {
+        return getByteColumn(fieldIndex).get(index);
+    }
+
+    /**
+     * Set the value of a {@code byte} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code byte} field
+     */
+    public void setByte(final long index, final int fieldIndex, final byte value) {
+        getByteColumn(fieldIndex).set(index, value);
+    }
+
+    /**
+     * Get the value of a {@code char} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code char} field
+     */
+    public char getChar(final long index, final int fieldIndex) {
+        return getCharColumn(fieldIndex).get(index);
+    }
+
+    /**
+     * Set the value of a {@code char} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code char} field
+     */
+    public void setChar(final long index, final int fieldIndex, final char value) {
+        getCharColumn(fieldIndex).set(index, value);
+    }
+
+    /**
+     * Get the value of a {@code short} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code short} field
+     */
+    public short getShort(final long index, final int fieldIndex) {
+        return getShortColumn(fieldIndex).get(index);
+    }
+
+    /**
+     * Set the value of a {@code short} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code short} field
+     */
+    public void setShort(final long index, final int fieldIndex, final short value) {
+        getShortColumn(fieldIndex).set(index, value);
+    }
+
+    /**
+     * Get the value of a {@code int} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code int} field
+     */
+    public int getInt(final long index, final int fieldIndex) {
+        return getIntColumn(fieldIndex).get(index);
+    }
+
+    /**
+     * Set the value of a {@code int} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code int} field
+     */
+    public void setInt(final long index, final int fieldIndex, final int value) {
+        getIntColumn(fieldIndex).set(index, value);
+    }
+
+    /**
+     * Get the value of a {@code float} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code float} field
+     */
+    public float getFloat(final long index, final int fieldIndex) {
+        return getFloatColumn(fieldIndex).get(index);
+    }
+
+    /**
+     * Set the value of a {@code float} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code float} field
+     */
+    public void setFloat(final long index, final int fieldIndex, final float value) {
+        getFloatColumn(fieldIndex).set(index, value);
+    }
+
+    /**
+     * Get the value of a {@code long} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code long} field
+     */
+    public long getLong(final long index, final int fieldIndex) {
+        return getLongColumn(fieldIndex).get(index);
+    }
+
+    /**
+     * Set the value of a {@code long} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code long} field
+     */
+    public void setLong(final long index, final int fieldIndex, final long value) {
+        getLongColumn(fieldIndex).set(index, value);
+    }
+
+    /**
+     * Get the value of a {@code double} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code double} field
+     */
+    public double getDouble(final long index, final int fieldIndex) {
+        return getDoubleColumn(fieldIndex).get(index);
+    }
+
+    /**
+     * Set the value of a {@code double} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code double} field
+     */
+    public void setDouble(final long index, final int fieldIndex, final double value) {
+        getDoubleColumn(fieldIndex).set(index, value);
+    }
+
+    //
+    //
+    // Column projections:
+    //
+    //
+
+    /**
+     * Get the column holding the given {@code boolean} field of all elements, holding 1 for true and 0 for
+     * false. The column is the storage of the field, not a copy: changes made through it are reflected in the
+     * elements of this array.
+     *
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the column holding the field
+     * @throws IllegalArgumentException if the field is not of type {@code boolean}
+     */
+    public PrimitiveByteArray getBooleanColumn(final int fieldIndex) {
+        layout.checkFieldType(fieldIndex, boolean.class);
+        return (PrimitiveByteArray) columns[fieldIndex];
+    }
+
+    /**
+     * Get the column holding the given {@code byte} field of all elements,. The column is the
+     * storage of the field, not a copy: changes made through it are reflected in the elements of this array.
+     *
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the column holding the field
+     * @throws IllegalArgumentException if the field is not of type {@code byte}
+     */
+    public PrimitiveByteArray getByteColumn(final int fieldIndex) {
+        layout.checkFieldType(fieldIndex, byte.class);
+        return (PrimitiveByteArray) columns[fieldIndex];
+    }
+
+    /**
+     * Get the column holding the given {@code char} field of all elements,. The column is the
+     * storage of the field, not a copy: changes made through it are reflected in the elements of this array.
+     *
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the column holding the field
+     * @throws IllegalArgumentException if the field is not of type {@code char}
+     */
+    public PrimitiveCharArray getCharColumn(final int fieldIndex) {
+        layout.checkFieldType(fieldIndex, char.class);
+        return (PrimitiveCharArray) columns[fieldIndex];
+    }
+
+    /**
+     * Get the column holding the given {@code short} field of all elements,. The column is the
+     * storage of the field, not a copy: changes made through it are reflected in the elements of this array.
+     *
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the column holding the field
+     * @throws IllegalArgumentException if the field is not of type {@code short}
+     */
+    public PrimitiveShortArray getShortColumn(final int fieldIndex) {
+        layout.checkFieldType(fieldIndex, short.class);
+        return (PrimitiveShortArray) columns[fieldIndex];
+    }
+
+    /**
+     * Get the column holding the given {@code int} field of all elements,. The column is the
+     * storage of the field, not a copy: changes made through it are reflected in the elements of this array.
+     *
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the column holding the field
+     * @throws IllegalArgumentException if the field is not of type {@code int}
+     */
+    public PrimitiveIntArray getIntColumn(final int fieldIndex) {
+        layout.checkFieldType(fieldIndex, int.class);
+        return (PrimitiveIntArray) columns[fieldIndex];
+    }
+
+    /**
+     * Get the column holding the given {@code float} field of all elements,. The column is the
+     * storage of the field, not a copy: changes made through it are reflected in the elements of this array.
+     *
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the column holding the field
+     * @throws IllegalArgumentException if the field is not of type {@code float}
+     */
+    public PrimitiveFloatArray getFloatColumn(final int fieldIndex) {
+        layout.checkFieldType(fieldIndex, float.class);
+        return (PrimitiveFloatArray) columns[fieldIndex];
+    }
+
+    /**
+     * Get the column holding the given {@code long} field of all elements,. The column is the
+     * storage of the field, not a copy: changes made through it are reflected in the elements of this array.
+     *
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the column holding the field
+     * @throws IllegalArgumentException if the field is not of type {@code long}
+     */
+    public PrimitiveLongArray getLongColumn(final int fieldIndex) {
+        layout.checkFieldType(fieldIndex, long.class);
+        return (PrimitiveLongArray) columns[fieldIndex];
+    }
+
+    /**
+     * Get the column holding the given {@code double} field of all elements,. The column is the
+     * storage of the field, not a copy: changes made through it are reflected in the elements of this array.
+     *
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the column holding the field
+     * @throws IllegalArgumentException if the field is not of type {@code double}
+     */
+    public PrimitiveDoubleArray getDoubleColumn(final int fieldIndex) {
+        layout.checkFieldType(fieldIndex, double.class);
+        return (PrimitiveDoubleArray) columns[fieldIndex];
+    }
+
+    private static AbstractPrimitiveArray newColumn(final Class<?> type, final long length) {
+        if (type == long.class) {
+            return PrimitiveLongArray.newInstance(length);
+        } else if (type == double.class) {
+            return PrimitiveDoubleArray.newInstance(length);
+        } else if (type == int.class) {
+            return PrimitiveIntArray.newInstance(length);
+        } else if (type == float.class) {
+            return PrimitiveFloatArray.newInstance(length);
+        } else if (type == short.class) {
+            return PrimitiveShortArray.newInstance(length);
+        } else if (type == char.class) {
+            return PrimitiveCharArray.newInstance(length);
+        } else {
+            // byte and boolean fields:
+            return PrimitiveByteArray.newInstance(length);
+        }
+    }
+
+    private void checkIndex(final long index) {
+        if ((index < 0) || (index >= length)) {
+            throw new ArrayIndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+        }
+    }
+}
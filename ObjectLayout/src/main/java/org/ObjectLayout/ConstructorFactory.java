@@ -0,0 +1,247 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A factory that invokes a specific constructor through a {@link MethodHandle} resolved (once) from that
+ * constructor. Factories are cached per constructor, such that repeated construction of elements (e.g. while
+ * populating a StructuredArray) avoids the per-invocation access checks and argument handling of
+ * {@link Constructor#newInstance}.
+ * <p>
+ * Constructors that cannot be unreflected from this package (e.g. inaccessible constructors that were not
+ * made accessible through a caller-supplied {@link MethodHandles.Lookup}) fall back to reflective
+ * construction, preserving the access semantics of {@link Constructor#newInstance}.
+ *
+ * @param <T> The class constructed by the factory
+ */
+final class ConstructorFactory<T> {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final MethodType GENERIC_FACTORY_TYPE = MethodType.methodType(Object.class, Object[].class);
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private static final ClassValue<ConcurrentHashMap<Constructor<?>, ConstructorFactory<?>>> factoriesByClass =
+            new ClassValue<ConcurrentHashMap<Constructor<?>, ConstructorFactory<?>>>() {
+                @Override
+                protected ConcurrentHashMap<Constructor<?>, ConstructorFactory<?>> computeValue(Class<?> cls) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private final Constructor<T> constructor;
+    private final MethodHandle factoryHandle;
+    private final Class<?>[] parameterTypes;
+    private final Class<?>[] wrappedParameterTypes;
+    private final int parameterCount;
+    private final boolean requiresAccessOverride;
+
+    private ConstructorFactory(final Constructor<T> constructor) {
+        this.constructor = constructor;
+        this.parameterTypes = constructor.getParameterTypes();
+        this.wrappedParameterTypes = MethodType.methodType(void.class, parameterTypes).wrap().parameterArray();
+        this.parameterCount = parameterTypes.length;
+        this.requiresAccessOverride = !isAccessibleWithoutOverride(constructor);
+        this.factoryHandle = resolveFactoryHandle(constructor, parameterCount);
+    }
+
+    /**
+     * Get a factory for the supplied constructor. Factories for equal constructors are shared.
+     *
+     * @param constructor the constructor to be invoked by the factory
+     * @param <T> The class constructed by the factory
+     * @return a factory for the supplied constructor
+     */
+    static <T> ConstructorFactory<T> forConstructor(final Constructor<T> constructor) {
+        final ConcurrentHashMap<Constructor<?>, ConstructorFactory<?>> factories =
+                factoriesByClass.get(constructor.getDeclaringClass());
+        @SuppressWarnings("unchecked")
+        ConstructorFactory<T> factory = (ConstructorFactory<T>) factories.get(constructor);
+        if ((factory != null) && factory.isUsableWith(constructor)) {
+            return factory;
+        }
+        factory = new ConstructorFactory<>(constructor);
+        if (factory.factoryHandle != null) {
+            factories.put(constructor, factory);
+        }
+        return factory;
+    }
+
+    /**
+     * Get the constructor invoked by this factory
+     *
+     * @return the constructor invoked by this factory
+     */
+    Constructor<T> getConstructor() {
+        return constructor;
+    }
+
+    /**
+     * Construct a new instance using the supplied arguments. Exceptions thrown by the constructor are reported
+     * in the same form as {@link Constructor#newInstance} would report them, wrapped in a RuntimeException.
+     * Arguments are converted to the parameter types of the constructor as {@link Constructor#newInstance}
+     * would convert them (unboxing, followed by primitive widening), and arguments that cannot be converted
+     * are reported as an IllegalArgumentException, without invoking the constructor.
+     *
+     * @param args the arguments to pass to the constructor
+     * @return a newly constructed instance
+     * @throws IllegalArgumentException if the number of arguments differs from the number of parameters of the
+     * constructor, or if an argument cannot be converted to the type of its parameter
+     */
+    T newInstance(Object[] args) {
+        if (factoryHandle == null) {
+            return reflectiveNewInstance(args);
+        }
+        if (args == null) {
+            args = EMPTY_ARGS;
+        }
+        if (args.length != parameterCount) {
+            throw new IllegalArgumentException("wrong number of arguments");
+        }
+        args = convertArguments(args);
+        try {
+            @SuppressWarnings("unchecked")
+            T instance = (T) factoryHandle.invokeExact(args);
+            return instance;
+        } catch (Throwable t) {
+            throw new RuntimeException(new InvocationTargetException(t));
+        }
+    }
+
+    /**
+     * Convert the supplied arguments to the parameter types of the constructor, such that the factory handle
+     * (whose generic type only casts and unboxes) cannot fail on them, and any exception it throws was thrown
+     * by the constructor itself.
+     *
+     * @return the supplied arguments, or a converted copy of them if any needed widening
+     */
+    private Object[] convertArguments(final Object[] args) {
+        Object[] converted = args;
+        for (int i = 0; i < parameterCount; i++) {
+            final Class<?> type = parameterTypes[i];
+            final Object arg = args[i];
+            final Object value;
+            if ((arg == null) ? !type.isPrimitive() : wrappedParameterTypes[i].isInstance(arg)) {
+                continue;
+            }
+            if (!type.isPrimitive()) {
+                throw new IllegalArgumentException("argument type mismatch: argument " + i + " is a " +
+                        arg.getClass().getName() + ", not a " + type.getName());
+            }
+            if ((value = widen(arg, type)) == null) {
+                throw new IllegalArgumentException("argument type mismatch: argument " + i + " (" +
+                        ((arg == null) ? "null" : "a " + arg.getClass().getName()) +
+                        ") cannot be converted to " + type.getName());
+            }
+            if (value != arg) {
+                if (converted == args) {
+                    converted = args.clone();
+                }
+                converted[i] = value;
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Unbox and widen an argument to a primitive parameter type.
+     *
+     * @return the argument boxed as the wrapper of the parameter type, or null if it cannot be converted
+     */
+    private static Object widen(final Object arg, final Class<?> type) {
+        final int rank = wideningRank(arg);
+        if (rank < 0) {
+            // Not a primitive wrapper (or null), or a Boolean, which only converts to boolean:
+            return ((type == boolean.class) && (arg instanceof Boolean)) ? arg : null;
+        }
+        final long integralValue = (arg instanceof Character) ? (Character) arg :
+                (rank <= 4) ? ((Number) arg).longValue() : 0;
+        if (type == char.class) {
+            return (arg instanceof Character) ? arg : null;
+        } else if (type == byte.class) {
+            return (arg instanceof Byte) ? arg : null;
+        } else if (type == short.class) {
+            return ((arg instanceof Byte) || (arg instanceof Short)) ? Short.valueOf((short) integralValue) : null;
+        } else if (type == int.class) {
+            return (rank <= 3) ? Integer.valueOf((int) integralValue) : null;
+        } else if (type == long.class) {
+            return (rank <= 4) ? Long.valueOf(integralValue) : null;
+        } else if (type == float.class) {
+            return (arg instanceof Double) ? null :
+                    (arg instanceof Float) ? arg : Float.valueOf((float) integralValue);
+        } else if (type == double.class) {
+            return (arg instanceof Double) ? arg : (arg instanceof Float) ? Double.valueOf((Float) arg) :
+                    Double.valueOf((double) integralValue);
+        }
+        return null;
+    }
+
+    /**
+     * @return the rank of the type of the argument in the primitive widening order (byte, short and char,
+     * int, long, float, double), or -1 if the argument is not a numeric or char primitive wrapper
+     */
+    private static int wideningRank(final Object arg) {
+        if (arg instanceof Byte) {
+            return 1;
+        } else if ((arg instanceof Short) || (arg instanceof Character)) {
+            return 2;
+        } else if (arg instanceof Integer) {
+            return 3;
+        } else if (arg instanceof Long) {
+            return 4;
+        } else if (arg instanceof Float) {
+            return 5;
+        } else if (arg instanceof Double) {
+            return 6;
+        }
+        return -1;
+    }
+
+    private T reflectiveNewInstance(final Object[] args) {
+        try {
+            return constructor.newInstance(args);
+        } catch (InstantiationException ex) {
+            throw new RuntimeException(ex);
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        } catch (InvocationTargetException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private boolean isUsableWith(final Constructor<T> constructor) {
+        // A factory resolved through an accessibility override must not grant access to callers
+        // presenting a constructor that has not itself been made accessible:
+        return !requiresAccessOverride || constructor.isAccessible();
+    }
+
+    private static boolean isAccessibleWithoutOverride(final Constructor<?> constructor) {
+        try {
+            lookup.findConstructor(constructor.getDeclaringClass(),
+                    MethodType.methodType(void.class, constructor.getParameterTypes()));
+            return true;
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            return false;
+        }
+    }
+
+    private static MethodHandle resolveFactoryHandle(final Constructor<?> constructor, final int parameterCount) {
+        try {
+            return lookup.unreflectConstructor(constructor).
+                    asSpreader(Object[].class, parameterCount).
+                    asType(GENERIC_FACTORY_TYPE);
+        } catch (IllegalAccessException ex) {
+            // Not accessible from here. Fall back to reflection, which will report the access failure:
+            return null;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.lang.reflect.Field;
+
+import static java.lang.reflect.Modifier.isFinal;
+import static java.lang.reflect.Modifier.isStatic;
+
+/**
+ * Copies the (declared, non-static) field contents of one instance of a class to another instance of the same
+ * class. A copier is created once per class, and groups fields by type so that copying proceeds with unboxed,
+ * type-specific reads and writes at fixed field offsets, without per-field dispatch or reflective access checks.
+ * <p>
+ * When Unsafe (see {@link UnsafeAccess}) is not available (or cannot provide offsets for the class), copying
+ * falls back to type-specific reflective {@link Field} accessors, which still avoid boxing.
+ */
+final class FieldCopier {
+    private static final ClassValue<FieldCopier> copiers =
+            new ClassValue<FieldCopier>() {
+                @Override
+                protected FieldCopier computeValue(Class<?> cls) {
+                    return new FieldCopier(cls);
+                }
+            };
+
+    private final Field[] fields;
+    private final boolean hasFinalFields;
+    private final boolean useUnsafe;
+
+    private final long[] longOffsets;
+    private final long[] doubleOffsets;
+    private final long[] intOffsets;
+    private final long[] floatOffsets;
+    private final long[] shortOffsets;
+    private final long[] charOffsets;
+    private final long[] byteOffsets;
+    private final long[] booleanOffsets;
+    private final long[] referenceOffsets;
+
+    private volatile boolean fieldsMadeAccessible;
+
+    private FieldCopier(final Class<?> cls) {
+        fields = removeStaticFields(cls.getDeclaredFields());
+        hasFinalFields = containsFinalQualifiedFields(fields);
+
+        long[][] offsets = UnsafeAccess.AVAILABLE ? resolveOffsetsByType(fields) : null;
+        useUnsafe = (offsets != null);
+        if (offsets == null) {
+            offsets = new long[9][0];
+        }
+        longOffsets = offsets[0];
+        doubleOffsets = offsets[1];
+        intOffsets = offsets[2];
+        floatOffsets = offsets[3];
+        shortOffsets = offsets[4];
+        charOffsets = offsets[5];
+        byteOffsets = offsets[6];
+        booleanOffsets = offsets[7];
+        referenceOffsets = offsets[8];
+    }
+
+    /**
+     * Get the field copier for the given class
+     *
+     * @param cls the class whose instances are to be copied
+     * @return the field copier for the given class
+     */
+    static FieldCopier forClass(final Class<?> cls) {
+        return copiers.get(cls);
+    }
+
+    /**
+     * Determine whether the class copied by this copier declares final instance fields
+     *
+     * @return true if the class declares final instance fields
+     */
+    boolean hasFinalFields() {
+        return hasFinalFields;
+    }
+
+    /**
+     * Copy all declared instance fields of src to dst. Final fields are copied too, so callers
+     * are expected to have checked for them (with {@link #hasFinalFields()}) if needed.
+     *
+     * @param src the instance to copy from
+     * @param dst the instance to copy into
+     */
+    void copy(final Object src, final Object dst) {
+        if (useUnsafe) {
+            unsafeCopy(src, dst);
+        } else {
+            reflectiveCopy(src, dst);
+        }
+    }
+
+    private void unsafeCopy(final Object src, final Object dst) {
+        for (final long offset : longOffsets) {
+            UnsafeAccess.putLong(dst, offset, UnsafeAccess.getLong(src, offset));
+        }
+        for (final long offset : doubleOffsets) {
+            UnsafeAccess.putDouble(dst, offset, UnsafeAccess.getDouble(src, offset));
+        }
+        for (final long offset : intOffsets) {
+            UnsafeAccess.putInt(dst, offset, UnsafeAccess.getInt(src, offset));
+        }
+        for (final long offset : floatOffsets) {
+            UnsafeAccess.putFloat(dst, offset, UnsafeAccess.getFloat(src, offset));
+        }
+        for (final long offset : shortOffsets) {
+            UnsafeAccess.putShort(dst, offset, UnsafeAccess.getShort(src, offset));
+        }
+        for (final long offset : charOffsets) {
+            UnsafeAccess.putChar(dst, offset, UnsafeAccess.getChar(src, offset));
+        }
+        for (final long offset : byteOffsets) {
+            UnsafeAccess.putByte(dst, offset, UnsafeAccess.getByte(src, offset));
+        }
+        for (final long offset : booleanOffsets) {
+            UnsafeAccess.putBoolean(dst, offset, UnsafeAccess.getBoolean(src, offset));
+        }
+        for (final long offset : referenceOffsets) {
+            UnsafeAccess.putObject(dst, offset, UnsafeAccess.getObject(src, offset));
+        }
+    }
+
+    private void reflectiveCopy(final Object src, final Object dst) {
+        if (!fieldsMadeAccessible) {
+            for (final Field field : fields) {
+                field.setAccessible(true);
+            }
+            fieldsMadeAccessible = true;
+        }
+        try {
+            for (final Field field : fields) {
+                final Class<?> type = field.getType();
+                if (type == long.class) {
+                    field.setLong(dst, field.getLong(src));
+                } else if (type == double.class) {
+                    field.setDouble(dst, field.getDouble(src));
+                } else if (type == int.class) {
+                    field.setInt(dst, field.getInt(src));
+                } else if (type == float.class) {
+                    field.setFloat(dst, field.getFloat(src));
+                } else if (type == short.class) {
+                    field.setShort(dst, field.getShort(src));
+                } else if (type == char.class) {
+                    field.setChar(dst, field.getChar(src));
+                } else if (type == byte.class) {
+                    field.setByte(dst, field.getByte(src));
+                } else if (type == boolean.class) {
+                    field.setBoolean(dst, field.getBoolean(src));
+                } else {
+                    field.set(dst, field.get(src));
+                }
+            }
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    private static long[][] resolveOffsetsByType(final Field[] fields) {
+        final Class<?>[] types = {
+                long.class, double.class, int.class, float.class, short.class, char.class, byte.class, boolean.class
+        };
+        final long[][] offsets = new long[types.length + 1][];
+        try {
+            for (int t = 0; t <= types.length; t++) {
+                int count = 0;
+                for (final Field field : fields) {
+                    if (typeIndex(types, field.getType()) == t) {
+                        count++;
+                    }
+                }
+                offsets[t] = new long[count];
+                int i = 0;
+                for (final Field field : fields) {
+                    if (typeIndex(types, field.getType()) == t) {
+                        offsets[t][i++] = UnsafeAccess.objectFieldOffset(field);
+                    }
+                }
+            }
+        } catch (final RuntimeException ex) {
+            // Offsets are not available for this class (e.g. hidden classes or records):
+            return null;
+        }
+        return offsets;
+    }
+
+    private static int typeIndex(final Class<?>[] types, final Class<?> type) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        // Reference types:
+        return types.length;
+    }
+
+    private static Field[] removeStaticFields(final Field[] declaredFields) {
+        int staticFieldCount = 0;
+        for (final Field field : declaredFields) {
+            if (isStatic(field.getModifiers())) {
+                staticFieldCount++;
+            }
+        }
+
+        final Field[] instanceFields = new Field[declaredFields.length - staticFieldCount];
+        int i = 0;
+        for (final Field field : declaredFields) {
+            if (!isStatic(field.getModifiers())) {
+                instanceFields[i++] = field;
+            }
+        }
+
+        return instanceFields;
+    }
+
+    private static boolean containsFinalQualifiedFields(final Field[] fields) {
+        for (final Field field : fields) {
+            if (isFinal(field.getModifiers())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
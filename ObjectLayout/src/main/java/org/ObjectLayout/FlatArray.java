@@ -0,0 +1,220 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+/**
+ *     An array of elements whose (primitive) fields are stored flat, rather than as individual element objects,
+ *     with fields identified by their index in the element class's {@link FlatElementLayout}.
+ * <p>
+ *     FlatArray is implemented by {@link FlatStructuredArray}, which packs the fields of each element together
+ *     (row layout), and by {@link ColumnarStructuredArray}, which stores each field of all elements in an array
+ *     of its own (column layout). Code written against FlatArray works with either layout, such that the layout
+ *     of each array can be chosen to suit its access pattern without changing the element class or the code
+ *     accessing it.
+ *
+ * @param <T> The class of the array elements
+ */
+public interface FlatArray<T> {
+
+    /**
+     * Get the length (number of elements) of the array.
+     *
+     * @return the number of elements in the array.
+     */
+    long getLength();
+
+    /**
+     * Get the {@link Class} of elements stored in the array.
+     *
+     * @return the {@link Class} of elements stored in the array.
+     */
+    Class<T> getElementClass();
+
+    /**
+     * Get the layout of the elements stored in the array, which assigns the index of each field
+     *
+     * @return the layout of the elements stored in the array
+     */
+    FlatElementLayout<T> getLayout();
+
+    /**
+     * Load the fields of the element at the given index into the supplied element object (the view). The view
+     * is a snapshot: changes to it are not reflected in the array until stored back with {@link #set}.
+     *
+     * @param index of the element to load
+     * @param view the element object to load the element's fields into
+     * @return the supplied view
+     */
+    T get(long index, T view);
+
+    /**
+     * Store the fields of the supplied element object into the element at the given index.
+     *
+     * @param index of the element to store into
+     * @param value the element object whose fields are to be stored
+     */
+    void set(long index, T value);
+
+    /**
+     * Get the value of a {@code boolean} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code boolean} field
+     */
+    boolean getBoolean(long index, int fieldIndex);
+
+    /**
+     * Set the value of a {@code boolean} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code boolean} field
+     */
+    void setBoolean(long index, int fieldIndex, boolean value);
+
+    /**
+     * Get the value of a {@code byte} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code byte} field
+     */
+    byte getByte(long index, int fieldIndex);
+
+    /**
+     * Set the value of a {@code byte} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code byte} field
+     */
+    void setByte(long index, int fieldIndex, byte value);
+
+    /**
+     * Get the value of a {@code char} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code char} field
+     */
+    char getChar(long index, int fieldIndex);
+
+    /**
+     * Set the value of a {@code char} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code char} field
+     */
+    void setChar(long index, int fieldIndex, char value);
+
+    /**
+     * Get the value of a {@code short} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code short} field
+     */
+    short getShort(long index, int fieldIndex);
+
+    /**
+     * Set the value of a {@code short} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code short} field
+     */
+    void setShort(long index, int fieldIndex, short value);
+
+    /**
+     * Get the value of a {@code int} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code int} field
+     */
+    int getInt(long index, int fieldIndex);
+
+    /**
+     * Set the value of a {@code int} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code int} field
+     */
+    void setInt(long index, int fieldIndex, int value);
+
+    /**
+     * Get the value of a {@code float} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code float} field
+     */
+    float getFloat(long index, int fieldIndex);
+
+    /**
+     * Set the value of a {@code float} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code float} field
+     */
+    void setFloat(long index, int fieldIndex, float value);
+
+    /**
+     * Get the value of a {@code long} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code long} field
+     */
+    long getLong(long index, int fieldIndex);
+
+    /**
+     * Set the value of a {@code long} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code long} field
+     */
+    void setLong(long index, int fieldIndex, long value);
+
+    /**
+     * Get the value of a {@code double} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code double} field
+     */
+    double getDouble(long index, int fieldIndex);
+
+    /**
+     * Set the value of a {@code double} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code double} field
+     */
+    void setDouble(long index, int fieldIndex, double value);
+}
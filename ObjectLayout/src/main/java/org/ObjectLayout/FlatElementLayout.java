@@ -0,0 +1,611 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.lang.reflect.Modifier.isStatic;
+
+/**
+ * A description of the flat (packed) layout of the instance fields of an element class, as used by
+ * {@link FlatStructuredArray}. Only element classes whose instance fields (including inherited ones) are all
+ * primitive can be laid out flat.
+ * <p>
+ * Fields are ordered by decreasing size (and in declaration order, superclass fields first, within each
+ * size), and each field is placed at an offset that is naturally aligned for its size. The element size is
+ * rounded up to the alignment of the largest field, such that fields remain aligned in consecutive elements.
+ * Fields are identified by their index in this layout.
+ *
+ * @param <T> The element class described by the layout
+ */
+public final class FlatElementLayout<T> {
+    private static final ClassValue<FlatElementLayout<?>> layouts =
+            new ClassValue<FlatElementLayout<?>>() {
+                @Override
+                protected FlatElementLayout<?> computeValue(Class<?> cls) {
+                    return new FlatElementLayout<>(cls);
+                }
+            };
+
+    private final Class<T> elementClass;
+    private final Field[] fields;
+    private final Class<?>[] fieldTypes;
+    private final int[] fieldOffsets;
+    private final long[] fieldUnsafeOffsets;
+    private final int elementSize;
+    private volatile boolean fieldsMadeAccessible;
+
+    private FlatElementLayout(final Class<T> elementClass) {
+        this.elementClass = elementClass;
+        this.fields = orderBySize(instanceFieldsOf(elementClass));
+        this.fieldTypes = new Class<?>[fields.length];
+        this.fieldOffsets = new int[fields.length];
+
+        int offset = 0;
+        int maxFieldSize = 1;
+        for (int i = 0; i < fields.length; i++) {
+            final int fieldSize = sizeOf(fields[i].getType());
+            // Fields are ordered by decreasing size, so each offset is naturally aligned:
+            fieldTypes[i] = fields[i].getType();
+            fieldOffsets[i] = offset;
+            offset += fieldSize;
+            maxFieldSize = Math.max(maxFieldSize, fieldSize);
+        }
+        this.elementSize = Math.max(1, (offset + maxFieldSize - 1) & ~(maxFieldSize - 1));
+        this.fieldUnsafeOffsets = resolveUnsafeOffsets(fields);
+    }
+
+    /**
+     * Get the flat layout of the given element class
+     *
+     * @param elementClass the element class
+     * @param <T> the element class
+     * @return the flat layout of the given element class
+     * @throws IllegalArgumentException if the element class has non-primitive instance fields
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> FlatElementLayout<T> forClass(final Class<T> elementClass) {
+        return (FlatElementLayout<T>) layouts.get(elementClass);
+    }
+
+    /**
+     * Get the element class described by this layout
+     *
+     * @return the element class described by this layout
+     */
+    public Class<T> getElementClass() {
+        return elementClass;
+    }
+
+    /**
+     * Get the size (in bytes) of an element in this layout
+     *
+     * @return the size (in bytes) of an element in this layout
+     */
+    public int getElementSize() {
+        return elementSize;
+    }
+
+    /**
+     * Get the number of fields in this layout
+     *
+     * @return the number of fields in this layout
+     */
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    /**
+     * Get the index of the named field in this layout
+     *
+     * @param fieldName the name of the field
+     * @return the index of the field
+     * @throws IllegalArgumentException if no field with the given name exists in the layout
+     */
+    public int getFieldIndex(final String fieldName) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getName().equals(fieldName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No field named " + fieldName + " in " + elementClass.getName());
+    }
+
+    /**
+     * Get the name of the field at the given index in this layout
+     *
+     * @param fieldIndex the index of the field
+     * @return the name of the field
+     */
+    public String getFieldName(final int fieldIndex) {
+        return fields[fieldIndex].getName();
+    }
+
+    /**
+     * Get the (primitive) type of the field at the given index in this layout
+     *
+     * @param fieldIndex the index of the field
+     * @return the type of the field
+     */
+    public Class<?> getFieldType(final int fieldIndex) {
+        return fieldTypes[fieldIndex];
+    }
+
+    /**
+     * Get the offset (in bytes) of the field at the given index from the start of an element
+     *
+     * @param fieldIndex the index of the field
+     * @return the offset of the field
+     */
+    public int getFieldOffset(final int fieldIndex) {
+        return fieldOffsets[fieldIndex];
+    }
+
+    /**
+     * Verify that the field at the given index is of the given type
+     */
+    void checkFieldType(final int fieldIndex, final Class<?> type) {
+        if (fieldTypes[fieldIndex] != type) {
+            throw new IllegalArgumentException("Field " + getFieldName(fieldIndex) + " of " +
+                    elementClass.getName() + " is of type " + fieldTypes[fieldIndex] + ", not " + type);
+        }
+    }
+
+    /**
+     * Copy the fields of an element stored at the given offset in the given buffer into an element object
+     */
+    void load(final T element, final ByteBuffer buffer, final int elementOffset) {
+        if (fieldUnsafeOffsets == null) {
+            reflectiveLoad(element, buffer, elementOffset);
+            return;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            final Class<?> type = fieldTypes[i];
+            final int offset = elementOffset + fieldOffsets[i];
+            final long unsafeOffset = fieldUnsafeOffsets[i];
+            if (type == long.class) {
+                UnsafeAccess.putLong(element, unsafeOffset, buffer.getLong(offset));
+            } else if (type == double.class) {
+                UnsafeAccess.putDouble(element, unsafeOffset, buffer.getDouble(offset));
+            } else if (type == int.class) {
+                UnsafeAccess.putInt(element, unsafeOffset, buffer.getInt(offset));
+            } else if (type == float.class) {
+                UnsafeAccess.putFloat(element, unsafeOffset, buffer.getFloat(offset));
+            } else if (type == short.class) {
+                UnsafeAccess.putShort(element, unsafeOffset, buffer.getShort(offset));
+            } else if (type == char.class) {
+                UnsafeAccess.putChar(element, unsafeOffset, buffer.getChar(offset));
+            } else if (type == byte.class) {
+                UnsafeAccess.putByte(element, unsafeOffset, buffer.get(offset));
+            } else {
+                UnsafeAccess.putBoolean(element, unsafeOffset, buffer.get(offset) != 0);
+            }
+        }
+    }
+
+    /**
+     * Copy the fields of an element object into the given buffer at the given offset
+     */
+    void store(final T element, final ByteBuffer buffer, final int elementOffset) {
+        if (fieldUnsafeOffsets == null) {
+            reflectiveStore(element, buffer, elementOffset);
+            return;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            final Class<?> type = fieldTypes[i];
+            final int offset = elementOffset + fieldOffsets[i];
+            final long unsafeOffset = fieldUnsafeOffsets[i];
+            if (type == long.class) {
+                buffer.putLong(offset, UnsafeAccess.getLong(element, unsafeOffset));
+            } else if (type == double.class) {
+                buffer.putDouble(offset, UnsafeAccess.getDouble(element, unsafeOffset));
+            } else if (type == int.class) {
+                buffer.putInt(offset, UnsafeAccess.getInt(element, unsafeOffset));
+            } else if (type == float.class) {
+                buffer.putFloat(offset, UnsafeAccess.getFloat(element, unsafeOffset));
+            } else if (type == short.class) {
+                buffer.putShort(offset, UnsafeAccess.getShort(element, unsafeOffset));
+            } else if (type == char.class) {
+                buffer.putChar(offset, UnsafeAccess.getChar(element, unsafeOffset));
+            } else if (type == byte.class) {
+                buffer.put(offset, UnsafeAccess.getByte(element, unsafeOffset));
+            } else {
+                buffer.put(offset, (byte) (UnsafeAccess.getBoolean(element, unsafeOffset) ? 1 : 0));
+            }
+        }
+    }
+
+    //
+    //
+    // Per-field element access:
+    //
+    //
+
+    /**
+     * Read the {@code boolean} field at the given index of an element object
+     */
+    boolean getBooleanField(final T element, final int fieldIndex) {
+        if (fieldUnsafeOffsets != null) {
+            return UnsafeAccess.getBoolean(element, fieldUnsafeOffsets[fieldIndex]);
+        }
+        makeFieldsAccessible();
+        try {
+            return fields[fieldIndex].getBoolean(element);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Write the {@code boolean} field at the given index of an element object
+     */
+    void setBooleanField(final T element, final int fieldIndex, final boolean value) {
+        if (fieldUnsafeOffsets != null) {
+            UnsafeAccess.putBoolean(element, fieldUnsafeOffsets[fieldIndex], value);
+            return;
+        }
+        makeFieldsAccessible();
+        try {
+            fields[fieldIndex].setBoolean(element, value);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Read the {@code byte} field at the given index of an element object
+     */
+    byte getByteField(final T element, final int fieldIndex) {
+        if (fieldUnsafeOffsets != null) {
+            return UnsafeAccess.getByte(element, fieldUnsafeOffsets[fieldIndex]);
+        }
+        makeFieldsAccessible();
+        try {
+            return fields[fieldIndex].getByte(element);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Write the {@code byte} field at the given index of an element object
+     */
+    void setByteField(final T element, final int fieldIndex, final byte value) {
+        if (fieldUnsafeOffsets != null) {
+            UnsafeAccess.putByte(element, fieldUnsafeOffsets[fieldIndex], value);
+            return;
+        }
+        makeFieldsAccessible();
+        try {
+            fields[fieldIndex].setByte(element, value);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Read the {@code char} field at the given index of an element object
+     */
+    char getCharField(final T element, final int fieldIndex) {
+        if (fieldUnsafeOffsets != null) {
+            return UnsafeAccess.getChar(element, fieldUnsafeOffsets[fieldIndex]);
+        }
+        makeFieldsAccessible();
+        try {
+            return fields[fieldIndex].getChar(element);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Write the {@code char} field at the given index of an element object
+     */
+    void setCharField(final T element, final int fieldIndex, final char value) {
+        if (fieldUnsafeOffsets != null) {
+            UnsafeAccess.putChar(element, fieldUnsafeOffsets[fieldIndex], value);
+            return;
+        }
+        makeFieldsAccessible();
+        try {
+            fields[fieldIndex].setChar(element, value);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Read the {@code short} field at the given index of an element object
+     */
+    short getShortField(final T element, final int fieldIndex) {
+        if (fieldUnsafeOffsets != null) {
+            return UnsafeAccess.getShort(element, fieldUnsafeOffsets[fieldIndex]);
+        }
+        makeFieldsAccessible();
+        try {
+            return fields[fieldIndex].getShort(element);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Write the {@code short} field at the given index of an element object
+     */
+    void setShortField(final T element, final int fieldIndex, final short value) {
+        if (fieldUnsafeOffsets != null) {
+            UnsafeAccess.putShort(element, fieldUnsafeOffsets[fieldIndex], value);
+            return;
+        }
+        makeFieldsAccessible();
+        try {
+            fields[fieldIndex].setShort(element, value);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Read the {@code int} field at the given index of an element object
+     */
+    int getIntField(final T element, final int fieldIndex) {
+        if (fieldUnsafeOffsets != null) {
+            return UnsafeAccess.getInt(element, fieldUnsafeOffsets[fieldIndex]);
+        }
+        makeFieldsAccessible();
+        try {
+            return fields[fieldIndex].getInt(element);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Write the {@code int} field at the given index of an element object
+     */
+    void setIntField(final T element, final int fieldIndex, final int value) {
+        if (fieldUnsafeOffsets != null) {
+            UnsafeAccess.putInt(element, fieldUnsafeOffsets[fieldIndex], value);
+            return;
+        }
+        makeFieldsAccessible();
+        try {
+            fields[fieldIndex].setInt(element, value);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Read the {@code float} field at the given index of an element object
+     */
+    float getFloatField(final T element, final int fieldIndex) {
+        if (fieldUnsafeOffsets != null) {
+            return UnsafeAccess.getFloat(element, fieldUnsafeOffsets[fieldIndex]);
+        }
+        makeFieldsAccessible();
+        try {
+            return fields[fieldIndex].getFloat(element);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Write the {@code float} field at the given index of an element object
+     */
+    void setFloatField(final T element, final int fieldIndex, final float value) {
+        if (fieldUnsafeOffsets != null) {
+            UnsafeAccess.putFloat(element, fieldUnsafeOffsets[fieldIndex], value);
+            return;
+        }
+        makeFieldsAccessible();
+        try {
+            fields[fieldIndex].setFloat(element, value);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Read the {@code long} field at the given index of an element object
+     */
+    long getLongField(final T element, final int fieldIndex) {
+        if (fieldUnsafeOffsets != null) {
+            return UnsafeAccess.getLong(element, fieldUnsafeOffsets[fieldIndex]);
+        }
+        makeFieldsAccessible();
+        try {
+            return fields[fieldIndex].getLong(element);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Write the {@code long} field at the given index of an element object
+     */
+    void setLongField(final T element, final int fieldIndex, final long value) {
+        if (fieldUnsafeOffsets != null) {
+            UnsafeAccess.putLong(element, fieldUnsafeOffsets[fieldIndex], value);
+            return;
+        }
+        makeFieldsAccessible();
+        try {
+            fields[fieldIndex].setLong(element, value);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Read the {@code double} field at the given index of an element object
+     */
+    double getDoubleField(final T element, final int fieldIndex) {
+        if (fieldUnsafeOffsets != null) {
+            return UnsafeAccess.getDouble(element, fieldUnsafeOffsets[fieldIndex]);
+        }
+        makeFieldsAccessible();
+        try {
+            return fields[fieldIndex].getDouble(element);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    /**
+     * Write the {@code double} field at the given index of an element object
+     */
+    void setDoubleField(final T element, final int fieldIndex, final double value) {
+        if (fieldUnsafeOffsets != null) {
+            UnsafeAccess.putDouble(element, fieldUnsafeOffsets[fieldIndex], value);
+            return;
+        }
+        makeFieldsAccessible();
+        try {
+            fields[fieldIndex].setDouble(element, value);
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    private void reflectiveLoad(final T element, final ByteBuffer buffer, final int elementOffset) {
+        makeFieldsAccessible();
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                final Field field = fields[i];
+                final Class<?> type = fieldTypes[i];
+                final int offset = elementOffset + fieldOffsets[i];
+                if (type == long.class) {
+                    field.setLong(element, buffer.getLong(offset));
+                } else if (type == double.class) {
+                    field.setDouble(element, buffer.getDouble(offset));
+                } else if (type == int.class) {
+                    field.setInt(element, buffer.getInt(offset));
+                } else if (type == float.class) {
+                    field.setFloat(element, buffer.getFloat(offset));
+                } else if (type == short.class) {
+                    field.setShort(element, buffer.getShort(offset));
+                } else if (type == char.class) {
+                    field.setChar(element, buffer.getChar(offset));
+                } else if (type == byte.class) {
+                    field.setByte(element, buffer.get(offset));
+                } else {
+                    field.setBoolean(element, buffer.get(offset) != 0);
+                }
+            }
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    private void reflectiveStore(final T element, final ByteBuffer buffer, final int elementOffset) {
+        makeFieldsAccessible();
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                final Field field = fields[i];
+                final Class<?> type = fieldTypes[i];
+                final int offset = elementOffset + fieldOffsets[i];
+                if (type == long.class) {
+                    buffer.putLong(offset, field.getLong(element));
+                } else if (type == double.class) {
+                    buffer.putDouble(offset, field.getDouble(element));
+                } else if (type == int.class) {
+                    buffer.putInt(offset, field.getInt(element));
+                } else if (type == float.class) {
+                    buffer.putFloat(offset, field.getFloat(element));
+                } else if (type == short.class) {
+                    buffer.putShort(offset, field.getShort(element));
+                } else if (type == char.class) {
+                    buffer.putChar(offset, field.getChar(element));
+                } else if (type == byte.class) {
+                    buffer.put(offset, field.getByte(element));
+                } else {
+                    buffer.put(offset, (byte) (field.getBoolean(element) ? 1 : 0));
+                }
+            }
+        } catch (final IllegalAccessException shouldNotHappen) {
+            throw new RuntimeException(shouldNotHappen);
+        }
+    }
+
+    private void makeFieldsAccessible() {
+        if (!fieldsMadeAccessible) {
+            for (final Field field : fields) {
+                field.setAccessible(true);
+            }
+            fieldsMadeAccessible = true;
+        }
+    }
+
+    private static long[] resolveUnsafeOffsets(final Field[] fields) {
+        if (!UnsafeAccess.AVAILABLE) {
+            return null;
+        }
+        try {
+            final long[] offsets = new long[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                offsets[i] = UnsafeAccess.objectFieldOffset(fields[i]);
+            }
+            return offsets;
+        } catch (final RuntimeException ex) {
+            // Offsets are not available for this class (e.g. hidden classes or records):
+            return null;
+        }
+    }
+
+    private static List<Field> instanceFieldsOf(final Class<?> elementClass) {
+        if (elementClass.isPrimitive() || elementClass.isArray() || elementClass.isInterface()) {
+            throw new IllegalArgumentException("Cannot lay out " + elementClass + " flat");
+        }
+        final List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = elementClass; c != Object.class; c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        final List<Field> instanceFields = new ArrayList<>();
+        for (final Class<?> c : hierarchy) {
+            for (final Field field : c.getDeclaredFields()) {
+                if (isStatic(field.getModifiers())) {
+                    continue;
+                }
+                if (!field.getType().isPrimitive()) {
+                    throw new IllegalArgumentException("Cannot lay out " + elementClass.getName() +
+                            " flat: field " + field.getName() + " is not primitive");
+                }
+                instanceFields.add(field);
+            }
+        }
+        return instanceFields;
+    }
+
+    private static Field[] orderBySize(final List<Field> instanceFields) {
+        // Collections.sort is stable, keeping declaration order within each size:
+        Collections.sort(instanceFields, new Comparator<Field>() {
+            @Override
+            public int compare(final Field f1, final Field f2) {
+                return sizeOf(f2.getType()) - sizeOf(f1.getType());
+            }
+        });
+        return instanceFields.toArray(new Field[instanceFields.size()]);
+    }
+
+    static int sizeOf(final Class<?> primitiveType) {
+        if ((primitiveType == long.class) || (primitiveType == double.class)) {
+            return 8;
+        } else if ((primitiveType == int.class) || (primitiveType == float.class)) {
+            return 4;
+        } else if ((primitiveType == short.class) || (primitiveType == char.class)) {
+            return 2;
+        } else {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,708 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ *     An array of elements whose (primitive) fields are stored flat, rather than as individual element objects.
+ * <p>
+ *     A flat structured array holds the fields of its elements packed back to back (row by row), laid out as
+ *     described by the element class's {@link FlatElementLayout}, with no per-element object header or
+ *     reference, and with consecutive elements adjacent to each other such that sequential scans access memory
+ *     sequentially. On-heap instances (created with {@link #newInstance}) keep their contents in byte arrays in
+ *     the garbage collected heap. Off-heap instances (created with {@link #newOffHeapInstance}) keep their
+ *     contents in native memory, outside of the heap. Off-heap memory is released when the array is garbage
+ *     collected, and is subject to the JVM's direct memory limit (-XX:MaxDirectMemorySize).
+ * <p>
+ *     Elements are accessed through flyweight views: {@link #get(long, Object)} loads the fields of an element
+ *     into a supplied (and typically reused) element object, and {@link #set(long, Object)} stores the fields of
+ *     an element object into the array. Individual fields can be read and written in place with the typed
+ *     accessors (e.g. {@link #getLong(long, int)}), using field indexes obtained from the array's
+ *     {@link FlatElementLayout}. A {@link Cursor} is a reusable flyweight that is positioned on an element with
+ *     {@link Cursor#moveTo(long)}, and then reads and writes the fields of that element in place, without
+ *     repeating the index computations for each field access:
+ * <blockquote><pre>
+ * final int x = array.getLayout().getFieldIndex("x");
+ * final FlatStructuredArray&lt;Point&gt;.Cursor cursor = array.cursor();
+ * for (long i = 0; i &lt; array.getLength(); i++) {
+ *     cursor.moveTo(i).setLong(x, cursor.getLong(x) + 1);
+ * }
+ * </pre></blockquote>
+ * <p>
+ *     Only element classes whose instance fields are all primitive can be stored flat. Element constructors are
+ *     not invoked for elements stored in a flat array, and all fields of newly created arrays are zero.
+ *
+ * @param <T> The class of the array elements
+ */
+public final class FlatStructuredArray<T> implements FlatArray<T> {
+    private static final int MAX_PARTITION_SIZE_POW2_EXPONENT = 30;
+
+    private final FlatElementLayout<T> layout;
+    private final long length;
+    private final boolean offHeap;
+    private final int elementSize;
+    private final int[] fieldOffsets;
+
+    // Storage is partitioned into buffers holding a power of 2 number of elements each:
+    private final int partitionSizePow2Exponent;
+    private final int partitionMask;
+    private final ByteBuffer[] partitions;
+
+    private FlatStructuredArray(final FlatElementLayout<T> layout, final long length, final boolean offHeap) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length cannot be negative");
+        }
+        this.layout = layout;
+        this.length = length;
+        this.offHeap = offHeap;
+        this.elementSize = layout.getElementSize();
+        this.fieldOffsets = new int[layout.getFieldCount()];
+        for (int i = 0; i < fieldOffsets.length; i++) {
+            fieldOffsets[i] = layout.getFieldOffset(i);
+        }
+
+        final int elementSizePow2Exponent = 32 - Integer.numberOfLeadingZeros(elementSize - 1);
+        this.partitionSizePow2Exponent = MAX_PARTITION_SIZE_POW2_EXPONENT - elementSizePow2Exponent;
+        this.partitionMask = (1 << partitionSizePow2Exponent) - 1;
+
+        final long elementsPerPartition = 1L << partitionSizePow2Exponent;
+        final long numPartitions = (length + elementsPerPartition - 1) >>> partitionSizePow2Exponent;
+        if (numPartitions > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("length too large: " + length);
+        }
+        this.partitions = new ByteBuffer[(int) numPartitions];
+        for (int i = 0; i < partitions.length; i++) {
+            final long partitionElements = Math.min(elementsPerPartition, length - (i * elementsPerPartition));
+            final int partitionBytes = (int) (partitionElements * elementSize);
+            final ByteBuffer partition =
+                    offHeap ? ByteBuffer.allocateDirect(partitionBytes) : ByteBuffer.allocate(partitionBytes);
+            partitions[i] = partition.order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Create an on-heap array of <code>length</code> elements of type <code>elementClass</code>, with
+     * all element fields initialized to zero.
+     *
+     * @param elementClass of each element in the array
+     * @param length of the array to create
+     * @param <T> The element type
+     * @return The newly created array
+     * @throws IllegalArgumentException if the element class has non-primitive instance fields
+     */
+    public static <T> FlatStructuredArray<T> newInstance(final Class<T> elementClass, final long length) {
+        return new FlatStructuredArray<>(FlatElementLayout.forClass(elementClass), length, false);
+    }
+
+    /**
+     * Create an on-heap array with the element class and length described by the given array model.
+     *
+     * @param arrayModel The model of the array to create
+     * @param <T> The element type
+     * @return The newly created array
+     * @throws IllegalArgumentException if the model describes nested arrays, or if the element class has
+     * non-primitive instance fields
+     */
+    public static <T> FlatStructuredArray<T> newInstance(
+            final StructuredArrayModel<? extends StructuredArray<T>, T> arrayModel) {
+        checkFlatModel(arrayModel);
+        return newInstance(arrayModel.getElementClass(), arrayModel.getLength());
+    }
+
+    /**
+     * Create an off-heap array of <code>length</code> elements of type <code>elementClass</code>, with
+     * all element fields initialized to zero.
+     *
+     * @param elementClass of each element in the array
+     * @param length of the array to create
+     * @param <T> The element type
+     * @return The newly created array
+     * @throws IllegalArgumentException if the element class has non-primitive instance fields
+     */
+    public static <T> FlatStructuredArray<T> newOffHeapInstance(final Class<T> elementClass, final long length) {
+        return new FlatStructuredArray<>(FlatElementLayout.forClass(elementClass), length, true);
+    }
+
+    /**
+     * Create an off-heap array with the element class and length described by the given array model.
+     *
+     * @param arrayModel The model of the array to create
+     * @param <T> The element type
+     * @return The newly created array
+     * @throws IllegalArgumentException if the model describes nested arrays, or if the element class has
+     * non-primitive instance fields
+     */
+    public static <T> FlatStructuredArray<T> newOffHeapInstance(
+            final StructuredArrayModel<? extends StructuredArray<T>, T> arrayModel) {
+        checkFlatModel(arrayModel);
+        return newOffHeapInstance(arrayModel.getElementClass(), arrayModel.getLength());
+    }
+
+    private static void checkFlatModel(final StructuredArrayModel<?, ?> arrayModel) {
+        if ((arrayModel.getStructuredSubArrayModel() != null) || (arrayModel.getPrimitiveSubArrayModel() != null)) {
+            throw new IllegalArgumentException("Flat arrays cannot contain nested arrays");
+        }
+    }
+
+    /**
+     * Get the length (number of elements) of the array.
+     *
+     * @return the number of elements in the array.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Get the {@link Class} of elements stored in the array.
+     *
+     * @return the {@link Class} of elements stored in the array.
+     */
+    public Class<T> getElementClass() {
+        return layout.getElementClass();
+    }
+
+    /**
+     * Get the layout of the elements stored in the array
+     *
+     * @return the layout of the elements stored in the array
+     */
+    public FlatElementLayout<T> getLayout() {
+        return layout;
+    }
+
+    /**
+     * Determine whether the contents of the array are held in native memory, outside of the heap
+     *
+     * @return true if the contents of the array are held off-heap
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Create a new {@link Cursor} over this array. The cursor is not positioned on any element until
+     * {@link Cursor#moveTo(long)} is called.
+     *
+     * @return a new cursor over this array
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Load the fields of the element at the given index into the supplied element object (the view). The view
+     * is a snapshot: changes to it are not reflected in the array until stored back with {@link #set}.
+     *
+     * @param index of the element to load
+     * @param view the element object to load the element's fields into
+     * @return the supplied view
+     */
+    public T get(final long index, final T view) {
+        layout.load(view, partitionFor(index), offsetOf(index));
+        return view;
+    }
+
+    /**
+     * Store the fields of the supplied element object into the element at the given index.
+     *
+     * @param index of the element to store into
+     * @param value the element object whose fields are to be stored
+     */
+    public void set(final long index, final T value) {
+        layout.store(value, partitionFor(index), offsetOf(index));
+    }
+
+    /**
+     * Get the value of a {@code boolean} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code boolean} field
+     */
+    public boolean getBoolean(final long index, final int fieldIndex) {
+        return partitionFor(index).get(offsetOf(index, fieldIndex, boolean.class)) != 0;
+    }
+
+    /**
+     * Set the value of a {@code boolean} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code boolean} field
+     */
+    public void setBoolean(final long index, final int fieldIndex, final boolean value) {
+        partitionFor(index).put(offsetOf(index, fieldIndex, boolean.class), (byte) (value ? 1 : 0));
+    }
+
+    /**
+     * Get the value of a {@code byte} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code byte} field
+     */
+    public byte getByte(final long index, final int fieldIndex) {
+        return partitionFor(index).get(offsetOf(index, fieldIndex, byte.class));
+    }
+
+    /**
+     * Set the value of a {@code byte} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code byte} field
+     */
+    public void setByte(final long index, final int fieldIndex, final byte value) {
+        partitionFor(index).put(offsetOf(index, fieldIndex, byte.class), value);
+    }
+
+    /**
+     * Get the value of a {@code char} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code char} field
+     */
+    public char getChar(final long index, final int fieldIndex) {
+        return partitionFor(index).getChar(offsetOf(index, fieldIndex, char.class));
+    }
+
+    /**
+     * Set the value of a {@code char} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code char} field
+     */
+    public void setChar(final long index, final int fieldIndex, final char value) {
+        partitionFor(index).putChar(offsetOf(index, fieldIndex, char.class), value);
+    }
+
+    /**
+     * Get the value of a {@code short} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code short} field
+     */
+    public short getShort(final long index, final int fieldIndex) {
+        return partitionFor(index).getShort(offsetOf(index, fieldIndex, short.class));
+    }
+
+    /**
+     * Set the value of a {@code short} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code short} field
+     */
+    public void setShort(final long index, final int fieldIndex, final short value) {
+        partitionFor(index).putShort(offsetOf(index, fieldIndex, short.class), value);
+    }
+
+    /**
+     * Get the value of a {@code int} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code int} field
+     */
+    public int getInt(final long index, final int fieldIndex) {
+        return partitionFor(index).getInt(offsetOf(index, fieldIndex, int.class));
+    }
+
+    /**
+     * Set the value of a {@code int} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code int} field
+     */
+    public void setInt(final long index, final int fieldIndex, final int value) {
+        partitionFor(index).putInt(offsetOf(index, fieldIndex, int.class), value);
+    }
+
+    /**
+     * Get the value of a {@code float} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code float} field
+     */
+    public float getFloat(final long index, final int fieldIndex) {
+        return partitionFor(index).getFloat(offsetOf(index, fieldIndex, float.class));
+    }
+
+    /**
+     * Set the value of a {@code float} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code float} field
+     */
+    public void setFloat(final long index, final int fieldIndex, final float value) {
+        partitionFor(index).putFloat(offsetOf(index, fieldIndex, float.class), value);
+    }
+
+    /**
+     * Get the value of a {@code long} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code long} field
+     */
+    public long getLong(final long index, final int fieldIndex) {
+        return partitionFor(index).getLong(offsetOf(index, fieldIndex, long.class));
+    }
+
+    /**
+     * Set the value of a {@code long} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code long} field
+     */
+    public void setLong(final long index, final int fieldIndex, final long value) {
+        partitionFor(index).putLong(offsetOf(index, fieldIndex, long.class), value);
+    }
+
+    /**
+     * Get the value of a {@code double} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @return the value of the field
+     * @throws IllegalArgumentException if the field is not a {@code double} field
+     */
+    public double getDouble(final long index, final int fieldIndex) {
+        return partitionFor(index).getDouble(offsetOf(index, fieldIndex, double.class));
+    }
+
+    /**
+     * Set the value of a {@code double} field of the element at the given index.
+     *
+     * @param index the index of the element
+     * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+     * @param value the value to assign to the field
+     * @throws IllegalArgumentException if the field is not a {@code double} field
+     */
+    public void setDouble(final long index, final int fieldIndex, final double value) {
+        partitionFor(index).putDouble(offsetOf(index, fieldIndex, double.class), value);
+    }
+
+    //
+    //
+    // Cursor support:
+    //
+    //
+
+    /**
+     * A reusable flyweight positioned on one element of a {@link FlatStructuredArray} at a time. The partition
+     * and offset of the element are computed once, in {@link #moveTo(long)}, and field accesses through the
+     * cursor then read and write the element's fields in place, at fixed offsets from it.
+     * <p>
+     * A cursor is not thread safe, but any number of cursors can be created over the same array.
+     */
+    public final class Cursor {
+        private long index = -1;
+        private ByteBuffer partition;
+        private int elementOffset;
+
+        Cursor() {
+        }
+
+        /**
+         * Position the cursor on the element at the given index
+         *
+         * @param index the index of the element
+         * @return this cursor
+         * @throws ArrayIndexOutOfBoundsException if the index is out of the bounds of the array
+         */
+        public Cursor moveTo(final long index) {
+            partition = partitionFor(index);
+            elementOffset = offsetOf(index);
+            this.index = index;
+            return this;
+        }
+
+        /**
+         * Get the index of the element the cursor is positioned on
+         *
+         * @return the index of the element the cursor is positioned on, or -1 if it has not been positioned
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Get the array this cursor is over
+         *
+         * @return the array this cursor is over
+         */
+        public FlatStructuredArray<T> getArray() {
+            return FlatStructuredArray.this;
+        }
+
+        /**
+         * Load the fields of the element the cursor is positioned on into the supplied element object.
+         *
+         * @param view the element object to load the element's fields into
+         * @return the supplied view
+         */
+        public T get(final T view) {
+            layout.load(view, partition(), elementOffset);
+            return view;
+        }
+
+        /**
+         * Store the fields of the supplied element object into the element the cursor is positioned on.
+         *
+         * @param value the element object whose fields are to be stored
+         * @return this cursor
+         */
+        public Cursor set(final T value) {
+            layout.store(value, partition(), elementOffset);
+            return this;
+        }
+
+        /**
+         * Get the value of a {@code boolean} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @return the value of the field
+         * @throws IllegalArgumentException if the field is not a {@code boolean} field
+         */
+        public boolean getBoolean(final int fieldIndex) {
+            return partition().get(fieldOffset(fieldIndex, boolean.class)) != 0;
+        }
+
+        /**
+         * Set the value of a {@code boolean} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @param value the value to assign to the field
+         * @return this cursor
+         * @throws IllegalArgumentException if the field is not a {@code boolean} field
+         */
+        public Cursor setBoolean(final int fieldIndex, final boolean value) {
+            partition().put(fieldOffset(fieldIndex, boolean.class), (byte) (value ? 1 : 0));
+            return this;
+        }
+
+        /**
+         * Get the value of a {@code byte} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @return the value of the field
+         * @throws IllegalArgumentException if the field is not a {@code byte} field
+         */
+        public byte getByte(final int fieldIndex) {
+            return partition().get(fieldOffset(fieldIndex, byte.class));
+        }
+
+        /**
+         * Set the value of a {@code byte} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @param value the value to assign to the field
+         * @return this cursor
+         * @throws IllegalArgumentException if the field is not a {@code byte} field
+         */
+        public Cursor setByte(final int fieldIndex, final byte value) {
+            partition().put(fieldOffset(fieldIndex, byte.class), value);
+            return this;
+        }
+
+        /**
+         * Get the value of a {@code char} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @return the value of the field
+         * @throws IllegalArgumentException if the field is not a {@code char} field
+         */
+        public char getChar(final int fieldIndex) {
+            return partition().getChar(fieldOffset(fieldIndex, char.class));
+        }
+
+        /**
+         * Set the value of a {@code char} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @param value the value to assign to the field
+         * @return this cursor
+         * @throws IllegalArgumentException if the field is not a {@code char} field
+         */
+        public Cursor setChar(final int fieldIndex, final char value) {
+            partition().putChar(fieldOffset(fieldIndex, char.class), value);
+            return this;
+        }
+
+        /**
+         * Get the value of a {@code short} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @return the value of the field
+         * @throws IllegalArgumentException if the field is not a {@code short} field
+         */
+        public short getShort(final int fieldIndex) {
+            return partition().getShort(fieldOffset(fieldIndex, short.class));
+        }
+
+        /**
+         * Set the value of a {@code short} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @param value the value to assign to the field
+         * @return this cursor
+         * @throws IllegalArgumentException if the field is not a {@code short} field
+         */
+        public Cursor setShort(final int fieldIndex, final short value) {
+            partition().putShort(fieldOffset(fieldIndex, short.class), value);
+            return this;
+        }
+
+        /**
+         * Get the value of a {@code int} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @return the value of the field
+         * @throws IllegalArgumentException if the field is not a {@code int} field
+         */
+        public int getInt(final int fieldIndex) {
+            return partition().getInt(fieldOffset(fieldIndex, int.class));
+        }
+
+        /**
+         * Set the value of a {@code int} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @param value the value to assign to the field
+         * @return this cursor
+         * @throws IllegalArgumentException if the field is not a {@code int} field
+         */
+        public Cursor setInt(final int fieldIndex, final int value) {
+            partition().putInt(fieldOffset(fieldIndex, int.class), value);
+            return this;
+        }
+
+        /**
+         * Get the value of a {@code float} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @return the value of the field
+         * @throws IllegalArgumentException if the field is not a {@code float} field
+         */
+        public float getFloat(final int fieldIndex) {
+            return partition().getFloat(fieldOffset(fieldIndex, float.class));
+        }
+
+        /**
+         * Set the value of a {@code float} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @param value the value to assign to the field
+         * @return this cursor
+         * @throws IllegalArgumentException if the field is not a {@code float} field
+         */
+        public Cursor setFloat(final int fieldIndex, final float value) {
+            partition().putFloat(fieldOffset(fieldIndex, float.class), value);
+            return this;
+        }
+
+        /**
+         * Get the value of a {@code long} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @return the value of the field
+         * @throws IllegalArgumentException if the field is not a {@code long} field
+         */
+        public long getLong(final int fieldIndex) {
+            return partition().getLong(fieldOffset(fieldIndex, long.class));
+        }
+
+        /**
+         * Set the value of a {@code long} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @param value the value to assign to the field
+         * @return this cursor
+         * @throws IllegalArgumentException if the field is not a {@code long} field
+         */
+        public Cursor setLong(final int fieldIndex, final long value) {
+            partition().putLong(fieldOffset(fieldIndex, long.class), value);
+            return this;
+        }
+
+        /**
+         * Get the value of a {@code double} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @return the value of the field
+         * @throws IllegalArgumentException if the field is not a {@code double} field
+         */
+        public double getDouble(final int fieldIndex) {
+            return partition().getDouble(fieldOffset(fieldIndex, double.class));
+        }
+
+        /**
+         * Set the value of a {@code double} field of the element the cursor is positioned on.
+         *
+         * @param fieldIndex the index of the field in the array's {@link FlatElementLayout}
+         * @param value the value to assign to the field
+         * @return this cursor
+         * @throws IllegalArgumentException if the field is not a {@code double} field
+         */
+        public Cursor setDouble(final int fieldIndex, final double value) {
+            partition().putDouble(fieldOffset(fieldIndex, double.class), value);
+            return this;
+        }
+
+        private int fieldOffset(final int fieldIndex, final Class<?> fieldType) {
+            layout.checkFieldType(fieldIndex, fieldType);
+            return elementOffset + fieldOffsets[fieldIndex];
+        }
+
+        private ByteBuffer partition() {
+            if (partition == null) {
+                throw new IllegalStateException("Cursor has not been positioned on an element with moveTo()");
+            }
+            return partition;
+        }
+    }
+
+    private ByteBuffer partitionFor(final long index) {
+        if ((index < 0) || (index >= length)) {
+            throw new ArrayIndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+        }
+        return partitions[(int) (index >>> partitionSizePow2Exponent)];
+    }
+
+    private int offsetOf(final long index) {
+        return (((int) index) & partitionMask) * elementSize;
+    }
+
+    private int offsetOf(final long index, final int fieldIndex, final Class<?> fieldType) {
+        layout.checkFieldType(fieldIndex, fieldType);
+        return ((((int) index) & partitionMask) * elementSize) + fieldOffsets[fieldIndex];
+    }
+}
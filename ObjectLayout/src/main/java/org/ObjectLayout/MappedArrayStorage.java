@@ -0,0 +1,262 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File backed storage for memory mapped primitive arrays, and for other structures kept in memory mapped
+ * files. A file, or a region of it, is mapped in segments of
+ * 2^{@value #SEGMENT_SIZE_POW2_EXPONENT} bytes (the last segment may be shorter), such that each segment
+ * holds a power of 2 number of elements, and an element's segment and offset within the segment can be
+ * derived from its index with a shift and a mask. Elements are stored in little endian byte order.
+ * <p>
+ * Segments are mapped (but not loaded) when the storage is created, such that contents are paged in lazily
+ * on access. The mappings remain valid until the storage is closed with {@link #close()}, which unmaps them
+ * immediately (where the JDK allows it), or until the storage is garbage collected.
+ */
+public final class MappedArrayStorage implements Closeable {
+    /**
+     * log2 of the size (in bytes) of the segments a file is mapped in.
+     */
+    public static final int SEGMENT_SIZE_POW2_EXPONENT = 30;
+
+    private static final MethodHandle unmapper = findUnmapper();
+
+    private final Path path;
+    private final long length;
+    private final int elementsPerSegmentPow2Exponent;
+    private final MappedByteBuffer[] segments;
+    private volatile boolean closed;
+
+    private MappedArrayStorage(final Path path,
+                               final long length,
+                               final int elementsPerSegmentPow2Exponent,
+                               final MappedByteBuffer[] segments) {
+        this.path = path;
+        this.length = length;
+        this.elementsPerSegmentPow2Exponent = elementsPerSegmentPow2Exponent;
+        this.segments = segments;
+    }
+
+    /**
+     * Map (creating or extending as needed) the file at the given path to hold <code>length</code> elements
+     * of size 2^<code>elementSizePow2Exponent</code> bytes. Existing contents of the file are preserved.
+     *
+     * @param path the path of the file to map
+     * @param length the number of elements in the mapped array
+     * @param elementSizePow2Exponent log2 of the element size in bytes
+     * @return the mapped storage
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedArrayStorage map(final Path path,
+                                         final long length,
+                                         final int elementSizePow2Exponent) throws IOException {
+        return map(path, 0, length, elementSizePow2Exponent);
+    }
+
+    /**
+     * Map (creating or extending as needed) the region of the file at the given path that starts at byte
+     * <code>position</code> and holds <code>length</code> elements of size 2^<code>elementSizePow2Exponent</code>
+     * bytes. Existing contents of the file are preserved.
+     *
+     * @param path the path of the file to map
+     * @param position the position in the file at which the mapped region starts
+     * @param length the number of elements in the mapped region
+     * @param elementSizePow2Exponent log2 of the element size in bytes
+     * @return the mapped storage
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedArrayStorage map(final Path path,
+                                         final long position,
+                                         final long length,
+                                         final int elementSizePow2Exponent) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("length cannot be negative");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("position cannot be negative");
+        }
+        if ((elementSizePow2Exponent < 0) || (elementSizePow2Exponent > SEGMENT_SIZE_POW2_EXPONENT)) {
+            throw new IllegalArgumentException("Illegal element size exponent: " + elementSizePow2Exponent);
+        }
+        final int elementsPerSegmentPow2Exponent = SEGMENT_SIZE_POW2_EXPONENT - elementSizePow2Exponent;
+        final long elementsPerSegment = 1L << elementsPerSegmentPow2Exponent;
+        final long numSegments = (length + elementsPerSegment - 1) >>> elementsPerSegmentPow2Exponent;
+        if (numSegments > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("length too large to map: " + length);
+        }
+
+        final MappedByteBuffer[] segments = new MappedByteBuffer[(int) numSegments];
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < segments.length; i++) {
+                final long firstElement = ((long) i) << elementsPerSegmentPow2Exponent;
+                final long segmentElements = Math.min(elementsPerSegment, length - firstElement);
+                final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                        position + (firstElement << elementSizePow2Exponent),
+                        segmentElements << elementSizePow2Exponent);
+                segment.order(ByteOrder.LITTLE_ENDIAN);
+                segments[i] = segment;
+            }
+        }
+        return new MappedArrayStorage(path, length, elementsPerSegmentPow2Exponent, segments);
+    }
+
+    /**
+     * Get the path of the mapped file
+     *
+     * @return the path of the mapped file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Get the number of elements in the mapped region
+     *
+     * @return the number of elements in the mapped region
+     */
+    public long getLength() {
+        return length;
+    }
+
+    int getElementsPerSegmentPow2Exponent() {
+        return elementsPerSegmentPow2Exponent;
+    }
+
+    /**
+     * Get the number of segments the region is mapped in
+     *
+     * @return the number of segments the region is mapped in
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Get a (little endian ordered) view of a segment of the mapped file.
+     *
+     * @param segmentIndex the index of the segment
+     * @return a byte buffer view of the segment
+     * @throws IllegalStateException if the storage has been closed
+     */
+    public ByteBuffer getSegment(final int segmentIndex) {
+        checkOpen();
+        return segments[segmentIndex].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Force any changes made to the mapped contents to be written to the storage device.
+     *
+     * @throws IllegalStateException if the storage has been closed
+     */
+    public synchronized void force() {
+        checkOpen();
+        for (final MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Determine whether the storage has been closed
+     *
+     * @return true if the storage has been closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Unmap the file. Changes made to the mapped contents still reach the file, but are not forced to the
+     * storage device (see {@link #force()}). Views of the segments obtained with {@link #getSegment} must not
+     * be accessed once the storage is closed, as their memory is no longer mapped. Closing a closed storage has
+     * no effect.
+     */
+    /**
+     * Force any changes made to the mapped contents to the storage device, and unmap the file, as a single
+     * step with respect to other calls to force() and close(). Closing a closed storage has no effect.
+     */
+    synchronized void forceAndClose() {
+        if (closed) {
+            return;
+        }
+        force();
+        close();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < segments.length; i++) {
+            unmap(segments[i]);
+            segments[i] = null;
+        }
+    }
+
+    /**
+     * Check that the storage is open. The closed state is volatile, such that closing the storage is visible
+     * to all accesses that follow it, and mapped arrays check it on each element access.
+     *
+     * @throws IllegalStateException if the storage has been closed
+     */
+    void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Mapped storage of " + path + " has been closed");
+        }
+    }
+
+    /**
+     * Unmap a mapped buffer through its cleaner, rather than waiting for it to be garbage collected. Where the
+     * JDK provides no way to do so, the buffer is left to be unmapped when it is collected.
+     */
+    static void unmap(final MappedByteBuffer buffer) {
+        if (unmapper == null) {
+            return;
+        }
+        try {
+            unmapper.invokeExact((ByteBuffer) buffer);
+        } catch (final RuntimeException | Error ex) {
+            throw ex;
+        } catch (final Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static MethodHandle findUnmapper() {
+        // Java 9 and later:
+        final MethodHandle invokeCleaner = UnsafeAccess.handle("invokeCleaner", void.class, ByteBuffer.class);
+        if (invokeCleaner != null) {
+            return invokeCleaner;
+        }
+        try {
+            // Java 8: ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()
+            final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final MethodHandle cleanerHandle = lookup.unreflect(cleaner);
+            final MethodHandle cleanHandle = lookup.unreflect(clean);
+            return MethodHandles.filterReturnValue(cleanerHandle, cleanHandle).
+                    asType(MethodType.methodType(void.class, ByteBuffer.class));
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+}
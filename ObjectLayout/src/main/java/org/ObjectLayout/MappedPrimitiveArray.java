@@ -0,0 +1,60 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+
+/**
+ * The operations common to all primitive arrays whose contents are stored in a memory mapped file rather
+ * than on the heap ({@link MappedPrimitiveByteArray}, {@link MappedPrimitiveShortArray},
+ * {@link MappedPrimitiveCharArray}, {@link MappedPrimitiveIntArray}, {@link MappedPrimitiveFloatArray},
+ * {@link MappedPrimitiveLongArray} and {@link MappedPrimitiveDoubleArray}).
+ * <p>
+ * The file is mapped in segments of 2^{@value MappedArrayStorage#SEGMENT_SIZE_POW2_EXPONENT} bytes, and its
+ * contents are paged in lazily as they are accessed, such that opening even very large arrays is fast.
+ * Elements are stored in little endian byte order. Changes are written back to the file by the operating
+ * system, and can be forced to the storage device with {@link #force()}. The file is unmapped when the array
+ * is closed with {@link #close()}, or otherwise when the array is garbage collected.
+ * <p>
+ * Mapped arrays cannot be represented as Java arrays, and cannot be copied (with copyInstance() or with a
+ * copying constructor): attempts to copy them throw {@link UnsupportedOperationException}.
+ */
+public interface MappedPrimitiveArray extends Closeable {
+    /**
+     * Get the path of the file this array is mapped from
+     *
+     * @return the path of the file this array is mapped from
+     */
+    Path getPath();
+
+    /**
+     * Force any changes made to the contents of this array to be written to the storage device
+     * containing the mapped file.
+     *
+     * @throws IllegalStateException if the array has been closed
+     */
+    void force();
+
+    /**
+     * Force any changes made to the contents of this array to the storage device, and unmap the file.
+     * Closing a closed array has no effect.
+     * <p>
+     * Accesses to the array that follow its closing (in the sense of the Java memory model) fail with an
+     * {@link IllegalStateException}. Closing does not wait for accesses in progress in other threads, which
+     * may touch memory that is no longer mapped: threads sharing a mapped array must make sure all of their
+     * accesses happen before it is closed.
+     */
+    @Override
+    void close();
+
+    /**
+     * Determine whether this array has been closed
+     *
+     * @return true if this array has been closed
+     */
+    boolean isClosed();
+}
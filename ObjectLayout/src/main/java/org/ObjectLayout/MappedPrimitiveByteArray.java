@@ -0,0 +1,84 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * A {@link PrimitiveByteArray} whose contents are stored in a memory mapped file rather than on the heap. See
+ * {@link MappedPrimitiveArray} for the mapping, force and close semantics shared by all mapped arrays.
+ * <p>
+ * Mapped arrays cannot be represented as a byte[], and cannot be copied. Use
+ * {@link PrimitiveByteArray#newMappedInstance} to create instances.
+ */
+public final class MappedPrimitiveByteArray extends PrimitiveByteArray implements MappedPrimitiveArray {
+
+    private static final int SEGMENT_SIZE_POW2_EXPONENT =
+            MappedArrayStorage.SEGMENT_SIZE_POW2_EXPONENT;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SIZE_POW2_EXPONENT) - 1;
+
+    private final MappedArrayStorage storage;
+    private final ByteBuffer[] segments;
+
+    @Override
+    byte[] _asArray() {
+        throw new IllegalStateException("Cannot make byte[] from a memory mapped array");
+    }
+
+    @Override
+    byte _get(final int index) {
+        storage.checkOpen();
+        return segments[index >>> SEGMENT_SIZE_POW2_EXPONENT].get(index & SEGMENT_MASK);
+    }
+
+    @Override
+    byte _get(final long index) {
+        storage.checkOpen();
+        return segments[(int) (index >>> SEGMENT_SIZE_POW2_EXPONENT)].get((int) index & SEGMENT_MASK);
+    }
+
+    @Override
+    void _set(final int index, final byte value) {
+        storage.checkOpen();
+        segments[index >>> SEGMENT_SIZE_POW2_EXPONENT].put(index & SEGMENT_MASK, value);
+    }
+
+    @Override
+    void _set(final long index, final byte value) {
+        storage.checkOpen();
+        segments[(int) (index >>> SEGMENT_SIZE_POW2_EXPONENT)].put((int) index & SEGMENT_MASK, value);
+    }
+
+    MappedPrimitiveByteArray(final MappedArrayStorage storage) {
+        super(storage);
+        this.storage = storage;
+        segments = new ByteBuffer[storage.getSegmentCount()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = storage.getSegment(i);
+        }
+    }
+
+    @Override
+    public Path getPath() {
+        return storage.getPath();
+    }
+
+    @Override
+    public void force() {
+        storage.force();
+    }
+
+    @Override
+    public void close() {
+        storage.forceAndClose();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return storage.isClosed();
+    }
+}
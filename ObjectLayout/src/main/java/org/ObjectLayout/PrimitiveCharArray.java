@@ -5,8 +5,10 @@
 
 package org.ObjectLayout;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
+import java.nio.file.Path;
 
 /**
  * A subclassable array of chars.
@@ -81,6 +83,88 @@ public class PrimitiveCharArray extends AbstractPrimitiveCharArray {
         _set(index, value);
     }
 
+    /**
+     * Assign the given value to each element in a range of the array.
+     *
+     * @param fromIndex the index of the first element (inclusive) to be filled
+     * @param toIndex the index of the last element (exclusive) to be filled
+     * @param value the value to assign to the elements
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public void fill(final long fromIndex, final long toIndex, final char value) {
+        _checkRange(fromIndex, toIndex);
+        _fill(fromIndex, toIndex, value);
+    }
+
+    /**
+     * Copy a range of elements from a source array into this array. The source array may be this array,
+     * in which case the copy behaves as if the source range was first copied to a temporary array (as
+     * with System.arraycopy).
+     *
+     * @param src the array to copy elements from
+     * @param srcOffset the index of the first element to copy in the source array
+     * @param dstOffset the index in this array at which to store the first copied element
+     * @param length the number of elements to copy
+     * @throws IllegalArgumentException if length is negative
+     * @throws ArrayIndexOutOfBoundsException if either range is out of the bounds of its array
+     */
+    public void copyFrom(final PrimitiveCharArray src, final long srcOffset, final long dstOffset, final long length) {
+        src._checkOffsetAndLength(srcOffset, length);
+        _checkOffsetAndLength(dstOffset, length);
+        _copyFrom(src, srcOffset, dstOffset, length);
+    }
+
+    /**
+     * Determine whether a range of elements in this array is equal to a range of elements of another
+     * array, using the same element equality as {@link java.util.Arrays#equals(char[], char[])}.
+     *
+     * @param offset the index of the first element to compare in this array
+     * @param other the array to compare with
+     * @param otherOffset the index of the first element to compare in the other array
+     * @param length the number of elements to compare
+     * @return true if the ranges are equal
+     * @throws IllegalArgumentException if length is negative
+     * @throws ArrayIndexOutOfBoundsException if either range is out of the bounds of its array
+     */
+    public boolean equalsRange(final long offset, final PrimitiveCharArray other, final long otherOffset, final long length) {
+        return mismatch(offset, other, otherOffset, length) < 0;
+    }
+
+    /**
+     * Find the first mismatching element between a range of elements in this array and a range of elements
+     * of another array, using the same element equality as {@link java.util.Arrays#equals(char[], char[])}.
+     *
+     * @param offset the index of the first element to compare in this array
+     * @param other the array to compare with
+     * @param otherOffset the index of the first element to compare in the other array
+     * @param length the number of elements to compare
+     * @return the position of the first mismatch relative to the start of the ranges, or -1 if the ranges
+     * are equal
+     * @throws IllegalArgumentException if length is negative
+     * @throws ArrayIndexOutOfBoundsException if either range is out of the bounds of its array
+     */
+    public long mismatch(final long offset, final PrimitiveCharArray other, final long otherOffset, final long length) {
+        other._checkOffsetAndLength(otherOffset, length);
+        _checkOffsetAndLength(offset, length);
+        return _mismatch(offset, other, otherOffset, length);
+    }
+
+    /**
+     * Compute a hash code for a range of elements in the array. The hash code is the same as the one
+     * {@link java.util.Arrays#hashCode(char[])} would return for a char[] holding the same elements.
+     *
+     * @param fromIndex the index of the first element (inclusive) to hash
+     * @param toIndex the index of the last element (exclusive) to hash
+     * @return a hash code for the range
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public int hashRange(final long fromIndex, final long toIndex) {
+        _checkRange(fromIndex, toIndex);
+        return _hashRange(fromIndex, toIndex);
+    }
+
     /**
      * Default constructor
      */
@@ -97,6 +181,25 @@ public class PrimitiveCharArray extends AbstractPrimitiveCharArray {
         super(sourceArray);
     }
 
+    PrimitiveCharArray(final MappedArrayStorage mappedStorage) {
+        super(mappedStorage);
+    }
+
+    /**
+     * Create a new instance of {@link MappedPrimitiveCharArray} with a given length, with contents stored in
+     * (and persisted to) the file at the given path. The file is created if it does not exist, and is
+     * extended if it is too short to hold <code>length</code> elements. Existing contents of the file are
+     * preserved, and are paged in lazily as they are accessed.
+     *
+     * @param path the path of the file to map the array from
+     * @param length the length of the array.
+     * @return a new instance of {@link MappedPrimitiveCharArray} with the given length
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedPrimitiveCharArray newMappedInstance(final Path path, final long length) throws IOException {
+        return AbstractPrimitiveArray._newMappedInstance(MappedPrimitiveCharArray.class, path, length, 1);
+    }
+
     /**
      * Create a new instance of {@link PrimitiveCharArray} with a given length.
      *
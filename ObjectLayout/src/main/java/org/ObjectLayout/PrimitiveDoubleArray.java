@@ -5,8 +5,14 @@
 
 package org.ObjectLayout;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
+import java.nio.file.Path;
+import java.util.Spliterator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
 
 /**
  * A subclassable array of doubles.
@@ -81,6 +87,246 @@ public class PrimitiveDoubleArray extends AbstractPrimitiveDoubleArray {
         _set(index, value);
     }
 
+    /**
+     * Assign the given value to each element in a range of the array.
+     *
+     * @param fromIndex the index of the first element (inclusive) to be filled
+     * @param toIndex the index of the last element (exclusive) to be filled
+     * @param value the value to assign to the elements
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public void fill(final long fromIndex, final long toIndex, final double value) {
+        _checkRange(fromIndex, toIndex);
+        _fill(fromIndex, toIndex, value);
+    }
+
+    /**
+     * Copy a range of elements from a source array into this array. The source array may be this array,
+     * in which case the copy behaves as if the source range was first copied to a temporary array (as
+     * with System.arraycopy).
+     *
+     * @param src the array to copy elements from
+     * @param srcOffset the index of the first element to copy in the source array
+     * @param dstOffset the index in this array at which to store the first copied element
+     * @param length the number of elements to copy
+     * @throws IllegalArgumentException if length is negative
+     * @throws ArrayIndexOutOfBoundsException if either range is out of the bounds of its array
+     */
+    public void copyFrom(final PrimitiveDoubleArray src, final long srcOffset, final long dstOffset, final long length) {
+        src._checkOffsetAndLength(srcOffset, length);
+        _checkOffsetAndLength(dstOffset, length);
+        _copyFrom(src, srcOffset, dstOffset, length);
+    }
+
+    /**
+     * Determine whether a range of elements in this array is equal to a range of elements of another
+     * array, using the same element equality as {@link java.util.Arrays#equals(double[], double[])}.
+     *
+     * @param offset the index of the first element to compare in this array
+     * @param other the array to compare with
+     * @param otherOffset the index of the first element to compare in the other array
+     * @param length the number of elements to compare
+     * @return true if the ranges are equal
+     * @throws IllegalArgumentException if length is negative
+     * @throws ArrayIndexOutOfBoundsException if either range is out of the bounds of its array
+     */
+    public boolean equalsRange(final long offset, final PrimitiveDoubleArray other, final long otherOffset, final long length) {
+        return mismatch(offset, other, otherOffset, length) < 0;
+    }
+
+    /**
+     * Find the first mismatching element between a range of elements in this array and a range of elements
+     * of another array, using the same element equality as {@link java.util.Arrays#equals(double[], double[])}.
+     *
+     * @param offset the index of the first element to compare in this array
+     * @param other the array to compare with
+     * @param otherOffset the index of the first element to compare in the other array
+     * @param length the number of elements to compare
+     * @return the position of the first mismatch relative to the start of the ranges, or -1 if the ranges
+     * are equal
+     * @throws IllegalArgumentException if length is negative
+     * @throws ArrayIndexOutOfBoundsException if either range is out of the bounds of its array
+     */
+    public long mismatch(final long offset, final PrimitiveDoubleArray other, final long otherOffset, final long length) {
+        other._checkOffsetAndLength(otherOffset, length);
+        _checkOffsetAndLength(offset, length);
+        return _mismatch(offset, other, otherOffset, length);
+    }
+
+    /**
+     * Compute a hash code for a range of elements in the array. The hash code is the same as the one
+     * {@link java.util.Arrays#hashCode(double[])} would return for a double[] holding the same elements.
+     *
+     * @param fromIndex the index of the first element (inclusive) to hash
+     * @param toIndex the index of the last element (exclusive) to hash
+     * @return a hash code for the range
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public int hashRange(final long fromIndex, final long toIndex) {
+        _checkRange(fromIndex, toIndex);
+        return _hashRange(fromIndex, toIndex);
+    }
+
+    /**
+     * Creates a {@link Spliterator.OfDouble} over the elements of the array. The spliterator reports
+     * {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED} and {@link Spliterator#ORDERED}, splits on index
+     * ranges (including ranges above Integer.MAX_VALUE), and traverses elements without boxing them.
+     *
+     * @return a spliterator over the elements of the array
+     */
+    public Spliterator.OfDouble spliterator() {
+        return _spliterator(0, _getLength());
+    }
+
+    /**
+     * Creates a {@link Spliterator.OfDouble} over a range of the elements of the array.
+     *
+     * @param fromIndex the index of the first element (inclusive) covered by the spliterator
+     * @param toIndex the index of the last element (exclusive) covered by the spliterator
+     * @return a spliterator over the range of elements
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public Spliterator.OfDouble spliterator(final long fromIndex, final long toIndex) {
+        _checkRange(fromIndex, toIndex);
+        return _spliterator(fromIndex, toIndex);
+    }
+
+    /**
+     * Returns a sequential {@link DoubleStream} of the elements of the array.
+     *
+     * @return a sequential stream of the elements of the array
+     */
+    public DoubleStream stream() {
+        return StreamSupport.doubleStream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel {@link DoubleStream} of the elements of the array. Element ranges are split across the
+     * common {@link java.util.concurrent.ForkJoinPool}, including ranges above Integer.MAX_VALUE.
+     *
+     * @return a parallel stream of the elements of the array
+     */
+    public DoubleStream parallelStream() {
+        return StreamSupport.doubleStream(spliterator(), true);
+    }
+
+    /**
+     * Compute the sum of a range of elements in the array. The elements are summed in an unspecified
+     * order, such that the result may differ from that of a strictly sequential summation in the least
+     * significant bits.
+     *
+     * @param fromIndex the index of the first element (inclusive) to sum
+     * @param toIndex the index of the last element (exclusive) to sum
+     * @return the sum of the elements in the range (0 if the range is empty)
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public double sum(final long fromIndex, final long toIndex) {
+        _checkRange(fromIndex, toIndex);
+        return _sum(fromIndex, toIndex);
+    }
+
+    /**
+     * Compute the dot product of a range of elements in this array and a range of elements of another
+     * array. The products are summed in an unspecified order, such that the result may differ from
+     * that of a strictly sequential summation in the least significant bits.
+     *
+     * @param offset the index of the first element of the range in this array
+     * @param other the array to multiply with
+     * @param otherOffset the index of the first element of the range in the other array
+     * @param length the number of elements in the ranges
+     * @return the dot product of the ranges (0 if the ranges are empty)
+     * @throws IllegalArgumentException if length is negative
+     * @throws ArrayIndexOutOfBoundsException if either range is out of the bounds of its array
+     */
+    public double dot(final long offset, final PrimitiveDoubleArray other, final long otherOffset, final long length) {
+        other._checkOffsetAndLength(otherOffset, length);
+        _checkOffsetAndLength(offset, length);
+        return _dot(offset, other, otherOffset, length);
+    }
+
+    /**
+     * Find the minimum of a range of elements in the array, as determined by {@link Math#min(double, double)}
+     * (so NaN if any element in the range is NaN).
+     *
+     * @param fromIndex the index of the first element (inclusive) to examine
+     * @param toIndex the index of the last element (exclusive) to examine
+     * @return the minimum element in the range, or {@link Double#POSITIVE_INFINITY} if the range is empty
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public double min(final long fromIndex, final long toIndex) {
+        _checkRange(fromIndex, toIndex);
+        return _min(fromIndex, toIndex);
+    }
+
+    /**
+     * Find the maximum of a range of elements in the array, as determined by {@link Math#max(double, double)}
+     * (so NaN if any element in the range is NaN).
+     *
+     * @param fromIndex the index of the first element (inclusive) to examine
+     * @param toIndex the index of the last element (exclusive) to examine
+     * @return the maximum element in the range, or {@link Double#NEGATIVE_INFINITY} if the range is empty
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public double max(final long fromIndex, final long toIndex) {
+        _checkRange(fromIndex, toIndex);
+        return _max(fromIndex, toIndex);
+    }
+
+    /**
+     * Add a multiple of a range of elements of an array (x) to a range of elements of this array (y), such
+     * that <code>y[offset + i] += a * x[xOffset + i]</code> for each i in [0, length). The source array may
+     * be this array, in which case the result is as if the source range was first copied to a temporary
+     * array.
+     *
+     * @param a the multiplier
+     * @param x the array to add a multiple of
+     * @param xOffset the index of the first element of the range in x
+     * @param offset the index of the first element of the range in this array
+     * @param length the number of elements in the ranges
+     * @throws IllegalArgumentException if length is negative
+     * @throws ArrayIndexOutOfBoundsException if either range is out of the bounds of its array
+     */
+    public void axpy(final double a, final PrimitiveDoubleArray x, final long xOffset, final long offset, final long length) {
+        x._checkOffsetAndLength(xOffset, length);
+        _checkOffsetAndLength(offset, length);
+        _axpy(a, x, xOffset, offset, length);
+    }
+
+    /**
+     * Replace each element in a range of the array with the (inclusive) prefix sum of the range up to and
+     * including it, such that the element at fromIndex is unchanged and the element at toIndex - 1 holds the
+     * sum of the range. Sums are accumulated as doubles, in index order.
+     *
+     * @param fromIndex the index of the first element (inclusive) of the range
+     * @param toIndex the index of the last element (exclusive) of the range
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public void prefixSum(final long fromIndex, final long toIndex) {
+        _checkRange(fromIndex, toIndex);
+        _prefixSum(fromIndex, toIndex);
+    }
+
+    /**
+     * Replace each element in a range of the array with the result of applying the given operator to it.
+     *
+     * @param fromIndex the index of the first element (inclusive) to map
+     * @param toIndex the index of the last element (exclusive) to map
+     * @param operator the operator to apply to each element
+     * @throws IllegalArgumentException if fromIndex &gt; toIndex
+     * @throws ArrayIndexOutOfBoundsException if fromIndex &lt; 0 or toIndex &gt; getLength()
+     */
+    public void map(final long fromIndex, final long toIndex, final DoubleUnaryOperator operator) {
+        _checkRange(fromIndex, toIndex);
+        _map(fromIndex, toIndex, operator);
+    }
+
     /**
      * Default constructor
      */
@@ -97,6 +343,25 @@ public class PrimitiveDoubleArray extends AbstractPrimitiveDoubleArray {
         super(sourceArray);
     }
 
+    PrimitiveDoubleArray(final MappedArrayStorage mappedStorage) {
+        super(mappedStorage);
+    }
+
+    /**
+     * Create a new instance of {@link MappedPrimitiveDoubleArray} with a given length, with contents stored in
+     * (and persisted to) the file at the given path. The file is created if it does not exist, and is
+     * extended if it is too short to hold <code>length</code> elements. Existing contents of the file are
+     * preserved, and are paged in lazily as they are accessed.
+     *
+     * @param path the path of the file to map the array from
+     * @param length the length of the array.
+     * @return a new instance of {@link MappedPrimitiveDoubleArray} with the given length
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedPrimitiveDoubleArray newMappedInstance(final Path path, final long length) throws IOException {
+        return AbstractPrimitiveArray._newMappedInstance(MappedPrimitiveDoubleArray.class, path, length, 3);
+    }
+
     /**
      * Create a new instance of {@link PrimitiveDoubleArray} with a given length.
      *
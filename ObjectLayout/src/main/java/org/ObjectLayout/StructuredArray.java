@@ -8,13 +8,17 @@ package org.ObjectLayout;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-
-import static java.lang.reflect.Modifier.*;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *     An array of non-replaceable objects.
@@ -48,10 +52,8 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
     private static final Object[] EMPTY_ARGS = new Object[0];
     private static final MethodHandles.Lookup noLookup = null;
 
-    final Field[] fields;
-    final boolean hasFinalFields;
-
     private final StructuredArrayModel<? extends StructuredArray<T>, T> arrayModel;
+    private final int elementAlignment;
 
     // Single-dimensional newInstance forms:
 
@@ -520,7 +522,8 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
         final StructuredArrayBuilder<S, T> arrayBuilder =
                 createCopyingArrayBuilder(lookup, sourceArrayModel, sourceOffsets, 0, counts, 0).
                         arrayCtorAndArgs(arrayCtorAndArgs).
-                        contextCookie(source);
+                        contextCookie(source).
+                        alignment(source.getElementAlignment());
 
         return instantiate(arrayBuilder);
     }
@@ -630,24 +633,20 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
 
         context.setArray(this);
         this.arrayModel = arrayBuilder.getArrayModel();
-
-        final Field[] fields = removeStaticFields(getElementClass().getDeclaredFields());
-        for (final Field field : fields) {
-            field.setAccessible(true);
+        this.elementAlignment = arrayBuilder.getElementAlignment();
+        if (elementAlignment != 0) {
+            allocateElementSpacers();
         }
-        this.fields = fields;
-        this.hasFinalFields = containsFinalQualifiedFields(fields);
 
         StructuredArrayBuilder structuredSubArrayBuilder = arrayBuilder.getStructuredSubArrayBuilder();
         PrimitiveArrayBuilder primitiveSubArrayBuilder = arrayBuilder.getPrimitiveSubArrayBuilder();
 
-        if (structuredSubArrayBuilder != null) {
-            populateStructuredSubArrays(ctorAndArgsProvider, structuredSubArrayBuilder, context);
-        } else if (primitiveSubArrayBuilder != null) {
-            populatePrimitiveSubArrays(ctorAndArgsProvider, primitiveSubArrayBuilder, context);
+        if (arrayBuilder.getParallelism() > 1) {
+            populateElementsInParallel(arrayBuilder,
+                    ctorAndArgsProvider, structuredSubArrayBuilder, primitiveSubArrayBuilder, context);
         } else {
-            // This is a single dimension array. Populate it:
-            populateLeafElements(ctorAndArgsProvider, context);
+            populateElements(ctorAndArgsProvider, structuredSubArrayBuilder, primitiveSubArrayBuilder, context,
+                    0, getLength());
         }
     }
 
@@ -688,6 +687,16 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
         return arrayModel;
     }
 
+    /**
+     * Get the alignment (in bytes) requested for the elements of this array. See
+     * {@link StructuredArrayBuilder#alignment}.
+     *
+     * @return the alignment requested for the elements of this array, or 0 if none was requested
+     */
+    public int getElementAlignment() {
+        return elementAlignment;
+    }
+
     /**
      * Get a reference to an element in a single dimensional array, using a <code>long</code> index.
      *
@@ -714,10 +723,41 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
     //
     //
 
+    private void populateElements(final CtorAndArgsProvider<T> ctorAndArgsProvider,
+                                  final StructuredArrayBuilder structuredSubArrayBuilder,
+                                  final PrimitiveArrayBuilder primitiveSubArrayBuilder,
+                                  final ConstructionContext<T> context,
+                                  final long fromIndex, final long toIndex) {
+        if (structuredSubArrayBuilder != null) {
+            populateStructuredSubArrays(ctorAndArgsProvider, structuredSubArrayBuilder, context, fromIndex, toIndex);
+        } else if (primitiveSubArrayBuilder != null) {
+            populatePrimitiveSubArrays(ctorAndArgsProvider, primitiveSubArrayBuilder, context, fromIndex, toIndex);
+        } else {
+            // This is a single dimension array. Populate it:
+            populateLeafElements(ctorAndArgsProvider, context, fromIndex, toIndex);
+        }
+    }
+
+    private void verifyConstructorDeclaringClass(final Constructor<T> constructor) {
+        if (constructor.getDeclaringClass() != getElementClass()) {
+            throw new IllegalArgumentException("ElementClass (" + getElementClass() +
+                    ") does not match ctorAndArgs.getConstructor().getDeclaringClass() (" +
+                    constructor.getDeclaringClass() + ")");
+        }
+    }
+
+    private ConstructorFactory<T> resolveConstructorFactory(final Constructor<T> constructor) {
+        // Resolved (and verified) only when the provider hands out a different constructor than it
+        // did for the previous index, which for most providers means once per array:
+        verifyConstructorDeclaringClass(constructor);
+        return ConstructorFactory.forConstructor(constructor);
+    }
+
     private void populateLeafElement(final long index,
-                                     CtorAndArgs<T> ctorAndArgs) {
+                                     final ConstructorFactory<T> constructorFactory,
+                                     final CtorAndArgs<T> ctorAndArgs) {
         // Instantiate:
-        constructElementAtIndex(index, ctorAndArgs.getConstructor(), ctorAndArgs.getArgs());
+        constructElementAtIndex(index, constructorFactory, ctorAndArgs.getArgs());
     }
 
     private void populatePrimitiveSubArray(final long index,
@@ -733,6 +773,7 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
 
     private void populateStructuredSubArray(final ConstructionContext<T> context,
                                             StructuredArrayBuilder subArrayBuilder,
+                                            final ConstructorFactory<T> subArrayConstructorFactory,
                                             final CtorAndArgs<T> subArrayCtorAndArgs) {
         ConstructionContext<T> subArrayContext = new ConstructionContext<>(subArrayCtorAndArgs.getContextCookie());
         subArrayContext.setContainingContext(context);
@@ -744,7 +785,7 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
             constructSubArrayAtIndex(
                     context.getIndex(),
                     subArrayBuilder.getArrayModel(),
-                    subArrayCtorAndArgs.getConstructor(),
+                    subArrayConstructorFactory,
                     subArrayCtorAndArgs.getArgs());
         } finally {
             constructorMagic.setActive(false);
@@ -752,23 +793,27 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
     }
 
     private void populateLeafElements(final CtorAndArgsProvider<T> ctorAndArgsProvider,
-                                      final ConstructionContext<T> context) {
-        long length = getLength();
+                                      final ConstructionContext<T> context,
+                                      final long fromIndex, final long toIndex) {
+        Constructor<T> constructor = null;
+        ConstructorFactory<T> constructorFactory = null;
 
         try {
-            for (long index = 0; index < length; index++) {
+            for (long index = fromIndex; index < toIndex; index++) {
                 final CtorAndArgs<T> ctorAndArgs;
 
                 context.setIndex(index);
                 ctorAndArgs = ctorAndArgsProvider.getForContext(context);
 
-                if (ctorAndArgs.getConstructor().getDeclaringClass() != getElementClass()) {
-                    throw new IllegalArgumentException("ElementClass (" + getElementClass() +
-                            ") does not match ctorAndArgs.getConstructor().getDeclaringClass() (" +
-                            ctorAndArgs.getConstructor().getDeclaringClass() + ")");
+                if (ctorAndArgs.getConstructor() != constructor) {
+                    constructor = ctorAndArgs.getConstructor();
+                    constructorFactory = resolveConstructorFactory(constructor);
                 }
 
-                populateLeafElement(index, ctorAndArgs);
+                populateLeafElement(index, constructorFactory, ctorAndArgs);
+                if (elementAlignment != 0) {
+                    spaceElementAtIndex(index, elementAlignment);
+                }
             }
         } catch (NoSuchMethodException ex) {
             throw new RuntimeException(ex);
@@ -776,21 +821,21 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
     }
 
     private void populatePrimitiveSubArrays(final CtorAndArgsProvider<T> subArrayCtorAndArgsProvider,
-                                             final PrimitiveArrayBuilder subArrayBuilder,
-                                             final ConstructionContext<T> context) {
-        long length = getLength();
+                                            final PrimitiveArrayBuilder subArrayBuilder,
+                                            final ConstructionContext<T> context,
+                                            final long fromIndex, final long toIndex) {
+        Constructor<T> constructor = null;
 
         try {
-            for (long index = 0; index < length; index++) {
+            for (long index = fromIndex; index < toIndex; index++) {
                 final CtorAndArgs<T> ctorAndArgs;
 
                 context.setIndex(index);
                 ctorAndArgs = subArrayCtorAndArgsProvider.getForContext(context);
 
-                if (ctorAndArgs.getConstructor().getDeclaringClass() != getElementClass()) {
-                    throw new IllegalArgumentException("ElementClass (" + getElementClass() +
-                            ") does not match ctorAndArgs.getConstructor().getDeclaringClass() (" +
-                            ctorAndArgs.getConstructor().getDeclaringClass() + ")");
+                if (ctorAndArgs.getConstructor() != constructor) {
+                    constructor = ctorAndArgs.getConstructor();
+                    verifyConstructorDeclaringClass(constructor);
                 }
 
                 populatePrimitiveSubArray(index, subArrayBuilder, ctorAndArgs);
@@ -802,23 +847,24 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
 
     private void populateStructuredSubArrays(final CtorAndArgsProvider<T> subArrayCtorAndArgsProvider,
                                    final StructuredArrayBuilder subArrayBuilder,
-                                   final ConstructionContext<T> context) {
-        long length = getLength();
+                                   final ConstructionContext<T> context,
+                                   final long fromIndex, final long toIndex) {
+        Constructor<T> constructor = null;
+        ConstructorFactory<T> constructorFactory = null;
 
         try {
-            for (long index = 0; index < length; index++) {
+            for (long index = fromIndex; index < toIndex; index++) {
                 final CtorAndArgs<T> ctorAndArgs;
 
                 context.setIndex(index);
                 ctorAndArgs = subArrayCtorAndArgsProvider.getForContext(context);
 
-                if (ctorAndArgs.getConstructor().getDeclaringClass() != getElementClass()) {
-                    throw new IllegalArgumentException("ElementClass (" + getElementClass() +
-                            ") does not match ctorAndArgs.getConstructor().getDeclaringClass() (" +
-                            ctorAndArgs.getConstructor().getDeclaringClass() + ")");
+                if (ctorAndArgs.getConstructor() != constructor) {
+                    constructor = ctorAndArgs.getConstructor();
+                    constructorFactory = resolveConstructorFactory(constructor);
                 }
 
-                populateStructuredSubArray(context, subArrayBuilder, ctorAndArgs);
+                populateStructuredSubArray(context, subArrayBuilder, constructorFactory, ctorAndArgs);
             }
         } catch (NoSuchMethodException ex) {
             throw new RuntimeException(ex);
@@ -852,6 +898,109 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
 
 
 
+    //
+    //
+    // Parallel population support:
+    //
+    //
+
+    private static final long MIN_LEAF_ELEMENTS_PER_POPULATION_TASK = 1024;
+    private static final int POPULATION_TASKS_PER_WORKER = 4;
+
+    private void populateElementsInParallel(final StructuredArrayBuilder<StructuredArray<T>, T> arrayBuilder,
+                                            final CtorAndArgsProvider<T> ctorAndArgsProvider,
+                                            final StructuredArrayBuilder structuredSubArrayBuilder,
+                                            final PrimitiveArrayBuilder primitiveSubArrayBuilder,
+                                            final ConstructionContext<T> context) {
+        final long length = getLength();
+        final int parallelism = arrayBuilder.getParallelism();
+        // Sub-array elements are each substantial units of work. Leaf elements are only worth splitting
+        // into reasonably sized chunks:
+        final long minElementsPerTask = ((structuredSubArrayBuilder != null) || (primitiveSubArrayBuilder != null)) ?
+                1 : MIN_LEAF_ELEMENTS_PER_POPULATION_TASK;
+        final long elementsPerTask =
+                Math.max(minElementsPerTask, length / ((long) parallelism * POPULATION_TASKS_PER_WORKER));
+
+        if (length <= elementsPerTask) {
+            populateElements(ctorAndArgsProvider, structuredSubArrayBuilder, primitiveSubArrayBuilder, context,
+                    0, length);
+            return;
+        }
+
+        final PopulationTask task = new PopulationTask(ctorAndArgsProvider,
+                structuredSubArrayBuilder, primitiveSubArrayBuilder, context, 0, length, elementsPerTask);
+
+        final ForkJoinPool suppliedPool = arrayBuilder.getForkJoinPool();
+        if (suppliedPool != null) {
+            if (ForkJoinTask.getPool() == suppliedPool) {
+                // Already running in the supplied pool (e.g. populating a sub-array of an array it populates):
+                task.invoke();
+            } else {
+                suppliedPool.invoke(task);
+            }
+            return;
+        }
+
+        if (ForkJoinTask.inForkJoinPool()) {
+            // Already populating within a pool (e.g. a sub-array of a parallel populated array). Stay there:
+            task.invoke();
+            return;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(task);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private class PopulationTask extends RecursiveAction {
+        private static final long serialVersionUID = -4219378617351207285L;
+
+        private final CtorAndArgsProvider<T> ctorAndArgsProvider;
+        private final StructuredArrayBuilder structuredSubArrayBuilder;
+        private final PrimitiveArrayBuilder primitiveSubArrayBuilder;
+        private final ConstructionContext<T> context;
+        private final long fromIndex;
+        private final long toIndex;
+        private final long elementsPerTask;
+
+        PopulationTask(final CtorAndArgsProvider<T> ctorAndArgsProvider,
+                       final StructuredArrayBuilder structuredSubArrayBuilder,
+                       final PrimitiveArrayBuilder primitiveSubArrayBuilder,
+                       final ConstructionContext<T> context,
+                       final long fromIndex, final long toIndex,
+                       final long elementsPerTask) {
+            this.ctorAndArgsProvider = ctorAndArgsProvider;
+            this.structuredSubArrayBuilder = structuredSubArrayBuilder;
+            this.primitiveSubArrayBuilder = primitiveSubArrayBuilder;
+            this.context = context;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.elementsPerTask = elementsPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (toIndex - fromIndex <= elementsPerTask) {
+                // Each task populates its range with its own context, as contexts are mutated per index:
+                final ConstructionContext<T> taskContext = new ConstructionContext<>(context.getContextCookie());
+                taskContext.setArray(StructuredArray.this);
+                taskContext.setContainingContext(context.getContainingContext());
+                populateElements(ctorAndArgsProvider, structuredSubArrayBuilder, primitiveSubArrayBuilder,
+                        taskContext, fromIndex, toIndex);
+                return;
+            }
+            final long midIndex = fromIndex + ((toIndex - fromIndex) >>> 1);
+            invokeAll(
+                    new PopulationTask(ctorAndArgsProvider, structuredSubArrayBuilder, primitiveSubArrayBuilder,
+                            context, fromIndex, midIndex, elementsPerTask),
+                    new PopulationTask(ctorAndArgsProvider, structuredSubArrayBuilder, primitiveSubArrayBuilder,
+                            context, midIndex, toIndex, elementsPerTask));
+        }
+    }
+
     //
     //
     // Collection interface support:
@@ -1052,60 +1201,269 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
 
     //
     //
-    // Shallow copy support:
+    // Spliterator and Stream support:
     //
     //
 
-    private static Field[] removeStaticFields(final Field[] declaredFields) {
-        int staticFieldCount = 0;
-        for (final Field field : declaredFields) {
-            if (isStatic(field.getModifiers())) {
-                staticFieldCount++;
+    /**
+     * Creates a {@link Spliterator} over the elements of this array. The spliterator reports
+     * {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED}, {@link Spliterator#ORDERED},
+     * {@link Spliterator#NONNULL} and {@link Spliterator#IMMUTABLE}, and splits on index ranges, such that
+     * arrays longer than Integer.MAX_VALUE can be traversed in parallel.
+     *
+     * @return a spliterator over the elements of this array
+     */
+    @Override
+    public ElementSpliterator spliterator() {
+        return new ElementSpliterator();
+    }
+
+    /**
+     * Returns a sequential {@link Stream} of the elements of this array.
+     *
+     * @return a sequential stream of the elements of this array
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel {@link Stream} of the elements of this array. Element ranges are split across
+     * the common {@link ForkJoinPool}, including ranges above Integer.MAX_VALUE.
+     *
+     * @return a parallel stream of the elements of this array
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * A {@link Spliterator} over a range of the elements of a StructuredArray, which splits on index ranges.
+     * <p>
+     * A range that straddles Integer.MAX_VALUE is first split at the boundary between the int-addressable
+     * elements and the long-addressable-only partitions, such that each resulting range is traversed with a
+     * single form of element access. Other ranges are split in half.
+     */
+    public class ElementSpliterator implements Spliterator<T> {
+        private long index;
+        private final long fence;
+
+        public ElementSpliterator() {
+            this(0, getLength());
+        }
+
+        public ElementSpliterator(final long offset, final long length) {
+            if ((offset < 0) || (length < 0) || (offset + length > getLength())) {
+                throw new IllegalArgumentException("Range [" + offset + ", " + (offset + length) +
+                        ") is outside the bounds of the array (length = " + getLength() + ")");
             }
+            this.index = offset;
+            this.fence = offset + length;
         }
 
-        final Field[] instanceFields = new Field[declaredFields.length - staticFieldCount];
-        int i = 0;
-        for (final Field field : declaredFields) {
-            if (!isStatic(field.getModifiers())) {
-                instanceFields[i++] = field;
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (index >= fence) {
+                return false;
             }
+            action.accept(get(index++));
+            return true;
         }
 
-        return instanceFields;
-    }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            long i = index;
+            final long end = fence;
+            index = end;
+            if (end <= Integer.MAX_VALUE) {
+                for (int j = (int) i; j < (int) end; j++) {
+                    action.accept(get(j));
+                }
+            } else {
+                for (; i < end; i++) {
+                    action.accept(get(i));
+                }
+            }
+        }
 
-    private boolean containsFinalQualifiedFields(final Field[] fields) {
-        for (final Field field : fields) {
-            if (isFinal(field.getModifiers())) {
-                return true;
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ElementSpliterator trySplit() {
+            final long lo = index;
+            final long remaining = fence - lo;
+            if (remaining < 2) {
+                return null;
             }
+            final long mid = ((lo < Integer.MAX_VALUE) && (fence > Integer.MAX_VALUE)) ?
+                    Integer.MAX_VALUE : lo + (remaining >>> 1);
+            index = mid;
+            return new ElementSpliterator(lo, mid - lo);
         }
 
-        return false;
-    }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
 
-    private static void shallowCopy(final Object src, final Object dst, final Field[] fields) {
-        try {
-            for (final Field field : fields) {
-                field.set(dst, field.get(src));
-            }
-        } catch (final IllegalAccessException shouldNotHappen) {
-            throw new RuntimeException(shouldNotHappen);
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
         }
     }
 
-    private static void reverseShallowCopy(final Object src, final Object dst, final Field[] fields) {
-        try {
-            for (int i = fields.length - 1; i >= 0; i--) {
-                final Field field = fields[i];
-                field.set(dst, field.get(src));
-            }
-        } catch (final IllegalAccessException shouldNotHappen) {
-            throw new RuntimeException(shouldNotHappen);
-        }
+    //
+    //
+    // Element field handle support:
+    //
+    //
+
+    /**
+     * Get a handle to the given <code>long</code> field of the elements of StructuredArrays with the given
+     * element class, through which the field can be read and written with specific memory ordering semantics
+     * and updated atomically in the element at a given index. The field may be declared in the element class
+     * or in any of its superclasses, and must be public.
+     *
+     * @param elementClass The element class
+     * @param fieldName The name of the field
+     * @param <T> The element class
+     * @return a handle to the field
+     * @throws IllegalArgumentException if the element class has no accessible, non-final <code>long</code>
+     * instance field with the given name
+     */
+    public static <T> StructuredArrayLongField<T> longField(final Class<T> elementClass, final String fieldName) {
+        return longField(null, elementClass, fieldName);
+    }
+
+    /**
+     * Get a handle to the given <code>long</code> field of the elements of StructuredArrays with the given
+     * element class, through which the field can be read and written with specific memory ordering semantics
+     * and updated atomically in the element at a given index. The field may be declared in the element class
+     * or in any of its superclasses.
+     *
+     * @param lookup The lookup object to use for checking access to the field (may be null if the field
+     *               is public)
+     * @param elementClass The element class
+     * @param fieldName The name of the field
+     * @param <T> The element class
+     * @return a handle to the field
+     * @throws IllegalArgumentException if the element class has no accessible, non-final <code>long</code>
+     * instance field with the given name
+     */
+    public static <T> StructuredArrayLongField<T> longField(final MethodHandles.Lookup lookup,
+                                                            final Class<T> elementClass,
+                                                            final String fieldName) {
+        return new StructuredArrayLongField<>(lookup, elementClass, fieldName);
     }
 
+    /**
+     * Get a handle to the given <code>int</code> field of the elements of StructuredArrays with the given
+     * element class, through which the field can be read and written with specific memory ordering semantics
+     * and updated atomically in the element at a given index. The field may be declared in the element class
+     * or in any of its superclasses, and must be public.
+     *
+     * @param elementClass The element class
+     * @param fieldName The name of the field
+     * @param <T> The element class
+     * @return a handle to the field
+     * @throws IllegalArgumentException if the element class has no accessible, non-final <code>int</code>
+     * instance field with the given name
+     */
+    public static <T> StructuredArrayIntField<T> intField(final Class<T> elementClass, final String fieldName) {
+        return intField(null, elementClass, fieldName);
+    }
+
+    /**
+     * Get a handle to the given <code>int</code> field of the elements of StructuredArrays with the given
+     * element class, through which the field can be read and written with specific memory ordering semantics
+     * and updated atomically in the element at a given index. The field may be declared in the element class
+     * or in any of its superclasses.
+     *
+     * @param lookup The lookup object to use for checking access to the field (may be null if the field
+     *               is public)
+     * @param elementClass The element class
+     * @param fieldName The name of the field
+     * @param <T> The element class
+     * @return a handle to the field
+     * @throws IllegalArgumentException if the element class has no accessible, non-final <code>int</code>
+     * instance field with the given name
+     */
+    public static <T> StructuredArrayIntField<T> intField(final MethodHandles.Lookup lookup,
+                                                          final Class<T> elementClass,
+                                                          final String fieldName) {
+        return new StructuredArrayIntField<>(lookup, elementClass, fieldName);
+    }
+
+    /**
+     * Get a handle to the given reference field of the elements of StructuredArrays with the given element
+     * class, through which the field can be read and written with specific memory ordering semantics and
+     * updated atomically in the element at a given index. The field may be declared in the element class
+     * or in any of its superclasses, and must be public.
+     *
+     * @param elementClass The element class
+     * @param fieldName The name of the field
+     * @param valueClass The declared type of the field
+     * @param <T> The element class
+     * @param <V> The declared type of the field
+     * @return a handle to the field
+     * @throws IllegalArgumentException if the element class has no accessible, non-final instance field of
+     * type valueClass with the given name
+     */
+    public static <T, V> StructuredArrayReferenceField<T, V> referenceField(final Class<T> elementClass,
+                                                                           final String fieldName,
+                                                                           final Class<V> valueClass) {
+        return referenceField(null, elementClass, fieldName, valueClass);
+    }
+
+    /**
+     * Get a handle to the given reference field of the elements of StructuredArrays with the given element
+     * class, through which the field can be read and written with specific memory ordering semantics and
+     * updated atomically in the element at a given index. The field may be declared in the element class
+     * or in any of its superclasses.
+     *
+     * @param lookup The lookup object to use for checking access to the field (may be null if the field
+     *               is public)
+     * @param elementClass The element class
+     * @param fieldName The name of the field
+     * @param valueClass The declared type of the field
+     * @param <T> The element class
+     * @param <V> The declared type of the field
+     * @return a handle to the field
+     * @throws IllegalArgumentException if the element class has no accessible, non-final instance field of
+     * type valueClass with the given name
+     */
+    public static <T, V> StructuredArrayReferenceField<T, V> referenceField(final MethodHandles.Lookup lookup,
+                                                                           final Class<T> elementClass,
+                                                                           final String fieldName,
+                                                                           final Class<V> valueClass) {
+        return new StructuredArrayReferenceField<>(lookup, elementClass, fieldName, valueClass);
+    }
+
+    //
+    //
+    // Shallow copy support:
+    //
+    //
+
     /**
      * Shallow copy a region of element object contents from one array to the other.
      * <p>
@@ -1172,8 +1530,8 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
             throw new IllegalArgumentException("shallowCopy only supported for single dimension arrays (with no nested StructuredArrays)");
         }
 
-        final Field[] fields = src.fields;
-        if (!allowFinalFieldOverwrite && dst.hasFinalFields) {
+        final FieldCopier copier = FieldCopier.forClass(src.getElementClass());
+        if (!allowFinalFieldOverwrite && copier.hasFinalFields()) {
             throw new IllegalArgumentException("Cannot shallow copy onto final fields");
         }
 
@@ -1184,26 +1542,39 @@ public class StructuredArray<T> extends AbstractStructuredArray<T> implements It
                 int dstIdx = (int)(dstOffset + count) - 1;
                 int limit = (int)(srcOffset - 1);
                 for (; srcIdx > limit; srcIdx--, dstIdx--) {
-                    reverseShallowCopy(src.get(srcIdx), dst.get(dstIdx), fields);
+                    copier.copy(src.get(srcIdx), dst.get(dstIdx));
                 }
             } else {
                 for (int srcIdx = (int)srcOffset, dstIdx = (int)dstOffset, limit = (int)(srcOffset + count);
                      srcIdx < limit; srcIdx++, dstIdx++) {
-                    shallowCopy(src.get(srcIdx), dst.get(dstIdx), fields);
+                    copier.copy(src.get(srcIdx), dst.get(dstIdx));
                 }
             }
         } else {
-            // use the (slower) long based getL
-            if (dst == src && (dstOffset >= srcOffset && (dstOffset + count) >= srcOffset)) {
-                for (long srcIdx = srcOffset + count, dstIdx = dstOffset + count, limit = srcOffset - 1;
-                     srcIdx > limit; srcIdx--, dstIdx--) {
-                    reverseShallowCopy(src.get(srcIdx), dst.get(dstIdx), fields);
-                }
-            } else {
-                for (long srcIdx = srcOffset, dstIdx = dstOffset, limit = srcOffset + count;
-                     srcIdx < limit; srcIdx++, dstIdx++) {
-                    shallowCopy(src.get(srcIdx), dst.get(dstIdx), fields);
-                }
+            shallowCopyByLongIndex(src, srcOffset, dst, dstOffset, count, copier);
+        }
+    }
+
+    /**
+     * The (slower) long index based element copy loops of shallowCopy, used for ranges that reach beyond
+     * Integer.MAX_VALUE. Overlapping ranges within the same array are copied as if through a temporary copy.
+     */
+    static <T> void shallowCopyByLongIndex(
+            final StructuredArray<T> src,
+            final long srcOffset,
+            final StructuredArray<T> dst,
+            final long dstOffset,
+            final long count,
+            final FieldCopier copier) {
+        if (dst == src && (dstOffset >= srcOffset && (dstOffset + count) >= srcOffset)) {
+            for (long srcIdx = srcOffset + count - 1, dstIdx = dstOffset + count - 1, limit = srcOffset - 1;
+                 srcIdx > limit; srcIdx--, dstIdx--) {
+                copier.copy(src.get(srcIdx), dst.get(dstIdx));
+            }
+        } else {
+            for (long srcIdx = srcOffset, dstIdx = dstOffset, limit = srcOffset + count;
+                 srcIdx < limit; srcIdx++, dstIdx++) {
+                copier.copy(src.get(srcIdx), dst.get(dstIdx));
             }
         }
     }
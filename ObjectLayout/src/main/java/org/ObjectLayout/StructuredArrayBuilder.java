@@ -2,6 +2,7 @@ package org.ObjectLayout;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A builder used for instantiating a {@link StructuredArray}&lt;T&gt;
@@ -96,6 +97,16 @@ public class StructuredArrayBuilder<S extends StructuredArray<T>, T> {
     private CtorAndArgsProvider<T> elementCtorAndArgsProvider;
     private Object contextCookie;
 
+    private int parallelism = 1;
+    private ForkJoinPool forkJoinPool;
+
+    private int elementAlignment = 0;
+
+    /**
+     * The cache line size (in bytes) assumed by {@link #padToCacheLine()}
+     */
+    public static final int CACHE_LINE_SIZE = 64;
+
     /**
      * Constructs a new {@link StructuredArrayBuilder} object for creating arrays of type S with
      * elements of type T, and the given length.
@@ -356,6 +367,84 @@ public class StructuredArrayBuilder<S extends StructuredArray<T>, T> {
         return this;
     }
 
+    /**
+     * Set the parallelism with which elements of arrays built by this builder are populated. With a
+     * parallelism greater than 1, the array's index range is split across fork/join workers, each of
+     * which constructs the elements in its own sub-range using its own {@link ConstructionContext}.
+     * Unless a {@link ForkJoinPool} is supplied with {@link #forkJoinPool}, a pool of the requested
+     * parallelism is created for (and shut down after) each array built.
+     * <p>
+     * When populating in parallel, the element {@link CtorAndArgsProvider} will be called concurrently from
+     * multiple threads, and must be safe for such use. In particular, it must not return a
+     * {@link CtorAndArgs} instance that it modifies for subsequent calls.
+     * <p>
+     * Parallel population applies to the arrays built by this builder. Nested sub-arrays are populated
+     * according to the parallelism of their own builders.
+     *
+     * @param parallelism The number of workers to populate array elements with (1 means sequential)
+     * @return The builder
+     * @throws IllegalArgumentException if parallelism is smaller than 1
+     */
+    public StructuredArrayBuilder<S, T> parallelism(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Set the {@link ForkJoinPool} used for populating elements of arrays built by this builder. Supplying a
+     * pool enables parallel population (see {@link #parallelism}) with the pool's parallelism, and avoids
+     * creating a pool per array built. A null pool reverts to the parallelism set with {@link #parallelism}.
+     *
+     * @param forkJoinPool The pool to populate array elements in
+     * @return The builder
+     */
+    public StructuredArrayBuilder<S, T> forkJoinPool(final ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+        return this;
+    }
+
+    /**
+     * Set the alignment (in bytes) of the elements of arrays built by this builder. Elements of an array with
+     * an alignment are placed such that no two elements share an alignment-sized block of memory, which
+     * (with an alignment of the cache line size) avoids false sharing between elements updated by different
+     * threads, e.g. in per-thread counters or striped structures.
+     * <p>
+     * Alignment is a layout request: JDK implementations that lay out StructuredArray elements flat are
+     * expected to place elements at aligned strides. The vanilla implementation separates consecutively
+     * constructed elements by allocating alignment-sized spacers between them, which the array retains. The
+     * spacers keep elements apart for as long as the garbage collector preserves the allocation order of
+     * objects it relocates (as collectors that compact the heap by sliding objects do), at the cost of an
+     * alignment-sized block of memory per element.
+     * <p>
+     * Alignment applies to the elements of arrays built by this builder. Nested sub-arrays are laid out
+     * according to the alignment of their own builders.
+     *
+     * @param alignment The element alignment in bytes (a power of 2 no smaller than 8), or 0 for no alignment
+     * @return The builder
+     * @throws IllegalArgumentException if alignment is not 0 or a power of 2 no smaller than 8
+     */
+    public StructuredArrayBuilder<S, T> alignment(final int alignment) {
+        if ((alignment != 0) && ((alignment < 8) || (Integer.bitCount(alignment) != 1))) {
+            throw new IllegalArgumentException("alignment must be 0, or a power of 2 no smaller than 8");
+        }
+        this.elementAlignment = alignment;
+        return this;
+    }
+
+    /**
+     * Align the elements of arrays built by this builder to the cache line size ({@value #CACHE_LINE_SIZE}
+     * bytes), such that adjacent elements do not share cache lines. Equivalent to
+     * {@link #alignment alignment}({@link #CACHE_LINE_SIZE}).
+     *
+     * @return The builder
+     */
+    public StructuredArrayBuilder<S, T> padToCacheLine() {
+        return alignment(CACHE_LINE_SIZE);
+    }
+
     private void resolve(boolean resolveArrayCtorAndArgs) {
         if ((arrayCtorAndArgs == null) && resolveArrayCtorAndArgs) {
             this.arrayCtorAndArgs =
@@ -501,4 +590,33 @@ public class StructuredArrayBuilder<S extends StructuredArray<T>, T> {
     public Object getContextCookie() {
         return contextCookie;
     }
+
+    /**
+     * Get the parallelism with which elements of arrays built by this builder are populated. If a
+     * {@link ForkJoinPool} has been supplied, this is the parallelism of that pool.
+     *
+     * @return The parallelism with which elements of arrays built by this builder are populated
+     */
+    public int getParallelism() {
+        return (forkJoinPool != null) ? forkJoinPool.getParallelism() : parallelism;
+    }
+
+    /**
+     * Get the alignment (in bytes) of the elements of arrays built by this builder.
+     *
+     * @return The alignment of the elements of arrays built by this builder, or 0 if none was set
+     */
+    public int getElementAlignment() {
+        return elementAlignment;
+    }
+
+    /**
+     * Get the {@link ForkJoinPool} used for populating elements of arrays built by this builder. May be null if
+     * none was supplied with {@link org.ObjectLayout.StructuredArrayBuilder#forkJoinPool}.
+     *
+     * @return The {@link ForkJoinPool} used for populating elements of arrays built by this builder
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
 }
@@ -0,0 +1,179 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * A handle to a <code>int</code> field of the elements of {@link StructuredArray}s, providing plain,
+ * opaque, acquire/release and volatile reads and writes, as well as atomic updates, of the field in the
+ * element at a given index. Lock-free algorithms can use a handle to operate directly on the elements of
+ * a StructuredArray, without wrapping each field in an atomic object of its own:
+ * <blockquote><pre>
+ * static final StructuredArrayIntField&lt;Counter&gt; COUNT =
+ *         StructuredArray.intField(lookup, Counter.class, "count");
+ *
+ * COUNT.getAndAdd(counters, index, 1);
+ * </pre></blockquote>
+ * Handles are obtained with {@link StructuredArray#intField}, and should be held in static final fields.
+ *
+ * @param <T> The element class the field is declared in (or inherited by)
+ */
+public final class StructuredArrayIntField<T> extends AbstractStructuredArrayField<T> {
+
+    StructuredArrayIntField(final MethodHandles.Lookup lookup,
+                            final Class<T> elementClass,
+                            final String fieldName) {
+        super(lookup, elementClass, fieldName, int.class);
+    }
+
+    /**
+     * Read the field of the element at the given index, with plain memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @return the value of the field
+     */
+    public int get(final StructuredArray<? extends T> array, final long index) {
+        return UnsafeAccess.getInt(elementAt(array, index), offset);
+    }
+
+    /**
+     * Write the field of the element at the given index, with plain memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     */
+    public void set(final StructuredArray<? extends T> array, final long index, final int value) {
+        UnsafeAccess.putInt(elementAt(array, index), offset, value);
+    }
+
+    /**
+     * Read the field of the element at the given index, with volatile memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @return the value of the field
+     */
+    public int getVolatile(final StructuredArray<? extends T> array, final long index) {
+        return UnsafeAccess.getIntVolatile(elementAt(array, index), offset);
+    }
+
+    /**
+     * Write the field of the element at the given index, with volatile memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     */
+    public void setVolatile(final StructuredArray<? extends T> array, final long index, final int value) {
+        UnsafeAccess.putIntVolatile(elementAt(array, index), offset, value);
+    }
+
+    /**
+     * Read the field of the element at the given index, with acquire memory semantics (no subsequent
+     * loads or stores are reordered before this read). The vanilla implementation performs a volatile read.
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @return the value of the field
+     */
+    public int getAcquire(final StructuredArray<? extends T> array, final long index) {
+        return UnsafeAccess.getIntVolatile(elementAt(array, index), offset);
+    }
+
+    /**
+     * Write the field of the element at the given index, with release memory semantics (no prior loads
+     * or stores are reordered after this write)
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     */
+    public void setRelease(final StructuredArray<? extends T> array, final long index, final int value) {
+        UnsafeAccess.putOrderedInt(elementAt(array, index), offset, value);
+    }
+
+    /**
+     * Read the field of the element at the given index, with opaque memory semantics (the read is
+     * performed, and is coherent with other accesses to the same field, but imposes no ordering on
+     * accesses to other fields). The vanilla implementation performs a volatile read.
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @return the value of the field
+     */
+    public int getOpaque(final StructuredArray<? extends T> array, final long index) {
+        return UnsafeAccess.getIntVolatile(elementAt(array, index), offset);
+    }
+
+    /**
+     * Write the field of the element at the given index, with opaque memory semantics. The vanilla
+     * implementation performs a release write.
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     */
+    public void setOpaque(final StructuredArray<? extends T> array, final long index, final int value) {
+        UnsafeAccess.putOrderedInt(elementAt(array, index), offset, value);
+    }
+
+    /**
+     * Atomically set the field of the element at the given index to the given updated value if it
+     * currently holds the expected value, with volatile memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param expect the expected value
+     * @param update the new value
+     * @return true if successful, false if the field did not hold the expected value
+     */
+    public boolean compareAndSet(final StructuredArray<? extends T> array, final long index,
+                                 final int expect, final int update) {
+        return UnsafeAccess.compareAndSwapInt(elementAt(array, index), offset, expect, update);
+    }
+
+    /**
+     * Atomically set the field of the element at the given index to the given value, and return the
+     * previous value
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     * @return the previous value of the field
+     */
+    public int getAndSet(final StructuredArray<? extends T> array, final long index, final int value) {
+        return UnsafeAccess.getAndSetInt(elementAt(array, index), offset, value);
+    }
+
+    /**
+     * Atomically add the given delta to the field of the element at the given index, and return the
+     * previous value
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param delta the value to add
+     * @return the previous value of the field
+     */
+    public int getAndAdd(final StructuredArray<? extends T> array, final long index, final int delta) {
+        return UnsafeAccess.getAndAddInt(elementAt(array, index), offset, delta);
+    }
+
+    /**
+     * Atomically add the given delta to the field of the element at the given index, and return the
+     * updated value
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param delta the value to add
+     * @return the updated value of the field
+     */
+    public int addAndGet(final StructuredArray<? extends T> array, final long index, final int delta) {
+        return UnsafeAccess.getAndAddInt(elementAt(array, index), offset, delta) + delta;
+    }
+}
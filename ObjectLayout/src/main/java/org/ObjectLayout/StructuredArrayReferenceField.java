@@ -0,0 +1,171 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * A handle to a reference field of the elements of {@link StructuredArray}s, providing plain, opaque,
+ * acquire/release and volatile reads and writes, as well as atomic updates, of the field in the element at
+ * a given index. Lock-free algorithms can use a handle to operate directly on the elements of a
+ * StructuredArray, without wrapping each field in an atomic object of its own:
+ * <blockquote><pre>
+ * static final StructuredArrayReferenceField&lt;Node, Node&gt; NEXT =
+ *         StructuredArray.referenceField(lookup, Node.class, "next", Node.class);
+ *
+ * NEXT.compareAndSet(nodes, index, expected, update);
+ * </pre></blockquote>
+ * Handles are obtained with {@link StructuredArray#referenceField}, and should be held in static final fields.
+ *
+ * @param <T> The element class the field is declared in (or inherited by)
+ * @param <V> The type of the values held in the field
+ */
+public final class StructuredArrayReferenceField<T, V> extends AbstractStructuredArrayField<T> {
+    private final Class<V> valueClass;
+
+    StructuredArrayReferenceField(final MethodHandles.Lookup lookup,
+                                  final Class<T> elementClass,
+                                  final String fieldName,
+                                  final Class<V> valueClass) {
+        super(lookup, elementClass, fieldName, valueClass);
+        this.valueClass = valueClass;
+    }
+
+    /**
+     * Get the class of the values held in the field
+     *
+     * @return the class of the values held in the field
+     */
+    public Class<V> getValueClass() {
+        return valueClass;
+    }
+
+    /**
+     * Read the field of the element at the given index, with plain memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @return the value of the field
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final StructuredArray<? extends T> array, final long index) {
+        return (V) UnsafeAccess.getObject(elementAt(array, index), offset);
+    }
+
+    /**
+     * Write the field of the element at the given index, with plain memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     */
+    public void set(final StructuredArray<? extends T> array, final long index, final V value) {
+        UnsafeAccess.putObject(elementAt(array, index), offset, valueClass.cast(value));
+    }
+
+    /**
+     * Read the field of the element at the given index, with volatile memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @return the value of the field
+     */
+    @SuppressWarnings("unchecked")
+    public V getVolatile(final StructuredArray<? extends T> array, final long index) {
+        return (V) UnsafeAccess.getObjectVolatile(elementAt(array, index), offset);
+    }
+
+    /**
+     * Write the field of the element at the given index, with volatile memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     */
+    public void setVolatile(final StructuredArray<? extends T> array, final long index, final V value) {
+        UnsafeAccess.putObjectVolatile(elementAt(array, index), offset, valueClass.cast(value));
+    }
+
+    /**
+     * Read the field of the element at the given index, with acquire memory semantics (no subsequent
+     * loads or stores are reordered before this read). The vanilla implementation performs a volatile read.
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @return the value of the field
+     */
+    @SuppressWarnings("unchecked")
+    public V getAcquire(final StructuredArray<? extends T> array, final long index) {
+        return (V) UnsafeAccess.getObjectVolatile(elementAt(array, index), offset);
+    }
+
+    /**
+     * Write the field of the element at the given index, with release memory semantics (no prior loads
+     * or stores are reordered after this write)
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     */
+    public void setRelease(final StructuredArray<? extends T> array, final long index, final V value) {
+        UnsafeAccess.putOrderedObject(elementAt(array, index), offset, valueClass.cast(value));
+    }
+
+    /**
+     * Read the field of the element at the given index, with opaque memory semantics (the read is
+     * performed, and is coherent with other accesses to the same field, but imposes no ordering on
+     * accesses to other fields). The vanilla implementation performs a volatile read.
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @return the value of the field
+     */
+    @SuppressWarnings("unchecked")
+    public V getOpaque(final StructuredArray<? extends T> array, final long index) {
+        return (V) UnsafeAccess.getObjectVolatile(elementAt(array, index), offset);
+    }
+
+    /**
+     * Write the field of the element at the given index, with opaque memory semantics. The vanilla
+     * implementation performs a release write.
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     */
+    public void setOpaque(final StructuredArray<? extends T> array, final long index, final V value) {
+        UnsafeAccess.putOrderedObject(elementAt(array, index), offset, valueClass.cast(value));
+    }
+
+    /**
+     * Atomically set the field of the element at the given index to the given updated value if it
+     * currently holds the expected value (compared by identity), with volatile memory semantics
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param expect the expected value
+     * @param update the new value
+     * @return true if successful, false if the field did not hold the expected value
+     */
+    public boolean compareAndSet(final StructuredArray<? extends T> array, final long index,
+                                 final V expect, final V update) {
+        return UnsafeAccess.compareAndSwapObject(elementAt(array, index), offset, expect, valueClass.cast(update));
+    }
+
+    /**
+     * Atomically set the field of the element at the given index to the given value, and return the
+     * previous value
+     *
+     * @param array the array
+     * @param index the index of the element
+     * @param value the new value
+     * @return the previous value of the field
+     */
+    @SuppressWarnings("unchecked")
+    public V getAndSet(final StructuredArray<? extends T> array, final long index, final V value) {
+        return (V) UnsafeAccess.getAndSetObject(elementAt(array, index), offset, valueClass.cast(value));
+    }
+}
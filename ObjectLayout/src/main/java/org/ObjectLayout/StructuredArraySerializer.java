@@ -0,0 +1,589 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes {@link StructuredArray}s to, and reads them from, a compact binary format.
+ * <p>
+ * The format starts with a header describing the {@link StructuredArrayModel} of the array: the array class,
+ * the length, and either the element class (along with the name and type of each of its fields, which are
+ * verified when reading), or the model of the nested sub-arrays (StructuredArrays or PrimitiveArrays) held
+ * as elements. The header is followed by the contents of the array: the fields of each leaf element, in
+ * index order, and in the order of the element class's {@link FlatElementLayout}; or the contents of each
+ * sub-array, in index order. All values are written big-endian.
+ * <p>
+ * Only arrays whose leaf element classes have primitive instance fields alone (see {@link FlatElementLayout})
+ * can be serialized. Leaf elements are written and read with fixed size, per-field copies to and from a
+ * buffer, with no per-element headers, class descriptors or object graph bookkeeping, such that large arrays
+ * are written and read at close to storage bandwidth.
+ * <p>
+ * Arrays are rebuilt through the same {@link StructuredArrayBuilder} machinery used to create them:
+ * elements are constructed with their default constructors, and their fields are then loaded from the
+ * serialized contents. Arrays can be read from a {@link ByteBuffer} (e.g. a {@link java.nio.MappedByteBuffer}
+ * mapping a snapshot file), or streamed from a file or channel of any length.
+ */
+public final class StructuredArraySerializer {
+    private static final int MAGIC = 0x4F4C5341; // "OLSA"
+    private static final int VERSION = 1;
+
+    private static final byte LEAF_ELEMENTS = 0;
+    private static final byte STRUCTURED_SUB_ARRAYS = 1;
+    private static final byte PRIMITIVE_SUB_ARRAYS = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Prevent construction:
+    private StructuredArraySerializer() {
+    }
+
+    //
+    //
+    // Writing:
+    //
+    //
+
+    /**
+     * Write an array, including its model and the contents of all of its (possibly nested) elements, to the
+     * given output stream. The stream is not closed.
+     *
+     * @param array the array to write
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if a leaf element class has non-primitive instance fields
+     */
+    public static void write(final StructuredArray<?> array, final OutputStream out) throws IOException {
+        write(array, Channels.newChannel(out));
+    }
+
+    /**
+     * Write an array, including its model and the contents of all of its (possibly nested) elements, to the
+     * given file, replacing any existing contents.
+     *
+     * @param array the array to write
+     * @param path the file to write to
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if a leaf element class has non-primitive instance fields
+     */
+    public static void write(final StructuredArray<?> array, final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(array, channel);
+        }
+    }
+
+    /**
+     * Write an array, including its model and the contents of all of its (possibly nested) elements, to the
+     * given channel. The channel is not closed.
+     *
+     * @param array the array to write
+     * @param channel the channel to write to
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if a leaf element class has non-primitive instance fields
+     */
+    public static void write(final StructuredArray<?> array, final WritableByteChannel channel) throws IOException {
+        final Output output = new Output(channel);
+        output.require(8);
+        output.buffer.putInt(MAGIC);
+        output.buffer.putInt(VERSION);
+        writeModel(array.getArrayModel(), output);
+        writeContents(array, output);
+        output.flush();
+    }
+
+    private static void writeModel(final StructuredArrayModel<?, ?> model, final Output output) throws IOException {
+        final AbstractStructuredArrayModel structuredSubArrayModel = model.getStructuredSubArrayModel();
+        final AbstractPrimitiveArrayModel primitiveSubArrayModel = model.getPrimitiveSubArrayModel();
+        if (structuredSubArrayModel != null) {
+            output.putByte(STRUCTURED_SUB_ARRAYS);
+            output.putString(model.getArrayClass().getName());
+            output.putLong(model.getLength());
+            writeModel((StructuredArrayModel<?, ?>) structuredSubArrayModel, output);
+        } else if (primitiveSubArrayModel != null) {
+            final PrimitiveArrayModel<?> subArrayModel = (PrimitiveArrayModel<?>) primitiveSubArrayModel;
+            output.putByte(PRIMITIVE_SUB_ARRAYS);
+            output.putString(model.getArrayClass().getName());
+            output.putLong(model.getLength());
+            output.putString(subArrayModel.getArrayClass().getName());
+            output.putLong(subArrayModel.getLength());
+        } else {
+            final FlatElementLayout<?> layout = FlatElementLayout.forClass(model.getElementClass());
+            output.putByte(LEAF_ELEMENTS);
+            output.putString(model.getArrayClass().getName());
+            output.putLong(model.getLength());
+            output.putString(layout.getElementClass().getName());
+            output.putInt(layout.getElementSize());
+            output.putInt(layout.getFieldCount());
+            for (int i = 0; i < layout.getFieldCount(); i++) {
+                output.putString(layout.getFieldName(i));
+                output.putString(layout.getFieldType(i).getName());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeContents(final StructuredArray<?> array, final Output output) throws IOException {
+        final StructuredArrayModel<?, ?> model = array.getArrayModel();
+        final long length = array.getLength();
+        if (model.getStructuredSubArrayModel() != null) {
+            for (long i = 0; i < length; i++) {
+                writeContents((StructuredArray<?>) array.get(i), output);
+            }
+        } else if (model.getPrimitiveSubArrayModel() != null) {
+            for (long i = 0; i < length; i++) {
+                writePrimitiveContents((AbstractPrimitiveArray) array.get(i), output);
+            }
+        } else {
+            final FlatElementLayout<Object> layout =
+                    (FlatElementLayout<Object>) FlatElementLayout.forClass(model.getElementClass());
+            final int elementSize = layout.getElementSize();
+            final ByteBuffer buffer = output.buffer;
+            for (long i = 0; i < length; i++) {
+                output.require(elementSize);
+                layout.store(array.get(i), buffer, buffer.position());
+                buffer.position(buffer.position() + elementSize);
+            }
+        }
+    }
+
+    private static void writePrimitiveContents(final AbstractPrimitiveArray array, final Output output)
+            throws IOException {
+        final long length = array._getLength();
+        final ByteBuffer buffer = output.buffer;
+        if (array instanceof PrimitiveLongArray) {
+            final PrimitiveLongArray a = (PrimitiveLongArray) array;
+            for (long i = 0; i < length; i++) {
+                output.require(8);
+                buffer.putLong(a.get(i));
+            }
+        } else if (array instanceof PrimitiveDoubleArray) {
+            final PrimitiveDoubleArray a = (PrimitiveDoubleArray) array;
+            for (long i = 0; i < length; i++) {
+                output.require(8);
+                buffer.putDouble(a.get(i));
+            }
+        } else if (array instanceof PrimitiveIntArray) {
+            final PrimitiveIntArray a = (PrimitiveIntArray) array;
+            for (long i = 0; i < length; i++) {
+                output.require(4);
+                buffer.putInt(a.get(i));
+            }
+        } else if (array instanceof PrimitiveFloatArray) {
+            final PrimitiveFloatArray a = (PrimitiveFloatArray) array;
+            for (long i = 0; i < length; i++) {
+                output.require(4);
+                buffer.putFloat(a.get(i));
+            }
+        } else if (array instanceof PrimitiveShortArray) {
+            final PrimitiveShortArray a = (PrimitiveShortArray) array;
+            for (long i = 0; i < length; i++) {
+                output.require(2);
+                buffer.putShort(a.get(i));
+            }
+        } else if (array instanceof PrimitiveCharArray) {
+            final PrimitiveCharArray a = (PrimitiveCharArray) array;
+            for (long i = 0; i < length; i++) {
+                output.require(2);
+                buffer.putChar(a.get(i));
+            }
+        } else if (array instanceof PrimitiveByteArray) {
+            final PrimitiveByteArray a = (PrimitiveByteArray) array;
+            for (long i = 0; i < length; i++) {
+                output.require(1);
+                buffer.put(a.get(i));
+            }
+        } else {
+            throw new IllegalArgumentException("Cannot serialize sub-arrays of " + array.getClass().getName());
+        }
+    }
+
+    //
+    //
+    // Reading:
+    //
+    //
+
+    /**
+     * Read an array from the given buffer, starting at its current position. The buffer's position is
+     * advanced past the array on return. Classes are resolved through the thread's context class loader,
+     * and constructors must be public.
+     *
+     * @param buffer the buffer to read from
+     * @param <S> The class of the array
+     * @return the array read from the buffer
+     * @throws IOException if the buffer does not hold a valid serialized array, or if its classes cannot be
+     * resolved or no longer match the serialized model
+     */
+    public static <S extends StructuredArray<?>> S read(final ByteBuffer buffer) throws IOException {
+        return StructuredArraySerializer.<S>read((MethodHandles.Lookup) null, buffer);
+    }
+
+    /**
+     * Read an array from the given buffer, starting at its current position. The buffer's position is
+     * advanced past the array on return.
+     *
+     * @param lookup The lookup object to use for resolving classes and accessing constructors (may be null, in
+     *               which case classes are resolved through the thread's context class loader, and constructors
+     *               must be public)
+     * @param buffer the buffer to read from
+     * @param <S> The class of the array
+     * @return the array read from the buffer
+     * @throws IOException if the buffer does not hold a valid serialized array, or if its classes cannot be
+     * resolved or no longer match the serialized model
+     */
+    public static <S extends StructuredArray<?>> S read(final MethodHandles.Lookup lookup,
+                                                           final ByteBuffer buffer) throws IOException {
+        final Input input = new Input(buffer.duplicate().order(ByteOrder.BIG_ENDIAN), null);
+        final S array = StructuredArraySerializer.<S>read(lookup, input);
+        buffer.position(input.buffer.position());
+        return array;
+    }
+
+    /**
+     * Read an array from the given file. Classes are resolved through the thread's context class loader,
+     * and constructors must be public.
+     *
+     * @param path the file to read from
+     * @param <S> The class of the array
+     * @return the array read from the file
+     * @throws IOException if an I/O error occurs, if the file does not hold a valid serialized array, or if its
+     * classes cannot be resolved or no longer match the serialized model
+     */
+    public static <S extends StructuredArray<?>> S read(final Path path) throws IOException {
+        return StructuredArraySerializer.<S>read((MethodHandles.Lookup) null, path);
+    }
+
+    /**
+     * Read an array from the given file.
+     *
+     * @param lookup The lookup object to use for resolving classes and accessing constructors (may be null, in
+     *               which case classes are resolved through the thread's context class loader, and constructors
+     *               must be public)
+     * @param path the file to read from
+     * @param <S> The class of the array
+     * @return the array read from the file
+     * @throws IOException if an I/O error occurs, if the file does not hold a valid serialized array, or if its
+     * classes cannot be resolved or no longer match the serialized model
+     */
+    public static <S extends StructuredArray<?>> S read(final MethodHandles.Lookup lookup,
+                                                           final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return StructuredArraySerializer.<S>read(lookup, channel);
+        }
+    }
+
+    /**
+     * Read an array from the given channel. The channel is not closed, and may have been read beyond the end
+     * of the array on return.
+     *
+     * @param lookup The lookup object to use for resolving classes and accessing constructors (may be null, in
+     *               which case classes are resolved through the thread's context class loader, and constructors
+     *               must be public)
+     * @param channel the channel to read from
+     * @param <S> The class of the array
+     * @return the array read from the channel
+     * @throws IOException if an I/O error occurs, if the channel does not hold a valid serialized array, or if
+     * its classes cannot be resolved or no longer match the serialized model
+     */
+    public static <S extends StructuredArray<?>> S read(final MethodHandles.Lookup lookup,
+                                                           final ReadableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        buffer.limit(0);
+        return StructuredArraySerializer.<S>read(lookup, new Input(buffer, channel));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S extends StructuredArray<?>> S read(final MethodHandles.Lookup lookup,
+                                                            final Input input) throws IOException {
+        input.require(8);
+        if (input.buffer.getInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a serialized StructuredArray");
+        }
+        final int version = input.buffer.getInt();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported serialized StructuredArray version " + version);
+        }
+        final ClassLoader classLoader = classLoaderFor(lookup);
+        final StructuredArrayBuilder builder = readBuilder(lookup, classLoader, input);
+        final S array;
+        try {
+            array = (S) builder.build();
+        } catch (final IllegalArgumentException ex) {
+            throw new InvalidClassException("Cannot construct array: " + ex.getMessage());
+        }
+        readContents(array, input);
+        return array;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StructuredArrayBuilder readBuilder(final MethodHandles.Lookup lookup,
+                                                      final ClassLoader classLoader,
+                                                      final Input input) throws IOException {
+        final byte kind = input.getByte();
+        final Class arrayClass = resolveClass(input.getString(), classLoader);
+        if (!StructuredArray.class.isAssignableFrom(arrayClass)) {
+            throw new InvalidClassException(arrayClass.getName(), "not a StructuredArray class");
+        }
+        final long length = input.getLong();
+        if (length < 0) {
+            throw new StreamCorruptedException("Negative array length " + length);
+        }
+        if (kind == STRUCTURED_SUB_ARRAYS) {
+            final StructuredArrayBuilder subArrayBuilder = readBuilder(lookup, classLoader, input);
+            return new StructuredArrayBuilder(lookup, arrayClass, subArrayBuilder, length);
+        } else if (kind == PRIMITIVE_SUB_ARRAYS) {
+            final Class subArrayClass = resolveClass(input.getString(), classLoader);
+            if (!AbstractPrimitiveArray.class.isAssignableFrom(subArrayClass)) {
+                throw new InvalidClassException(subArrayClass.getName(), "not a PrimitiveArray class");
+            }
+            final long subArrayLength = input.getLong();
+            return new StructuredArrayBuilder(lookup, arrayClass,
+                    new PrimitiveArrayBuilder(subArrayClass, subArrayLength), length);
+        } else if (kind == LEAF_ELEMENTS) {
+            final Class elementClass = resolveClass(input.getString(), classLoader);
+            verifyLayout(elementClass, input);
+            return new StructuredArrayBuilder(lookup, arrayClass, elementClass, length);
+        }
+        throw new StreamCorruptedException("Unknown array model kind " + kind);
+    }
+
+    private static void verifyLayout(final Class<?> elementClass, final Input input) throws IOException {
+        final FlatElementLayout<?> layout;
+        try {
+            layout = FlatElementLayout.forClass(elementClass);
+        } catch (final IllegalArgumentException ex) {
+            throw new InvalidClassException(elementClass.getName(), ex.getMessage());
+        }
+        final int elementSize = input.getInt();
+        final int fieldCount = input.getInt();
+        boolean matches = (elementSize == layout.getElementSize()) && (fieldCount == layout.getFieldCount());
+        for (int i = 0; i < fieldCount; i++) {
+            final String name = input.getString();
+            final String type = input.getString();
+            matches &= (i < layout.getFieldCount()) &&
+                    name.equals(layout.getFieldName(i)) && type.equals(layout.getFieldType(i).getName());
+        }
+        if (!matches) {
+            throw new InvalidClassException(elementClass.getName(),
+                    "fields do not match those of the serialized elements");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void readContents(final StructuredArray<?> array, final Input input) throws IOException {
+        final StructuredArrayModel<?, ?> model = array.getArrayModel();
+        final long length = array.getLength();
+        if (model.getStructuredSubArrayModel() != null) {
+            for (long i = 0; i < length; i++) {
+                readContents((StructuredArray<?>) array.get(i), input);
+            }
+        } else if (model.getPrimitiveSubArrayModel() != null) {
+            for (long i = 0; i < length; i++) {
+                readPrimitiveContents((AbstractPrimitiveArray) array.get(i), input);
+            }
+        } else {
+            final FlatElementLayout<Object> layout =
+                    (FlatElementLayout<Object>) FlatElementLayout.forClass(model.getElementClass());
+            final int elementSize = layout.getElementSize();
+            final ByteBuffer buffer = input.buffer;
+            for (long i = 0; i < length; i++) {
+                input.require(elementSize);
+                layout.load(array.get(i), buffer, buffer.position());
+                buffer.position(buffer.position() + elementSize);
+            }
+        }
+    }
+
+    private static void readPrimitiveContents(final AbstractPrimitiveArray array, final Input input)
+            throws IOException {
+        final long length = array._getLength();
+        final ByteBuffer buffer = input.buffer;
+        if (array instanceof PrimitiveLongArray) {
+            final PrimitiveLongArray a = (PrimitiveLongArray) array;
+            for (long i = 0; i < length; i++) {
+                input.require(8);
+                a.set(i, buffer.getLong());
+            }
+        } else if (array instanceof PrimitiveDoubleArray) {
+            final PrimitiveDoubleArray a = (PrimitiveDoubleArray) array;
+            for (long i = 0; i < length; i++) {
+                input.require(8);
+                a.set(i, buffer.getDouble());
+            }
+        } else if (array instanceof PrimitiveIntArray) {
+            final PrimitiveIntArray a = (PrimitiveIntArray) array;
+            for (long i = 0; i < length; i++) {
+                input.require(4);
+                a.set(i, buffer.getInt());
+            }
+        } else if (array instanceof PrimitiveFloatArray) {
+            final PrimitiveFloatArray a = (PrimitiveFloatArray) array;
+            for (long i = 0; i < length; i++) {
+                input.require(4);
+                a.set(i, buffer.getFloat());
+            }
+        } else if (array instanceof PrimitiveShortArray) {
+            final PrimitiveShortArray a = (PrimitiveShortArray) array;
+            for (long i = 0; i < length; i++) {
+                input.require(2);
+                a.set(i, buffer.getShort());
+            }
+        } else if (array instanceof PrimitiveCharArray) {
+            final PrimitiveCharArray a = (PrimitiveCharArray) array;
+            for (long i = 0; i < length; i++) {
+                input.require(2);
+                a.set(i, buffer.getChar());
+            }
+        } else if (array instanceof PrimitiveByteArray) {
+            final PrimitiveByteArray a = (PrimitiveByteArray) array;
+            for (long i = 0; i < length; i++) {
+                input.require(1);
+                a.set(i, buffer.get());
+            }
+        } else {
+            throw new InvalidClassException(array.getClass().getName(), "unsupported sub-array class");
+        }
+    }
+
+    private static ClassLoader classLoaderFor(final MethodHandles.Lookup lookup) {
+        ClassLoader classLoader = (lookup != null) ? lookup.lookupClass().getClassLoader() :
+                Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = StructuredArraySerializer.class.getClassLoader();
+        }
+        return classLoader;
+    }
+
+    private static Class<?> resolveClass(final String name, final ClassLoader classLoader) throws IOException {
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (final ClassNotFoundException ex) {
+            throw new InvalidClassException(name, "class not found");
+        }
+    }
+
+    //
+    //
+    // Buffering:
+    //
+    //
+
+    private static final class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+
+        Output(final WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void require(final int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+                if (buffer.remaining() < length) {
+                    throw new IllegalArgumentException("Cannot serialize items larger than " + BUFFER_SIZE + " bytes");
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void putByte(final byte value) throws IOException {
+            require(1);
+            buffer.put(value);
+        }
+
+        void putInt(final int value) throws IOException {
+            require(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(final long value) throws IOException {
+            require(8);
+            buffer.putLong(value);
+        }
+
+        void putString(final String value) throws IOException {
+            final byte[] bytes = value.getBytes(UTF_8);
+            putInt(bytes.length);
+            require(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static final class Input {
+        private final ByteBuffer buffer;
+        private final ReadableByteChannel channel;
+
+        Input(final ByteBuffer buffer, final ReadableByteChannel channel) {
+            this.buffer = buffer;
+            this.channel = channel;
+        }
+
+        void require(final int length) throws IOException {
+            if (buffer.remaining() >= length) {
+                return;
+            }
+            if ((channel == null) || (length > buffer.capacity())) {
+                throw new EOFException("Serialized StructuredArray is truncated");
+            }
+            buffer.compact();
+            while (buffer.position() < length) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Serialized StructuredArray is truncated");
+                }
+            }
+            buffer.flip();
+        }
+
+        byte getByte() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(8);
+            return buffer.getLong();
+        }
+
+        String getString() throws IOException {
+            final int length = getInt();
+            if (length < 0) {
+                throw new StreamCorruptedException("Negative string length " + length);
+            }
+            require(length);
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * The single point of contact between the vanilla implementation and {@code sun.misc.Unsafe}, which is used
+ * for operations that have no efficient portable equivalent (field offsets, plain, volatile and ordered field
+ * accesses, and atomic updates on element fields). No other class names the Unsafe type.
+ * <p>
+ * Unsafe is a platform dependency rather than a public API: it is looked up reflectively, and each operation
+ * is bound once to a constant {@link MethodHandle} that the JIT compiles down to the same intrinsic as a
+ * direct call. When Unsafe (or any of the operations below) is not available, {@link #AVAILABLE} is false
+ * and callers are expected to fall back to (slower) reflective means, or to reject the operation.
+ */
+final class UnsafeAccess {
+    private static final Object UNSAFE = findUnsafe();
+
+    private static final MethodHandle OBJECT_FIELD_OFFSET = handle("objectFieldOffset", long.class, Field.class);
+    private static final MethodHandle GET_BOOLEAN = handle("getBoolean", boolean.class, Object.class, long.class);
+    private static final MethodHandle PUT_BOOLEAN =
+            handle("putBoolean", void.class, Object.class, long.class, boolean.class);
+    private static final MethodHandle GET_BYTE = handle("getByte", byte.class, Object.class, long.class);
+    private static final MethodHandle PUT_BYTE = handle("putByte", void.class, Object.class, long.class, byte.class);
+    private static final MethodHandle GET_CHAR = handle("getChar", char.class, Object.class, long.class);
+    private static final MethodHandle PUT_CHAR = handle("putChar", void.class, Object.class, long.class, char.class);
+    private static final MethodHandle GET_SHORT = handle("getShort", short.class, Object.class, long.class);
+    private static final MethodHandle PUT_SHORT = handle("putShort", void.class, Object.class, long.class, short.class);
+    private static final MethodHandle GET_INT = handle("getInt", int.class, Object.class, long.class);
+    private static final MethodHandle PUT_INT = handle("putInt", void.class, Object.class, long.class, int.class);
+    private static final MethodHandle GET_FLOAT = handle("getFloat", float.class, Object.class, long.class);
+    private static final MethodHandle PUT_FLOAT = handle("putFloat", void.class, Object.class, long.class, float.class);
+    private static final MethodHandle GET_LONG = handle("getLong", long.class, Object.class, long.class);
+    private static final MethodHandle PUT_LONG = handle("putLong", void.class, Object.class, long.class, long.class);
+    private static final MethodHandle GET_DOUBLE = handle("getDouble", double.class, Object.class, long.class);
+    private static final MethodHandle PUT_DOUBLE =
+            handle("putDouble", void.class, Object.class, long.class, double.class);
+    private static final MethodHandle GET_OBJECT = handle("getObject", Object.class, Object.class, long.class);
+    private static final MethodHandle PUT_OBJECT =
+            handle("putObject", void.class, Object.class, long.class, Object.class);
+    private static final MethodHandle GET_INT_VOLATILE = handle("getIntVolatile", int.class, Object.class, long.class);
+    private static final MethodHandle PUT_INT_VOLATILE =
+            handle("putIntVolatile", void.class, Object.class, long.class, int.class);
+    private static final MethodHandle PUT_ORDERED_INT =
+            handle("putOrderedInt", void.class, Object.class, long.class, int.class);
+    private static final MethodHandle COMPARE_AND_SWAP_INT =
+            handle("compareAndSwapInt", boolean.class, Object.class, long.class, int.class, int.class);
+    private static final MethodHandle GET_AND_SET_INT =
+            handle("getAndSetInt", int.class, Object.class, long.class, int.class);
+    private static final MethodHandle GET_LONG_VOLATILE =
+            handle("getLongVolatile", long.class, Object.class, long.class);
+    private static final MethodHandle PUT_LONG_VOLATILE =
+            handle("putLongVolatile", void.class, Object.class, long.class, long.class);
+    private static final MethodHandle PUT_ORDERED_LONG =
+            handle("putOrderedLong", void.class, Object.class, long.class, long.class);
+    private static final MethodHandle COMPARE_AND_SWAP_LONG =
+            handle("compareAndSwapLong", boolean.class, Object.class, long.class, long.class, long.class);
+    private static final MethodHandle GET_AND_SET_LONG =
+            handle("getAndSetLong", long.class, Object.class, long.class, long.class);
+    private static final MethodHandle GET_OBJECT_VOLATILE =
+            handle("getObjectVolatile", Object.class, Object.class, long.class);
+    private static final MethodHandle PUT_OBJECT_VOLATILE =
+            handle("putObjectVolatile", void.class, Object.class, long.class, Object.class);
+    private static final MethodHandle PUT_ORDERED_OBJECT =
+            handle("putOrderedObject", void.class, Object.class, long.class, Object.class);
+    private static final MethodHandle COMPARE_AND_SWAP_OBJECT =
+            handle("compareAndSwapObject", boolean.class, Object.class, long.class, Object.class, Object.class);
+    private static final MethodHandle GET_AND_SET_OBJECT =
+            handle("getAndSetObject", Object.class, Object.class, long.class, Object.class);
+    private static final MethodHandle GET_AND_ADD_INT =
+            handle("getAndAddInt", int.class, Object.class, long.class, int.class);
+    private static final MethodHandle GET_AND_ADD_LONG =
+            handle("getAndAddLong", long.class, Object.class, long.class, long.class);
+
+    /**
+     * True if Unsafe and every operation exposed by this class are available on this JVM.
+     */
+    static final boolean AVAILABLE = allFound(
+            OBJECT_FIELD_OFFSET, GET_BOOLEAN, PUT_BOOLEAN, GET_BYTE,
+            PUT_BYTE, GET_CHAR, PUT_CHAR, GET_SHORT,
+            PUT_SHORT, GET_INT, PUT_INT, GET_FLOAT,
+            PUT_FLOAT, GET_LONG, PUT_LONG, GET_DOUBLE,
+            PUT_DOUBLE, GET_OBJECT, PUT_OBJECT, GET_INT_VOLATILE,
+            PUT_INT_VOLATILE, PUT_ORDERED_INT, COMPARE_AND_SWAP_INT, GET_AND_SET_INT,
+            GET_LONG_VOLATILE, PUT_LONG_VOLATILE, PUT_ORDERED_LONG, COMPARE_AND_SWAP_LONG,
+            GET_AND_SET_LONG, GET_OBJECT_VOLATILE, PUT_OBJECT_VOLATILE, PUT_ORDERED_OBJECT,
+            COMPARE_AND_SWAP_OBJECT, GET_AND_SET_OBJECT, GET_AND_ADD_INT, GET_AND_ADD_LONG);
+
+    // Prevent construction:
+    private UnsafeAccess() {
+    }
+
+    static long objectFieldOffset(final Field field) {
+        try {
+            return (long) OBJECT_FIELD_OFFSET.invokeExact(field);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean getBoolean(final Object o, final long offset) {
+        try {
+            return (boolean) GET_BOOLEAN.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putBoolean(final Object o, final long offset, final boolean value) {
+        try {
+            PUT_BOOLEAN.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static byte getByte(final Object o, final long offset) {
+        try {
+            return (byte) GET_BYTE.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putByte(final Object o, final long offset, final byte value) {
+        try {
+            PUT_BYTE.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static char getChar(final Object o, final long offset) {
+        try {
+            return (char) GET_CHAR.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putChar(final Object o, final long offset, final char value) {
+        try {
+            PUT_CHAR.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static short getShort(final Object o, final long offset) {
+        try {
+            return (short) GET_SHORT.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putShort(final Object o, final long offset, final short value) {
+        try {
+            PUT_SHORT.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int getInt(final Object o, final long offset) {
+        try {
+            return (int) GET_INT.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putInt(final Object o, final long offset, final int value) {
+        try {
+            PUT_INT.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static float getFloat(final Object o, final long offset) {
+        try {
+            return (float) GET_FLOAT.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putFloat(final Object o, final long offset, final float value) {
+        try {
+            PUT_FLOAT.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static long getLong(final Object o, final long offset) {
+        try {
+            return (long) GET_LONG.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putLong(final Object o, final long offset, final long value) {
+        try {
+            PUT_LONG.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static double getDouble(final Object o, final long offset) {
+        try {
+            return (double) GET_DOUBLE.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putDouble(final Object o, final long offset, final double value) {
+        try {
+            PUT_DOUBLE.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object getObject(final Object o, final long offset) {
+        try {
+            return (Object) GET_OBJECT.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putObject(final Object o, final long offset, final Object value) {
+        try {
+            PUT_OBJECT.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int getIntVolatile(final Object o, final long offset) {
+        try {
+            return (int) GET_INT_VOLATILE.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putIntVolatile(final Object o, final long offset, final int value) {
+        try {
+            PUT_INT_VOLATILE.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putOrderedInt(final Object o, final long offset, final int value) {
+        try {
+            PUT_ORDERED_INT.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean compareAndSwapInt(final Object o, final long offset, final int expect, final int update) {
+        try {
+            return (boolean) COMPARE_AND_SWAP_INT.invokeExact(o, offset, expect, update);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int getAndSetInt(final Object o, final long offset, final int value) {
+        try {
+            return (int) GET_AND_SET_INT.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static long getLongVolatile(final Object o, final long offset) {
+        try {
+            return (long) GET_LONG_VOLATILE.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putLongVolatile(final Object o, final long offset, final long value) {
+        try {
+            PUT_LONG_VOLATILE.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putOrderedLong(final Object o, final long offset, final long value) {
+        try {
+            PUT_ORDERED_LONG.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean compareAndSwapLong(final Object o, final long offset, final long expect, final long update) {
+        try {
+            return (boolean) COMPARE_AND_SWAP_LONG.invokeExact(o, offset, expect, update);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static long getAndSetLong(final Object o, final long offset, final long value) {
+        try {
+            return (long) GET_AND_SET_LONG.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object getObjectVolatile(final Object o, final long offset) {
+        try {
+            return (Object) GET_OBJECT_VOLATILE.invokeExact(o, offset);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putObjectVolatile(final Object o, final long offset, final Object value) {
+        try {
+            PUT_OBJECT_VOLATILE.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void putOrderedObject(final Object o, final long offset, final Object value) {
+        try {
+            PUT_ORDERED_OBJECT.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean compareAndSwapObject(final Object o, final long offset, final Object expect, final Object update) {
+        try {
+            return (boolean) COMPARE_AND_SWAP_OBJECT.invokeExact(o, offset, expect, update);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object getAndSetObject(final Object o, final long offset, final Object value) {
+        try {
+            return (Object) GET_AND_SET_OBJECT.invokeExact(o, offset, value);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int getAndAddInt(final Object o, final long offset, final int delta) {
+        try {
+            return (int) GET_AND_ADD_INT.invokeExact(o, offset, delta);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static long getAndAddLong(final Object o, final long offset, final long delta) {
+        try {
+            return (long) GET_AND_ADD_LONG.invokeExact(o, offset, delta);
+        } catch (final Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Looks up a virtual method of the Unsafe instance, bound to that instance.
+     *
+     * @return the bound handle, or null if Unsafe or the method is not available
+     */
+    static MethodHandle handle(final String name, final Class<?> returnType, final Class<?>... parameterTypes) {
+        if (UNSAFE == null) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().findVirtual(UNSAFE.getClass(), name,
+                    MethodType.methodType(returnType, parameterTypes)).bindTo(UNSAFE);
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static boolean allFound(final MethodHandle... handles) {
+        for (final MethodHandle handle : handles) {
+            if (handle == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static RuntimeException rethrow(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    private static Object findUnsafe() {
+        try {
+            final Field theUnsafe = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return theUnsafe.get(null);
+        } catch (final Exception ex) {
+            return null;
+        } catch (final LinkageError ex) {
+            return null;
+        }
+    }
+}
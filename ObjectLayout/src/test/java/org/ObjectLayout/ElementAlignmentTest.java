@@ -0,0 +1,99 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import org.junit.Test;
+
+import java.util.IdentityHashMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Checks the spacing computed for the elements of aligned arrays: each element is followed by a spacer that,
+ * header included, spans an alignment-sized block of memory, and that the array retains.
+ */
+public class ElementAlignmentTest {
+
+    private static final int LENGTH = 1000;
+    private static final int ALIGNMENT = 128;
+
+    @Test
+    public void shouldRetainAnAlignmentSizedSpacerPerElement() {
+        final StructuredArray<Counter> array = newAlignedArray(ALIGNMENT);
+
+        assertThat(array.getElementAlignment(), is(ALIGNMENT));
+        assertSpacedElements(array, ALIGNMENT);
+    }
+
+    @Test
+    public void shouldPadToCacheLines() {
+        @SuppressWarnings("unchecked")
+        final StructuredArray<Counter> array =
+                new StructuredArrayBuilder(StructuredArray.class, Counter.class, LENGTH).
+                        padToCacheLine().
+                        build();
+
+        assertThat(array.getElementAlignment(), is(StructuredArrayBuilder.CACHE_LINE_SIZE));
+        assertSpacedElements(array, StructuredArrayBuilder.CACHE_LINE_SIZE);
+    }
+
+    @Test
+    public void shouldSpaceElementsOfCopies() {
+        final StructuredArray<Counter> copy = StructuredArray.copyInstance(newAlignedArray(ALIGNMENT));
+
+        assertThat(copy.getElementAlignment(), is(ALIGNMENT));
+        assertSpacedElements(copy, ALIGNMENT);
+    }
+
+    @Test
+    public void shouldNotSpaceElementsOfUnalignedArrays() {
+        final StructuredArray<Counter> array = StructuredArray.newInstance(Counter.class, LENGTH);
+
+        assertThat(array.getElementAlignment(), is(0));
+        for (int i = 0; i < LENGTH; i++) {
+            assertThat(array.elementSpacerAt(i), nullValue());
+        }
+    }
+
+    @Test
+    public void shouldNotAllocateSpacersSmallerThanTheirHeader() {
+        assertThat(AbstractStructuredArray.spacerLengthFor(8), is(0));
+        assertThat(AbstractStructuredArray.spacerLengthFor(ALIGNMENT),
+                is(ALIGNMENT - AbstractStructuredArray.SPACER_HEADER_SIZE));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StructuredArray<Counter> newAlignedArray(final int alignment) {
+        return new StructuredArrayBuilder(StructuredArray.class, Counter.class, LENGTH).
+                alignment(alignment).
+                build();
+    }
+
+    private static void assertSpacedElements(final StructuredArray<Counter> array, final int alignment) {
+        final IdentityHashMap<Object, Boolean> spacers = new IdentityHashMap<>();
+        for (int i = 0; i < LENGTH; i++) {
+            final Object spacer = array.elementSpacerAt(i);
+            assertThat("spacer of element " + i, spacer instanceof byte[], is(true));
+            assertThat("spacer of element " + i + " spans the alignment",
+                    AbstractStructuredArray.SPACER_HEADER_SIZE + ((byte[]) spacer).length, is(alignment));
+            spacers.put(spacer, Boolean.TRUE);
+        }
+        assertThat("each element has its own spacer", spacers.size(), is(LENGTH));
+    }
+
+    public static class Counter {
+        long value;
+
+        public Counter() {
+        }
+
+        public Counter(final Counter source) {
+            this.value = source.value;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Exercises the bulk operations and spliterators of heap backed primitive arrays on their long-addressable-only
+ * partitions.
+ * <p>
+ * Heap arrays only have such partitions when they are longer than Integer.MAX_VALUE elements, which is more
+ * than a test can allocate. The arrays used here are small, with their length and long-addressable storage
+ * replaced such that indexes from Integer.MAX_VALUE onward are held in a (short) long-addressable partition,
+ * while the indexes below {@code INT_LENGTH} are held in the int-addressable partition as usual.
+ */
+public class PrimitiveArrayPartitionTest {
+
+    private static final int INT_LENGTH = 64;
+    private static final int EXTRA_LENGTH = 100;
+    private static final long BASE = Integer.MAX_VALUE;
+
+    @Test
+    public void shouldFillAndHashLongAddressablePartitions() {
+        final PrimitiveLongArray a = newPartitionedLongArray();
+        final long[] expected = longAddressableElementsOf(a);
+
+        a.fill(BASE + 10, BASE + 30, -1L);
+        Arrays.fill(expected, 10, 30, -1L);
+        assertContents(a, expected);
+
+        assertThat(a.hashRange(BASE, BASE + EXTRA_LENGTH), is(Arrays.hashCode(expected)));
+        assertThat(a.hashRange(BASE + 5, BASE + 45),
+                is(Arrays.hashCode(Arrays.copyOfRange(expected, 5, 45))));
+    }
+
+    @Test
+    public void shouldCopyBetweenPartitions() {
+        final PrimitiveLongArray a = newPartitionedLongArray();
+        final long[] expected = longAddressableElementsOf(a);
+        final PrimitiveLongArray b = PrimitiveLongArray.newInstance(INT_LENGTH);
+        for (int i = 0; i < INT_LENGTH; i++) {
+            b.set(i, -i);
+        }
+
+        // From an int-addressable partition into a long-addressable one:
+        a.copyFrom(b, 4, BASE + 50, 40);
+        for (int i = 0; i < 40; i++) {
+            expected[50 + i] = -(4 + i);
+        }
+        assertContents(a, expected);
+
+        // And back, within the same array:
+        a.copyFrom(a, BASE + 60, 0, 20);
+        for (int i = 0; i < 20; i++) {
+            assertThat(a.get(i), is(expected[60 + i]));
+        }
+    }
+
+    @Test
+    public void shouldCopyOverlappingRangesWithinLongAddressablePartitions() {
+        final PrimitiveLongArray a = newPartitionedLongArray();
+        final long[] expected = longAddressableElementsOf(a);
+
+        a.copyFrom(a, BASE, BASE + 5, 50);
+        System.arraycopy(expected, 0, expected, 5, 50);
+        assertContents(a, expected);
+
+        a.copyFrom(a, BASE + 30, BASE + 25, 60);
+        System.arraycopy(expected, 30, expected, 25, 60);
+        assertContents(a, expected);
+    }
+
+    @Test
+    public void shouldCompareLongAddressablePartitions() {
+        final PrimitiveLongArray a = newPartitionedLongArray();
+        final PrimitiveLongArray b = PrimitiveLongArray.newInstance(INT_LENGTH);
+        b.copyFrom(a, BASE + 20, 0, INT_LENGTH);
+
+        assertThat(a.equalsRange(BASE + 20, b, 0, INT_LENGTH), is(true));
+        assertThat(a.mismatch(BASE + 20, b, 0, INT_LENGTH), is(-1L));
+        b.set(42, 0L);
+        assertThat(a.equalsRange(BASE + 20, b, 0, INT_LENGTH), is(false));
+        assertThat(a.mismatch(BASE + 20, b, 0, INT_LENGTH), is(42L));
+        assertThat(b.mismatch(0, a, BASE + 20, INT_LENGTH), is(42L));
+    }
+
+    @Test
+    public void shouldTraverseLongAddressablePartitions() {
+        final PrimitiveLongArray a = newPartitionedLongArray();
+        final long[] expected = longAddressableElementsOf(a);
+
+        final long sum = StreamSupport.longStream(a.spliterator(BASE + 10, BASE + EXTRA_LENGTH), false).sum();
+        assertThat(sum, is(Arrays.stream(expected, 10, EXTRA_LENGTH).sum()));
+    }
+
+    @Test
+    public void shouldTraverseAndSplitIntArrayPartitions() {
+        final int[] expected = new int[EXTRA_LENGTH];
+        final PrimitiveIntArray a = withLongAddressablePartition(PrimitiveIntArray.newInstance(INT_LENGTH),
+                AbstractPrimitiveIntArray.class, new int[][] {new int[EXTRA_LENGTH]});
+        for (int i = 0; i < INT_LENGTH; i++) {
+            a.set(i, -i);
+        }
+        for (int i = 0; i < EXTRA_LENGTH; i++) {
+            expected[i] = 1000 + i * 3;
+            a.set(BASE + i, expected[i]);
+        }
+
+        assertThat(StreamSupport.intStream(a.spliterator(BASE + 10, BASE + EXTRA_LENGTH), true).sum(),
+                is(Arrays.stream(expected, 10, EXTRA_LENGTH).sum()));
+
+        // Split within the long-addressable partition, and traverse one half element by element:
+        final Spliterator.OfInt suffix = a.spliterator(BASE, BASE + EXTRA_LENGTH);
+        final Spliterator.OfInt prefix = suffix.trySplit();
+        assertThat(prefix.estimateSize(), is((long) EXTRA_LENGTH / 2));
+        assertThat(StreamSupport.intStream(suffix, false).sum(),
+                is(Arrays.stream(expected, EXTRA_LENGTH / 2, EXTRA_LENGTH).sum()));
+        final int[] sum = new int[1];
+        while (prefix.tryAdvance(new java.util.function.IntConsumer() {
+            @Override
+            public void accept(final int value) {
+                sum[0] += value;
+            }
+        })) {
+        }
+        assertThat(sum[0], is(Arrays.stream(expected, 0, EXTRA_LENGTH / 2).sum()));
+    }
+
+    @Test
+    public void shouldTraverseAndSplitDoubleArrayPartitions() {
+        final double[] expected = new double[EXTRA_LENGTH];
+        final PrimitiveDoubleArray a = withLongAddressablePartition(PrimitiveDoubleArray.newInstance(INT_LENGTH),
+                AbstractPrimitiveDoubleArray.class, new double[][] {new double[EXTRA_LENGTH]});
+        for (int i = 0; i < INT_LENGTH; i++) {
+            a.set(i, -i / 2.0);
+        }
+        for (int i = 0; i < EXTRA_LENGTH; i++) {
+            expected[i] = i / 4.0;
+            a.set(BASE + i, expected[i]);
+        }
+
+        assertThat(StreamSupport.doubleStream(a.spliterator(BASE + 10, BASE + EXTRA_LENGTH), true).sum(),
+                is(Arrays.stream(expected, 10, EXTRA_LENGTH).sum()));
+
+        // Split within the long-addressable partition, and traverse one half element by element:
+        final Spliterator.OfDouble suffix = a.spliterator(BASE, BASE + EXTRA_LENGTH);
+        final Spliterator.OfDouble prefix = suffix.trySplit();
+        assertThat(prefix.estimateSize(), is((long) EXTRA_LENGTH / 2));
+        assertThat(StreamSupport.doubleStream(suffix, false).sum(),
+                is(Arrays.stream(expected, EXTRA_LENGTH / 2, EXTRA_LENGTH).sum()));
+        final double[] sum = new double[1];
+        while (prefix.tryAdvance(new java.util.function.DoubleConsumer() {
+            @Override
+            public void accept(final double value) {
+                sum[0] += value;
+            }
+        })) {
+        }
+        assertThat(sum[0], is(Arrays.stream(expected, 0, EXTRA_LENGTH / 2).sum()));
+    }
+
+    @Test
+    public void shouldPreferPartitionBoundariesNearTheMiddleWhenSplitting() {
+        final long partitionSize = AbstractPrimitiveArray.MAX_EXTRA_PARTITION_SIZE;
+        // The int-addressable partition ends near the middle:
+        assertThat(AbstractPrimitiveArray.splitIndexOf(BASE - partitionSize, BASE + partitionSize + 10), is(BASE));
+        // The nearest of the boundaries between long-addressable partitions:
+        assertThat(AbstractPrimitiveArray.splitIndexOf(BASE, BASE + (3 * partitionSize) + 10),
+                is(BASE + (2 * partitionSize)));
+        assertThat(AbstractPrimitiveArray.splitIndexOf(BASE, BASE + (3 * partitionSize) - 10),
+                is(BASE + partitionSize));
+        // No boundary within a quarter of the range from the middle:
+        assertThat(AbstractPrimitiveArray.splitIndexOf(BASE + 10, BASE + 1010), is(BASE + 510));
+        assertThat(AbstractPrimitiveArray.splitIndexOf(0, 1000), is(500L));
+        assertThat(AbstractPrimitiveArray.splitIndexOf(0, BASE + EXTRA_LENGTH), is((BASE + EXTRA_LENGTH) / 2));
+    }
+
+    @Test
+    public void shouldCompareAndHashDoublesLikeJavaUtilArrays() {
+        final PrimitiveDoubleArray a = withLongAddressablePartition(PrimitiveDoubleArray.newInstance(INT_LENGTH),
+                AbstractPrimitiveDoubleArray.class, new double[][] {new double[EXTRA_LENGTH]});
+        final double[] expected = new double[EXTRA_LENGTH];
+        for (int i = 0; i < EXTRA_LENGTH; i++) {
+            expected[i] = (i % 7 == 0) ? Double.NaN : i / 4.0;
+            a.set(BASE + i, expected[i]);
+        }
+        a.fill(BASE + 90, BASE + 95, -0.0);
+        Arrays.fill(expected, 90, 95, -0.0);
+
+        assertThat(a.hashRange(BASE, BASE + EXTRA_LENGTH), is(Arrays.hashCode(expected)));
+
+        final PrimitiveDoubleArray b = PrimitiveDoubleArray.newInstance(INT_LENGTH);
+        b.copyFrom(a, BASE + 36, 0, INT_LENGTH);
+        // NaNs compare equal to themselves:
+        assertThat(a.equalsRange(BASE + 36, b, 0, INT_LENGTH), is(true));
+        // -0.0 and 0.0 do not:
+        b.set(56, 0.0);
+        assertThat(a.mismatch(BASE + 36, b, 0, INT_LENGTH), is(56L));
+    }
+
+    private static PrimitiveLongArray newPartitionedLongArray() {
+        final PrimitiveLongArray a = withLongAddressablePartition(PrimitiveLongArray.newInstance(INT_LENGTH),
+                AbstractPrimitiveLongArray.class, new long[][] {new long[EXTRA_LENGTH]});
+        for (int i = 0; i < INT_LENGTH; i++) {
+            a.set(i, i);
+        }
+        for (int i = 0; i < EXTRA_LENGTH; i++) {
+            a.set(BASE + i, 1000 + i * 3);
+        }
+        return a;
+    }
+
+    private static long[] longAddressableElementsOf(final PrimitiveLongArray a) {
+        final long[] elements = new long[EXTRA_LENGTH];
+        for (int i = 0; i < EXTRA_LENGTH; i++) {
+            elements[i] = a.get(BASE + i);
+        }
+        return elements;
+    }
+
+    private static void assertContents(final PrimitiveLongArray a, final long[] expected) {
+        for (int i = 0; i < EXTRA_LENGTH; i++) {
+            assertThat("element " + (BASE + i), a.get(BASE + i), is(expected[i]));
+        }
+    }
+
+    private static <A extends AbstractPrimitiveArray> A withLongAddressablePartition(
+            final A array, final Class<?> abstractClass, final Object longAddressableElements) {
+        try {
+            final Field length = AbstractPrimitiveArray.class.getDeclaredField("length");
+            length.setAccessible(true);
+            length.setLong(array, BASE + EXTRA_LENGTH);
+            final Field elements = abstractClass.getDeclaredField("longAddressableElements");
+            elements.setAccessible(true);
+            elements.set(array, longAddressableElements);
+            return array;
+        } catch (ReflectiveOperationException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Written by Gil Tene and Martin Thompson, and released to the public domain,
+ * as explained at http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package org.ObjectLayout;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Exercises the long index based copy loops of shallowCopy directly, as they are otherwise only reached for
+ * arrays longer than Integer.MAX_VALUE.
+ */
+public class ShallowCopyByLongIndexTest {
+
+    @Test
+    public void shouldCopyOverlappingRangesTowardsHigherIndexes() {
+        shouldCopyLikeArraycopy(10, 15, 20);
+    }
+
+    @Test
+    public void shouldCopyOverlappingRangesTowardsLowerIndexes() {
+        shouldCopyLikeArraycopy(15, 10, 20);
+    }
+
+    @Test
+    public void shouldCopyRangesOntoThemselves() {
+        shouldCopyLikeArraycopy(7, 7, 30);
+    }
+
+    @Test
+    public void shouldCopyBetweenArrays() {
+        final int length = 50;
+        final StructuredArray<Value> src = newArray(length);
+        final StructuredArray<Value> dst = StructuredArray.newInstance(Value.class, length);
+
+        StructuredArray.shallowCopyByLongIndex(src, 3, dst, 40, 10, FieldCopier.forClass(Value.class));
+
+        for (int i = 0; i < length; i++) {
+            assertThat(dst.get(i).value, is(((i >= 40) && (i < 50)) ? (long) (i - 37) : 0L));
+        }
+    }
+
+    private void shouldCopyLikeArraycopy(final int srcOffset, final int dstOffset, final int count) {
+        final int length = 64;
+        final StructuredArray<Value> array = newArray(length);
+        final long[] expected = new long[length];
+        for (int i = 0; i < length; i++) {
+            expected[i] = i;
+        }
+
+        StructuredArray.shallowCopyByLongIndex(array, srcOffset, array, dstOffset, count,
+                FieldCopier.forClass(Value.class));
+        System.arraycopy(expected, srcOffset, expected, dstOffset, count);
+
+        for (int i = 0; i < length; i++) {
+            assertThat("element " + i, array.get(i).value, is(expected[i]));
+        }
+    }
+
+    private static StructuredArray<Value> newArray(final int length) {
+        final StructuredArray<Value> array = StructuredArray.newInstance(Value.class, length);
+        for (int i = 0; i < length; i++) {
+            array.get(i).value = i;
+        }
+        return array;
+    }
+
+    public static class Value {
+        long value;
+
+        public Value() {
+        }
+    }
+}
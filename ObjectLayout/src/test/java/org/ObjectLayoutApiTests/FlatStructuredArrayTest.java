@@ -0,0 +1,290 @@
+/*
+* Written by Gil Tene and Martin Thompson, and released to the public domain,
+* as explained at http://creativecommons.org/publicdomain/zero/1.0/
+*/
+
+package org.ObjectLayoutApiTests;
+
+import org.ObjectLayout.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Long.valueOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FlatStructuredArrayTest {
+
+    @Test
+    public void shouldLayOutFieldsByDecreasingSize() {
+        final FlatElementLayout<MixedStructure> layout = FlatElementLayout.forClass(MixedStructure.class);
+
+        assertThat(layout.getFieldCount(), is(5));
+        assertThat(layout.getFieldName(0), is("id"));
+        assertThat(layout.getFieldName(1), is("value"));
+        assertThat(layout.getFieldName(2), is("count"));
+        assertThat(layout.getFieldName(3), is("flags"));
+        assertThat(layout.getFieldName(4), is("active"));
+        assertThat(layout.getFieldOffset(layout.getFieldIndex("count")), is(16));
+        assertThat(layout.getFieldOffset(layout.getFieldIndex("active")), is(21));
+        assertThat(layout.getElementSize(), is(24));
+    }
+
+    @Test
+    public void shouldStoreAndLoadElements() {
+        final long length = 1000;
+        final FlatStructuredArray<MixedStructure> array =
+                FlatStructuredArray.newOffHeapInstance(MixedStructure.class, length);
+
+        final MixedStructure element = new MixedStructure();
+        for (long i = 0; i < length; i++) {
+            element.set(i);
+            array.set(i, element);
+        }
+
+        final MixedStructure view = new MixedStructure();
+        final MixedStructure expected = new MixedStructure();
+        for (long i = 0; i < length; i++) {
+            expected.set(i);
+            assertThat(array.get(i, view), is(expected));
+        }
+    }
+
+    @Test
+    public void shouldAccessFieldsInPlace() {
+        final long length = 100;
+        final FlatStructuredArray<MixedStructure> array =
+                FlatStructuredArray.newOffHeapInstance(
+                        new StructuredArrayModel<StructuredArray<MixedStructure>, MixedStructure>(length){});
+        final FlatElementLayout<MixedStructure> layout = array.getLayout();
+        final int id = layout.getFieldIndex("id");
+        final int count = layout.getFieldIndex("count");
+        final int active = layout.getFieldIndex("active");
+
+        for (long i = 0; i < length; i++) {
+            array.setLong(i, id, i * 7);
+            array.setInt(i, count, (int) i);
+            array.setBoolean(i, active, (i & 1) == 1);
+        }
+
+        long sum = 0;
+        for (long i = 0; i < length; i++) {
+            sum += array.getLong(i, id);
+            assertThat(array.getInt(i, count), is((int) i));
+            assertThat(array.getBoolean(i, active), is((i & 1) == 1));
+        }
+        assertThat(valueOf(sum), is(valueOf(7 * (length * (length - 1)) / 2)));
+
+        final MixedStructure view = array.get(5, new MixedStructure());
+        assertThat(view.id, is(35L));
+        assertThat(view.value, is(0.0));
+    }
+
+    @Test
+    public void shouldRejectAccessToFieldsOfTheWrongType() {
+        final FlatStructuredArray<MixedStructure> array =
+                FlatStructuredArray.newOffHeapInstance(MixedStructure.class, 10);
+        final int count = array.getLayout().getFieldIndex("count");
+        final int active = array.getLayout().getFieldIndex("active");
+        final int flags = array.getLayout().getFieldIndex("flags");
+        array.setInt(3, count, 42);
+        array.setBoolean(3, active, true);
+
+        try {
+            array.setLong(3, count, -1L);
+            throw new AssertionError("setLong on an int field should fail");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            array.getLong(9, flags);
+            throw new AssertionError("getLong on a byte field should fail");
+        } catch (IllegalArgumentException expected) {
+        }
+        // The failed accesses did not touch the element's fields:
+        assertThat(array.getInt(3, count), is(42));
+        assertThat(array.getBoolean(3, active), is(true));
+    }
+
+    @Test
+    public void shouldAccessOnHeapElementsThroughCursor() {
+        final long length = 1000;
+        final FlatStructuredArray<MixedStructure> array =
+                FlatStructuredArray.newInstance(MixedStructure.class, length);
+        assertThat(array.isOffHeap(), is(false));
+
+        final FlatElementLayout<MixedStructure> layout = array.getLayout();
+        final int id = layout.getFieldIndex("id");
+        final int value = layout.getFieldIndex("value");
+        final int flags = layout.getFieldIndex("flags");
+
+        final FlatStructuredArray<MixedStructure>.Cursor cursor = array.cursor();
+        for (long i = 0; i < length; i++) {
+            cursor.moveTo(i).setLong(id, i).setDouble(value, i / 2.0).setByte(flags, (byte) i);
+        }
+
+        double sum = 0;
+        for (long i = 0; i < length; i++) {
+            cursor.moveTo(i);
+            assertThat(cursor.getLong(id), is(i));
+            assertThat(cursor.getByte(flags), is((byte) i));
+            sum += cursor.getDouble(value);
+        }
+        assertThat(sum, is((length * (length - 1)) / 4.0));
+        assertThat(array.getLong(7, id), is(7L));
+
+        final MixedStructure expected = new MixedStructure();
+        expected.set(3);
+        cursor.moveTo(3).set(expected);
+        assertThat(cursor.getIndex(), is(3L));
+        assertThat(array.get(3, new MixedStructure()), is(expected));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectAccessThroughUnpositionedCursor() {
+        FlatStructuredArray.newInstance(MixedStructure.class, 10).cursor().getLong(0);
+    }
+
+    @Test
+    public void shouldRejectCursorAccessToFieldsOfTheWrongType() {
+        final FlatStructuredArray<MixedStructure> array = FlatStructuredArray.newInstance(MixedStructure.class, 10);
+        final int count = array.getLayout().getFieldIndex("count");
+        final int flags = array.getLayout().getFieldIndex("flags");
+        final FlatStructuredArray<MixedStructure>.Cursor cursor = array.cursor().moveTo(9);
+        cursor.setInt(count, 42).setByte(flags, (byte) 7);
+
+        try {
+            cursor.setDouble(count, 1.0);
+            throw new AssertionError("setDouble on an int field should fail");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            cursor.getInt(flags);
+            throw new AssertionError("getInt on a byte field should fail");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertThat(cursor.getInt(count), is(42));
+        assertThat(cursor.getByte(flags), is((byte) 7));
+    }
+
+    @Test
+    public void shouldStoreAndLoadElementsInEitherLayout() {
+        final long length = 1000;
+        final List<FlatArray<MixedStructure>> arrays = new ArrayList<>();
+        arrays.add(FlatStructuredArray.newInstance(MixedStructure.class, length));
+        arrays.add(ColumnarStructuredArray.newInstance(MixedStructure.class, length));
+
+        for (final FlatArray<MixedStructure> array : arrays) {
+            final MixedStructure element = new MixedStructure();
+            for (long i = 0; i < length; i++) {
+                element.set(i);
+                array.set(i, element);
+            }
+
+            final int count = array.getLayout().getFieldIndex("count");
+            final int active = array.getLayout().getFieldIndex("active");
+            final MixedStructure view = new MixedStructure();
+            final MixedStructure expected = new MixedStructure();
+            for (long i = 0; i < length; i++) {
+                expected.set(i);
+                assertThat(array.get(i, view), is(expected));
+                assertThat(array.getInt(i, count), is((int) (i * 2)));
+                assertThat(array.getBoolean(i, active), is((i % 3) == 0));
+            }
+        }
+    }
+
+    @Test
+    public void shouldProjectColumns() {
+        final long length = 1000;
+        final ColumnarStructuredArray<MixedStructure> array =
+                ColumnarStructuredArray.newInstance(MixedStructure.class, length);
+        final int id = array.getLayout().getFieldIndex("id");
+
+        final PrimitiveLongArray ids = array.getLongColumn(id);
+        for (long i = 0; i < length; i++) {
+            ids.set(i, i);
+        }
+        assertThat(ids.getLength(), is(length));
+        assertThat(array.getLong(7, id), is(7L));
+        assertThat(array.get(9, new MixedStructure()).id, is(9L));
+        assertThat(ids.parallelStream().sum(), is(length * (length - 1) / 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectColumnOfWrongType() {
+        final ColumnarStructuredArray<MixedStructure> array =
+                ColumnarStructuredArray.newInstance(MixedStructure.class, 10);
+        array.getIntColumn(array.getLayout().getFieldIndex("id"));
+    }
+
+    @Test
+    public void shouldRejectColumnarAccessToFieldsOfTheWrongType() {
+        final ColumnarStructuredArray<MixedStructure> array =
+                ColumnarStructuredArray.newInstance(MixedStructure.class, 10);
+        final int count = array.getLayout().getFieldIndex("count");
+        final int flags = array.getLayout().getFieldIndex("flags");
+        array.setByte(2, flags, (byte) 3);
+
+        try {
+            array.getLong(2, count);
+            throw new AssertionError("getLong on an int field should fail");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            // boolean and byte fields are both held in byte columns, so only the field type tells them apart:
+            array.setBoolean(2, flags, false);
+            throw new AssertionError("setBoolean on a byte field should fail");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertThat(array.getByte(2, flags), is((byte) 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectReferenceFields() {
+        FlatStructuredArray.newOffHeapInstance(String.class, 10);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldThrowOutOfBoundExceptionForAccessesOutOfBounds() {
+        final FlatStructuredArray<MixedStructure> array =
+                FlatStructuredArray.newOffHeapInstance(MixedStructure.class, 10);
+        array.getLong(10, 0);
+    }
+
+    public static class BaseStructure {
+        long id;
+        byte flags;
+    }
+
+    public static class MixedStructure extends BaseStructure {
+        boolean active;
+        int count;
+        double value;
+
+        void set(final long i) {
+            id = i;
+            flags = (byte) i;
+            active = (i % 3) == 0;
+            count = (int) (i * 2);
+            value = i / 3.0;
+        }
+
+        public boolean equals(final Object o) {
+            if (!(o instanceof MixedStructure)) return false;
+            final MixedStructure that = (MixedStructure) o;
+            return (id == that.id) && (flags == that.flags) && (active == that.active) &&
+                    (count == that.count) && (value == that.value);
+        }
+
+        public int hashCode() {
+            return (int) id;
+        }
+
+        public String toString() {
+            return "MixedStructure{id=" + id + ", flags=" + flags + ", active=" + active +
+                    ", count=" + count + ", value=" + value + '}';
+        }
+    }
+}
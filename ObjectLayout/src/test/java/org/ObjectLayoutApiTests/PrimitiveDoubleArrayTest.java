@@ -0,0 +1,99 @@
+package org.ObjectLayoutApiTests;
+
+import org.ObjectLayout.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Spliterator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.StreamSupport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PrimitiveDoubleArrayTest {
+
+    @Test
+    public void testNumericKernelsMatchScalarLoops() {
+        final int length = 1003;
+        PrimitiveDoubleArray x = PrimitiveDoubleArray.newInstance(length);
+        PrimitiveDoubleArray y = PrimitiveDoubleArray.newInstance(length);
+        double expectedSum = 0;
+        double expectedDot = 0;
+        for (int i = 0; i < length; i++) {
+            x.set(i, i - 500);
+            y.set(i, 2);
+            expectedSum += i - 500;
+            expectedDot += (i - 500) * 2;
+        }
+
+        assertThat(x.sum(0, length), is(expectedSum));
+        assertThat(x.dot(0, y, 0, length), is(expectedDot));
+        assertThat(x.min(0, length), is(-500.0));
+        assertThat(x.max(3, 10), is(-491.0));
+        assertThat(x.min(5, 5), is(Double.POSITIVE_INFINITY));
+
+        y.axpy(3, x, 0, 0, length);
+        assertThat(y.get(0), is(2 + 3 * -500.0));
+        assertThat(y.get(length - 1), is(2 + 3 * 502.0));
+
+        // Overlapping axpy behaves as if the source range was copied first:
+        y.fill(0, length, 1);
+        y.axpy(1, y, 0, 1, length - 1);
+        assertThat(y.sum(0, length), is(1 + 2.0 * (length - 1)));
+
+        x.map(0, length, new DoubleUnaryOperator() {
+            @Override
+            public double applyAsDouble(final double value) {
+                return value * value;
+            }
+        });
+        assertThat(x.get(0), is(250000.0));
+        assertThat(x.min(0, length), is(0.0));
+    }
+
+    @Test
+    public void testPrefixSum() {
+        PrimitiveDoubleArray x = PrimitiveDoubleArray.newInstance(10);
+        x.fill(0, 10, 0.25);
+
+        x.prefixSum(2, 6);
+        assertThat(x.get(1), is(0.25));
+        assertThat(x.get(2), is(0.25));
+        assertThat(x.get(5), is(1.0));
+        assertThat(x.get(6), is(0.25));
+    }
+
+    @Test
+    public void testStreamsMatchElementSums() throws IOException {
+        final int length = 100000;
+        PrimitiveDoubleArray d = PrimitiveDoubleArray.newInstance(length);
+        for (int i = 0; i < length; i++) {
+            d.set(i, i / 2.0);
+        }
+        final double expectedSum = ((double) length * (length - 1) / 2) / 2.0;
+
+        assertThat(d.stream().sum(), is(expectedSum));
+        assertThat(d.parallelStream().sum(), is(expectedSum));
+        assertThat(d.parallelStream().count(), is((long) length));
+        assertThat(d.parallelStream().max().getAsDouble(), is((length - 1) / 2.0));
+
+        Spliterator.OfDouble spliterator = d.spliterator(10, 20);
+        Spliterator.OfDouble prefix = spliterator.trySplit();
+        assertThat(prefix.estimateSize(), is(5L));
+        assertThat(StreamSupport.doubleStream(prefix, false).sum(), is((10 + 11 + 12 + 13 + 14) / 2.0));
+        assertThat(StreamSupport.doubleStream(spliterator, false).min().getAsDouble(), is(7.5));
+
+        final Path path = Files.createTempFile("PrimitiveDoubleArrayTest", ".mapped");
+        try {
+            try (MappedPrimitiveDoubleArray m = PrimitiveDoubleArray.newMappedInstance(path, length)) {
+                m.copyFrom(d, 0, 0, length);
+                assertThat(m.parallelStream().sum(), is(expectedSum));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.ObjectLayoutApiTests;
+
+import org.ObjectLayout.*;
+import org.junit.Test;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PrimitiveFloatArrayTest {
+
+    @Test
+    public void testNumericKernelsMatchScalarLoops() {
+        final int length = 1003;
+        PrimitiveFloatArray f = PrimitiveFloatArray.newInstance(length);
+        PrimitiveFloatArray g = PrimitiveFloatArray.newInstance(length);
+        double expectedDot = 0;
+        for (int i = 0; i < length; i++) {
+            f.set(i, i * 0.5f);
+            g.set(i, 3);
+            expectedDot += i * 1.5;
+        }
+
+        assertThat(f.sum(0, 4), is(3.0));
+        assertThat(f.dot(0, g, 0, length), is(expectedDot));
+        assertThat(f.max(0, length), is((length - 1) * 0.5f));
+        assertThat(f.min(7, length), is(3.5f));
+        assertThat(f.max(5, 5), is(Float.NEGATIVE_INFINITY));
+
+        g.axpy(2, f, 0, 0, length);
+        assertThat(g.get(0), is(3.0f));
+        assertThat(g.get(length - 1), is(3 + (length - 1) * 1.0f));
+
+        f.prefixSum(0, 5);
+        assertThat(f.get(4), is(5.0f));
+        assertThat(f.get(5), is(2.5f));
+
+        f.map(0, length, new DoubleUnaryOperator() {
+            @Override
+            public double applyAsDouble(final double value) {
+                return -value;
+            }
+        });
+        assertThat(f.get(4), is(-5.0f));
+        assertThat(f.min(0, length), is(-(length - 1) * 0.5f));
+    }
+
+    @Test
+    public void testSumAndDotAccumulateInDoublePrecision() {
+        final int length = 1 << 20;
+        PrimitiveFloatArray f = PrimitiveFloatArray.newInstance(length);
+        f.fill(0, length, 0.1f);
+        double expected = 0;
+        for (int i = 0; i < length; i++) {
+            expected += 0.1f;
+        }
+
+        // A float accumulator would drift far from the double precision sum:
+        assertThat(Math.abs(f.sum(0, length) - expected) < 1e-6, is(true));
+        assertThat(Math.abs(f.dot(0, f, 0, length) - (length * ((double) 0.1f * 0.1f))) < 1e-3, is(true));
+    }
+}
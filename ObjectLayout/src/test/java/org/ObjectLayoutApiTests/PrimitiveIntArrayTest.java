@@ -0,0 +1,48 @@
+package org.ObjectLayoutApiTests;
+
+import org.ObjectLayout.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PrimitiveIntArrayTest {
+
+    @Test
+    public void testStreamsMatchElementSums() throws IOException {
+        final int length = 100000;
+        PrimitiveIntArray a = PrimitiveIntArray.newInstance(length);
+        for (int i = 0; i < length; i++) {
+            a.set(i, i % 1000);
+        }
+        final long expectedSum = (long) (length / 1000) * (1000 * 999 / 2);
+
+        assertThat(a.stream().asLongStream().sum(), is(expectedSum));
+        assertThat(a.parallelStream().asLongStream().sum(), is(expectedSum));
+        assertThat(a.parallelStream().count(), is((long) length));
+        assertThat(a.parallelStream().max().getAsInt(), is(999));
+
+        Spliterator.OfInt spliterator = a.spliterator(10, 20);
+        Spliterator.OfInt prefix = spliterator.trySplit();
+        assertThat(prefix.estimateSize(), is(5L));
+        assertThat(StreamSupport.intStream(prefix, false).sum(), is(10 + 11 + 12 + 13 + 14));
+        assertThat(StreamSupport.intStream(spliterator, false).min().getAsInt(), is(15));
+
+        final Path path = Files.createTempFile("PrimitiveIntArrayTest", ".mapped");
+        try {
+            try (MappedPrimitiveIntArray m = PrimitiveIntArray.newMappedInstance(path, length)) {
+                m.copyFrom(a, 0, 0, length);
+                assertThat(m.parallelStream().asLongStream().sum(), is(expectedSum));
+                assertThat(StreamSupport.intStream(m.spliterator(10, 20), false).sum(), is(145));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -3,12 +3,18 @@ package org.ObjectLayoutApiTests;
 import org.ObjectLayout.*;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class PrimitiveLongArrayTest {
 
@@ -320,4 +326,196 @@ public class PrimitiveLongArrayTest {
             assertTrue(Arrays.equals(a.get(i).asArray(), a2.get(i).asArray()));
         }
     }
+
+    @Test
+    public void testMappedLongArrayPersistsContents() throws IOException {
+        final Path path = Files.createTempFile("PrimitiveLongArrayTest", ".mapped");
+        try {
+            try (MappedPrimitiveLongArray a = PrimitiveLongArray.newMappedInstance(path, 1000)) {
+                assertThat(a.getLength(), is(1000L));
+                for (int i = 0; i < a.getLength(); i++) {
+                    a.set(i, i * 3L);
+                }
+                a.force();
+                assertThat(Files.size(path), is(8000L));
+            }
+
+            try (MappedPrimitiveLongArray reopened = PrimitiveLongArray.newMappedInstance(path, 1000)) {
+                for (long i = 0; i < reopened.getLength(); i++) {
+                    assertThat(reopened.get(i), is(i * 3L));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testMappedByteArrayAboveIntegerMaxValue() throws IOException {
+        final Path path = Files.createTempFile("PrimitiveByteArrayTest", ".mapped");
+        try {
+            final long length = Integer.MAX_VALUE + 10L;
+            try (MappedPrimitiveByteArray a = PrimitiveByteArray.newMappedInstance(path, length)) {
+                a.set(0, (byte) 1);
+                a.set(Integer.MAX_VALUE - 1L, (byte) 2);
+                a.set(Integer.MAX_VALUE + 9L, (byte) 3);
+                assertThat(a.get(0), is((byte) 1));
+                assertThat(a.get(Integer.MAX_VALUE - 1), is((byte) 2));
+                assertThat(a.get(Integer.MAX_VALUE + 9L), is((byte) 3));
+                assertThat(a.get(Integer.MAX_VALUE + 8L), is((byte) 0));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMappedLongArrayCannotBeRepresentedAsArray() throws IOException {
+        final Path path = Files.createTempFile("PrimitiveLongArrayTest", ".mapped");
+        try {
+            try (MappedPrimitiveLongArray a = PrimitiveLongArray.newMappedInstance(path, 10)) {
+                a.asArray();
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMappedLongArrayCannotBeCopied() throws IOException, NoSuchMethodException {
+        final Path path = Files.createTempFile("PrimitiveLongArrayTest", ".mapped");
+        try {
+            try (MappedPrimitiveLongArray a = PrimitiveLongArray.newMappedInstance(path, 10)) {
+                PrimitiveLongArray.copyInstance(a);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testMappedLongArrayCanBeClosed() throws IOException {
+        final Path path = Files.createTempFile("PrimitiveLongArrayTest", ".mapped");
+        try {
+            final MappedPrimitiveLongArray a = PrimitiveLongArray.newMappedInstance(path, 10);
+            a.set(7, 42L);
+            assertThat(a.isClosed(), is(false));
+            a.close();
+            assertThat(a.isClosed(), is(true));
+            // Closing again has no effect:
+            a.close();
+            try {
+                a.force();
+                fail("force() on a closed array should fail");
+            } catch (IllegalStateException expected) {
+            }
+            try {
+                a.get(7);
+                fail("get() on a closed array should fail");
+            } catch (IllegalStateException expected) {
+            }
+            try {
+                a.set(7, 43L);
+                fail("set() on a closed array should fail");
+            } catch (IllegalStateException expected) {
+            }
+            // The contents were written back when the array was closed:
+            try (MappedPrimitiveLongArray reopened = PrimitiveLongArray.newMappedInstance(path, 10)) {
+                assertThat(reopened.get(7), is(42L));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testBulkOperationsMatchJavaUtilArrays() throws NoSuchMethodException {
+        PrimitiveLongArray a = PrimitiveLongArray.newInstance(100);
+        long[] expected = new long[100];
+        for (int i = 0; i < 100; i++) {
+            a.set(i, i * 7L);
+            expected[i] = i * 7L;
+        }
+
+        a.fill(10, 20, -1L);
+        Arrays.fill(expected, 10, 20, -1L);
+        assertTrue(Arrays.equals(a.asArray(), expected));
+
+        // Overlapping copies in both directions:
+        a.copyFrom(a, 0, 5, 50);
+        System.arraycopy(expected, 0, expected, 5, 50);
+        assertTrue(Arrays.equals(a.asArray(), expected));
+        a.copyFrom(a, 30, 25, 60);
+        System.arraycopy(expected, 30, expected, 25, 60);
+        assertTrue(Arrays.equals(a.asArray(), expected));
+
+        assertThat(a.hashRange(0, 100), is(Arrays.hashCode(expected)));
+        assertThat(a.hashRange(40, 40), is(1));
+
+        PrimitiveLongArray b = PrimitiveLongArray.copyInstance(a);
+        assertTrue(a.equalsRange(0, b, 0, 100));
+        b.set(42, 0L);
+        assertThat(a.mismatch(0, b, 0, 100), is(42L));
+        assertThat(a.mismatch(43, b, 43, 57), is(-1L));
+        assertThat(a.mismatch(41, b, 40, 10), is(0L));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testBulkCopyOutOfBounds() {
+        PrimitiveLongArray a = PrimitiveLongArray.newInstance(10);
+        PrimitiveLongArray b = PrimitiveLongArray.newInstance(20);
+        a.copyFrom(b, 5, 5, 6);
+    }
+
+    @Test
+    public void testBulkOperationsOnMappedArrayAcrossIntegerMaxValue() throws IOException {
+        final Path path = Files.createTempFile("PrimitiveByteArrayTest", ".mapped");
+        try {
+            final long length = Integer.MAX_VALUE + 10L;
+            try (MappedPrimitiveByteArray a = PrimitiveByteArray.newMappedInstance(path, length)) {
+                a.fill(Integer.MAX_VALUE - 5L, length, (byte) 7);
+                assertThat(a.get(Integer.MAX_VALUE - 6L), is((byte) 0));
+                assertThat(a.get(Integer.MAX_VALUE + 9L), is((byte) 7));
+
+                PrimitiveByteArray b = PrimitiveByteArray.newInstance(15);
+                b.copyFrom(a, Integer.MAX_VALUE - 5L, 0, 15);
+                assertTrue(b.equalsRange(0, a, Integer.MAX_VALUE - 5L, 15));
+                assertThat(a.hashRange(Integer.MAX_VALUE - 5L, length), is(Arrays.hashCode(b.asArray())));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testStreamsMatchElementSums() throws IOException {
+        final int length = 100000;
+        PrimitiveLongArray a = PrimitiveLongArray.newInstance(length);
+        PrimitiveDoubleArray d = PrimitiveDoubleArray.newInstance(length);
+        for (int i = 0; i < length; i++) {
+            a.set(i, i);
+            d.set(i, i / 2.0);
+        }
+        final long expectedSum = (long) length * (length - 1) / 2;
+
+        assertThat(a.stream().sum(), is(expectedSum));
+        assertThat(a.parallelStream().sum(), is(expectedSum));
+        assertThat(d.parallelStream().sum(), is(expectedSum / 2.0));
+        assertThat(a.parallelStream().count(), is((long) length));
+
+        Spliterator.OfLong spliterator = a.spliterator(10, 20);
+        Spliterator.OfLong prefix = spliterator.trySplit();
+        assertThat(prefix.estimateSize(), is(5L));
+        assertThat(StreamSupport.longStream(spliterator, false).min().getAsLong(), is(15L));
+
+        final Path path = Files.createTempFile("PrimitiveLongArrayTest", ".mapped");
+        try {
+            try (MappedPrimitiveLongArray m = PrimitiveLongArray.newMappedInstance(path, length)) {
+                m.copyFrom(a, 0, 0, length);
+                assertThat(m.parallelStream().sum(), is(expectedSum));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
 }
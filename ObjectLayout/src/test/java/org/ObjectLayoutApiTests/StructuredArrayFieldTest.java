@@ -0,0 +1,119 @@
+/*
+* Written by Gil Tene and Martin Thompson, and released to the public domain,
+* as explained at http://creativecommons.org/publicdomain/zero/1.0/
+*/
+
+package org.ObjectLayoutApiTests;
+
+import org.ObjectLayout.*;
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class StructuredArrayFieldTest {
+
+    static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    static final StructuredArrayLongField<Counter> COUNT =
+            StructuredArray.longField(lookup, Counter.class, "count");
+    static final StructuredArrayIntField<Counter> FLAGS =
+            StructuredArray.intField(lookup, Counter.class, "flags");
+    static final StructuredArrayReferenceField<Counter, String> LABEL =
+            StructuredArray.referenceField(lookup, Counter.class, "label", String.class);
+
+    @Test
+    public void shouldReadAndUpdateElementFields() {
+        final StructuredArray<Counter> array = StructuredArray.newInstance(Counter.class, 10);
+
+        COUNT.set(array, 3, 5);
+        assertThat(array.get(3).count, is(5L));
+        assertThat(COUNT.compareAndSet(array, 3, 4, 7), is(false));
+        assertThat(COUNT.compareAndSet(array, 3, 5, 7), is(true));
+        assertThat(COUNT.getAndAdd(array, 3, 3), is(7L));
+        assertThat(COUNT.addAndGet(array, 3, 1), is(11L));
+        COUNT.setRelease(array, 3, 12);
+        assertThat(COUNT.getAcquire(array, 3), is(12L));
+        assertThat(COUNT.getAndSet(array, 3, 1), is(12L));
+        assertThat(COUNT.getOpaque(array, 3), is(1L));
+        assertThat(COUNT.get(array, 2), is(0L));
+
+        FLAGS.setVolatile(array, 9, 0x10);
+        assertThat(FLAGS.getAndAdd(array, 9, 1), is(0x10));
+        assertThat(array.get(9).flags, is(0x11));
+
+        assertThat(LABEL.get(array, 0), nullValue());
+        assertThat(LABEL.compareAndSet(array, 0, null, "first"), is(true));
+        assertThat(LABEL.getAndSet(array, 0, "second"), is("first"));
+        assertThat(array.get(0).label, is("second"));
+    }
+
+    @Test
+    public void shouldAccessInheritedFields() {
+        final StructuredArrayLongField<SubCounter> inherited =
+                StructuredArray.longField(lookup, SubCounter.class, "count");
+        final StructuredArray<SubCounter> array = StructuredArray.newInstance(SubCounter.class, 4);
+
+        inherited.getAndAdd(array, 1, 2);
+        assertThat(array.get(1).count, is(2L));
+        // A handle for the superclass field applies to arrays of the subclass:
+        assertThat(COUNT.get(array, 1), is(2L));
+    }
+
+    @Test
+    public void shouldCountAtomicallyFromMultipleThreads() throws InterruptedException {
+        final StructuredArray<Counter> array = StructuredArray.newInstance(Counter.class, 4);
+        final int threadCount = 4;
+        final int incrementsPerThread = 100000;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+
+        for (int t = 0; t < threadCount; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < incrementsPerThread; i++) {
+                        COUNT.getAndAdd(array, i & 3, 1);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+
+        long total = 0;
+        for (long i = 0; i < array.getLength(); i++) {
+            total += COUNT.getVolatile(array, i);
+        }
+        assertThat(total, is((long) threadCount * incrementsPerThread));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectFieldOfWrongType() {
+        StructuredArray.intField(lookup, Counter.class, "count");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectFinalField() {
+        StructuredArray.longField(lookup, Counter.class, "id");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInaccessibleField() {
+        StructuredArray.longField(Counter.class, "count");
+    }
+
+    public static class Counter {
+        final long id = 0;
+        long count;
+        int flags;
+        String label;
+    }
+
+    public static class SubCounter extends Counter {
+        long extra;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+* Written by Gil Tene and Martin Thompson, and released to the public domain,
+* as explained at http://creativecommons.org/publicdomain/zero/1.0/
+*/
+
+package org.ObjectLayoutApiTests;
+
+import org.ObjectLayout.*;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StructuredArraySerializerTest {
+
+    static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    @Test
+    public void shouldRoundTripArrayThroughBuffer() throws IOException {
+        final long length = 10000;
+        final StructuredArray<SampleStructure> array = StructuredArray.newInstance(SampleStructure.class, length);
+        for (long i = 0; i < length; i++) {
+            array.get(i).set(i);
+        }
+
+        final StructuredArray<SampleStructure> copy = StructuredArraySerializer.read(toBuffer(array));
+
+        assertThat(copy.getLength(), is(length));
+        assertThat(copy.getElementClass() == SampleStructure.class, is(true));
+        for (long i = 0; i < length; i++) {
+            assertThat(copy.get(i), is(array.get(i)));
+        }
+    }
+
+    @Test
+    public void shouldRoundTripNestedArraysThroughFile() throws IOException {
+        @SuppressWarnings("unchecked")
+        final StructuredArray<StructuredArray<SampleStructure>> array =
+                new StructuredArrayBuilder(
+                        StructuredArray.class,
+                        new StructuredArrayBuilder(
+                                StructuredArray.class,
+                                SampleStructure.class,
+                                300
+                        ),
+                        400
+                ).build();
+        for (long i = 0; i < 400; i++) {
+            for (long j = 0; j < 300; j++) {
+                array.get(i).get(j).set(i * 1000 + j);
+            }
+        }
+
+        final Path path = Files.createTempFile("StructuredArraySerializerTest", ".bin");
+        try {
+            // Large enough to be streamed through several buffer refills:
+            StructuredArraySerializer.write(array, path);
+            final StructuredArray<StructuredArray<SampleStructure>> copy =
+                    StructuredArraySerializer.read(lookup, path);
+
+            assertThat(copy.getArrayModel().equals(array.getArrayModel()), is(true));
+            for (long i = 0; i < 400; i++) {
+                for (long j = 0; j < 300; j++) {
+                    assertThat(copy.get(i).get(j), is(array.get(i).get(j)));
+                }
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void shouldRoundTripPrimitiveSubArrays() throws IOException {
+        @SuppressWarnings("unchecked")
+        final StructuredArray<PrimitiveLongArray> array =
+                new StructuredArrayBuilder(
+                        StructuredArray.class,
+                        new PrimitiveArrayBuilder(PrimitiveLongArray.class, 50),
+                        20
+                ).build();
+        for (long i = 0; i < 20; i++) {
+            for (long j = 0; j < 50; j++) {
+                array.get(i).set(j, i * j - 7);
+            }
+        }
+
+        final StructuredArray<PrimitiveLongArray> copy = StructuredArraySerializer.read(lookup, toBuffer(array));
+
+        assertThat(copy.getLength(), is(20L));
+        for (long i = 0; i < 20; i++) {
+            assertThat(copy.get(i).getLength(), is(50L));
+            for (long j = 0; j < 50; j++) {
+                assertThat(copy.get(i).get(j), is(i * j - 7));
+            }
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void shouldRejectTruncatedBuffer() throws IOException {
+        final ByteBuffer buffer = toBuffer(StructuredArray.newInstance(SampleStructure.class, 10));
+        buffer.limit(buffer.limit() - 1);
+        StructuredArraySerializer.read(buffer);
+    }
+
+    @Test(expected = InvalidClassException.class)
+    public void shouldRejectUnknownElementClass() throws IOException {
+        final ByteBuffer buffer = toBuffer(StructuredArray.newInstance(SampleStructure.class, 10));
+        final byte[] name = SampleStructure.class.getName().getBytes("UTF-8");
+        // Corrupt the last character of the serialized element class name:
+        for (int i = 0; i < buffer.limit() - name.length; i++) {
+            boolean matches = true;
+            for (int j = 0; matches && (j < name.length); j++) {
+                matches = buffer.get(i + j) == name[j];
+            }
+            if (matches) {
+                buffer.put(i + name.length - 1, (byte) 'X');
+                break;
+            }
+        }
+        StructuredArraySerializer.read(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectElementsWithReferenceFields() throws IOException {
+        StructuredArraySerializer.write(StructuredArray.newInstance(ReferenceStructure.class, 10),
+                new ByteArrayOutputStream());
+    }
+
+    private static ByteBuffer toBuffer(final StructuredArray<?> array) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StructuredArraySerializer.write(array, out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    public static class SampleStructure {
+        long id;
+        int count;
+        short flags;
+        boolean active;
+        double value;
+
+        void set(final long i) {
+            id = i;
+            count = (int) (i * 3);
+            flags = (short) i;
+            active = (i & 1) == 0;
+            value = i / 7.0;
+        }
+
+        public boolean equals(final Object o) {
+            if (!(o instanceof SampleStructure)) return false;
+            final SampleStructure that = (SampleStructure) o;
+            return (id == that.id) && (count == that.count) && (flags == that.flags) &&
+                    (active == that.active) && (value == that.value);
+        }
+
+        public int hashCode() {
+            return (int) id;
+        }
+
+        public String toString() {
+            return "SampleStructure{id=" + id + ", count=" + count + ", flags=" + flags +
+                    ", active=" + active + ", value=" + value + '}';
+        }
+    }
+
+    public static class ReferenceStructure {
+        Object reference;
+    }
+}
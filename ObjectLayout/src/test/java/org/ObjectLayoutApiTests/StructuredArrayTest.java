@@ -12,7 +12,17 @@ import java.awt.*;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Spliterator;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 import static java.lang.Long.valueOf;
 import static org.hamcrest.CoreMatchers.is;
@@ -501,6 +511,96 @@ public class StructuredArrayTest {
         assertCorrectVariableInitialisation(lengths, array);
     }
 
+    @Test
+    public void shouldConstructArrayElementsViaAlternatingConstructors() throws NoSuchMethodException {
+        final long length = 9;
+        final CtorAndArgs<MockStructure> defaultCtorAndArgs = new CtorAndArgs<MockStructure>(lookup, MockStructure.class);
+        final CtorAndArgsProvider<MockStructure> ctorAndArgsProvider = new CtorAndArgsProvider<MockStructure>() {
+            private final Class[] argsTypes = {Long.TYPE, Long.TYPE};
+
+            public CtorAndArgs<MockStructure> getForContext(
+                    ConstructionContext<MockStructure> context) throws NoSuchMethodException {
+                long index = context.getIndex();
+                if ((index & 1) == 0) {
+                    return defaultCtorAndArgs;
+                }
+                return new CtorAndArgs<MockStructure>(lookup, MockStructure.class, argsTypes, index, index * 2);
+            }
+        };
+        final StructuredArray<MockStructure> array =
+                StructuredArray.newInstance(MockStructure.class, ctorAndArgsProvider, length);
+
+        for (long i = 0; i < length; i++) {
+            MockStructure mockStructure = array.get(i);
+            if ((i & 1) == 0) {
+                assertThat(valueOf(mockStructure.getIndex()), is(valueOf(-1)));
+                assertThat(valueOf(mockStructure.getTestValue()), is(valueOf(Long.MIN_VALUE)));
+            } else {
+                assertThat(valueOf(mockStructure.getIndex()), is(valueOf(i)));
+                assertThat(valueOf(mockStructure.getTestValue()), is(valueOf(i * 2)));
+            }
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldFailToConstructInaccessibleElementsWithoutLookup() throws NoSuchMethodException {
+        // Make sure an accessible constructor for the same class has been used first:
+        StructuredArray.newInstance(lookup, MockStructure.class, 3);
+        StructuredArray.newInstance(MockStructure.class, 3);
+    }
+
+    @Test
+    public void shouldRejectElementConstructorArgumentsOfTheWrongType() throws NoSuchMethodException {
+        final Class[] initArgTypes = {long.class, long.class};
+        final CtorAndArgs<MockStructure> ctorAndArgs =
+                new CtorAndArgs<MockStructure>(lookup, MockStructure.class, initArgTypes, "4", 777L);
+        try {
+            newArrayWithElementCtorAndArgs(MockStructure.class, ctorAndArgs, 3);
+            throw new AssertionError("construction should have failed");
+        } catch (RuntimeException ex) {
+            // The element constructor was never invoked, so the failure is not reported as thrown by it:
+            final Throwable cause = rootCause(ex);
+            assertTrue(cause instanceof IllegalArgumentException);
+            assertTrue(cause.getMessage().contains("argument type mismatch"));
+        }
+    }
+
+    @Test
+    public void shouldWidenElementConstructorArguments() throws NoSuchMethodException {
+        final Class[] initArgTypes = {long.class, long.class};
+        final CtorAndArgs<MockStructure> ctorAndArgs =
+                new CtorAndArgs<MockStructure>(lookup, MockStructure.class, initArgTypes, 4, (short) 777);
+
+        final StructuredArray<MockStructure> array =
+                newArrayWithElementCtorAndArgs(MockStructure.class, ctorAndArgs, 3);
+
+        assertCorrectFixedInitialisation(4L, 777L, new long[] {3}, array);
+    }
+
+    @Test
+    public void shouldReportExceptionsThrownByElementConstructors() throws NoSuchMethodException {
+        final CtorAndArgs<ThrowingMockStructure> ctorAndArgs =
+                new CtorAndArgs<ThrowingMockStructure>(lookup, ThrowingMockStructure.class, new Class[] {long.class}, 7L);
+        try {
+            newArrayWithElementCtorAndArgs(ThrowingMockStructure.class, ctorAndArgs, 3);
+            throw new AssertionError("construction should have failed");
+        } catch (RuntimeException ex) {
+            Throwable thrown = ex;
+            while (!(thrown instanceof InvocationTargetException) ||
+                    !(thrown.getCause() instanceof IllegalStateException)) {
+                thrown = thrown.getCause();
+                assertTrue("constructor exception should be reported as thrown by it", thrown != null);
+            }
+        }
+    }
+
+    private static Throwable rootCause(Throwable ex) {
+        while (ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void shouldConstructArrayElementsViaCtorAndArgsProvider3D() throws NoSuchMethodException {
@@ -536,6 +636,104 @@ public class StructuredArrayTest {
         assertCorrectVariableInitialisation(lengths, array);
     }
 
+    @Test
+    public void shouldConstructArrayElementsInParallel() throws NoSuchMethodException {
+        final long[] lengths = {100000};
+        final DefaultMockCtorAndArgsProvider ctorAndArgsProvider = new DefaultMockCtorAndArgsProvider();
+        @SuppressWarnings("unchecked")
+        final StructuredArray<MockStructure> array =
+                new StructuredArrayBuilder(lookup, StructuredArray.class, MockStructure.class, lengths[0]).
+                        elementCtorAndArgsProvider(ctorAndArgsProvider).
+                        parallelism(4).
+                        build();
+
+        assertCorrectVariableInitialisation(lengths, array);
+    }
+
+    @Test
+    public void shouldConstructArrayElementsInSuppliedPoolFromAnotherPool() throws Exception {
+        final long[] lengths = {100000};
+        final Set<ForkJoinPool> populatingPools = Collections.newSetFromMap(new ConcurrentHashMap<ForkJoinPool, Boolean>());
+        final DefaultMockCtorAndArgsProvider defaultProvider = new DefaultMockCtorAndArgsProvider();
+        final CtorAndArgsProvider<MockStructure> ctorAndArgsProvider = new CtorAndArgsProvider<MockStructure>() {
+            public CtorAndArgs<MockStructure> getForContext(ConstructionContext<MockStructure> context)
+                    throws NoSuchMethodException {
+                final ForkJoinPool pool = ForkJoinTask.getPool();
+                if (pool != null) {
+                    populatingPools.add(pool);
+                }
+                return defaultProvider.getForContext(context);
+            }
+        };
+        final ForkJoinPool suppliedPool = new ForkJoinPool(2);
+        final ForkJoinPool callingPool = new ForkJoinPool(1);
+        try {
+            final StructuredArray<MockStructure> array = callingPool.submit(new Callable<StructuredArray<MockStructure>>() {
+                @SuppressWarnings("unchecked")
+                public StructuredArray<MockStructure> call() throws NoSuchMethodException {
+                    return new StructuredArrayBuilder(lookup, StructuredArray.class, MockStructure.class, lengths[0]).
+                            elementCtorAndArgsProvider(ctorAndArgsProvider).
+                            forkJoinPool(suppliedPool).
+                            build();
+                }
+            }).get();
+
+            assertCorrectVariableInitialisation(lengths, array);
+            assertTrue("elements should be populated in the supplied pool", populatingPools.contains(suppliedPool));
+        } finally {
+            suppliedPool.shutdown();
+            callingPool.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldConstructAlignedArrayElements() throws NoSuchMethodException {
+        final long[] lengths = {1000};
+        final DefaultMockCtorAndArgsProvider ctorAndArgsProvider = new DefaultMockCtorAndArgsProvider();
+        @SuppressWarnings("unchecked")
+        final StructuredArray<MockStructure> array =
+                new StructuredArrayBuilder(lookup, StructuredArray.class, MockStructure.class, lengths[0]).
+                        elementCtorAndArgsProvider(ctorAndArgsProvider).
+                        padToCacheLine().
+                        build();
+
+        assertCorrectVariableInitialisation(lengths, array);
+        assertThat(array.getElementAlignment(), is(StructuredArrayBuilder.CACHE_LINE_SIZE));
+
+        final StructuredArray<MockStructure> copy = StructuredArray.copyInstance(lookup, array);
+        assertCorrectVariableInitialisation(lengths, copy);
+        assertThat(copy.getElementAlignment(), is(StructuredArrayBuilder.CACHE_LINE_SIZE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPowerOfTwoAlignment() {
+        new StructuredArrayBuilder<>(StructuredArray.class, MockStructure.class, 10).alignment(48);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldConstructArrayElementsInParallel3D() throws NoSuchMethodException {
+        final long[] lengths = {7, 8, 9};
+        final DefaultMockCtorAndArgsProvider ctorAndArgsProvider = new DefaultMockCtorAndArgsProvider();
+        final ForkJoinPool pool = new ForkJoinPool(3);
+
+        try {
+            final StructuredArrayBuilder<StructuredArray<StructuredArray<StructuredArray<MockStructure>>>,
+                    StructuredArray<StructuredArray<MockStructure>>> builder = get3dBuilder(lengths);
+            builder.forkJoinPool(pool);
+            builder.getStructuredSubArrayBuilder().parallelism(2);
+            builder.getStructuredSubArrayBuilder().
+                    getStructuredSubArrayBuilder().
+                    elementCtorAndArgsProvider(ctorAndArgsProvider);
+
+            final StructuredArray<StructuredArray<StructuredArray<MockStructure>>> array = builder.build();
+
+            assertCorrectVariableInitialisation(lengths, array);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     @Test
     public void shouldConstructArrayElementsViaLambdas() throws NoSuchMethodException {
 //        Uncomment for Java 8, keep commented for Java 7 and 6
@@ -647,6 +845,40 @@ public class StructuredArrayTest {
         assertThat(valueOf(i), is(valueOf(length)));
     }
 
+    @Test
+    public void shouldSplitAndStreamOverArray() throws NoSuchMethodException {
+        final long[] lengths = {100000};
+        final StructuredArray<MockStructure> array =
+                StructuredArray.newInstance(lookup, MockStructure.class, lengths[0]);
+
+        initValues(lengths, array);
+
+        final StructuredArray<MockStructure>.ElementSpliterator spliterator = array.spliterator();
+        assertThat(valueOf(spliterator.getExactSizeIfKnown()), is(valueOf(lengths[0])));
+        final Spliterator<MockStructure> prefix = spliterator.trySplit();
+        assertThat(valueOf(prefix.estimateSize() + spliterator.estimateSize()), is(valueOf(lengths[0])));
+
+        final long[] firstIndexOfSuffix = {-1};
+        spliterator.tryAdvance(new Consumer<MockStructure>() {
+            @Override
+            public void accept(final MockStructure mockStructure) {
+                firstIndexOfSuffix[0] = mockStructure.getIndex();
+            }
+        });
+        assertThat(valueOf(firstIndexOfSuffix[0]), is(valueOf(prefix.estimateSize())));
+
+        final ToLongFunction<MockStructure> testValueOf = new ToLongFunction<MockStructure>() {
+            @Override
+            public long applyAsLong(final MockStructure mockStructure) {
+                return mockStructure.getTestValue();
+            }
+        };
+        final long expectedSum = lengths[0] * (lengths[0] - 1);
+        assertThat(valueOf(array.stream().mapToLong(testValueOf).sum()), is(valueOf(expectedSum)));
+        assertThat(valueOf(array.parallelStream().mapToLong(testValueOf).sum()), is(valueOf(expectedSum)));
+        assertThat(valueOf(array.parallelStream().count()), is(valueOf(lengths[0])));
+    }
+
     @Test
     public void shouldConstructCopyOfArray() throws NoSuchMethodException {
         final long length = 15;
@@ -818,6 +1050,29 @@ public class StructuredArrayTest {
         assertThat(valueOf(array.get(7).getIndex()), is(valueOf(6)));
     }
 
+    @Test
+    public void shouldCopyFieldsOfAllTypesBetweenArrays() throws NoSuchMethodException {
+        final long length = 11;
+        final StructuredArray<MockStructureWithAllFieldTypes> src =
+                StructuredArray.newInstance(lookup, MockStructureWithAllFieldTypes.class, length);
+        final StructuredArray<MockStructureWithAllFieldTypes> dst =
+                StructuredArray.newInstance(lookup, MockStructureWithAllFieldTypes.class, length);
+
+        for (int i = 0; i < length; i++) {
+            src.get(i).set(i);
+        }
+
+        StructuredArray.shallowCopy(src, 2, dst, 5, 4);
+
+        for (int i = 0; i < length; i++) {
+            final MockStructureWithAllFieldTypes expected = new MockStructureWithAllFieldTypes();
+            if ((i >= 5) && (i < 9)) {
+                expected.set(i - 3);
+            }
+            assertThat(dst.get(i), is(expected));
+        }
+    }
+
     @Test
     public void shouldCopyEvenWithFinalFields() throws NoSuchMethodException {
         final long length = 11;
@@ -1019,6 +1274,20 @@ public class StructuredArrayTest {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private static <T> StructuredArray<T> newArrayWithElementCtorAndArgs(
+            final Class<T> elementClass, final CtorAndArgs<T> ctorAndArgs, final long length) {
+        return new StructuredArrayBuilder(lookup, StructuredArray.class, elementClass, length).
+                elementCtorAndArgs(ctorAndArgs).
+                build();
+    }
+
+    private static class ThrowingMockStructure {
+        public ThrowingMockStructure(final long value) {
+            throw new IllegalStateException("rejected " + value);
+        }
+    }
+
     private static class MockStructure {
 
         private long index = -1;
@@ -1076,6 +1345,47 @@ public class StructuredArrayTest {
         }
     }
 
+    public static class MockStructureWithAllFieldTypes {
+        private long l;
+        private double d;
+        private int i;
+        private float f;
+        private short s;
+        private char c;
+        private byte b;
+        private boolean z;
+        private String ref;
+
+        public void set(final int value) {
+            l = value * 1000000000000L;
+            d = value / 2.0;
+            i = value;
+            f = value / 4.0f;
+            s = (short) value;
+            c = (char) ('a' + value);
+            b = (byte) -value;
+            z = (value & 1) == 1;
+            ref = "value " + value;
+        }
+
+        public boolean equals(final Object o) {
+            if (!(o instanceof MockStructureWithAllFieldTypes)) return false;
+            final MockStructureWithAllFieldTypes that = (MockStructureWithAllFieldTypes) o;
+            return (l == that.l) && (d == that.d) && (i == that.i) && (f == that.f) && (s == that.s) &&
+                    (c == that.c) && (b == that.b) && (z == that.z) &&
+                    ((ref == null) ? (that.ref == null) : ref.equals(that.ref));
+        }
+
+        public int hashCode() {
+            return i;
+        }
+
+        public String toString() {
+            return "MockStructureWithAllFieldTypes{l=" + l + ", d=" + d + ", i=" + i + ", f=" + f + ", s=" + s +
+                    ", c=" + c + ", b=" + b + ", z=" + z + ", ref=" + ref + '}';
+        }
+    }
+
     public static class MockStructureWithFinalField {
         private final int value = 888;
     }